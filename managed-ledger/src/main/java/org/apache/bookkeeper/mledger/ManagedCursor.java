@@ -34,6 +34,7 @@ import org.apache.bookkeeper.mledger.AsyncCallbacks.MarkDeleteCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.SkipEntriesCallback;
+import org.apache.bookkeeper.mledger.impl.PositionBatchRecyclable;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
 
 /**
@@ -489,6 +490,23 @@ public interface ManagedCursor {
      */
     void asyncDelete(Iterable<Position> position, DeleteCallback callback, Object ctx);
 
+    /**
+     * Delete a group of messages given as primitive (ledgerId, entryId) pairs, see
+     * {@link #asyncDelete(Iterable, DeleteCallback, Object)}.
+     *
+     * <p/>The batch is not retained by the cursor and can be recycled as soon as the method returns.
+     *
+     * @param positions
+     *            the positions of the messages to be deleted
+     * @param callback
+     *            callback object
+     * @param ctx
+     *            opaque context
+     */
+    default void asyncDelete(PositionBatchRecyclable positions, DeleteCallback callback, Object ctx) {
+        asyncDelete(positions.toPositions(), callback, ctx);
+    }
+
     /**
      * Get the read position. This points to the next message to be read from the cursor.
      *
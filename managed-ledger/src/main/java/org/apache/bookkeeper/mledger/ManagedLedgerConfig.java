@@ -46,6 +46,9 @@ public class ManagedLedgerConfig {
     private int maxUnackedRangesToPersist = 10000;
     private int maxBatchDeletedIndexToPersist = 10000;
     private boolean persistentUnackedRangesWithMultipleEntriesEnabled = false;
+    private boolean unackedRangesBitmapEncodingEnabled = false;
+    private int unackedRangesBitmapChunkSize = 512 * 1024;
+    private int unackedRangesMaxDeltasBetweenSnapshots = 0;
     private boolean deletionAtBatchIndexLevelEnabled = true;
     private int maxUnackedRangesToPersistInMetadataStore = 1000;
     private int maxEntriesPerLedger = 50000;
@@ -85,6 +88,9 @@ public class ManagedLedgerConfig {
     private int minimumBacklogCursorsForCaching = 0;
     private int minimumBacklogEntriesForCaching = 1000;
     private int maxBacklogBetweenCursorsForCaching = 1000;
+    private int readAheadPrefetchBatches = 0;
+    private boolean cursorsRecoveryPipelined = false;
+    private long dormantCursorThresholdMs = 0;
 
     @Getter
     @Setter
@@ -487,6 +493,73 @@ public class ManagedLedgerConfig {
         this.persistentUnackedRangesWithMultipleEntriesEnabled = multipleEntriesEnabled;
     }
 
+    /**
+     * Whether the individually deleted messages of the cursors are persisted in the cursor ledger as compressed
+     * bitmaps of the deleted entries of each ledger, instead of a list of ranges.
+     *
+     * @return true if the bitmap encoding is enabled
+     */
+    public boolean isUnackedRangesBitmapEncodingEnabled() {
+        return unackedRangesBitmapEncodingEnabled;
+    }
+
+    /**
+     * Persist the individually deleted messages of the cursors in the cursor ledger as compressed bitmaps of the
+     * deleted entries of each ledger. The number of persisted "acknowledgment holes" is then not limited by
+     * {@link #getMaxUnackedRangesToPersist()}, and the bitmaps that don't fit in a single entry are written in
+     * chunks of {@link #getUnackedRangesBitmapChunkSize()} bytes.
+     *
+     * <p/>The cursors persisted with this encoding can not be recovered with the ranges by older versions.
+     *
+     * @param unackedRangesBitmapEncodingEnabled
+     *            true to enable the bitmap encoding
+     */
+    public void setUnackedRangesBitmapEncodingEnabled(boolean unackedRangesBitmapEncodingEnabled) {
+        this.unackedRangesBitmapEncodingEnabled = unackedRangesBitmapEncodingEnabled;
+    }
+
+    /**
+     * @return the max size in bytes of the bitmaps of individually deleted messages written in a single entry of the
+     *         cursor ledger
+     */
+    public int getUnackedRangesBitmapChunkSize() {
+        return unackedRangesBitmapChunkSize;
+    }
+
+    /**
+     * Set the max size in bytes of the bitmaps of individually deleted messages written in a single entry of the
+     * cursor ledger. The bitmap of a single ledger is never split, so it's written alone when it's bigger.
+     *
+     * @param unackedRangesBitmapChunkSize
+     *            the max size in bytes of a chunk
+     */
+    public void setUnackedRangesBitmapChunkSize(int unackedRangesBitmapChunkSize) {
+        this.unackedRangesBitmapChunkSize = unackedRangesBitmapChunkSize;
+    }
+
+    /**
+     * @return the max number of deltas of the individually deleted messages written in the cursor ledger between two
+     *         full snapshots, 0 if the deltas are disabled
+     */
+    public int getUnackedRangesMaxDeltasBetweenSnapshots() {
+        return unackedRangesMaxDeltasBetweenSnapshots;
+    }
+
+    /**
+     * Set the max number of deltas of the individually deleted messages written in the cursor ledger between two full
+     * snapshots. When enabled, the mark-delete updates only write the ranges added since the previous update, and the
+     * recovery replays the deltas on top of the last snapshot. A full snapshot is still written in each new cursor
+     * ledger and after a failed write.
+     *
+     * <p/>The cursors persisted with deltas can only be partially recovered by older versions.
+     *
+     * @param unackedRangesMaxDeltasBetweenSnapshots
+     *            the max number of deltas, 0 to always write full snapshots
+     */
+    public void setUnackedRangesMaxDeltasBetweenSnapshots(int unackedRangesMaxDeltasBetweenSnapshots) {
+        this.unackedRangesMaxDeltasBetweenSnapshots = unackedRangesMaxDeltasBetweenSnapshots;
+    }
+
     /**
      * @param maxUnackedRangesToPersist
      *            max unacked message ranges that will be persisted and receverd.
@@ -748,6 +821,71 @@ public class ManagedLedgerConfig {
         this.maxBacklogBetweenCursorsForCaching = maxBacklogBetweenCursorsForCaching;
     }
 
+    /**
+     * Number of batches of entries that are read ahead of a cursor that is catching up with a backlog.
+     *
+     * @return the number of batches read ahead, 0 if the read-ahead is disabled
+     */
+    public int getReadAheadPrefetchBatches() {
+        return readAheadPrefetchBatches;
+    }
+
+    /**
+     * Set the number of batches of entries that are read ahead of a cursor that is catching up with a backlog. The
+     * batches have the size of the last read of the cursor, and are only read ahead when the cursor is not active.
+     * The entries read ahead are accounted in the reads in flight of the managed ledger factory, and nothing is read
+     * ahead when the reads in flight are not limited or when the entry cache is disabled.
+     *
+     * @param readAheadPrefetchBatches
+     *            the number of batches to read ahead, 0 to disable the read-ahead
+     */
+    public void setReadAheadPrefetchBatches(int readAheadPrefetchBatches) {
+        this.readAheadPrefetchBatches = readAheadPrefetchBatches;
+    }
+
+    /**
+     * @return whether the metadata of the cursors is read while the data ledgers are being recovered
+     */
+    public boolean isCursorsRecoveryPipelined() {
+        return cursorsRecoveryPipelined;
+    }
+
+    /**
+     * Whether to read the list of the cursors, their metadata and their cursor ledgers as soon as the recovery of the
+     * managed ledger starts, instead of waiting for the data ledgers to be recovered. The cursors are still recovered
+     * once the data ledgers are ready, but without waiting for any more metadata or bookkeeper round trip.
+     *
+     * @param cursorsRecoveryPipelined
+     *            whether to pipeline the recovery of the cursors with the recovery of the data ledgers
+     */
+    public void setCursorsRecoveryPipelined(boolean cursorsRecoveryPipelined) {
+        this.cursorsRecoveryPipelined = cursorsRecoveryPipelined;
+    }
+
+    /**
+     * @return the inactivity after which a cursor is recovered in a dormant state, 0 if disabled
+     */
+    public long getDormantCursorThresholdMs() {
+        return dormantCursorThresholdMs;
+    }
+
+    /**
+     * Recover the cursors that have not been active for longer than this threshold in a dormant state, holding only
+     * the mark-delete position stored in their metadata. The cursor ledger and the individually deleted messages of a
+     * dormant cursor are only recovered when the cursor is used again, by a read, an acknowledgment or when it's set
+     * as active.
+     *
+     * <p/>Until then, the mark-delete position of the cursor can be behind the last one that was persisted in its
+     * cursor ledger, which makes its backlog look larger than it is but never lets the managed ledger trim entries
+     * that were not acknowledged.
+     *
+     * @param dormantCursorThresholdMs
+     *            the inactivity threshold in milliseconds, 0 to always fully recover the cursors
+     */
+    public void setDormantCursorThresholdMs(long dormantCursorThresholdMs) {
+        this.dormantCursorThresholdMs = dormantCursorThresholdMs;
+    }
+
     public String getShadowSource() {
         return MapUtils.getString(properties, PROPERTY_SOURCE_TOPIC_KEY);
     }
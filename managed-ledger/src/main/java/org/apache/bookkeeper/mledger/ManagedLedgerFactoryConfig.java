@@ -21,6 +21,10 @@ package org.apache.bookkeeper.mledger;
 import lombok.Data;
 import org.apache.bookkeeper.common.annotation.InterfaceAudience;
 import org.apache.bookkeeper.common.annotation.InterfaceStability;
+import org.apache.bookkeeper.mledger.impl.cache.EntryCacheDefaultEvictionPolicy;
+import org.apache.bookkeeper.mledger.impl.cache.EntryCacheTinyLfuEvictionPolicy;
+import org.apache.bookkeeper.mledger.impl.cache.RangeEntryCacheManagerImpl;
+import org.apache.bookkeeper.mledger.impl.cache.SegmentedEntryCacheManagerImpl;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats;
 
 /**
@@ -57,11 +61,36 @@ public class ManagedLedgerFactoryConfig {
      */
     private boolean copyEntriesInCache = false;
 
+    /**
+     * Class name of the entry cache manager implementation. It must have a public constructor taking the
+     * {@link org.apache.bookkeeper.mledger.impl.ManagedLedgerFactoryImpl} as the only argument.
+     */
+    private String entryCacheManagerClassName = RangeEntryCacheManagerImpl.class.getName();
+
+    /**
+     * Number of off-heap segments the cache is split into when using {@link SegmentedEntryCacheManagerImpl}. When
+     * the cache is full, the oldest segment is evicted as a whole.
+     */
+    private int entryCacheSegmentsCount = 8;
+
+    /**
+     * Class name of the eviction policy used by {@link RangeEntryCacheManagerImpl}. It must have a public no-argument
+     * constructor. {@link EntryCacheTinyLfuEvictionPolicy} tracks how often the entries are read, to protect the
+     * entries that many readers need and to avoid caching the backlog reads that a single reader needs.
+     */
+    private String entryCacheEvictionPolicyClassName = EntryCacheDefaultEvictionPolicy.class.getName();
+
     /**
      * Maximum number of (estimated) data in-flight reading from storage and the cache.
      */
     private long managedLedgerMaxReadsInFlightSize = 0;
 
+    /**
+     * Maximum number of managed ledgers that are recovered at the same time. The other managed ledgers being opened
+     * wait for a recovery to complete. 0 means no limit.
+     */
+    private int maxConcurrentManagedLedgerRecoveries = 0;
+
     /**
      * Whether trace managed ledger task execution time.
      */
@@ -62,6 +62,38 @@ public interface ManagedLedgerFactoryMXBean {
      */
     double getCacheMissesThroughput();
 
+    /**
+     * Get the number of entries per second requested by tailing readers and found in the cache.
+     */
+    double getTailingReadsCacheHitsRate();
+
+    /**
+     * Get the number of entries per second requested by tailing readers and not found in the cache.
+     */
+    double getTailingReadsCacheMissesRate();
+
+    /**
+     * Get the ratio of the entries requested by tailing readers that were found in the cache, during the last
+     * stats period.
+     */
+    double getTailingReadsCacheHitRatio();
+
+    /**
+     * Get the number of entries per second requested by catch-up readers and found in the cache.
+     */
+    double getCatchUpReadsCacheHitsRate();
+
+    /**
+     * Get the number of entries per second requested by catch-up readers and not found in the cache.
+     */
+    double getCatchUpReadsCacheMissesRate();
+
+    /**
+     * Get the ratio of the entries requested by catch-up readers that were found in the cache, during the last
+     * stats period.
+     */
+    double getCatchUpReadsCacheHitRatio();
+
     /**
      * Get the number of cache evictions during the last minute.
      */
@@ -81,4 +113,44 @@ public interface ManagedLedgerFactoryMXBean {
      * Current number of entries in the cache.
      */
     long getCacheEntriesCount();
+
+    /**
+     * Get the number of managed ledgers waiting for a recovery slot, when the concurrent recoveries are limited.
+     */
+    int getNumberOfPendingRecoveries();
+
+    /**
+     * Get the number of managed ledgers recovered during the last stats period.
+     */
+    long getRecoveriesCount();
+
+    /**
+     * Get the average time the managed ledgers waited for a recovery slot, during the last stats period.
+     */
+    double getRecoveryQueueLatencyAvgMs();
+
+    /**
+     * Get the average time spent reading the metadata of the managed ledgers, during the last stats period.
+     */
+    double getRecoveryMetadataLatencyAvgMs();
+
+    /**
+     * Get the average time spent recovering the data ledgers of the managed ledgers, during the last stats period.
+     */
+    double getRecoveryLedgersLatencyAvgMs();
+
+    /**
+     * Get the average time spent recovering the cursors of the managed ledgers, during the last stats period.
+     */
+    double getRecoveryCursorsLatencyAvgMs();
+
+    /**
+     * Get the average total recovery time of the managed ledgers, during the last stats period.
+     */
+    double getRecoveryLatencyAvgMs();
+
+    /**
+     * Get the distribution of the total recovery time of the managed ledgers, during the last stats period.
+     */
+    long[] getRecoveryLatencyBuckets();
 }
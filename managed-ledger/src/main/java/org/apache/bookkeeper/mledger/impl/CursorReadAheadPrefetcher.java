@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.impl.cache.InflightReadsLimiter;
+import org.apache.bookkeeper.mledger.impl.cache.RangeEntryCacheImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-ahead of the entries of a cursor that is catching up with a backlog.
+ *
+ * <p/>When the cursor is not active, each read of a batch of entries keeps up to maxBatches reads of the same size
+ * in flight ahead of it, on the same ledger. The next reads of the cursor are then served from these batches as soon
+ * as they complete, instead of paying for a full round trip to the bookies each time.
+ *
+ * <p/>The entry cache accounts the entries read ahead in the reads in flight until they are released, and the
+ * read-ahead only uses the first half of that budget, so that it never delays the reads that the dispatchers are
+ * waiting for. The read-ahead is therefore disabled when the reads in flight are not limited, or when the entry cache
+ * is disabled.
+ *
+ * <p/>A batch that is not read within the read entry timeout of the managed ledger fails, and the cursor reads its
+ * entries again instead of waiting for it.
+ */
+class CursorReadAheadPrefetcher {
+
+    private final ManagedLedgerImpl ledger;
+    private final ManagedCursorImpl cursor;
+    private final int maxBatches;
+    private final InflightReadsLimiter inflightReadsLimiter;
+
+    // Batches read ahead, ordered by position
+    private final Deque<Batch> batches = new ArrayDeque<>();
+
+    private static class Batch {
+        final long ledgerId;
+        final long firstEntry;
+        final long lastEntry;
+        final CompletableFuture<List<Entry>> future;
+
+        Batch(long ledgerId, long firstEntry, long lastEntry, CompletableFuture<List<Entry>> future) {
+            this.ledgerId = ledgerId;
+            this.firstEntry = firstEntry;
+            this.lastEntry = lastEntry;
+            this.future = future;
+        }
+
+        boolean contains(long ledgerId, long entryId) {
+            return this.ledgerId == ledgerId && entryId >= firstEntry && entryId <= lastEntry;
+        }
+    }
+
+    CursorReadAheadPrefetcher(ManagedLedgerImpl ledger, ManagedCursorImpl cursor, int maxBatches) {
+        this.ledger = ledger;
+        this.cursor = cursor;
+        this.maxBatches = maxBatches;
+        this.inflightReadsLimiter = ledger.entryCache instanceof RangeEntryCacheImpl
+                ? ledger.getInflightReadsLimiter() : null;
+    }
+
+    /**
+     * Read the entries [firstEntry, lastEntry] of a ledger for a cursor read operation, from the batches read ahead
+     * when possible, and read ahead the next batches.
+     *
+     * @param lh the ledger handle
+     * @param firstEntry the first entry to read
+     * @param lastEntry the last entry to read
+     * @param lastEntryInLedger the last entry that can be read from the ledger
+     * @param opReadEntry the read operation
+     */
+    synchronized void asyncReadEntries(ReadHandle lh, long firstEntry, long lastEntry, long lastEntryInLedger,
+                                       OpReadEntry opReadEntry) {
+        long ledgerId = lh.getId();
+
+        // Drop the batches that the cursor has skipped, or all of them if the cursor has moved somewhere else
+        while (!batches.isEmpty() && !batches.peekFirst().contains(ledgerId, firstEntry)) {
+            release(batches.pollFirst());
+        }
+
+        Batch batch = batches.pollFirst();
+        if (batch == null) {
+            ledger.asyncReadEntry(lh, firstEntry, lastEntry, opReadEntry, opReadEntry.ctx);
+        } else {
+            long lastServedEntry = Math.min(lastEntry, batch.lastEntry);
+            if (lastServedEntry < batch.lastEntry) {
+                // Keep the end of the batch for the next read
+                batches.addFirst(new Batch(ledgerId, lastServedEntry + 1, batch.lastEntry,
+                        batch.future.thenApply(entries -> slice(entries, lastServedEntry + 1, lastServedEntry + 1,
+                                batch.lastEntry))));
+            }
+            batch.future.thenApply(entries -> slice(entries, batch.firstEntry, firstEntry, lastServedEntry))
+                    .whenComplete((entries, exception) -> {
+                        if (exception != null) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("[{}] [{}] Read ahead of {}:{}-{} failed, reading again", ledger.getName(),
+                                        cursor.getName(), ledgerId, firstEntry, lastServedEntry, exception);
+                            }
+                            ledger.asyncReadEntry(lh, firstEntry, lastServedEntry, opReadEntry, opReadEntry.ctx);
+                        } else {
+                            opReadEntry.internalReadEntriesComplete(entries, opReadEntry.ctx,
+                                    PositionImpl.get(ledgerId, lastServedEntry));
+                        }
+                    });
+        }
+
+        readAhead(lh, lastEntry, lastEntry - firstEntry + 1, lastEntryInLedger);
+    }
+
+    private void readAhead(ReadHandle lh, long lastReadEntry, long batchSize, long lastEntryInLedger) {
+        if (cursor.isActive()) {
+            // The cursor is tailing the managed ledger, its reads are served by the entry cache
+            return;
+        }
+
+        long ledgerId = lh.getId();
+        long nextEntry = batches.isEmpty() ? lastReadEntry + 1 : batches.peekLast().lastEntry + 1;
+
+        while (batches.size() < maxBatches && nextEntry <= lastEntryInLedger && hasReadsBudget()) {
+            long lastEntry = Math.min(nextEntry + batchSize - 1, lastEntryInLedger);
+            batches.addLast(new Batch(ledgerId, nextEntry, lastEntry, read(lh, nextEntry, lastEntry)));
+            nextEntry = lastEntry + 1;
+        }
+    }
+
+    private CompletableFuture<List<Entry>> read(ReadHandle lh, long firstEntry, long lastEntry) {
+        CompletableFuture<List<Entry>> future = new CompletableFuture<>();
+        // The read entry timeout of the managed ledger only tracks its last read, each batch has its own timeout
+        long timeoutSeconds = ledger.getConfig().getReadEntryTimeoutSeconds();
+        if (timeoutSeconds > 0) {
+            ScheduledFuture<?> timeoutTask = ledger.getScheduledExecutor().schedule(
+                    () -> future.completeExceptionally(
+                            ManagedLedgerImpl.createManagedLedgerException(BKException.Code.TimeoutException)),
+                    timeoutSeconds, TimeUnit.SECONDS);
+            future.whenComplete((entries, exception) -> timeoutTask.cancel(false));
+        }
+
+        ledger.entryCache.asyncReadEntry(lh, firstEntry, lastEntry, false, new ReadEntriesCallback() {
+            @Override
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                if (!future.complete(entries)) {
+                    // The batch has timed out and the cursor has read its entries again
+                    entries.forEach(Entry::release);
+                }
+            }
+
+            @Override
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                future.completeExceptionally(exception);
+            }
+        }, null);
+        return future;
+    }
+
+    private boolean hasReadsBudget() {
+        return inflightReadsLimiter != null && !inflightReadsLimiter.isDisabled()
+                && inflightReadsLimiter.getRemainingBytes() > inflightReadsLimiter.getMaxReadsInFlightSize() / 2;
+    }
+
+    /**
+     * Release all the batches read ahead.
+     */
+    synchronized void clear() {
+        while (!batches.isEmpty()) {
+            release(batches.pollFirst());
+        }
+    }
+
+    synchronized int getNumberOfBatches() {
+        return batches.size();
+    }
+
+    private static void release(Batch batch) {
+        batch.future.thenAccept(entries -> entries.forEach(Entry::release));
+    }
+
+    /**
+     * Keep the entries in [firstEntry, lastEntry] and release the ones in [releaseFrom, firstEntry), which were
+     * skipped by the cursor. The other entries are owned by other parts of the batch.
+     */
+    private static List<Entry> slice(List<Entry> entries, long releaseFrom, long firstEntry, long lastEntry) {
+        List<Entry> sliced = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            long entryId = entry.getEntryId();
+            if (entryId > lastEntry) {
+                break;
+            } else if (entryId >= firstEntry) {
+                sliced.add(entry);
+            } else if (entryId >= releaseFrom) {
+                entry.release();
+            }
+        }
+        return sliced;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CursorReadAheadPrefetcher.class);
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.bookkeeper.client.AsyncCallback.OpenCallback;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.MetaStoreException;
+import org.apache.bookkeeper.mledger.impl.MetaStore.MetaStoreCallback;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedCursorInfo;
+import org.apache.pulsar.common.util.FutureUtil;
+import org.apache.pulsar.metadata.api.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-ahead of the metadata of the cursors of a managed ledger that is being recovered.
+ *
+ * <p/>The list of the cursors, their {@link ManagedCursorInfo} and their cursor ledgers are read as soon as the
+ * recovery of the managed ledger starts, in parallel with the recovery of the data ledgers. The cursors are still
+ * recovered once the data ledgers are ready, but from the results of these reads instead of waiting for a metadata
+ * store round trip and a bookkeeper round trip each.
+ */
+class CursorsRecoveryPrefetcher {
+
+    private final ManagedLedgerImpl ledger;
+    private final BookKeeper bookKeeper;
+    private final BookKeeper.DigestType digestType;
+    private final byte[] password;
+
+    private final CompletableFuture<List<String>> cursorNames = new CompletableFuture<>();
+    private final Map<String, CompletableFuture<PrefetchedCursor>> cursors = new ConcurrentHashMap<>();
+
+    private static class PrefetchedCursor {
+        final ManagedCursorInfo info;
+        final Stat stat;
+        // Opening of the cursor ledger, null if the cursor has no ledger
+        final CompletableFuture<OpenedLedger> cursorLedger;
+
+        PrefetchedCursor(ManagedCursorInfo info, Stat stat, CompletableFuture<OpenedLedger> cursorLedger) {
+            this.info = info;
+            this.stat = stat;
+            this.cursorLedger = cursorLedger;
+        }
+    }
+
+    private static class OpenedLedger {
+        final int rc;
+        final LedgerHandle lh;
+
+        OpenedLedger(int rc, LedgerHandle lh) {
+            this.rc = rc;
+            this.lh = lh;
+        }
+    }
+
+    CursorsRecoveryPrefetcher(ManagedLedgerImpl ledger, BookKeeper bookKeeper) {
+        this.ledger = ledger;
+        this.bookKeeper = bookKeeper;
+        this.digestType = BookKeeper.DigestType.fromApiDigestType(ledger.getConfig().getDigestType());
+        this.password = ledger.getConfig().getPassword();
+    }
+
+    /**
+     * Start reading the list of the cursors, and then the metadata and the cursor ledger of each of them.
+     */
+    void start() {
+        ledger.getStore().getCursors(ledger.getName(), new MetaStoreCallback<List<String>>() {
+            @Override
+            public void operationComplete(List<String> names, Stat stat) {
+                for (String cursorName : names) {
+                    cursors.put(cursorName, prefetchCursor(cursorName));
+                }
+                cursorNames.complete(names);
+            }
+
+            @Override
+            public void operationFailed(MetaStoreException e) {
+                cursorNames.completeExceptionally(e);
+            }
+        });
+    }
+
+    private CompletableFuture<PrefetchedCursor> prefetchCursor(String cursorName) {
+        CompletableFuture<PrefetchedCursor> future = new CompletableFuture<>();
+        ledger.getStore().asyncGetCursorInfo(ledger.getName(), cursorName, new MetaStoreCallback<ManagedCursorInfo>() {
+            @Override
+            public void operationComplete(ManagedCursorInfo info, Stat stat) {
+                if (info.getCursorsLedgerId() == -1L
+                        || ManagedCursorImpl.canRecoverDormant(ledger.getConfig(), info)) {
+                    // There is no cursor ledger to read, or it's only read when the cursor is used again
+                    future.complete(new PrefetchedCursor(info, stat, null));
+                    return;
+                }
+                CompletableFuture<OpenedLedger> cursorLedger = new CompletableFuture<>();
+                try {
+                    bookKeeper.asyncOpenLedger(info.getCursorsLedgerId(), digestType, password,
+                            (rc, lh, ctx) -> cursorLedger.complete(new OpenedLedger(rc, lh)), null);
+                } catch (Throwable t) {
+                    log.warn("[{}] Failed to open cursor ledger {} for cursor {} ahead of its recovery",
+                            ledger.getName(), info.getCursorsLedgerId(), cursorName, t);
+                    cursorLedger.complete(new OpenedLedger(BKException.Code.UnexpectedConditionException, null));
+                }
+                future.complete(new PrefetchedCursor(info, stat, cursorLedger));
+            }
+
+            @Override
+            public void operationFailed(MetaStoreException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Get the list of the cursors of the managed ledger.
+     */
+    void getCursors(MetaStoreCallback<List<String>> callback) {
+        cursorNames.whenComplete((names, ex) -> {
+            if (ex != null) {
+                callback.operationFailed((MetaStoreException) FutureUtil.unwrapCompletionException(ex));
+            } else {
+                callback.operationComplete(names, null);
+            }
+        });
+    }
+
+    /**
+     * Get the metadata of a cursor, from the read-ahead if the cursor was listed, or else from the metadata store.
+     */
+    void getCursorInfo(String cursorName, MetaStoreCallback<ManagedCursorInfo> callback) {
+        CompletableFuture<PrefetchedCursor> cursor = cursors.get(cursorName);
+        if (cursor == null) {
+            ledger.getStore().asyncGetCursorInfo(ledger.getName(), cursorName, callback);
+            return;
+        }
+        cursor.whenComplete((prefetchedCursor, ex) -> {
+            if (ex != null) {
+                cursors.remove(cursorName, cursor);
+                callback.operationFailed((MetaStoreException) FutureUtil.unwrapCompletionException(ex));
+            } else {
+                if (prefetchedCursor.cursorLedger == null) {
+                    cursors.remove(cursorName, cursor);
+                }
+                callback.operationComplete(prefetchedCursor.info, prefetchedCursor.stat);
+            }
+        });
+    }
+
+    /**
+     * Open the cursor ledger of a cursor, using the read-ahead if it opened the same ledger.
+     *
+     * @return false if the cursor ledger was not opened ahead, in which case the caller has to open it
+     */
+    boolean openCursorLedger(String cursorName, long ledgerId, OpenCallback callback) {
+        CompletableFuture<PrefetchedCursor> cursor = cursors.remove(cursorName);
+        if (cursor == null || !cursor.isDone() || cursor.isCompletedExceptionally()) {
+            return false;
+        }
+        PrefetchedCursor prefetchedCursor = cursor.join();
+        if (prefetchedCursor.cursorLedger == null) {
+            return false;
+        }
+        if (prefetchedCursor.info.getCursorsLedgerId() != ledgerId) {
+            release(prefetchedCursor);
+            return false;
+        }
+        prefetchedCursor.cursorLedger.thenAccept(openedLedger ->
+                callback.openComplete(openedLedger.rc, openedLedger.lh, null));
+        return true;
+    }
+
+    /**
+     * Release what was read ahead for a cursor and was not used by its recovery.
+     */
+    void release(String cursorName) {
+        CompletableFuture<PrefetchedCursor> cursor = cursors.remove(cursorName);
+        if (cursor != null) {
+            cursor.thenAccept(CursorsRecoveryPrefetcher::release);
+        }
+    }
+
+    /**
+     * Release everything that was read ahead and was not used by the recovery of the cursors.
+     */
+    void releaseAll() {
+        cursorNames.whenComplete((names, ex) -> cursors.keySet().forEach(this::release));
+    }
+
+    private static void release(PrefetchedCursor prefetchedCursor) {
+        if (prefetchedCursor.cursorLedger != null) {
+            prefetchedCursor.cursorLedger.thenAccept(openedLedger -> {
+                if (openedLedger.lh != null) {
+                    openedLedger.lh.asyncClose((rc, lh, ctx) -> {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Closed unused cursor ledger {}: {}", lh.getId(), BKException.getMessage(rc));
+                        }
+                    }, null);
+                }
+            });
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CursorsRecoveryPrefetcher.class);
+}
@@ -42,6 +42,9 @@ public final class LedgerMetadataUtils {
     private static final byte[] METADATA_PROPERTY_COMPONENT_DELAYED_INDEX_BUCKET =
             "delayed-index-bucket".getBytes(StandardCharsets.UTF_8);
 
+    private static final byte[] METADATA_PROPERTY_COMPONENT_DEDUPLICATION_SNAPSHOT =
+            "deduplication-snapshot".getBytes(StandardCharsets.UTF_8);
+
     private static final String METADATA_PROPERTY_MANAGED_LEDGER_NAME = "pulsar/managed-ledger";
     private static final String METADATA_PROPERTY_CURSOR_NAME = "pulsar/cursor";
     private static final String METADATA_PROPERTY_COMPACTEDTOPIC = "pulsar/compactedTopic";
@@ -119,6 +122,20 @@ public final class LedgerMetadataUtils {
         );
     }
 
+    /**
+     * Build additional metadata for a deduplication snapshot ledger.
+     *
+     * @param name the name of the managed ledger of the topic
+     * @return an immutable map which describes the deduplication snapshot ledger
+     */
+    public static Map<String, byte[]> buildMetadataForDeduplicationSnapshot(String name) {
+        return Map.of(
+                METADATA_PROPERTY_APPLICATION, METADATA_PROPERTY_APPLICATION_PULSAR,
+                METADATA_PROPERTY_COMPONENT, METADATA_PROPERTY_COMPONENT_DEDUPLICATION_SNAPSHOT,
+                METADATA_PROPERTY_MANAGED_LEDGER_NAME, name.getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
     /**
      * Build additional metadata for the placement policy config.
      *
@@ -70,6 +70,8 @@ public class ManagedCursorContainer implements Iterable<ManagedCursor> {
 
     private int durableCursorCount;
 
+    private int cursorCount;
+
 
     /**
      * Add a cursor to the container. The cursor will be optionally tracked for the slowest reader when
@@ -84,7 +86,9 @@ public class ManagedCursorContainer implements Iterable<ManagedCursor> {
         long stamp = rwLock.writeLock();
         try {
             Item item = new Item(cursor, (PositionImpl) position, position != null ? heap.size() : -1);
-            cursors.put(cursor.getName(), item);
+            if (cursors.put(cursor.getName(), item) == null) {
+                cursorCount++;
+            }
             if (position != null) {
                 heap.add(item);
                 if (heap.size() > 1) {
@@ -114,6 +118,7 @@ public class ManagedCursorContainer implements Iterable<ManagedCursor> {
         try {
             Item item = cursors.remove(name);
             if (item != null) {
+                cursorCount--;
                 if (item.idx >= 0) {
                     if (heap.size() == 1) {
                         heap.clear();
@@ -224,6 +229,26 @@ public class ManagedCursorContainer implements Iterable<ManagedCursor> {
         return isEmpty;
     }
 
+    /**
+     * Get the number of cursors in the container.
+     * @return the number of cursors
+     */
+    public int size() {
+        long stamp = rwLock.tryOptimisticRead();
+        int count = cursorCount;
+        if (!rwLock.validate(stamp)) {
+            // Fallback to read lock
+            stamp = rwLock.readLock();
+            try {
+                count = cursorCount;
+            } finally {
+                rwLock.unlockRead(stamp);
+            }
+        }
+
+        return count;
+    }
+
     /**
      * Check whether that are any durable cursors.
      * @return true if there are durable cursors and false if there are not
@@ -33,6 +33,9 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
 import com.google.common.util.concurrent.RateLimiter;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.Clock;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -45,6 +48,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
@@ -58,8 +62,11 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import org.apache.bookkeeper.client.AsyncCallback.CloseCallback;
 import org.apache.bookkeeper.client.AsyncCallback.OpenCallback;
 import org.apache.bookkeeper.client.BKException;
@@ -84,11 +91,13 @@ import org.apache.bookkeeper.mledger.ManagedLedgerException;
 import org.apache.bookkeeper.mledger.ManagedLedgerException.CursorAlreadyClosedException;
 import org.apache.bookkeeper.mledger.ManagedLedgerException.MetaStoreException;
 import org.apache.bookkeeper.mledger.ManagedLedgerException.NoMoreEntriesToReadException;
+import org.apache.bookkeeper.mledger.ManagedLedgerException.NonRecoverableLedgerException;
 import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.ScanOutcome;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl.PositionBound;
 import org.apache.bookkeeper.mledger.impl.MetaStore.MetaStoreCallback;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats;
+import org.apache.bookkeeper.mledger.proto.MLDataFormats.LedgerDeletedEntries;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.LongProperty;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedCursorInfo;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats.ManagedLedgerInfo.LedgerInfo;
@@ -102,6 +111,7 @@ import org.apache.pulsar.common.util.collections.LongPairRangeSet;
 import org.apache.pulsar.common.util.collections.LongPairRangeSet.LongPairConsumer;
 import org.apache.pulsar.common.util.collections.LongPairRangeSet.RangeBoundConsumer;
 import org.apache.pulsar.metadata.api.Stat;
+import org.roaringbitmap.RoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -215,6 +225,13 @@ public class ManagedCursorImpl implements ManagedCursor {
     private long entriesReadCount;
     private long entriesReadSize;
     private int individualDeletedMessagesSerializedSize;
+
+    // Entry of the cursor ledger holding the last full snapshot of the individually deleted messages, on top of which
+    // the next deltas are written, or null if the next update has to be a full snapshot
+    private volatile PositionImpl deltaBase = null;
+    private final AtomicInteger deltasSinceSnapshot = new AtomicInteger();
+    // Incremented each time a full snapshot of the individually deleted messages is built
+    private final AtomicLong individualDeletedMessagesSnapshots = new AtomicLong();
     private static final String COMPACTION_CURSOR_NAME = "__compaction";
     private volatile boolean cacheReadEntry = false;
 
@@ -292,6 +309,16 @@ public class ManagedCursorImpl implements ManagedCursor {
 
     protected final ManagedCursorMXBean mbean;
 
+    // Read-ahead of the backlog, null when disabled
+    private final CursorReadAheadPrefetcher readAheadPrefetcher;
+
+    // Whether only the mark-delete position of the cursor has been recovered, from its ManagedCursorInfo
+    private volatile boolean dormant = false;
+    // Cursor ledger to recover a dormant cursor from, -1 if none
+    private long dormantCursorLedgerId = -1L;
+    // Full recovery of a dormant cursor, null until the cursor is used again
+    private CompletableFuture<Void> dormantCursorRecovery;
+
     @SuppressWarnings("checkstyle:javadoctype")
     public interface VoidCallback {
         void operationComplete();
@@ -329,6 +356,8 @@ public class ManagedCursorImpl implements ManagedCursor {
             markDeleteLimiter = null;
         }
         this.mbean = new ManagedCursorMXBeanImpl(this);
+        this.readAheadPrefetcher = config.getReadAheadPrefetchBatches() > 0
+                ? new CursorReadAheadPrefetcher(ledger, this, config.getReadAheadPrefetchBatches()) : null;
     }
 
     private void updateCursorLedgerStat(ManagedCursorInfo cursorInfo, Stat stat) {
@@ -427,6 +456,9 @@ public class ManagedCursorImpl implements ManagedCursor {
 
     @Override
     public boolean putProperty(String key, Long value) {
+        if (deferWhileDormant(() -> putProperty(key, value), e -> { })) {
+            return true;
+        }
         if (lastMarkDeleteEntry != null) {
             LAST_MARK_DELETE_ENTRY_UPDATER.updateAndGet(this, last -> {
                 Map<String, Long> properties = last.properties;
@@ -446,6 +478,9 @@ public class ManagedCursorImpl implements ManagedCursor {
 
     @Override
     public boolean removeProperty(String key) {
+        if (deferWhileDormant(() -> removeProperty(key), e -> { })) {
+            return true;
+        }
         if (lastMarkDeleteEntry != null) {
             LAST_MARK_DELETE_ENTRY_UPDATER.updateAndGet(this, last -> {
                 Map<String, Long> properties = last.properties;
@@ -464,9 +499,13 @@ public class ManagedCursorImpl implements ManagedCursor {
      * have a new opened ledger.
      */
     void recover(final VoidCallback callback) {
+        recover(callback, true);
+    }
+
+    private void recover(final VoidCallback callback, boolean allowDormant) {
         // Read the meta-data ledgerId from the store
         log.info("[{}] Recovering from bookkeeper ledger cursor: {}", ledger.getName(), name);
-        ledger.getStore().asyncGetCursorInfo(ledger.getName(), name, new MetaStoreCallback<ManagedCursorInfo>() {
+        MetaStoreCallback<ManagedCursorInfo> cursorInfoCallback = new MetaStoreCallback<ManagedCursorInfo>() {
             @Override
             public void operationComplete(ManagedCursorInfo info, Stat stat) {
 
@@ -488,6 +527,12 @@ public class ManagedCursorImpl implements ManagedCursor {
                 }
                 cursorProperties = recoveredCursorProperties;
 
+                if (allowDormant && canRecoverDormant(config, info)) {
+                    recoverDormant(info);
+                    callback.operationComplete();
+                    return;
+                }
+
                 if (info.getCursorsLedgerId() == -1L) {
                     // There is no cursor ledger to read the last position from. It means the cursor has been properly
                     // closed and the last mark-delete position is stored in the ManagedCursorInfo itself.
@@ -521,7 +566,106 @@ public class ManagedCursorImpl implements ManagedCursor {
             public void operationFailed(MetaStoreException e) {
                 callback.operationFailed(e);
             }
-        });
+        };
+        CursorsRecoveryPrefetcher prefetcher = ledger.getCursorsRecoveryPrefetcher();
+        if (prefetcher != null) {
+            prefetcher.getCursorInfo(name, cursorInfoCallback);
+        } else {
+            ledger.getStore().asyncGetCursorInfo(ledger.getName(), name, cursorInfoCallback);
+        }
+    }
+
+    /**
+     * Whether a cursor can be recovered in a dormant state, because it has not been active for longer than the
+     * configured threshold. The cursors with mark-delete properties are always fully recovered, since their properties
+     * are read as soon as the managed ledger is opened and the ones of the ManagedCursorInfo can be stale.
+     */
+    static boolean canRecoverDormant(ManagedLedgerConfig config, ManagedCursorInfo info) {
+        long thresholdMs = config.getDormantCursorThresholdMs();
+        return thresholdMs > 0
+                && info.getLastActive() > 0
+                && info.hasMarkDeleteLedgerId()
+                && info.getPropertiesCount() == 0
+                && config.getClock().millis() - info.getLastActive() > thresholdMs;
+    }
+
+    private void recoverDormant(ManagedCursorInfo info) {
+        log.info("[{}] Cursor {} is inactive since {}, recovering it as dormant", ledger.getName(), name,
+                info.getLastActive());
+        dormantCursorLedgerId = info.getCursorsLedgerId();
+        dormant = true;
+        recoveredCursor(new PositionImpl(info.getMarkDeleteLedgerId(), info.getMarkDeleteEntryId()),
+                Collections.emptyMap(), cursorProperties, null);
+    }
+
+    /**
+     * Fully recover a dormant cursor, from its cursor ledger if it has one. The recovery is only started once, and
+     * started again on the next use of the cursor if it failed.
+     */
+    private synchronized CompletableFuture<Void> recoverDormantCursor() {
+        if (dormantCursorRecovery != null) {
+            return dormantCursorRecovery;
+        }
+        if (isClosed()) {
+            return FutureUtil.failedFuture(new CursorAlreadyClosedException("Cursor was already closed"));
+        }
+        log.info("[{}] Recovering dormant cursor {} from position {}", ledger.getName(), name, markDeletePosition);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        dormantCursorRecovery = future;
+        recover(new VoidCallback() {
+            @Override
+            public void operationComplete() {
+                dormant = false;
+                ledger.onCursorMarkDeletePositionUpdated(ManagedCursorImpl.this, markDeletePosition);
+                future.complete(null);
+            }
+
+            @Override
+            public void operationFailed(ManagedLedgerException exception) {
+                log.warn("[{}] Recovery of dormant cursor {} failed", ledger.getName(), name, exception);
+                synchronized (ManagedCursorImpl.this) {
+                    dormantCursorRecovery = null;
+                }
+                future.completeExceptionally(exception);
+            }
+        }, false);
+        return future;
+    }
+
+    /**
+     * Run an operation on the executor of the managed ledger once a dormant cursor is fully recovered.
+     *
+     * @return false if the cursor is not dormant, in which case the caller has to run the operation itself
+     */
+    private boolean deferWhileDormant(Runnable operation, Consumer<ManagedLedgerException> onFailure) {
+        if (!dormant) {
+            return false;
+        }
+        recoverDormantCursor().whenComplete((__, ex) -> ledger.getExecutor().execute(safeRun(() -> {
+            if (ex != null) {
+                onFailure.accept(getManagedLedgerException(FutureUtil.unwrapCompletionException(ex)));
+            } else {
+                operation.run();
+            }
+        })));
+        return true;
+    }
+
+    /**
+     * Close a dormant cursor without persisting anything, since its metadata was not changed.
+     *
+     * @return false if the cursor is being recovered, in which case it has to be closed once recovered
+     */
+    private synchronized boolean closeDormantCursor() {
+        if (dormantCursorRecovery != null) {
+            return false;
+        }
+        STATE_UPDATER.set(this, State.Closed);
+        return true;
+    }
+
+    public boolean isDormant() {
+        return dormant;
     }
 
     protected void recoverFromLedger(final ManagedCursorInfo info, final VoidCallback callback) {
@@ -557,34 +701,31 @@ public class ManagedCursorImpl implements ManagedCursor {
                 return;
             }
 
-            lh.asyncReadEntries(lastEntryInLedger, lastEntryInLedger, (rc1, lh1, seq, ctx1) -> {
-                if (log.isDebugEnabled()) {
-                    log.debug("[{}} readComplete rc={} entryId={}", ledger.getName(), rc1, lh1.getLastAddConfirmed());
-                }
-                if (isBkErrorNotRecoverable(rc1)) {
-                    log.error("[{}] Error reading from metadata ledger {} for consumer {}: {}", ledger.getName(),
-                            ledgerId, name, BKException.getMessage(rc1));
-                    // Rewind to oldest entry available
-                    initialize(getRollbackPosition(info), Collections.emptyMap(), cursorProperties, callback);
-                    return;
-                } else if (rc1 != BKException.Code.OK) {
-                    log.warn("[{}] Error reading from metadata ledger {} for consumer {}: {}", ledger.getName(),
-                            ledgerId, name, BKException.getMessage(rc1));
-
-                    callback.operationFailed(createManagedLedgerException(rc1));
+            readPositionInfos(lh, lastEntryInLedger).whenComplete((recovered, ex) -> {
+                if (ex != null) {
+                    ManagedLedgerException e = getManagedLedgerException(FutureUtil.unwrapCompletionException(ex));
+                    if (e instanceof NonRecoverableLedgerException) {
+                        log.error("[{}] Error reading from metadata ledger {} for consumer {}: {}", ledger.getName(),
+                                ledgerId, name, e.getMessage());
+                        // Rewind to oldest entry available
+                        initialize(getRollbackPosition(info), Collections.emptyMap(), cursorProperties, callback);
+                    } else {
+                        log.warn("[{}] Error reading from metadata ledger {} for consumer {}: {}", ledger.getName(),
+                                ledgerId, name, e.getMessage());
+                        callback.operationFailed(e);
+                    }
                     return;
                 }
 
-                LedgerEntry entry = seq.nextElement();
-                mbean.addReadCursorLedgerSize(entry.getLength());
-                PositionInfo positionInfo;
-                try {
-                    positionInfo = PositionInfo.parseFrom(entry.getEntry());
-                } catch (InvalidProtocolBufferException e) {
-                    callback.operationFailed(new ManagedLedgerException(e));
+                if (recovered == null) {
+                    log.warn("[{}] Error reading from metadata ledger {} for consumer {}: No position in ledger",
+                            ledger.getName(), ledgerId, name);
+                    // Rewind to last cursor snapshot available
+                    initialize(getRollbackPosition(info), Collections.emptyMap(), cursorProperties, callback);
                     return;
                 }
 
+                PositionInfo positionInfo = recovered.getPositionInfo();
                 Map<String, Long> recoveredProperties = Collections.emptyMap();
                 if (positionInfo.getPropertiesCount() > 0) {
                     // Recover properties map
@@ -596,17 +737,27 @@ public class ManagedCursorImpl implements ManagedCursor {
                 }
 
                 PositionImpl position = new PositionImpl(positionInfo);
-                if (positionInfo.getIndividualDeletedMessagesCount() > 0) {
-                    recoverIndividualDeletedMessages(positionInfo.getIndividualDeletedMessagesList());
+                try {
+                    recoverIndividualDeletedMessages(recovered, position);
+                } catch (IOException e) {
+                    log.warn("[{}] Error reading individually deleted messages from metadata ledger {} for"
+                            + " consumer {}: {}", ledger.getName(), ledgerId, name, e.getMessage());
+                    callback.operationFailed(new ManagedLedgerException(e));
+                    return;
                 }
+
                 if (config.isDeletionAtBatchIndexLevelEnabled()
                     && positionInfo.getBatchedEntryDeletionIndexInfoCount() > 0) {
                     recoverBatchDeletedIndexes(positionInfo.getBatchedEntryDeletionIndexInfoList());
                 }
                 recoveredCursor(position, recoveredProperties, cursorProperties, lh);
                 callback.operationComplete();
-            }, null);
+            });
         };
+        CursorsRecoveryPrefetcher prefetcher = ledger.getCursorsRecoveryPrefetcher();
+        if (prefetcher != null && prefetcher.openCursorLedger(name, ledgerId, openCallback)) {
+            return;
+        }
         try {
             bookkeeper.asyncOpenLedger(ledgerId, digestType, config.getPassword(), openCallback, null);
         } catch (Throwable t) {
@@ -616,38 +767,250 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
     }
 
+    /**
+     * The entries of the cursor ledger that a cursor is recovered from.
+     */
+    private static class RecoveredPositionInfos {
+        // A full snapshot of the individually deleted messages, followed by the deltas written on top of it if any
+        final List<PositionInfo> positionInfos;
+        // The bitmaps of the snapshot that were written in chunks
+        final List<LedgerDeletedEntries> chunkedBitmaps;
+
+        RecoveredPositionInfos(List<PositionInfo> positionInfos, List<LedgerDeletedEntries> chunkedBitmaps) {
+            this.positionInfos = positionInfos;
+            this.chunkedBitmaps = chunkedBitmaps;
+        }
+
+        PositionInfo getPositionInfo() {
+            return positionInfos.get(positionInfos.size() - 1);
+        }
+    }
+
+    /**
+     * Read the newest position of the cursor ledger, at or before the given entry, along with all the entries needed
+     * to recover its individually deleted messages.
+     *
+     * <p/>An update that failed or crashed half-way can leave behind the chunks of a snapshot that was never written,
+     * or an entry referring to entries that can't be read back. These entries are skipped, and the cursor is recovered
+     * from the previous update.
+     *
+     * @return the entries to recover the cursor from, or null if there is no position to recover in the ledger
+     */
+    private CompletableFuture<RecoveredPositionInfos> readPositionInfos(LedgerHandle lh, long entryId) {
+        if (entryId < 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return readPositionInfo(lh, entryId).thenCompose(positionInfo -> {
+            if (positionInfo == null || positionInfo.getIndividualDeletedMessagesChunk()) {
+                return CompletableFuture.<RecoveredPositionInfos>completedFuture(null);
+            }
+            long snapshotEntryId = positionInfo.hasDeltaBaseEntryId() ? positionInfo.getDeltaBaseEntryId() : entryId;
+            return readPositionInfoDeltas(lh, entryId, positionInfo).thenCompose(positionInfos -> positionInfos == null
+                    ? CompletableFuture.<RecoveredPositionInfos>completedFuture(null)
+                    : readIndividualDeletedMessagesChunks(lh, snapshotEntryId, positionInfos.get(0))
+                            .thenApply(chunkedBitmaps -> chunkedBitmaps == null ? null
+                                    : new RecoveredPositionInfos(positionInfos, chunkedBitmaps)));
+        }).thenCompose(recovered -> {
+            if (recovered != null) {
+                return CompletableFuture.completedFuture(recovered);
+            }
+            log.warn("[{}] Skipping entry {} of metadata ledger {} for consumer {}, left by an incomplete update",
+                    ledger.getName(), entryId, lh.getId(), name);
+            return readPositionInfos(lh, entryId - 1);
+        });
+    }
+
+    /**
+     * @return the position info held by the entry, or null if the entry can't be parsed
+     */
+    private CompletableFuture<PositionInfo> readPositionInfo(LedgerHandle lh, long entryId) {
+        CompletableFuture<PositionInfo> future = new CompletableFuture<>();
+        lh.asyncReadEntries(entryId, entryId, (rc, lh1, seq, ctx) -> {
+            if (rc != BKException.Code.OK) {
+                future.completeExceptionally(createManagedLedgerException(rc));
+            } else {
+                future.complete(parsePositionInfo(seq.nextElement()));
+            }
+        }, null);
+        return future;
+    }
+
+    private PositionInfo parsePositionInfo(LedgerEntry entry) {
+        mbean.addReadCursorLedgerSize(entry.getLength());
+        try {
+            return PositionInfo.parseFrom(entry.getEntry());
+        } catch (InvalidProtocolBufferException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the entries of the cursor ledger needed to recover the individually deleted messages of a position: the
+     * position alone if it's a full snapshot, or else its base snapshot followed by all the deltas written on top of
+     * it.
+     *
+     * @return the snapshot followed by the deltas, or null if the base of the deltas is not a full snapshot
+     */
+    private CompletableFuture<List<PositionInfo>> readPositionInfoDeltas(LedgerHandle lh, long lastEntryId,
+                                                                          PositionInfo lastPositionInfo) {
+        if (!lastPositionInfo.hasDeltaBaseEntryId()) {
+            return CompletableFuture.completedFuture(Collections.singletonList(lastPositionInfo));
+        }
+
+        long baseEntryId = lastPositionInfo.getDeltaBaseEntryId();
+        if (baseEntryId < 0 || baseEntryId >= lastEntryId) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<List<PositionInfo>> future = new CompletableFuture<>();
+        lh.asyncReadEntries(baseEntryId, lastEntryId - 1, (rc, lh1, seq, ctx) -> {
+            if (rc != BKException.Code.OK) {
+                future.completeExceptionally(createManagedLedgerException(rc));
+                return;
+            }
+            List<PositionInfo> positionInfos = new ArrayList<>();
+            while (seq.hasMoreElements()) {
+                LedgerEntry entry = seq.nextElement();
+                PositionInfo positionInfo = parsePositionInfo(entry);
+                boolean isPosition = positionInfo != null && !positionInfo.getIndividualDeletedMessagesChunk();
+                if (entry.getEntryId() == baseEntryId) {
+                    if (!isPosition || positionInfo.hasDeltaBaseEntryId()) {
+                        future.complete(null);
+                        return;
+                    }
+                    positionInfos.add(positionInfo);
+                } else if (isPosition && positionInfo.hasDeltaBaseEntryId()
+                        && positionInfo.getDeltaBaseEntryId() == baseEntryId) {
+                    positionInfos.add(positionInfo);
+                }
+            }
+            positionInfos.add(lastPositionInfo);
+            future.complete(positionInfos);
+        }, null);
+        return future;
+    }
+
+    /**
+     * Recover the individually deleted messages from a full snapshot, and the deltas written on top of it if any.
+     */
+    private void recoverIndividualDeletedMessages(RecoveredPositionInfos recovered, PositionImpl markDeletePosition)
+            throws IOException {
+        List<PositionInfo> positionInfos = recovered.positionInfos;
+        PositionInfo snapshot = positionInfos.get(0);
+        if (snapshot.getIndividualDeletedMessagesBitmapsCount() > 0 || !recovered.chunkedBitmaps.isEmpty()) {
+            List<LedgerDeletedEntries> bitmaps = new ArrayList<>(recovered.chunkedBitmaps);
+            bitmaps.addAll(snapshot.getIndividualDeletedMessagesBitmapsList());
+            recoverIndividualDeletedMessagesBitmaps(bitmaps);
+        } else if (snapshot.getIndividualDeletedMessagesCount() > 0) {
+            recoverIndividualDeletedMessages(snapshot.getIndividualDeletedMessagesList());
+        }
+
+        if (positionInfos.size() > 1) {
+            recoverIndividualDeletedMessagesDeltas(positionInfos.subList(1, positionInfos.size()),
+                    markDeletePosition);
+        }
+    }
+
+    private void recoverIndividualDeletedMessagesDeltas(List<PositionInfo> deltas, PositionImpl markDeletePosition) {
+        lock.writeLock().lock();
+        try {
+            deltas.forEach(delta -> addIndividualDeletedMessages(delta.getIndividualDeletedMessagesList()));
+            // The ranges added by the older deltas may be covered by the mark-delete position since
+            individualDeletedMessages.removeAtMost(markDeletePosition.getLedgerId(), markDeletePosition.getEntryId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     private void recoverIndividualDeletedMessages(List<MLDataFormats.MessageRange> individualDeletedMessagesList) {
         lock.writeLock().lock();
         try {
             individualDeletedMessages.clear();
-            individualDeletedMessagesList.forEach(messageRange -> {
-                MLDataFormats.NestedPositionInfo lowerEndpoint = messageRange.getLowerEndpoint();
-                MLDataFormats.NestedPositionInfo upperEndpoint = messageRange.getUpperEndpoint();
+            addIndividualDeletedMessages(individualDeletedMessagesList);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-                if (lowerEndpoint.getLedgerId() == upperEndpoint.getLedgerId()) {
+    private void addIndividualDeletedMessages(List<MLDataFormats.MessageRange> individualDeletedMessagesList) {
+        individualDeletedMessagesList.forEach(messageRange -> {
+            MLDataFormats.NestedPositionInfo lowerEndpoint = messageRange.getLowerEndpoint();
+            MLDataFormats.NestedPositionInfo upperEndpoint = messageRange.getUpperEndpoint();
+
+            if (lowerEndpoint.getLedgerId() == upperEndpoint.getLedgerId()) {
+                individualDeletedMessages.addOpenClosed(lowerEndpoint.getLedgerId(), lowerEndpoint.getEntryId(),
+                        upperEndpoint.getLedgerId(), upperEndpoint.getEntryId());
+            } else {
+                // Store message ranges after splitting them by ledger ID
+                LedgerInfo lowerEndpointLedgerInfo = ledger.getLedgersInfo().get(lowerEndpoint.getLedgerId());
+                if (lowerEndpointLedgerInfo != null) {
                     individualDeletedMessages.addOpenClosed(lowerEndpoint.getLedgerId(), lowerEndpoint.getEntryId(),
-                            upperEndpoint.getLedgerId(), upperEndpoint.getEntryId());
+                            lowerEndpoint.getLedgerId(), lowerEndpointLedgerInfo.getEntries() - 1);
                 } else {
-                    // Store message ranges after splitting them by ledger ID
-                    LedgerInfo lowerEndpointLedgerInfo = ledger.getLedgersInfo().get(lowerEndpoint.getLedgerId());
-                    if (lowerEndpointLedgerInfo != null) {
-                        individualDeletedMessages.addOpenClosed(lowerEndpoint.getLedgerId(), lowerEndpoint.getEntryId(),
-                                lowerEndpoint.getLedgerId(), lowerEndpointLedgerInfo.getEntries() - 1);
-                    } else {
-                        log.warn("[{}][{}] No ledger info of lower endpoint {}:{}", ledger.getName(), name,
-                                lowerEndpoint.getLedgerId(), lowerEndpoint.getEntryId());
-                    }
+                    log.warn("[{}][{}] No ledger info of lower endpoint {}:{}", ledger.getName(), name,
+                            lowerEndpoint.getLedgerId(), lowerEndpoint.getEntryId());
+                }
 
-                    for (LedgerInfo li : ledger.getLedgersInfo()
-                            .subMap(lowerEndpoint.getLedgerId(), false, upperEndpoint.getLedgerId(), false).values()) {
-                        individualDeletedMessages.addOpenClosed(li.getLedgerId(), -1, li.getLedgerId(),
-                                li.getEntries() - 1);
-                    }
+                for (LedgerInfo li : ledger.getLedgersInfo()
+                        .subMap(lowerEndpoint.getLedgerId(), false, upperEndpoint.getLedgerId(), false).values()) {
+                    individualDeletedMessages.addOpenClosed(li.getLedgerId(), -1, li.getLedgerId(),
+                            li.getEntries() - 1);
+                }
 
-                    individualDeletedMessages.addOpenClosed(upperEndpoint.getLedgerId(), -1,
-                            upperEndpoint.getLedgerId(), upperEndpoint.getEntryId());
+                individualDeletedMessages.addOpenClosed(upperEndpoint.getLedgerId(), -1,
+                        upperEndpoint.getLedgerId(), upperEndpoint.getEntryId());
+            }
+        });
+    }
+
+    /**
+     * Read the chunks of the bitmaps of a snapshot, which are written before it.
+     *
+     * @return the bitmaps held by the chunks, or null if any of them is not a valid chunk
+     */
+    private CompletableFuture<List<LedgerDeletedEntries>> readIndividualDeletedMessagesChunks(LedgerHandle lh,
+            long snapshotEntryId, PositionInfo snapshot) {
+        List<Long> entryIds = snapshot.getIndividualDeletedMessagesChunkEntryIdsList();
+        if (entryIds.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        List<CompletableFuture<PositionInfo>> futures = new ArrayList<>(entryIds.size());
+        for (long entryId : entryIds) {
+            if (entryId < 0 || entryId >= snapshotEntryId) {
+                return CompletableFuture.completedFuture(null);
+            }
+            futures.add(readPositionInfo(lh, entryId));
+        }
+        return FutureUtil.waitForAll(futures).thenApply(__ -> {
+            List<LedgerDeletedEntries> bitmaps = new ArrayList<>();
+            for (CompletableFuture<PositionInfo> future : futures) {
+                PositionInfo chunk = future.join();
+                if (chunk == null || !chunk.getIndividualDeletedMessagesChunk()) {
+                    return null;
                 }
-            });
+                bitmaps.addAll(chunk.getIndividualDeletedMessagesBitmapsList());
+            }
+            return bitmaps;
+        });
+    }
+
+    private void recoverIndividualDeletedMessagesBitmaps(List<LedgerDeletedEntries> bitmaps) throws IOException {
+        lock.writeLock().lock();
+        try {
+            individualDeletedMessages.clear();
+            RoaringBitmap entries = new RoaringBitmap();
+            for (LedgerDeletedEntries ledgerDeletedEntries : bitmaps) {
+                long ledgerId = ledgerDeletedEntries.getLedgerId();
+                entries.deserialize(ledgerDeletedEntries.getEntries().asReadOnlyByteBuffer());
+                // Add each run of consecutive deleted entries as a single range
+                long firstEntry = entries.nextValue(0);
+                while (firstEntry >= 0) {
+                    long lastEntry = entries.nextAbsentValue((int) firstEntry) - 1;
+                    individualDeletedMessages.addOpenClosed(ledgerId, firstEntry - 1, ledgerId, lastEntry);
+                    firstEntry = lastEntry < Integer.MAX_VALUE ? entries.nextValue((int) lastEntry + 1) : -1;
+                }
+            }
         } finally {
             lock.writeLock().unlock();
         }
@@ -784,6 +1147,10 @@ public class ManagedCursorImpl implements ManagedCursor {
                     .CursorAlreadyClosedException("Cursor was already closed"), ctx);
             return;
         }
+        if (deferWhileDormant(() -> asyncReadEntriesWithSkip(numberOfEntriesToRead, maxSizeBytes, callback, ctx,
+                maxPosition, skipCondition), e -> callback.readEntriesFailed(e, ctx))) {
+            return;
+        }
 
         int numOfEntriesToRead = applyMaxSizeCap(numberOfEntriesToRead, maxSizeBytes);
 
@@ -838,6 +1205,10 @@ public class ManagedCursorImpl implements ManagedCursor {
                     .CursorAlreadyClosedException("Cursor was already closed"), ctx);
             return;
         }
+        if (deferWhileDormant(() -> asyncGetNthEntry(n, deletedEntries, callback, ctx),
+                e -> callback.readEntryFailed(e, ctx))) {
+            return;
+        }
 
         PositionImpl startPosition = ledger.getNextValidPosition(markDeletePosition);
         PositionImpl endPosition = ledger.getLastPosition();
@@ -930,6 +1301,10 @@ public class ManagedCursorImpl implements ManagedCursor {
             callback.readEntriesFailed(new CursorAlreadyClosedException("Cursor was already closed"), ctx);
             return;
         }
+        if (deferWhileDormant(() -> asyncReadEntriesWithSkipOrWait(maxEntries, maxSizeBytes, callback, ctx,
+                maxPosition, skipCondition), e -> callback.readEntriesFailed(e, ctx))) {
+            return;
+        }
 
         int numberOfEntriesToRead = applyMaxSizeCap(maxEntries, maxSizeBytes);
 
@@ -1129,6 +1504,10 @@ public class ManagedCursorImpl implements ManagedCursor {
     public CompletableFuture<ScanOutcome> scan(Optional<Position> position,
                                                Predicate<Entry> condition,
                                                int batchSize, long maxEntries, long timeOutMs) {
+        if (dormant) {
+            return recoverDormantCursor().thenCompose(__ -> scan(position, condition, batchSize, maxEntries,
+                    timeOutMs));
+        }
         PositionImpl startPosition = (PositionImpl) position.orElseGet(
                 () -> ledger.getNextValidPosition(markDeletePosition));
         CompletableFuture<ScanOutcome> future = new CompletableFuture<>();
@@ -1184,6 +1563,10 @@ public class ManagedCursorImpl implements ManagedCursor {
     @Override
     public void asyncFindNewestMatching(FindPositionConstraint constraint, Predicate<Entry> condition,
             FindEntryCallback callback, Object ctx) {
+        if (deferWhileDormant(() -> asyncFindNewestMatching(constraint, condition, callback, ctx),
+                e -> callback.findEntryFailed(e, Optional.empty(), ctx))) {
+            return;
+        }
         OpFindNewest op;
         PositionImpl startPosition = null;
         long max = 0;
@@ -1211,6 +1594,9 @@ public class ManagedCursorImpl implements ManagedCursor {
 
     @Override
     public void setActive() {
+        if (dormant) {
+            recoverDormantCursor();
+        }
         if (!isActive && !alwaysInactive) {
             ledger.activateCursor(this);
             isActive = true;
@@ -1357,6 +1743,10 @@ public class ManagedCursorImpl implements ManagedCursor {
     public void asyncResetCursor(Position newPos, boolean forceReset, AsyncCallbacks.ResetCursorCallback callback) {
         checkArgument(newPos instanceof PositionImpl);
         final PositionImpl newPosition = (PositionImpl) newPos;
+        if (deferWhileDormant(() -> asyncResetCursor(newPos, forceReset, callback),
+                e -> callback.resetFailed(e, newPos))) {
+            return;
+        }
 
         // order trim and reset operations on a ledger
         ledger.getExecutor().execute(safeRun(() -> {
@@ -1470,6 +1860,10 @@ public class ManagedCursorImpl implements ManagedCursor {
             callback.readEntriesComplete(entries, ctx);
             return Collections.emptySet();
         }
+        if (deferWhileDormant(() -> asyncReplayEntries(positions, callback, ctx, sortEntries),
+                e -> callback.readEntriesFailed(e, ctx))) {
+            return Collections.emptySet();
+        }
 
         // filters out messages which are already acknowledged
         Set<Position> alreadyAcknowledgedPositions = new HashSet<>();
@@ -1522,19 +1916,65 @@ public class ManagedCursorImpl implements ManagedCursor {
             }
         };
 
-        positions.stream().filter(position -> !alreadyAcknowledgedPositions.contains(position))
-                .forEach(p ->{
-                    if (((PositionImpl) p).compareTo(this.readPosition) == 0) {
-                        this.setReadPosition(this.readPosition.getNext());
-                        log.warn("[{}][{}] replayPosition{} equals readPosition{}," + " need set next readPosition",
-                                ledger.getName(), name, p, this.readPosition);
-                    }
-                    ledger.asyncReadEntry((PositionImpl) p, cb, ctx);
-                });
+        List<PositionImpl> validPositions = positions.stream()
+                .filter(position -> !alreadyAcknowledgedPositions.contains(position))
+                .map(PositionImpl.class::cast)
+                .sorted()
+                .collect(Collectors.toList());
+        validPositions.forEach(p -> {
+            if (p.compareTo(this.readPosition) == 0) {
+                this.setReadPosition(this.readPosition.getNext());
+                log.warn("[{}][{}] replayPosition{} equals readPosition{}," + " need set next readPosition",
+                        ledger.getName(), name, p, this.readPosition);
+            }
+        });
+
+        // Contiguous entries of a ledger are read with a single range read
+        int i = 0;
+        while (i < validPositions.size()) {
+            PositionImpl first = validPositions.get(i);
+            long lastEntryId = first.getEntryId();
+            for (i++; i < validPositions.size(); i++) {
+                PositionImpl p = validPositions.get(i);
+                if (p.getLedgerId() != first.getLedgerId() || p.getEntryId() != lastEntryId + 1) {
+                    break;
+                }
+                lastEntryId = p.getEntryId();
+            }
+            if (lastEntryId == first.getEntryId()) {
+                ledger.asyncReadEntry(first, cb, ctx);
+            } else {
+                replayRange(first, lastEntryId, cb, ctx);
+            }
+        }
 
         return alreadyAcknowledgedPositions;
     }
 
+    private void replayRange(PositionImpl first, long lastEntryId, ReadEntryCallback cb, Object ctx) {
+        long numberOfEntries = lastEntryId - first.getEntryId() + 1;
+        ledger.asyncReadEntries(first, lastEntryId, new ReadEntriesCallback() {
+            @Override
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                entries.forEach(entry -> cb.readEntryComplete(entry, ctx));
+                if (entries.size() < numberOfEntries) {
+                    ManagedLedgerException e = new ManagedLedgerException("Could not read entries " + first + " to "
+                            + lastEntryId + ", got " + entries.size() + " entries");
+                    for (long i = entries.size(); i < numberOfEntries; i++) {
+                        cb.readEntryFailed(e, ctx);
+                    }
+                }
+            }
+
+            @Override
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                for (long i = 0; i < numberOfEntries; i++) {
+                    cb.readEntryFailed(exception, ctx);
+                }
+            }
+        }, ctx);
+    }
+
     protected long getNumberOfEntries(Range<PositionImpl> range) {
         long allEntries = ledger.getNumberOfEntries(range);
 
@@ -1711,6 +2151,10 @@ public class ManagedCursorImpl implements ManagedCursor {
     @Override
     public void asyncSkipEntries(int numEntriesToSkip, IndividualDeletedEntries deletedEntries,
             final SkipEntriesCallback callback, Object ctx) {
+        if (deferWhileDormant(() -> asyncSkipEntries(numEntriesToSkip, deletedEntries, callback, ctx),
+                e -> callback.skipEntriesFailed(e, ctx))) {
+            return;
+        }
         log.info("[{}] Skipping {} entries on cursor {}", ledger.getName(), numEntriesToSkip, name);
         long numDeletedMessages = 0;
         if (deletedEntries == IndividualDeletedEntries.Exclude) {
@@ -1908,6 +2352,10 @@ public class ManagedCursorImpl implements ManagedCursor {
                     .CursorAlreadyClosedException("Cursor was already closed"), ctx);
             return;
         }
+        if (deferWhileDormant(() -> asyncMarkDelete(position, properties, callback, ctx),
+                e -> callback.markDeleteFailed(e, ctx))) {
+            return;
+        }
 
         if (RESET_CURSOR_IN_PROGRESS_UPDATER.get(this) == TRUE) {
             if (log.isDebugEnabled()) {
@@ -2209,6 +2657,122 @@ public class ManagedCursorImpl implements ManagedCursor {
 
     @Override
     public void asyncDelete(Iterable<Position> positions, AsyncCallbacks.DeleteCallback callback, Object ctx) {
+        if (deferWhileDormant(() -> asyncDelete(positions, callback, ctx), e -> callback.deleteFailed(e, ctx))) {
+            return;
+        }
+        internalAsyncDelete(positions, () -> {
+            for (Position pos : positions) {
+                PositionImpl position = (PositionImpl) requireNonNull(pos);
+                if (!deletePosition(position.getLedgerId(), position.getEntryId(), position.ackSet, position)) {
+                    return false;
+                }
+            }
+            return true;
+        }, callback, ctx);
+    }
+
+    @Override
+    public void asyncDelete(PositionBatchRecyclable positions, AsyncCallbacks.DeleteCallback callback, Object ctx) {
+        if (dormant) {
+            // The batch is recycled by the caller once this method returns
+            asyncDelete(positions.toPositions(), callback, ctx);
+            return;
+        }
+        internalAsyncDelete(positions, () -> {
+            for (int i = 0; i < positions.size(); i++) {
+                if (!deletePosition(positions.getLedgerId(i), positions.getEntryId(i), positions.getAckSet(i), null)) {
+                    return false;
+                }
+            }
+            return true;
+        }, callback, ctx);
+    }
+
+    /**
+     * Mark a single position as deleted in the individually deleted messages, or in the deleted batch indexes.
+     *
+     * @param position
+     *            the position of the message, or null if it has to be created only when it's needed
+     * @return false if the position is ahead of the last confirmed entry
+     */
+    private boolean deletePosition(long ledgerId, long entryId, long[] ackSet, PositionImpl position) {
+        if (((PositionImpl) ledger.getLastConfirmedEntry()).compareTo(ledgerId, entryId) < 0) {
+            if (log.isDebugEnabled()) {
+                log.debug(
+                    "[{}] Failed mark delete due to invalid markDelete {}:{} is ahead of last-confirmed-entry {} "
+                    + "for cursor [{}]", ledger.getName(), ledgerId, entryId, ledger.getLastConfirmedEntry(), name);
+            }
+            return false;
+        }
+
+        if (individualDeletedMessages.contains(ledgerId, entryId)
+            || markDeletePosition.compareTo(ledgerId, entryId) >= 0) {
+            if (config.isDeletionAtBatchIndexLevelEnabled()) {
+                removeDeletedBatchIndexes(ledgerId, entryId, position);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] [{}] Position was already deleted {}:{}", ledger.getName(), name, ledgerId, entryId);
+            }
+            return true;
+        }
+        if (ackSet == null) {
+            if (config.isDeletionAtBatchIndexLevelEnabled()) {
+                removeDeletedBatchIndexes(ledgerId, entryId, position);
+            }
+            // Add a range (prev, pos] to the set. Adding the previous entry as an open limit to the range will
+            // make the RangeSet recognize the "continuity" between adjacent Positions.
+            addDeletedRange(ledgerId, entryId);
+            MSG_CONSUMED_COUNTER_UPDATER.incrementAndGet(this);
+
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] [{}] Individually deleted messages: {}", ledger.getName(), name,
+                    individualDeletedMessages);
+            }
+        } else if (config.isDeletionAtBatchIndexLevelEnabled()) {
+            if (position == null) {
+                position = PositionImpl.get(ledgerId, entryId);
+            }
+            BitSetRecyclable givenBitSet = BitSetRecyclable.create().resetWords(ackSet);
+            BitSetRecyclable bitSet = batchDeletedIndexes.computeIfAbsent(position, (v) -> givenBitSet);
+            if (givenBitSet != bitSet) {
+                bitSet.and(givenBitSet);
+                givenBitSet.recycle();
+            }
+            if (bitSet.isEmpty()) {
+                addDeletedRange(ledgerId, entryId);
+                MSG_CONSUMED_COUNTER_UPDATER.incrementAndGet(this);
+                BitSetRecyclable bitSetRecyclable = batchDeletedIndexes.remove(position);
+                if (bitSetRecyclable != null) {
+                    bitSetRecyclable.recycle();
+                }
+            }
+        }
+        return true;
+    }
+
+    private void addDeletedRange(long ledgerId, long entryId) {
+        if (entryId > 0) {
+            individualDeletedMessages.addOpenClosed(ledgerId, entryId - 1, ledgerId, entryId);
+        } else {
+            PositionImpl previousPosition = ledger.getPreviousPosition(PositionImpl.get(ledgerId, entryId));
+            individualDeletedMessages.addOpenClosed(previousPosition.getLedgerId(), previousPosition.getEntryId(),
+                    ledgerId, entryId);
+        }
+    }
+
+    private void removeDeletedBatchIndexes(long ledgerId, long entryId, PositionImpl position) {
+        if (batchDeletedIndexes.isEmpty()) {
+            return;
+        }
+        BitSetRecyclable bitSetRecyclable = batchDeletedIndexes.remove(
+                position != null ? position : PositionImpl.get(ledgerId, entryId));
+        if (bitSetRecyclable != null) {
+            bitSetRecyclable.recycle();
+        }
+    }
+
+    private void internalAsyncDelete(Object positions, BooleanSupplier deletePositions,
+                                     AsyncCallbacks.DeleteCallback callback, Object ctx) {
         if (isClosed()) {
             callback.deleteFailed(new ManagedLedgerException
                     .CursorAlreadyClosedException("Cursor was already closed"), ctx);
@@ -2225,68 +2789,9 @@ public class ManagedCursorImpl implements ManagedCursor {
                         ledger.getName(), name, positions, individualDeletedMessages, markDeletePosition);
             }
 
-            for (Position pos : positions) {
-                PositionImpl position  = (PositionImpl) requireNonNull(pos);
-                if (((PositionImpl) ledger.getLastConfirmedEntry()).compareTo(position) < 0) {
-                    if (log.isDebugEnabled()) {
-                        log.debug(
-                            "[{}] Failed mark delete due to invalid markDelete {} is ahead of last-confirmed-entry {} "
-                            + "for cursor [{}]", ledger.getName(), position, ledger.getLastConfirmedEntry(), name);
-                    }
-                    callback.deleteFailed(new ManagedLedgerException("Invalid mark deleted position"), ctx);
-                    return;
-                }
-
-                if (individualDeletedMessages.contains(position.getLedgerId(), position.getEntryId())
-                    || position.compareTo(markDeletePosition) <= 0) {
-                    if (config.isDeletionAtBatchIndexLevelEnabled()) {
-                        BitSetRecyclable bitSetRecyclable = batchDeletedIndexes.remove(position);
-                        if (bitSetRecyclable != null) {
-                            bitSetRecyclable.recycle();
-                        }
-                    }
-                    if (log.isDebugEnabled()) {
-                        log.debug("[{}] [{}] Position was already deleted {}", ledger.getName(), name, position);
-                    }
-                    continue;
-                }
-                if (position.ackSet == null) {
-                    if (config.isDeletionAtBatchIndexLevelEnabled()) {
-                        BitSetRecyclable bitSetRecyclable = batchDeletedIndexes.remove(position);
-                        if (bitSetRecyclable != null) {
-                            bitSetRecyclable.recycle();
-                        }
-                    }
-                    // Add a range (prev, pos] to the set. Adding the previous entry as an open limit to the range will
-                    // make the RangeSet recognize the "continuity" between adjacent Positions.
-                    PositionImpl previousPosition = ledger.getPreviousPosition(position);
-                    individualDeletedMessages.addOpenClosed(previousPosition.getLedgerId(),
-                        previousPosition.getEntryId(), position.getLedgerId(), position.getEntryId());
-                    MSG_CONSUMED_COUNTER_UPDATER.incrementAndGet(this);
-
-                    if (log.isDebugEnabled()) {
-                        log.debug("[{}] [{}] Individually deleted messages: {}", ledger.getName(), name,
-                            individualDeletedMessages);
-                    }
-                } else if (config.isDeletionAtBatchIndexLevelEnabled()) {
-                    BitSetRecyclable givenBitSet = BitSetRecyclable.create().resetWords(position.ackSet);
-                    BitSetRecyclable bitSet = batchDeletedIndexes.computeIfAbsent(position, (v) -> givenBitSet);
-                    if (givenBitSet != bitSet) {
-                        bitSet.and(givenBitSet);
-                        givenBitSet.recycle();
-                    }
-                    if (bitSet.isEmpty()) {
-                        PositionImpl previousPosition = ledger.getPreviousPosition(position);
-                        individualDeletedMessages.addOpenClosed(previousPosition.getLedgerId(),
-                            previousPosition.getEntryId(),
-                            position.getLedgerId(), position.getEntryId());
-                        MSG_CONSUMED_COUNTER_UPDATER.incrementAndGet(this);
-                        BitSetRecyclable bitSetRecyclable = batchDeletedIndexes.remove(position);
-                        if (bitSetRecyclable != null) {
-                            bitSetRecyclable.recycle();
-                        }
-                    }
-                }
+            if (!deletePositions.getAsBoolean()) {
+                callback.deleteFailed(new ManagedLedgerException("Invalid mark deleted position"), ctx);
+                return;
             }
 
             if (individualDeletedMessages.isEmpty()) {
@@ -2641,7 +3146,7 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
 
         ManagedCursorInfo cursorInfo = info.build();
-        ledger.getStore().asyncUpdateCursorInfo(ledger.getName(), name, cursorInfo, lastCursorLedgerStat,
+        ledger.getStore().asyncUpdateCursorInfoSnapshot(ledger.getName(), name, cursorInfo, lastCursorLedgerStat,
                 new MetaStoreCallback<Void>() {
                     @Override
                     public void operationComplete(Void result, Stat stat) {
@@ -2682,12 +3187,24 @@ public class ManagedCursorImpl implements ManagedCursor {
 
     @Override
     public void asyncClose(final AsyncCallbacks.CloseCallback callback, final Object ctx) {
+        if (dormant) {
+            if (closeDormantCursor()) {
+                callback.closeComplete(ctx);
+            } else {
+                // Close the cursor once recovered, or as dormant if the recovery failed
+                recoverDormantCursor().whenComplete((__, ex) -> asyncClose(callback, ctx));
+            }
+            return;
+        }
         boolean alreadyClosing = !trySetStateToClosing();
         if (alreadyClosing) {
             log.info("[{}] [{}] State is already closed", ledger.getName(), name);
             callback.closeComplete(ctx);
             return;
         }
+        if (readAheadPrefetcher != null) {
+            readAheadPrefetcher.clear();
+        }
         persistPositionWhenClosing(lastMarkDeleteEntry.newPosition, lastMarkDeleteEntry.properties,
                 new AsyncCallbacks.CloseCallback(){
 
@@ -2911,6 +3428,8 @@ public class ManagedCursorImpl implements ManagedCursor {
     private List<MLDataFormats.MessageRange> buildIndividualDeletedMessageRanges() {
         lock.readLock().lock();
         try {
+            individualDeletedMessagesSnapshots.incrementAndGet();
+            deltaBase = null;
             if (individualDeletedMessages.isEmpty()) {
                 this.individualDeletedMessagesSerializedSize = 0;
                 return Collections.emptyList();
@@ -2955,6 +3474,152 @@ public class ManagedCursorImpl implements ManagedCursor {
         }
     }
 
+    private List<LedgerDeletedEntries> buildIndividualDeletedMessageBitmaps() {
+        lock.readLock().lock();
+        try {
+            individualDeletedMessagesSnapshots.incrementAndGet();
+            deltaBase = null;
+            if (individualDeletedMessages.isEmpty()) {
+                this.individualDeletedMessagesSerializedSize = 0;
+                return Collections.emptyList();
+            }
+
+            TreeMap<Long, RoaringBitmap> bitmaps = new TreeMap<>();
+            individualDeletedMessages.forEachRawRange((lowerKey, lowerValue, upperKey, upperValue) -> {
+                if (lowerKey == upperKey) {
+                    addDeletedEntries(bitmaps, lowerKey, lowerValue + 1, upperValue);
+                } else {
+                    // Split the range by ledger ID, as done when recovering the ranges
+                    LedgerInfo lowerKeyLedgerInfo = ledger.getLedgersInfo().get(lowerKey);
+                    if (lowerKeyLedgerInfo != null) {
+                        addDeletedEntries(bitmaps, lowerKey, lowerValue + 1, lowerKeyLedgerInfo.getEntries() - 1);
+                    }
+                    for (LedgerInfo li : ledger.getLedgersInfo().subMap(lowerKey, false, upperKey, false).values()) {
+                        addDeletedEntries(bitmaps, li.getLedgerId(), 0, li.getEntries() - 1);
+                    }
+                    addDeletedEntries(bitmaps, upperKey, 0, upperValue);
+                }
+                return true;
+            });
+
+            LedgerDeletedEntries.Builder ledgerDeletedEntriesBuilder = LedgerDeletedEntries.newBuilder();
+            List<LedgerDeletedEntries> result = new ArrayList<>(bitmaps.size());
+            int serializedSize = 0;
+            for (Map.Entry<Long, RoaringBitmap> entry : bitmaps.entrySet()) {
+                RoaringBitmap bitmap = entry.getValue();
+                bitmap.runOptimize();
+                byte[] serializedBitmap = new byte[bitmap.serializedSizeInBytes()];
+                bitmap.serialize(ByteBuffer.wrap(serializedBitmap));
+                LedgerDeletedEntries ledgerDeletedEntries = ledgerDeletedEntriesBuilder
+                        .setLedgerId(entry.getKey())
+                        .setEntries(UnsafeByteOperations.unsafeWrap(serializedBitmap))
+                        .build();
+                serializedSize += ledgerDeletedEntries.getSerializedSize();
+                result.add(ledgerDeletedEntries);
+            }
+
+            this.individualDeletedMessagesSerializedSize = serializedSize;
+            individualDeletedMessages.resetDirtyKeys();
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Build the ranges of individually deleted messages added since the previous entry written in the cursor ledger,
+     * if they can be written as a delta on top of the last snapshot.
+     *
+     * @return the added ranges, or null if a full snapshot has to be written instead
+     */
+    private List<MessageRange> buildIndividualDeletedMessagesDelta(LedgerHandle lh, PositionImpl base) {
+        int maxDeltas = config.getUnackedRangesMaxDeltasBetweenSnapshots();
+        if (maxDeltas <= 0 || base == null || base.getLedgerId() != lh.getId()
+                || deltasSinceSnapshot.get() >= maxDeltas) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (!individualDeletedMessages.hasCompleteAddedRanges()) {
+                return null;
+            }
+
+            MLDataFormats.NestedPositionInfo.Builder nestedPositionBuilder = MLDataFormats.NestedPositionInfo
+                    .newBuilder();
+            MessageRange.Builder messageRangeBuilder = MessageRange.newBuilder();
+            List<MessageRange> rangeList = new ArrayList<>();
+            individualDeletedMessages.forEachAddedRawRange((lowerKey, lowerValue, upperKey, upperValue) -> {
+                rangeList.add(messageRangeBuilder
+                        .setLowerEndpoint(nestedPositionBuilder.setLedgerId(lowerKey).setEntryId(lowerValue).build())
+                        .setUpperEndpoint(nestedPositionBuilder.setLedgerId(upperKey).setEntryId(upperValue).build())
+                        .build());
+                return true;
+            });
+            individualDeletedMessages.resetDirtyKeys();
+            return rangeList;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void addDeletedEntries(Map<Long, RoaringBitmap> bitmaps, long ledgerId, long firstEntry,
+                                          long lastEntry) {
+        if (firstEntry <= lastEntry) {
+            bitmaps.computeIfAbsent(ledgerId, k -> new RoaringBitmap()).add(firstEntry, lastEntry + 1);
+        }
+    }
+
+    /**
+     * Group the bitmaps in chunks of at most unackedRangesBitmapChunkSize bytes, or a single chunk if they all fit in
+     * the position entry.
+     */
+    private List<List<LedgerDeletedEntries>> splitInChunks(List<LedgerDeletedEntries> bitmaps) {
+        List<List<LedgerDeletedEntries>> chunks = new ArrayList<>();
+        List<LedgerDeletedEntries> chunk = new ArrayList<>();
+        int chunkSize = 0;
+        for (LedgerDeletedEntries bitmap : bitmaps) {
+            int bitmapSize = bitmap.getSerializedSize();
+            if (!chunk.isEmpty() && chunkSize + bitmapSize > config.getUnackedRangesBitmapChunkSize()) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkSize = 0;
+            }
+            chunk.add(bitmap);
+            chunkSize += bitmapSize;
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private CompletableFuture<List<Long>> persistIndividualDeletedMessagesChunks(LedgerHandle lh, PositionImpl position,
+            List<List<LedgerDeletedEntries>> chunks) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>(chunks.size());
+        for (List<LedgerDeletedEntries> chunk : chunks) {
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            futures.add(future);
+            // The chunks are flagged, so that they are never mistaken for a position update on recovery
+            byte[] data = PositionInfo.newBuilder()
+                    .setLedgerId(position.getLedgerId())
+                    .setEntryId(position.getEntryId())
+                    .setIndividualDeletedMessagesChunk(true)
+                    .addAllIndividualDeletedMessagesBitmaps(chunk)
+                    .build().toByteArray();
+            lh.asyncAddEntry(data, (rc, lh1, entryId, ctx) -> {
+                if (rc == BKException.Code.OK) {
+                    mbean.addWriteCursorLedgerSize(data.length);
+                    future.complete(entryId);
+                } else {
+                    future.completeExceptionally(BKException.create(rc));
+                }
+            }, null);
+        }
+        return FutureUtil.waitForAll(futures)
+                .thenApply(__ -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
     private List<MLDataFormats.BatchedEntryDeletionIndexInfo> buildBatchEntryDeletionIndexInfoList() {
         lock.readLock().lock();
         try {
@@ -2989,12 +3654,55 @@ public class ManagedCursorImpl implements ManagedCursor {
 
     void persistPositionToLedger(final LedgerHandle lh, MarkDeleteEntry mdEntry, final VoidCallback callback) {
         PositionImpl position = mdEntry.newPosition;
-        PositionInfo pi = PositionInfo.newBuilder().setLedgerId(position.getLedgerId())
+        PositionInfo.Builder piBuilder = PositionInfo.newBuilder().setLedgerId(position.getLedgerId())
                 .setEntryId(position.getEntryId())
-                .addAllIndividualDeletedMessages(buildIndividualDeletedMessageRanges())
                 .addAllBatchedEntryDeletionIndexInfo(buildBatchEntryDeletionIndexInfoList())
-                .addAllProperties(buildPropertiesMap(mdEntry.properties)).build();
+                .addAllProperties(buildPropertiesMap(mdEntry.properties));
 
+        PositionImpl base = deltaBase;
+        List<MessageRange> delta = buildIndividualDeletedMessagesDelta(lh, base);
+        if (delta != null) {
+            piBuilder.setDeltaBaseEntryId(base.getEntryId()).addAllIndividualDeletedMessages(delta);
+            persistPositionInfoToLedger(lh, mdEntry, piBuilder.build(), -1, callback);
+            return;
+        }
+
+        if (!config.isUnackedRangesBitmapEncodingEnabled()) {
+            piBuilder.addAllIndividualDeletedMessages(buildIndividualDeletedMessageRanges());
+            persistPositionInfoToLedger(lh, mdEntry, piBuilder.build(), individualDeletedMessagesSnapshots.get(),
+                    callback);
+            return;
+        }
+
+        List<List<LedgerDeletedEntries>> chunks = splitInChunks(buildIndividualDeletedMessageBitmaps());
+        long snapshotId = individualDeletedMessagesSnapshots.get();
+        if (chunks.size() <= 1) {
+            chunks.forEach(piBuilder::addAllIndividualDeletedMessagesBitmaps);
+            persistPositionInfoToLedger(lh, mdEntry, piBuilder.build(), snapshotId, callback);
+            return;
+        }
+
+        // The bitmaps don't fit in a single entry, write them first and then the position that refers to them
+        persistIndividualDeletedMessagesChunks(lh, position, chunks).whenComplete((entryIds, ex) -> {
+            if (ex != null) {
+                Throwable cause = FutureUtil.unwrapCompletionException(ex);
+                int rc = cause instanceof BKException ? ((BKException) cause).getCode()
+                        : BKException.Code.UnexpectedConditionException;
+                persistPositionToLedgerFailed(rc, lh, mdEntry, callback);
+            } else {
+                piBuilder.addAllIndividualDeletedMessagesChunkEntryIds(entryIds);
+                persistPositionInfoToLedger(lh, mdEntry, piBuilder.build(), snapshotId, callback);
+            }
+        });
+    }
+
+    /**
+     * @param snapshotId
+     *            the id of the snapshot of the individually deleted messages held by the entry, or -1 for a delta
+     */
+    private void persistPositionInfoToLedger(final LedgerHandle lh, MarkDeleteEntry mdEntry, PositionInfo pi,
+                                             long snapshotId, final VoidCallback callback) {
+        PositionImpl position = mdEntry.newPosition;
 
         if (log.isDebugEnabled()) {
             log.debug("[{}] Cursor {} Appending to ledger={} position={}", ledger.getName(), name, lh.getId(),
@@ -3010,6 +3718,14 @@ public class ManagedCursorImpl implements ManagedCursor {
                             lh1.getId());
                 }
 
+                if (pi.hasDeltaBaseEntryId()) {
+                    deltasSinceSnapshot.incrementAndGet();
+                } else if (snapshotId == individualDeletedMessagesSnapshots.get()) {
+                    // Only the most recent snapshot can be the base of the next deltas
+                    deltasSinceSnapshot.set(0);
+                    deltaBase = PositionImpl.get(lh1.getId(), entryId);
+                }
+
                 if (shouldCloseLedger(lh1)) {
                     if (log.isDebugEnabled()) {
                         log.debug("[{}] Need to create new metadata ledger for consumer {}", ledger.getName(), name);
@@ -3021,38 +3737,46 @@ public class ManagedCursorImpl implements ManagedCursor {
                 mbean.addWriteCursorLedgerSize(data.length);
                 callback.operationComplete();
             } else {
-                log.warn("[{}] Error updating cursor {} position {} in meta-ledger {}: {}", ledger.getName(), name,
-                        position, lh1.getId(), BKException.getMessage(rc));
-                // If we've had a write error, the ledger will be automatically closed, we need to create a new one,
-                // in the meantime the mark-delete will be queued.
-                STATE_UPDATER.compareAndSet(ManagedCursorImpl.this, State.Open, State.NoLedger);
-
-                mbean.persistToLedger(false);
-                // Before giving up, try to persist the position in the metadata store
-                persistPositionMetaStore(-1, position, mdEntry.properties, new MetaStoreCallback<Void>() {
-                    @Override
-                    public void operationComplete(Void result, Stat stat) {
-                        if (log.isDebugEnabled()) {
-                            log.debug(
-                                    "[{}][{}] Updated cursor in meta store after previous failure in ledger at position"
-                                    + " {}", ledger.getName(), name, position);
-                        }
-                        mbean.persistToZookeeper(true);
-                        callback.operationComplete();
-                    }
-
-                    @Override
-                    public void operationFailed(MetaStoreException e) {
-                        log.warn("[{}][{}] Failed to update cursor in meta store after previous failure in ledger: {}",
-                                ledger.getName(), name, e.getMessage());
-                        mbean.persistToZookeeper(false);
-                        callback.operationFailed(createManagedLedgerException(rc));
-                    }
-                }, true);
+                persistPositionToLedgerFailed(rc, lh1, mdEntry, callback);
             }
         }, null);
     }
 
+    private void persistPositionToLedgerFailed(int rc, LedgerHandle lh, MarkDeleteEntry mdEntry,
+                                               final VoidCallback callback) {
+        PositionImpl position = mdEntry.newPosition;
+        log.warn("[{}] Error updating cursor {} position {} in meta-ledger {}: {}", ledger.getName(), name,
+                position, lh.getId(), BKException.getMessage(rc));
+        // The ranges of the failed update are only kept in memory, the next update needs to be a full snapshot
+        deltaBase = null;
+        // If we've had a write error, the ledger will be automatically closed, we need to create a new one,
+        // in the meantime the mark-delete will be queued.
+        STATE_UPDATER.compareAndSet(ManagedCursorImpl.this, State.Open, State.NoLedger);
+
+        mbean.persistToLedger(false);
+        // Before giving up, try to persist the position in the metadata store
+        persistPositionMetaStore(-1, position, mdEntry.properties, new MetaStoreCallback<Void>() {
+            @Override
+            public void operationComplete(Void result, Stat stat) {
+                if (log.isDebugEnabled()) {
+                    log.debug(
+                            "[{}][{}] Updated cursor in meta store after previous failure in ledger at position"
+                            + " {}", ledger.getName(), name, position);
+                }
+                mbean.persistToZookeeper(true);
+                callback.operationComplete();
+            }
+
+            @Override
+            public void operationFailed(MetaStoreException e) {
+                log.warn("[{}][{}] Failed to update cursor in meta store after previous failure in ledger: {}",
+                        ledger.getName(), name, e.getMessage());
+                mbean.persistToZookeeper(false);
+                callback.operationFailed(createManagedLedgerException(rc));
+            }
+        }, true);
+    }
+
     boolean shouldCloseLedger(LedgerHandle lh) {
         long now = clock.millis();
         if (ledger.getFactory().isMetadataServiceAvailable()
@@ -3205,9 +3929,33 @@ public class ManagedCursorImpl implements ManagedCursor {
     }
 
     void asyncDeleteCursorLedger() {
+        if (dormant) {
+            if (closeDormantCursor()) {
+                asyncDeleteDormantCursorLedger();
+            } else {
+                recoverDormantCursor().whenComplete((__, ex) -> asyncDeleteCursorLedger());
+            }
+            return;
+        }
         asyncDeleteCursorLedger(DEFAULT_LEDGER_DELETE_RETRIES);
     }
 
+    private void asyncDeleteDormantCursorLedger() {
+        if (dormantCursorLedgerId == -1L) {
+            return;
+        }
+        ledger.mbean.startCursorLedgerDeleteOp();
+        bookkeeper.asyncDeleteLedger(dormantCursorLedgerId, (rc, ctx) -> {
+            ledger.mbean.endCursorLedgerDeleteOp();
+            if (rc == BKException.Code.OK) {
+                log.info("[{}][{}] Deleted cursor ledger {}", ledger.getName(), name, dormantCursorLedgerId);
+            } else {
+                log.warn("[{}][{}] Failed to delete ledger {}: {}", ledger.getName(), name, dormantCursorLedgerId,
+                        BKException.getMessage(rc));
+            }
+        }, null);
+    }
+
     private void asyncDeleteCursorLedger(int retry) {
         STATE_UPDATER.set(this, State.Closed);
 
@@ -3513,6 +4261,10 @@ public class ManagedCursorImpl implements ManagedCursor {
         return cacheReadEntry;
     }
 
+    CursorReadAheadPrefetcher getReadAheadPrefetcher() {
+        return readAheadPrefetcher;
+    }
+
     private static final Logger log = LoggerFactory.getLogger(ManagedCursorImpl.class);
 
     public ManagedLedgerConfig getConfig() {
@@ -29,17 +29,21 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.Getter;
@@ -109,6 +113,10 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
         new ConcurrentHashMap<>();
     private final EntryCacheManager entryCacheManager;
 
+    // Limit of the concurrent recoveries of managed ledgers, null if they are not limited
+    private final Semaphore recoveryPermits;
+    private final Queue<Runnable> pendingRecoveries = new ConcurrentLinkedQueue<>();
+
     private long lastStatTimestamp = System.nanoTime();
     private final ScheduledFuture<?> statsTask;
     private final ScheduledFuture<?> flushCursorsTask;
@@ -197,7 +205,9 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
                 config.getManagedCursorInfoCompressionType());
         this.config = config;
         this.mbean = new ManagedLedgerFactoryMBeanImpl(this);
-        this.entryCacheManager = new RangeEntryCacheManagerImpl(this);
+        this.entryCacheManager = createEntryCacheManager(config.getEntryCacheManagerClassName());
+        this.recoveryPermits = config.getMaxConcurrentManagedLedgerRecoveries() > 0
+                ? new Semaphore(config.getMaxConcurrentManagedLedgerRecoveries()) : null;
         this.statsTask = scheduledExecutor.scheduleWithFixedDelay(catchingAndLoggingThrowables(this::refreshStats),
                 0, config.getStatsPeriodSeconds(), TimeUnit.SECONDS);
         this.flushCursorsTask = scheduledExecutor.scheduleAtFixedRate(catchingAndLoggingThrowables(this::flushCursors),
@@ -215,6 +225,19 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
         metadataStore.registerSessionListener(this::handleMetadataStoreNotification);
     }
 
+    private EntryCacheManager createEntryCacheManager(String className) {
+        if (className == null || className.equals(RangeEntryCacheManagerImpl.class.getName())) {
+            return new RangeEntryCacheManagerImpl(this);
+        }
+        try {
+            return (EntryCacheManager) Class.forName(className)
+                    .getConstructor(ManagedLedgerFactoryImpl.class)
+                    .newInstance(this);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Failed to create entry cache manager " + className, e);
+        }
+    }
+
     static class DefaultBkFactory implements BookkeeperFactoryForCustomEnsemblePlacementPolicy {
 
         private final BookKeeper bkClient;
@@ -377,50 +400,114 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
                     ? new ManagedLedgerImpl(this, bk, store, config, scheduledExecutor, name, mlOwnershipChecker)
                     : new ShadowManagedLedgerImpl(this, bk, store, config, scheduledExecutor, name,
                     mlOwnershipChecker);
-            PendingInitializeManagedLedger pendingLedger = new PendingInitializeManagedLedger(newledger);
-            pendingInitializeLedgers.put(name, pendingLedger);
-            newledger.initialize(new ManagedLedgerInitializeLedgerCallback() {
-                @Override
-                public void initializeComplete() {
-                    log.info("[{}] Successfully initialize managed ledger", name);
-                    pendingInitializeLedgers.remove(name, pendingLedger);
-                    future.complete(newledger);
+            long queuedTimeNanos = System.nanoTime();
+            scheduleRecovery(() -> {
+                mbean.recordRecoveryQueueLatency(System.nanoTime() - queuedTimeNanos, TimeUnit.NANOSECONDS);
+                if (closed) {
+                    // The factory was shut down while the recovery was waiting for its turn
+                    future.completeExceptionally(new ManagedLedgerException.ManagedLedgerFactoryClosedException());
+                    return;
+                }
+                initializeManagedLedger(name, newledger, config, future);
+            });
+            return future;
+        }).thenAccept(ml -> callback.openLedgerComplete(ml, ctx)).exceptionally(exception -> {
+            callback.openLedgerFailed((ManagedLedgerException) exception.getCause(), ctx);
+            return null;
+        });
+    }
 
-                    // May need to update the cursor position
-                    newledger.maybeUpdateCursorBeforeTrimmingConsumedLedger();
+    private void initializeManagedLedger(String name, ManagedLedgerImpl newledger, ManagedLedgerConfig config,
+                                         CompletableFuture<ManagedLedgerImpl> future) {
+        PendingInitializeManagedLedger pendingLedger = new PendingInitializeManagedLedger(newledger);
+        pendingInitializeLedgers.put(name, pendingLedger);
+        AtomicBoolean completed = new AtomicBoolean();
+        long startTimeNanos = System.nanoTime();
+        newledger.initialize(new ManagedLedgerInitializeLedgerCallback() {
+            @Override
+            public void initializeComplete() {
+                log.info("[{}] Successfully initialize managed ledger", name);
+                pendingInitializeLedgers.remove(name, pendingLedger);
+                future.complete(newledger);
+
+                // May need to update the cursor position
+                newledger.maybeUpdateCursorBeforeTrimmingConsumedLedger();
+
+                if (completed.compareAndSet(false, true)) {
+                    mbean.recordRecoveryLatency(System.nanoTime() - startTimeNanos, TimeUnit.NANOSECONDS);
+                    recoveryCompleted();
                 }
+            }
 
-                @Override
-                public void initializeFailed(ManagedLedgerException e) {
-                    if (config.isCreateIfMissing()) {
-                        log.error("[{}] Failed to initialize managed ledger: {}", name, e.getMessage());
-                    }
+            @Override
+            public void initializeFailed(ManagedLedgerException e) {
+                if (config.isCreateIfMissing()) {
+                    log.error("[{}] Failed to initialize managed ledger: {}", name, e.getMessage());
+                }
 
-                    // Clean the map if initialization fails
-                    ledgers.remove(name, future);
+                // Clean the map if initialization fails
+                ledgers.remove(name, future);
 
-                    if (pendingInitializeLedgers.remove(name, pendingLedger)) {
-                        pendingLedger.ledger.asyncClose(new CloseCallback() {
-                            @Override
-                            public void closeComplete(Object ctx) {
-                                // no-op
-                            }
+                if (pendingInitializeLedgers.remove(name, pendingLedger)) {
+                    pendingLedger.ledger.asyncClose(new CloseCallback() {
+                        @Override
+                        public void closeComplete(Object ctx) {
+                            // no-op
+                        }
 
-                            @Override
-                            public void closeFailed(ManagedLedgerException exception, Object ctx) {
-                                log.warn("[{}] Failed to a pending initialization managed ledger", name, exception);
-                            }
-                        }, null);
-                    }
+                        @Override
+                        public void closeFailed(ManagedLedgerException exception, Object ctx) {
+                            log.warn("[{}] Failed to a pending initialization managed ledger", name, exception);
+                        }
+                    }, null);
+                }
 
-                    future.completeExceptionally(e);
+                future.completeExceptionally(e);
+
+                if (completed.compareAndSet(false, true)) {
+                    recoveryCompleted();
                 }
-            }, null);
-            return future;
-        }).thenAccept(ml -> callback.openLedgerComplete(ml, ctx)).exceptionally(exception -> {
-            callback.openLedgerFailed((ManagedLedgerException) exception.getCause(), ctx);
-            return null;
-        });
+            }
+        }, null);
+    }
+
+    /**
+     * Run the recovery of a managed ledger, as soon as the number of recoveries in progress allows it.
+     */
+    private void scheduleRecovery(Runnable recovery) {
+        if (recoveryPermits == null || (pendingRecoveries.isEmpty() && recoveryPermits.tryAcquire())) {
+            recovery.run();
+            return;
+        }
+        pendingRecoveries.add(recovery);
+        // A recovery may have completed in the meantime. The queue is drained out of the caller's thread, which
+        // may be updating the map of the managed ledgers.
+        scheduledExecutor.execute(this::runPendingRecoveries);
+    }
+
+    private void recoveryCompleted() {
+        if (recoveryPermits != null) {
+            recoveryPermits.release();
+            if (!pendingRecoveries.isEmpty()) {
+                scheduledExecutor.execute(this::runPendingRecoveries);
+            }
+        }
+    }
+
+    private void runPendingRecoveries() {
+        while (!pendingRecoveries.isEmpty() && recoveryPermits.tryAcquire()) {
+            Runnable recovery = pendingRecoveries.poll();
+            if (recovery == null) {
+                // Another thread got it first, check the queue again after releasing the permit
+                recoveryPermits.release();
+            } else {
+                recovery.run();
+            }
+        }
+    }
+
+    int getNumberOfPendingRecoveries() {
+        return pendingRecoveries.size();
     }
 
     @Override
@@ -515,6 +602,12 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
         }
         closed = true;
 
+        // Fail the recoveries that are still waiting for their turn
+        Runnable pendingRecovery;
+        while ((pendingRecovery = pendingRecoveries.poll()) != null) {
+            pendingRecovery.run();
+        }
+
         statsTask.cancel(true);
         flushCursorsTask.cancel(true);
         cacheEvictionExecutor.shutdownNow();
@@ -609,6 +702,12 @@ public class ManagedLedgerFactoryImpl implements ManagedLedgerFactory {
         }
         closed = true;
 
+        // Fail the recoveries that are still waiting for their turn
+        Runnable pendingRecovery;
+        while ((pendingRecovery = pendingRecoveries.poll()) != null) {
+            pendingRecovery.run();
+        }
+
         statsTask.cancel(true);
         flushCursorsTask.cancel(true);
         cacheEvictionExecutor.shutdownNow();
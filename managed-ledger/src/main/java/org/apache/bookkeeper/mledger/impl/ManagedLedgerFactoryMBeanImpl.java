@@ -21,21 +21,37 @@ package org.apache.bookkeeper.mledger.impl;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
 import org.apache.bookkeeper.mledger.ManagedLedgerFactoryMXBean;
+import org.apache.bookkeeper.mledger.util.StatsBuckets;
 import org.apache.pulsar.common.stats.Rate;
 
 @SuppressWarnings("checkstyle:javadoctype")
 public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean {
 
+    public static final long[] RECOVERY_LATENCY_BUCKETS_MS = { 10, 50, 100, 500, 1_000, 5_000, 10_000, 30_000,
+            60_000 };
+
     private final ManagedLedgerFactoryImpl factory;
 
     final Rate cacheHits = new Rate();
     final Rate cacheMisses = new Rate();
     final Rate cacheEvictions = new Rate();
 
+    final Rate tailingReadsCacheHits = new Rate();
+    final Rate tailingReadsCacheMisses = new Rate();
+    final Rate catchUpReadsCacheHits = new Rate();
+    final Rate catchUpReadsCacheMisses = new Rate();
+
     private final LongAdder insertedEntryCount = new LongAdder();
     private final LongAdder evictedEntryCount = new LongAdder();
     private final LongAdder cacheEntryCount = new LongAdder();
 
+    // Time spent by the managed ledgers in each phase of their recovery
+    private final StatsBuckets recoveryQueueLatencyMs = new StatsBuckets(RECOVERY_LATENCY_BUCKETS_MS);
+    private final StatsBuckets recoveryMetadataLatencyMs = new StatsBuckets(RECOVERY_LATENCY_BUCKETS_MS);
+    private final StatsBuckets recoveryLedgersLatencyMs = new StatsBuckets(RECOVERY_LATENCY_BUCKETS_MS);
+    private final StatsBuckets recoveryCursorsLatencyMs = new StatsBuckets(RECOVERY_LATENCY_BUCKETS_MS);
+    private final StatsBuckets recoveryLatencyMs = new StatsBuckets(RECOVERY_LATENCY_BUCKETS_MS);
+
     public ManagedLedgerFactoryMBeanImpl(ManagedLedgerFactoryImpl factory) throws Exception {
         this.factory = factory;
     }
@@ -51,6 +67,16 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
         cacheHits.calculateRate(seconds);
         cacheMisses.calculateRate(seconds);
         cacheEvictions.calculateRate(seconds);
+        tailingReadsCacheHits.calculateRate(seconds);
+        tailingReadsCacheMisses.calculateRate(seconds);
+        catchUpReadsCacheHits.calculateRate(seconds);
+        catchUpReadsCacheMisses.calculateRate(seconds);
+
+        recoveryQueueLatencyMs.refresh();
+        recoveryMetadataLatencyMs.refresh();
+        recoveryLedgersLatencyMs.refresh();
+        recoveryCursorsLatencyMs.refresh();
+        recoveryLatencyMs.refresh();
     }
 
     public void recordCacheHit(long size) {
@@ -65,6 +91,14 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
         cacheMisses.recordMultipleEvents(count, totalSize);
     }
 
+    public void recordReaderCacheHits(boolean catchUpRead, int count, long totalSize) {
+        (catchUpRead ? catchUpReadsCacheHits : tailingReadsCacheHits).recordMultipleEvents(count, totalSize);
+    }
+
+    public void recordReaderCacheMisses(boolean catchUpRead, int count) {
+        (catchUpRead ? catchUpReadsCacheMisses : tailingReadsCacheMisses).recordMultipleEvents(count, 0);
+    }
+
     public void recordCacheEviction() {
         cacheEvictions.recordEvent();
     }
@@ -79,6 +113,26 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
         cacheEntryCount.add(-count);
     }
 
+    public void recordRecoveryQueueLatency(long latency, TimeUnit unit) {
+        recoveryQueueLatencyMs.addValue(unit.toMillis(latency));
+    }
+
+    public void recordRecoveryMetadataLatency(long latency, TimeUnit unit) {
+        recoveryMetadataLatencyMs.addValue(unit.toMillis(latency));
+    }
+
+    public void recordRecoveryLedgersLatency(long latency, TimeUnit unit) {
+        recoveryLedgersLatencyMs.addValue(unit.toMillis(latency));
+    }
+
+    public void recordRecoveryCursorsLatency(long latency, TimeUnit unit) {
+        recoveryCursorsLatencyMs.addValue(unit.toMillis(latency));
+    }
+
+    public void recordRecoveryLatency(long latency, TimeUnit unit) {
+        recoveryLatencyMs.addValue(unit.toMillis(latency));
+    }
+
     @Override
     public int getNumberOfManagedLedgers() {
         return factory.ledgers.size();
@@ -114,6 +168,41 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
         return cacheMisses.getValueRate();
     }
 
+    @Override
+    public double getTailingReadsCacheHitsRate() {
+        return tailingReadsCacheHits.getRate();
+    }
+
+    @Override
+    public double getTailingReadsCacheMissesRate() {
+        return tailingReadsCacheMisses.getRate();
+    }
+
+    @Override
+    public double getTailingReadsCacheHitRatio() {
+        return hitRatio(tailingReadsCacheHits, tailingReadsCacheMisses);
+    }
+
+    @Override
+    public double getCatchUpReadsCacheHitsRate() {
+        return catchUpReadsCacheHits.getRate();
+    }
+
+    @Override
+    public double getCatchUpReadsCacheMissesRate() {
+        return catchUpReadsCacheMisses.getRate();
+    }
+
+    @Override
+    public double getCatchUpReadsCacheHitRatio() {
+        return hitRatio(catchUpReadsCacheHits, catchUpReadsCacheMisses);
+    }
+
+    private static double hitRatio(Rate hits, Rate misses) {
+        long total = hits.getCount() + misses.getCount();
+        return total != 0 ? (double) hits.getCount() / total : 0.0d;
+    }
+
     @Override
     public long getNumberOfCacheEvictions() {
         return cacheEvictions.getCount();
@@ -131,4 +220,48 @@ public class ManagedLedgerFactoryMBeanImpl implements ManagedLedgerFactoryMXBean
         return cacheEntryCount.sum();
     }
 
+    @Override
+    public int getNumberOfPendingRecoveries() {
+        return factory.getNumberOfPendingRecoveries();
+    }
+
+    @Override
+    public long getRecoveriesCount() {
+        return recoveryLatencyMs.getCount();
+    }
+
+    @Override
+    public double getRecoveryQueueLatencyAvgMs() {
+        return avg(recoveryQueueLatencyMs);
+    }
+
+    @Override
+    public double getRecoveryMetadataLatencyAvgMs() {
+        return avg(recoveryMetadataLatencyMs);
+    }
+
+    @Override
+    public double getRecoveryLedgersLatencyAvgMs() {
+        return avg(recoveryLedgersLatencyMs);
+    }
+
+    @Override
+    public double getRecoveryCursorsLatencyAvgMs() {
+        return avg(recoveryCursorsLatencyMs);
+    }
+
+    @Override
+    public double getRecoveryLatencyAvgMs() {
+        return avg(recoveryLatencyMs);
+    }
+
+    @Override
+    public long[] getRecoveryLatencyBuckets() {
+        return recoveryLatencyMs.getBuckets();
+    }
+
+    private static double avg(StatsBuckets buckets) {
+        return buckets.getCount() != 0 ? buckets.getAvg() : 0.0d;
+    }
+
 }
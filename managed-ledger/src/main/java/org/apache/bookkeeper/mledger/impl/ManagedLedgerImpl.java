@@ -117,6 +117,9 @@ import org.apache.bookkeeper.mledger.WaitingEntryCallBack;
 import org.apache.bookkeeper.mledger.impl.ManagedCursorImpl.VoidCallback;
 import org.apache.bookkeeper.mledger.impl.MetaStore.MetaStoreCallback;
 import org.apache.bookkeeper.mledger.impl.cache.EntryCache;
+import org.apache.bookkeeper.mledger.impl.cache.EntryCacheManager;
+import org.apache.bookkeeper.mledger.impl.cache.InflightReadsLimiter;
+import org.apache.bookkeeper.mledger.impl.cache.RangeEntryCacheManagerImpl;
 import org.apache.bookkeeper.mledger.intercept.ManagedLedgerInterceptor;
 import org.apache.bookkeeper.mledger.offload.OffloadUtils;
 import org.apache.bookkeeper.mledger.proto.MLDataFormats;
@@ -200,6 +203,10 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
     // uninitialized cursor future from the 1st request
     final Map<String, CompletableFuture<ManagedCursor>> uninitializedCursors;
 
+    // Read-ahead of the metadata of the cursors, while they are being recovered
+    private volatile CursorsRecoveryPrefetcher cursorsRecoveryPrefetcher;
+    protected volatile long recoveryPhaseStartNanos = System.nanoTime();
+
     final EntryCache entryCache;
 
     private ScheduledFuture<?> timeoutTask;
@@ -374,14 +381,41 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
         this.maxBacklogBetweenCursorsForCaching = config.getMaxBacklogBetweenCursorsForCaching();
     }
 
-    synchronized void initialize(final ManagedLedgerInitializeLedgerCallback callback, final Object ctx) {
+    synchronized void initialize(final ManagedLedgerInitializeLedgerCallback initializeCallback, final Object ctx) {
         log.info("Opening managed ledger {}", name);
+        recoveryPhaseStartNanos = System.nanoTime();
+
+        final ManagedLedgerInitializeLedgerCallback callback;
+        if (config.isCursorsRecoveryPipelined()) {
+            // Read the cursors while the data ledgers are being recovered
+            CursorsRecoveryPrefetcher prefetcher = new CursorsRecoveryPrefetcher(this, bookKeeper);
+            cursorsRecoveryPrefetcher = prefetcher;
+            prefetcher.start();
+            callback = new ManagedLedgerInitializeLedgerCallback() {
+                @Override
+                public void initializeComplete() {
+                    initializeCallback.initializeComplete();
+                }
+
+                @Override
+                public void initializeFailed(ManagedLedgerException e) {
+                    if (cursorsRecoveryPrefetcher == prefetcher) {
+                        cursorsRecoveryPrefetcher = null;
+                    }
+                    prefetcher.releaseAll();
+                    initializeCallback.initializeFailed(e);
+                }
+            };
+        } else {
+            callback = initializeCallback;
+        }
 
         // Fetch the list of existing ledgers in the managed ledger
         store.getManagedLedgerInfo(name, config.isCreateIfMissing(), config.getProperties(),
                 new MetaStoreCallback<ManagedLedgerInfo>() {
             @Override
             public void operationComplete(ManagedLedgerInfo mlInfo, Stat stat) {
+                factory.mbean.recordRecoveryMetadataLatency(endRecoveryPhase(), TimeUnit.NANOSECONDS);
                 ledgersStat = stat;
                 if (mlInfo.hasTerminatedPosition()) {
                     state = State.Terminated;
@@ -554,11 +588,25 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
         }, ledgerMetadata);
     }
 
-    protected void initializeCursors(final ManagedLedgerInitializeLedgerCallback callback) {
+    protected void initializeCursors(final ManagedLedgerInitializeLedgerCallback initializeCallback) {
         if (log.isDebugEnabled()) {
             log.debug("[{}] initializing cursors", name);
         }
-        store.getCursors(name, new MetaStoreCallback<List<String>>() {
+        factory.mbean.recordRecoveryLedgersLatency(endRecoveryPhase(), TimeUnit.NANOSECONDS);
+        final ManagedLedgerInitializeLedgerCallback callback = new ManagedLedgerInitializeLedgerCallback() {
+            @Override
+            public void initializeComplete() {
+                factory.mbean.recordRecoveryCursorsLatency(endRecoveryPhase(), TimeUnit.NANOSECONDS);
+                initializeCallback.initializeComplete();
+            }
+
+            @Override
+            public void initializeFailed(ManagedLedgerException e) {
+                initializeCallback.initializeFailed(e);
+            }
+        };
+        final CursorsRecoveryPrefetcher prefetcher = cursorsRecoveryPrefetcher;
+        MetaStoreCallback<List<String>> cursorsCallback = new MetaStoreCallback<List<String>>() {
             @Override
             public void operationComplete(List<String> consumers, Stat s) {
                 // Load existing cursors
@@ -568,10 +616,12 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
                 }
 
                 if (consumers.isEmpty()) {
+                    cursorsRecovered(prefetcher, null, null);
                     callback.initializeComplete();
                     return;
                 }
 
+                final AtomicInteger pendingRecoveries = new AtomicInteger(consumers.size());
                 if (!ManagedLedgerImpl.this.config.isLazyCursorRecovery()) {
                     log.debug("[{}] Loading cursors", name);
 
@@ -585,7 +635,10 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
                             public void operationComplete() {
                                 log.info("[{}] Recovery for cursor {} completed. pos={} -- todo={}", name, cursorName,
                                         cursor.getMarkDeletedPosition(), cursorCount.get() - 1);
-                                cursor.setActive();
+                                cursorsRecovered(prefetcher, cursorName, pendingRecoveries);
+                                if (!cursor.isDormant()) {
+                                    cursor.setActive();
+                                }
                                 addCursor(cursor);
 
                                 if (cursorCount.decrementAndGet() == 0) {
@@ -597,6 +650,7 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
                             @Override
                             public void operationFailed(ManagedLedgerException exception) {
                                 log.warn("[{}] Recovery for cursor {} failed", name, cursorName, exception);
+                                cursorsRecovered(prefetcher, cursorName, pendingRecoveries);
                                 cursorCount.set(-1);
                                 callback.initializeFailed(exception);
                             }
@@ -618,7 +672,10 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
                             public void operationComplete() {
                                 log.info("[{}] Lazy recovery for cursor {} completed. pos={} -- todo={}", name,
                                         cursorName, cursor.getMarkDeletedPosition(), cursorCount.get() - 1);
-                                cursor.setActive();
+                                cursorsRecovered(prefetcher, cursorName, pendingRecoveries);
+                                if (!cursor.isDormant()) {
+                                    cursor.setActive();
+                                }
                                 synchronized (ManagedLedgerImpl.this) {
                                     addCursor(cursor);
                                     uninitializedCursors.remove(cursor.getName()).complete(cursor);
@@ -628,6 +685,7 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
                             @Override
                             public void operationFailed(ManagedLedgerException exception) {
                                 log.warn("[{}] Lazy recovery for cursor {} failed", name, cursorName, exception);
+                                cursorsRecovered(prefetcher, cursorName, pendingRecoveries);
                                 synchronized (ManagedLedgerImpl.this) {
                                     uninitializedCursors.remove(cursor.getName()).completeExceptionally(exception);
                                 }
@@ -644,7 +702,46 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
                 log.warn("[{}] Failed to get the cursors list", name, e);
                 callback.initializeFailed(new ManagedLedgerException(e));
             }
-        });
+        };
+        if (prefetcher != null) {
+            prefetcher.getCursors(cursorsCallback);
+        } else {
+            store.getCursors(name, cursorsCallback);
+        }
+    }
+
+    /**
+     * Release what was read ahead for a recovered cursor, and stop the read-ahead once all the cursors are recovered.
+     */
+    private void cursorsRecovered(CursorsRecoveryPrefetcher prefetcher, String cursorName,
+                                  AtomicInteger pendingRecoveries) {
+        if (prefetcher == null) {
+            return;
+        }
+        if (cursorName != null) {
+            prefetcher.release(cursorName);
+        }
+        if (pendingRecoveries == null || pendingRecoveries.decrementAndGet() == 0) {
+            if (cursorsRecoveryPrefetcher == prefetcher) {
+                cursorsRecoveryPrefetcher = null;
+            }
+        }
+    }
+
+    CursorsRecoveryPrefetcher getCursorsRecoveryPrefetcher() {
+        return cursorsRecoveryPrefetcher;
+    }
+
+    /**
+     * End a phase of the recovery of the managed ledger and start the next one.
+     *
+     * @return the duration of the phase in nanoseconds
+     */
+    protected long endRecoveryPhase() {
+        long now = System.nanoTime();
+        long duration = now - recoveryPhaseStartNanos;
+        recoveryPhaseStartNanos = now;
+        return duration;
     }
 
     private void addCursor(ManagedCursorImpl cursor) {
@@ -2002,6 +2099,34 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
 
     }
 
+    /**
+     * Read the entries of a ledger from a position to an entry, which have all to be confirmed already.
+     */
+    public void asyncReadEntries(PositionImpl firstPosition, long lastEntryId, ReadEntriesCallback callback,
+                                 Object ctx) {
+        LedgerHandle currentLedger = this.currentLedger;
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Reading entries ledger {}: {} to {}", name, firstPosition.getLedgerId(),
+                    firstPosition.getEntryId(), lastEntryId);
+        }
+        if (currentLedger != null && firstPosition.getLedgerId() == currentLedger.getId()) {
+            asyncReadEntries(currentLedger, firstPosition.getEntryId(), lastEntryId, callback, ctx);
+        } else if (ledgers.containsKey(firstPosition.getLedgerId())) {
+            getLedgerHandle(firstPosition.getLedgerId()).thenAccept(ledger -> asyncReadEntries(ledger,
+                    firstPosition.getEntryId(), lastEntryId, callback, ctx)).exceptionally(ex -> {
+                log.error("[{}] Error opening ledger for reading at position {} - {}", name, firstPosition,
+                        ex.getMessage());
+                callback.readEntriesFailed(ManagedLedgerException.getManagedLedgerException(ex.getCause()), ctx);
+                return null;
+            });
+        } else {
+            log.error("[{}] Failed to get messages with ledger {}:{} the ledgerId does not belong to this topic "
+                    + "or has been deleted.", name, firstPosition.getLedgerId(), firstPosition.getEntryId());
+            callback.readEntriesFailed(new LedgerNotExistException("Message not found, "
+                    + "the ledgerId does not belong to this topic or has been deleted"), ctx);
+        }
+    }
+
     private void internalReadFromLedger(ReadHandle ledger, OpReadEntry opReadEntry) {
 
         if (opReadEntry.readPosition.compareTo(opReadEntry.maxPosition) > 0) {
@@ -2088,7 +2213,22 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
             log.debug("[{}] Reading entries from ledger {} - first={} last={}", name, ledger.getId(), firstEntry,
                     lastEntry);
         }
-        asyncReadEntry(ledger, firstEntry, lastEntry, opReadEntry, opReadEntry.ctx);
+        CursorReadAheadPrefetcher readAheadPrefetcher = opReadEntry.cursor.getReadAheadPrefetcher();
+        if (readAheadPrefetcher != null) {
+            readAheadPrefetcher.asyncReadEntries(ledger, firstEntry, lastEntry, lastEntryInLedger, opReadEntry);
+        } else {
+            asyncReadEntry(ledger, firstEntry, lastEntry, opReadEntry, opReadEntry.ctx);
+        }
+    }
+
+    OrderedScheduler getScheduledExecutor() {
+        return scheduledExecutor;
+    }
+
+    InflightReadsLimiter getInflightReadsLimiter() {
+        EntryCacheManager entryCacheManager = factory.getEntryCacheManager();
+        return entryCacheManager instanceof RangeEntryCacheManagerImpl
+                ? ((RangeEntryCacheManagerImpl) entryCacheManager).getInflightReadsLimiter() : null;
     }
 
     protected void asyncReadEntry(ReadHandle ledger, PositionImpl position, ReadEntryCallback callback, Object ctx) {
@@ -2105,8 +2245,25 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
         }
     }
 
+    protected void asyncReadEntries(ReadHandle ledger, long firstEntry, long lastEntry, ReadEntriesCallback callback,
+            Object ctx) {
+        if (config.getReadEntryTimeoutSeconds() > 0) {
+            // set readOpCount to uniquely validate if ReadEntryCallbackWrapper is already recycled
+            long readOpCount = READ_OP_COUNT_UPDATER.incrementAndGet(this);
+            long createdTime = System.nanoTime();
+            ReadEntryCallbackWrapper readCallback = ReadEntryCallbackWrapper.create(name, ledger.getId(), firstEntry,
+                    callback, readOpCount, createdTime, ctx);
+            lastReadCallback = readCallback;
+            entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, false, readCallback, readOpCount);
+        } else {
+            entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, false, callback, ctx);
+        }
+    }
+
     protected void asyncReadEntry(ReadHandle ledger, long firstEntry, long lastEntry, OpReadEntry opReadEntry,
             Object ctx) {
+        // Cursors that fell behind are deactivated, their reads are accounted as catch-up reads in the cache stats
+        boolean catchUpRead = !opReadEntry.cursor.isActive();
         if (config.getReadEntryTimeoutSeconds() > 0) {
             // set readOpCount to uniquely validate if ReadEntryCallbackWrapper is already recycled
             long readOpCount = READ_OP_COUNT_UPDATER.incrementAndGet(this);
@@ -2115,10 +2272,10 @@ public class ManagedLedgerImpl implements ManagedLedger, CreateCallback {
                     opReadEntry, readOpCount, createdTime, ctx);
             lastReadCallback = readCallback;
             entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, opReadEntry.cursor.isCacheReadEntry(),
-                    readCallback, readOpCount);
+                    catchUpRead, readCallback, readOpCount);
         } else {
-            entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, opReadEntry.cursor.isCacheReadEntry(), opReadEntry,
-                    ctx);
+            entryCache.asyncReadEntry(ledger, firstEntry, lastEntry, opReadEntry.cursor.isCacheReadEntry(),
+                    catchUpRead, opReadEntry, ctx);
         }
     }
 
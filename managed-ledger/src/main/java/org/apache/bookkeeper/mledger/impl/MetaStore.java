@@ -136,6 +136,25 @@ public interface MetaStore {
     void asyncUpdateCursorInfo(String ledgerName, String cursorName, ManagedCursorInfo info, Stat stat,
             MetaStoreCallback<Void> callback);
 
+    /**
+     * Update the persisted position of a cursor with a full snapshot of its state.
+     *
+     * <p/>A snapshot supersedes any earlier snapshot of the same cursor, so the store can skip the writing of a
+     * snapshot that is still pending when a newer one, expecting the same version, is updated.
+     *
+     * @param ledgerName
+     *            the name of the ManagedLedger
+     * @param cursorName
+     * @param info
+     * @param stat
+     * @param callback
+     *            the callback
+     */
+    default void asyncUpdateCursorInfoSnapshot(String ledgerName, String cursorName, ManagedCursorInfo info,
+            Stat stat, MetaStoreCallback<Void> callback) {
+        asyncUpdateCursorInfo(ledgerName, cursorName, info, stat, callback);
+    }
+
     /**
      * Drop the persistent state of a consumer from the metadata store.
      *
@@ -257,6 +257,17 @@ public class MetaStoreImpl implements MetaStore, Consumer<Notification> {
     @Override
     public void asyncUpdateCursorInfo(String ledgerName, String cursorName, ManagedCursorInfo info, Stat stat,
             MetaStoreCallback<Void> callback) {
+        updateCursorInfo(ledgerName, cursorName, info, stat, false, callback);
+    }
+
+    @Override
+    public void asyncUpdateCursorInfoSnapshot(String ledgerName, String cursorName, ManagedCursorInfo info,
+            Stat stat, MetaStoreCallback<Void> callback) {
+        updateCursorInfo(ledgerName, cursorName, info, stat, true, callback);
+    }
+
+    private void updateCursorInfo(String ledgerName, String cursorName, ManagedCursorInfo info, Stat stat,
+            boolean snapshot, MetaStoreCallback<Void> callback) {
         if (log.isDebugEnabled()) {
             log.debug("[{}] [{}] Updating cursor info ledgerId={} mark-delete={}:{} lastActive={}",
                     ledgerName, cursorName, info.getCursorsLedgerId(), info.getMarkDeleteLedgerId(),
@@ -279,8 +290,10 @@ public class MetaStoreImpl implements MetaStore, Consumer<Notification> {
                 log.debug("[{}] Updating consumer {} on meta-data store with {}", ledgerName, cursorName, info);
             }
         }
-        store.put(path, content, Optional.of(expectedVersion))
-                .thenAcceptAsync(optStat -> callback.operationComplete(null, optStat), executor
+        CompletableFuture<Stat> future = snapshot
+                ? store.putCoalescing(path, content, Optional.of(expectedVersion))
+                : store.put(path, content, Optional.of(expectedVersion));
+        future.thenAcceptAsync(optStat -> callback.operationComplete(null, optStat), executor
                         .chooseThread(ledgerName))
                 .exceptionally(ex -> {
                     executor.executeOrdered(ledgerName, SafeRunnable.safeRun(() -> callback
@@ -234,7 +234,7 @@ public class OpAddEntry extends SafeRunnable implements AddCallback, CloseCallba
             EntryImpl entry = EntryImpl.create(ledgerId, entryId, data);
             // EntryCache.insert: duplicates entry by allocating new entry and data. so, recycle entry after calling
             // insert
-            ml.entryCache.insert(entry);
+            ml.entryCache.insertAddedEntry(entry);
             entry.release();
         }
 
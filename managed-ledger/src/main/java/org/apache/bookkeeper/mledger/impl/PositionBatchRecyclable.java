@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import io.netty.util.Recycler;
+import io.netty.util.Recycler.Handle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.bookkeeper.mledger.Position;
+
+/**
+ * A batch of positions stored as primitive (ledgerId, entryId) pairs, with an optional ack set for each of them.
+ *
+ * <p/>It's used to acknowledge the messages of a single ack command without creating an object for each of them. The
+ * batch is recycled once the positions have been applied, and keeps its arrays unless they grew too big.
+ */
+public class PositionBatchRecyclable {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_RETAINED_CAPACITY = 1024;
+
+    private final Handle<PositionBatchRecyclable> recyclerHandle;
+
+    private long[] ledgerIds = new long[INITIAL_CAPACITY];
+    private long[] entryIds = new long[INITIAL_CAPACITY];
+    private long[][] ackSets = new long[INITIAL_CAPACITY][];
+    private int size;
+
+    private static final Recycler<PositionBatchRecyclable> RECYCLER = new Recycler<PositionBatchRecyclable>() {
+        @Override
+        protected PositionBatchRecyclable newObject(Handle<PositionBatchRecyclable> recyclerHandle) {
+            return new PositionBatchRecyclable(recyclerHandle);
+        }
+    };
+
+    private PositionBatchRecyclable(Handle<PositionBatchRecyclable> recyclerHandle) {
+        this.recyclerHandle = recyclerHandle;
+    }
+
+    public static PositionBatchRecyclable create() {
+        return RECYCLER.get();
+    }
+
+    public void add(long ledgerId, long entryId) {
+        add(ledgerId, entryId, null);
+    }
+
+    public void add(long ledgerId, long entryId, long[] ackSet) {
+        if (size == ledgerIds.length) {
+            int newCapacity = size * 2;
+            ledgerIds = Arrays.copyOf(ledgerIds, newCapacity);
+            entryIds = Arrays.copyOf(entryIds, newCapacity);
+            ackSets = Arrays.copyOf(ackSets, newCapacity);
+        }
+        ledgerIds[size] = ledgerId;
+        entryIds[size] = entryId;
+        ackSets[size] = ackSet;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getLedgerId(int index) {
+        return ledgerIds[index];
+    }
+
+    public long getEntryId(int index) {
+        return entryIds[index];
+    }
+
+    /**
+     * @return the ack set of the batch indexes that are not acknowledged yet, or null if the whole entry is
+     */
+    public long[] getAckSet(int index) {
+        return ackSets[index];
+    }
+
+    /**
+     * @return a new position for each of the entries of the batch
+     */
+    public List<Position> toPositions() {
+        List<Position> positions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            positions.add(ackSets[i] != null ? PositionImpl.get(ledgerIds[i], entryIds[i], ackSets[i])
+                    : PositionImpl.get(ledgerIds[i], entryIds[i]));
+        }
+        return positions;
+    }
+
+    public void recycle() {
+        if (ledgerIds.length > MAX_RETAINED_CAPACITY) {
+            ledgerIds = new long[INITIAL_CAPACITY];
+            entryIds = new long[INITIAL_CAPACITY];
+            ackSets = new long[INITIAL_CAPACITY][];
+        } else {
+            Arrays.fill(ackSets, 0, size, null);
+        }
+        size = 0;
+        recyclerHandle.recycle(this);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(ledgerIds[i]).append(':').append(entryIds[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
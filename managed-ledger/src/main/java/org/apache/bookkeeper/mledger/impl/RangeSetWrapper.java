@@ -40,6 +40,14 @@ public class RangeSetWrapper<T extends Comparable<T>> implements LongPairRangeSe
     private final LongPairConsumer<T> rangeConverter;
     private final ManagedLedgerConfig config;
     private final boolean enableMultiEntry;
+    private final boolean enableDeltas;
+
+    /**
+     * Record the ranges added since the last time the dirty keys were reset, so that they can be persisted as a
+     * delta. They are not complete anymore once the whole set has been cleared.
+     */
+    private final LongPairRangeSet<T> addedRanges;
+    private boolean addedRangesComplete = false;
 
     /**
      * Record which Ledger is dirty.
@@ -58,6 +66,10 @@ public class RangeSetWrapper<T extends Comparable<T>> implements LongPairRangeSe
                 ? new ConcurrentOpenLongPairRangeSet<>(4096, rangeConverter)
                 : new LongPairRangeSet.DefaultRangeSet<>(rangeConverter, rangeBoundConsumer);
         this.enableMultiEntry = config.isPersistentUnackedRangesWithMultipleEntriesEnabled();
+        this.enableDeltas = config.getUnackedRangesMaxDeltasBetweenSnapshots() > 0;
+        this.addedRanges = enableDeltas
+                ? new LongPairRangeSet.DefaultRangeSet<>(rangeConverter, rangeBoundConsumer)
+                : null;
     }
 
     @Override
@@ -65,6 +77,9 @@ public class RangeSetWrapper<T extends Comparable<T>> implements LongPairRangeSe
         if (enableMultiEntry) {
             dirtyLedgers.addOpenClosed(lowerKey, 0, upperKey, 0);
         }
+        if (enableDeltas) {
+            addedRanges.addOpenClosed(lowerKey, lowerValue, upperKey, upperValue);
+        }
         rangeSet.addOpenClosed(lowerKey, lowerValue, upperKey, upperValue);
     }
 
@@ -83,6 +98,9 @@ public class RangeSetWrapper<T extends Comparable<T>> implements LongPairRangeSe
         if (enableMultiEntry) {
             dirtyLedgers.removeAtMost(key, 0);
         }
+        if (enableDeltas) {
+            addedRanges.removeAtMost(key, value);
+        }
         rangeSet.removeAtMost(key, value);
     }
 
@@ -95,6 +113,10 @@ public class RangeSetWrapper<T extends Comparable<T>> implements LongPairRangeSe
     public void clear() {
         rangeSet.clear();
         dirtyLedgers.clear();
+        if (enableDeltas) {
+            addedRanges.clear();
+            addedRangesComplete = false;
+        }
     }
 
     @Override
@@ -165,6 +187,26 @@ public class RangeSetWrapper<T extends Comparable<T>> implements LongPairRangeSe
 
     public void resetDirtyKeys() {
         dirtyLedgers.clear();
+        if (enableDeltas) {
+            addedRanges.clear();
+            addedRangesComplete = true;
+        }
+    }
+
+    /**
+     * @return true if the ranges added since the dirty keys were reset are tracked, and the set wasn't cleared since
+     */
+    public boolean hasCompleteAddedRanges() {
+        return enableDeltas && addedRangesComplete;
+    }
+
+    /**
+     * Iterate over the ranges added since the dirty keys were reset.
+     */
+    public void forEachAddedRawRange(RawRangeProcessor action) {
+        if (enableDeltas) {
+            addedRanges.forEachRawRange(action);
+        }
     }
 
     public boolean isDirtyLedgers(long ledgerId) {
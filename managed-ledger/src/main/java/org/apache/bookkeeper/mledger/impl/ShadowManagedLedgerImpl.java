@@ -65,6 +65,7 @@ public class ShadowManagedLedgerImpl extends ManagedLedgerImpl {
     @Override
     synchronized void initialize(ManagedLedgerInitializeLedgerCallback callback, Object ctx) {
         log.info("Opening shadow managed ledger {} with source={}", name, sourceMLName);
+        recoveryPhaseStartNanos = System.nanoTime();
         executor.execute(safeRun(() -> doInitialize(callback, ctx)));
     }
 
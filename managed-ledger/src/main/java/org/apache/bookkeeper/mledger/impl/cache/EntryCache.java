@@ -18,6 +18,7 @@
  */
 package org.apache.bookkeeper.mledger.impl.cache;
 
+import java.util.function.Predicate;
 import org.apache.bookkeeper.client.api.ReadHandle;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntryCallback;
@@ -48,6 +49,19 @@ public interface EntryCache extends Comparable<EntryCache> {
      */
     boolean insert(EntryImpl entry);
 
+    /**
+     * Insert an entry that has just been added to the managed ledger in the cache.
+     *
+     * <p/>Unlike the entries read from storage, such entries are about to be read by the active cursors.
+     *
+     * @param entry
+     *            the entry to be cached
+     * @return whether the entry was inserted in cache
+     */
+    default boolean insertAddedEntry(EntryImpl entry) {
+        return insert(entry);
+    }
+
     /**
      * Remove from cache all the entries related to a ledger up to lastPosition excluded.
      *
@@ -80,6 +94,22 @@ public interface EntryCache extends Comparable<EntryCache> {
      */
     Pair<Integer, Long> evictEntries(long sizeToFree);
 
+    /**
+     * Force the cache to drop entries to free space, trying to keep the protected entries.
+     *
+     * <p/>The protected entries are only evicted if dropping all the other entries is not enough to free the
+     * requested space.
+     *
+     * @param sizeToFree
+     *            the total memory size to free
+     * @param isProtected
+     *            predicate telling whether an entry should be kept
+     * @return a pair containing the number of entries evicted and their total size
+     */
+    default Pair<Integer, Long> evictEntries(long sizeToFree, Predicate<PositionImpl> isProtected) {
+        return evictEntries(sizeToFree);
+    }
+
     /**
      * Read entries from the cache or from bookkeeper.
      *
@@ -101,6 +131,33 @@ public interface EntryCache extends Comparable<EntryCache> {
     void asyncReadEntry(ReadHandle lh, long firstEntry, long lastEntry, boolean shouldCacheEntry,
             ReadEntriesCallback callback, Object ctx);
 
+    /**
+     * Read entries from the cache or from bookkeeper, on behalf of a reader of a known type.
+     *
+     * <p/>This is the same as {@link #asyncReadEntry(ReadHandle, long, long, boolean, ReadEntriesCallback, Object)},
+     * the reader type is only used to account the cache hits and misses separately for the tailing and the
+     * catch-up readers.
+     *
+     * @param lh
+     *            the ledger handle
+     * @param firstEntry
+     *            the first entry to read (inclusive)
+     * @param lastEntry
+     *            the last entry to read (inclusive)
+     * @param shouldCacheEntry
+     *            whether the read entry should be cached
+     * @param catchUpRead
+     *            whether the reader is catching up with a backlog rather than tailing the managed ledger
+     * @param callback
+     *            the callback object that will be notified when read is done
+     * @param ctx
+     *            the context object
+     */
+    default void asyncReadEntry(ReadHandle lh, long firstEntry, long lastEntry, boolean shouldCacheEntry,
+            boolean catchUpRead, ReadEntriesCallback callback, Object ctx) {
+        asyncReadEntry(lh, firstEntry, lastEntry, shouldCacheEntry, callback, ctx);
+    }
+
     /**
      * Read entry at given position from the cache or from bookkeeper.
      *
@@ -83,7 +83,7 @@ public class EntryCacheDefaultEvictionPolicy implements EntryCacheEvictionPolicy
                 continue;
             }
 
-            Pair<Integer, Long> evicted = entryCache.evictEntries(singleCacheSizeToFree);
+            Pair<Integer, Long> evicted = evictEntries(entryCache, singleCacheSizeToFree);
             evictedEntries += evicted.getLeft();
             evictedSize += evicted.getRight();
         }
@@ -92,5 +92,12 @@ public class EntryCacheDefaultEvictionPolicy implements EntryCacheEvictionPolicy
                 cachesToEvict.size(), evictedSize / RangeEntryCacheManagerImpl.MB);
     }
 
+    /**
+     * Evict at least sizeToFree bytes from a single cache.
+     */
+    protected Pair<Integer, Long> evictEntries(EntryCache entryCache, long sizeToFree) {
+        return entryCache.evictEntries(sizeToFree);
+    }
+
     private static final Logger log = LoggerFactory.getLogger(EntryCacheDefaultEvictionPolicy.class);
 }
@@ -19,6 +19,7 @@
 package org.apache.bookkeeper.mledger.impl.cache;
 
 import java.util.List;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
 
 /**
  * Cache eviction policy abstraction interface.
@@ -34,4 +35,44 @@ public interface EntryCacheEvictionPolicy {
      *            the minimum size in bytes to be freed
      */
     void doEviction(List<EntryCache> caches, long sizeToFree);
+
+    /**
+     * Notify the policy that a range of entries was requested by a reader, whether it was found in the cache or not.
+     *
+     * @param ledgerId
+     *            the ledger id
+     * @param firstEntry
+     *            the first entry of the range (inclusive)
+     * @param lastEntry
+     *            the last entry of the range (inclusive)
+     */
+    default void recordAccess(long ledgerId, long firstEntry, long lastEntry) {
+    }
+
+    /**
+     * Notify the policy that an entry added to a managed ledger was inserted in its cache. Entries read from the
+     * storage and inserted in the cache are not notified.
+     *
+     * @param ml
+     *            the managed ledger owning the entry
+     * @param ledgerId
+     *            the ledger id
+     * @param entryId
+     *            the entry id
+     */
+    default void recordInsertion(ManagedLedgerImpl ml, long ledgerId, long entryId) {
+    }
+
+    /**
+     * Check whether an entry that was read from the storage should be inserted in the cache.
+     *
+     * @param ledgerId
+     *            the ledger id
+     * @param entryId
+     *            the entry id
+     * @return true if the entry should be cached
+     */
+    default boolean shouldAdmit(long ledgerId, long entryId) {
+        return true;
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Admission-aware eviction policy, inspired by TinyLFU.
+ *
+ * <p/>The policy keeps an approximate count of the accesses to each entry:
+ * <ul>
+ *     <li>every read request counts as one access to each of the requested entries, whether they are cached or
+ *     not</li>
+ *     <li>an entry inserted by a write counts as one access for each of the active cursors of the managed ledger,
+ *     since these cursors are about to read it</li>
+ * </ul>
+ *
+ * <p/>The counts are used in two ways:
+ * <ul>
+ *     <li>an entry read from the storage is only admitted in the cache if it was requested at least
+ *     admissionThreshold times, so that the backlog read by a single cursor doesn't push the tail entries out of
+ *     the cache</li>
+ *     <li>when evicting, the entries accessed at least protectionThreshold times are kept, unless dropping the
+ *     other entries is not enough</li>
+ * </ul>
+ *
+ * <p/>The caches to evict from are chosen as in {@link EntryCacheDefaultEvictionPolicy}.
+ */
+public class EntryCacheTinyLfuEvictionPolicy extends EntryCacheDefaultEvictionPolicy {
+
+    private static final int DEFAULT_EXPECTED_ENTRIES = 256 * 1024;
+    private static final int DEFAULT_ADMISSION_THRESHOLD = 2;
+    private static final int DEFAULT_PROTECTION_THRESHOLD = 3;
+
+    private final FrequencySketch sketch;
+    private final int admissionThreshold;
+    private final int protectionThreshold;
+
+    public EntryCacheTinyLfuEvictionPolicy() {
+        this(DEFAULT_EXPECTED_ENTRIES, DEFAULT_ADMISSION_THRESHOLD, DEFAULT_PROTECTION_THRESHOLD);
+    }
+
+    public EntryCacheTinyLfuEvictionPolicy(int expectedEntries, int admissionThreshold, int protectionThreshold) {
+        checkArgument(admissionThreshold >= 0 && admissionThreshold <= FrequencySketch.MAX_FREQUENCY);
+        checkArgument(protectionThreshold > 0 && protectionThreshold <= FrequencySketch.MAX_FREQUENCY);
+        this.sketch = new FrequencySketch(expectedEntries);
+        this.admissionThreshold = admissionThreshold;
+        this.protectionThreshold = protectionThreshold;
+    }
+
+    @Override
+    public void recordAccess(long ledgerId, long firstEntry, long lastEntry) {
+        for (long entryId = firstEntry; entryId <= lastEntry; entryId++) {
+            sketch.increment(ledgerId, entryId);
+        }
+    }
+
+    @Override
+    public void recordInsertion(ManagedLedgerImpl ml, long ledgerId, long entryId) {
+        sketch.add(ledgerId, entryId, ml.getActiveCursors().size());
+    }
+
+    @Override
+    public boolean shouldAdmit(long ledgerId, long entryId) {
+        return sketch.frequency(ledgerId, entryId) >= admissionThreshold;
+    }
+
+    @Override
+    protected Pair<Integer, Long> evictEntries(EntryCache entryCache, long sizeToFree) {
+        return entryCache.evictEntries(sizeToFree, this::isProtected);
+    }
+
+    private boolean isProtected(PositionImpl position) {
+        return sketch.frequency(position.getLedgerId(), position.getEntryId()) >= protectionThreshold;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate access frequency of the entries, keyed by (ledgerId, entryId).
+ *
+ * <p/>This is a count-min sketch with 4 bits counters, packed 16 per long. Each key is mapped to 4 counters and its
+ * frequency is the minimum of them, so the estimate can only be higher than the real value. Once the number of
+ * recorded accesses reaches the sample size, all the counters are halved, so that the frequencies keep reflecting
+ * the recent accesses only.
+ *
+ * <p/>Updates are done with a CAS on each word, so concurrent increments are never lost, while the aging is done
+ * word by word and is not atomic with respect to the increments.
+ */
+class FrequencySketch {
+
+    static final int MAX_FREQUENCY = 15;
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+    private final AtomicLongArray table;
+    private final int tableMask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    /**
+     * @param expectedEntries
+     *            the number of entries whose frequency should be tracked with a good accuracy
+     */
+    FrequencySketch(int expectedEntries) {
+        checkArgument(expectedEntries > 0);
+        // Each key uses 4 counters and each word holds 16 counters
+        int words = Integer.highestOneBit(Math.max(1, expectedEntries / 4 - 1) << 1);
+        this.table = new AtomicLongArray(words);
+        this.tableMask = words - 1;
+        this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * expectedEntries);
+    }
+
+    /**
+     * Record one access to an entry.
+     */
+    void increment(long ledgerId, long entryId) {
+        add(ledgerId, entryId, 1);
+    }
+
+    /**
+     * Record several accesses to an entry, eg: the number of readers that are expected to read it.
+     */
+    void add(long ledgerId, long entryId, int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        long key = key(ledgerId, entryId);
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long hash = hash(key, i);
+            added |= incrementAt((int) (hash >>> 32) & tableMask, (int) hash & 0xf, count);
+        }
+
+        if (added && additions.incrementAndGet() >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * @return the estimated number of accesses to an entry, capped to {@link #MAX_FREQUENCY}
+     */
+    int frequency(long ledgerId, long entryId) {
+        long key = key(ledgerId, entryId);
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long hash = hash(key, i);
+            long word = table.get((int) (hash >>> 32) & tableMask);
+            int counter = (int) ((word >>> (((int) hash & 0xf) << 2)) & 0xfL);
+            frequency = Math.min(frequency, counter);
+        }
+        return frequency;
+    }
+
+    private boolean incrementAt(int index, int counterIdx, int count) {
+        int shift = counterIdx << 2;
+        while (true) {
+            long word = table.get(index);
+            long counter = (word >>> shift) & 0xfL;
+            if (counter == MAX_FREQUENCY) {
+                return false;
+            }
+
+            long newCounter = Math.min(MAX_FREQUENCY, counter + count);
+            long newWord = (word & ~(0xfL << shift)) | (newCounter << shift);
+            if (table.compareAndSet(index, word, newWord)) {
+                return true;
+            }
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length(); i++) {
+            long word;
+            do {
+                word = table.get(i);
+            } while (!table.compareAndSet(i, word, (word >>> 1) & RESET_MASK));
+        }
+        additions.set(sampleSize / 2);
+    }
+
+    private static long key(long ledgerId, long entryId) {
+        return ledgerId * 0x9e3779b97f4a7c15L + entryId;
+    }
+
+    private static long hash(long key, int i) {
+        long hash = (key + SEEDS[i]) * SEEDS[i];
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -129,6 +129,10 @@ public class InflightReadsLimiter {
         PULSAR_ML_READS_AVAILABLE_BUFFER_SIZE.set(remainingBytes);
     }
 
+    public long getMaxReadsInFlightSize() {
+        return maxReadsInFlightSize;
+    }
+
     public boolean isDisabled() {
         return maxReadsInFlightSize <= 0;
     }
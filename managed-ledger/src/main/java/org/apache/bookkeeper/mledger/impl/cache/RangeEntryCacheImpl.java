@@ -30,6 +30,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import org.apache.bookkeeper.client.api.BKException;
 import org.apache.bookkeeper.client.api.LedgerEntry;
 import org.apache.bookkeeper.client.api.ReadHandle;
@@ -100,6 +101,10 @@ public class RangeEntryCacheImpl implements EntryCache {
         return ml.getName();
     }
 
+    PendingReadsManager getPendingReadsManager() {
+        return pendingReadsManager;
+    }
+
     @VisibleForTesting
     InflightReadsLimiter getPendingReadsLimiter() {
         return manager.getInflightReadsLimiter();
@@ -158,6 +163,15 @@ public class RangeEntryCacheImpl implements EntryCache {
         }
     }
 
+    @Override
+    public boolean insertAddedEntry(EntryImpl entry) {
+        if (!insert(entry)) {
+            return false;
+        }
+        manager.getEvictionPolicy().recordInsertion(ml, entry.getLedgerId(), entry.getEntryId());
+        return true;
+    }
+
     private ByteBuf copyEntry(EntryImpl entry) {
         // Copy the entry into a buffer owned by the cache. The reason is that the incoming entry is retaining a buffer
         // from netty, usually allocated in 64Kb chunks. So if we just retain the entry without copying it, we might
@@ -241,7 +255,8 @@ public class RangeEntryCacheImpl implements EntryCache {
         if (log.isDebugEnabled()) {
             log.debug("[{}] Reading entry ledger {}: {}", ml.getName(), lh.getId(), position.getEntryId());
         }
-        EntryImpl entry = entries.get(position);
+        manager.getEvictionPolicy().recordAccess(lh.getId(), position.getEntryId(), position.getEntryId());
+        EntryImpl entry = getCachedEntry(position);
         if (entry != null) {
             EntryImpl cachedEntry = EntryImpl.create(entry);
             entry.release();
@@ -279,8 +294,21 @@ public class RangeEntryCacheImpl implements EntryCache {
     @Override
     public void asyncReadEntry(ReadHandle lh, long firstEntry, long lastEntry, boolean shouldCacheEntry,
             final ReadEntriesCallback callback, Object ctx) {
+        asyncReadEntry(lh, firstEntry, lastEntry, shouldCacheEntry, ReaderType.UNKNOWN, callback, ctx);
+    }
+
+    @Override
+    public void asyncReadEntry(ReadHandle lh, long firstEntry, long lastEntry, boolean shouldCacheEntry,
+            boolean catchUpRead, final ReadEntriesCallback callback, Object ctx) {
+        asyncReadEntry(lh, firstEntry, lastEntry, shouldCacheEntry,
+                catchUpRead ? ReaderType.CATCH_UP : ReaderType.TAILING, callback, ctx);
+    }
+
+    private void asyncReadEntry(ReadHandle lh, long firstEntry, long lastEntry, boolean shouldCacheEntry,
+            ReaderType readerType, final ReadEntriesCallback callback, Object ctx) {
         try {
-            asyncReadEntry0(lh, firstEntry, lastEntry, shouldCacheEntry, callback, ctx);
+            manager.getEvictionPolicy().recordAccess(lh.getId(), firstEntry, lastEntry);
+            asyncReadEntry0WithLimits(lh, firstEntry, lastEntry, shouldCacheEntry, readerType, callback, ctx, null);
         } catch (Throwable t) {
             log.warn("failed to read entries for {}--{}-{}", lh.getId(), firstEntry, lastEntry, t);
             // invalidate all entries related to ledger from the cache (it might happen if entry gets corrupt
@@ -294,14 +322,16 @@ public class RangeEntryCacheImpl implements EntryCache {
     @SuppressWarnings({ "unchecked", "rawtypes" })
     void asyncReadEntry0(ReadHandle lh, long firstEntry, long lastEntry, boolean shouldCacheEntry,
             final ReadEntriesCallback callback, Object ctx) {
-        asyncReadEntry0WithLimits(lh, firstEntry, lastEntry, shouldCacheEntry, callback, ctx, null);
+        asyncReadEntry0WithLimits(lh, firstEntry, lastEntry, shouldCacheEntry, ReaderType.UNKNOWN, callback, ctx,
+                null);
     }
 
     void asyncReadEntry0WithLimits(ReadHandle lh, long firstEntry, long lastEntry, boolean shouldCacheEntry,
-        final ReadEntriesCallback originalCallback, Object ctx, InflightReadsLimiter.Handle handle) {
+        ReaderType readerType, final ReadEntriesCallback originalCallback, Object ctx,
+        InflightReadsLimiter.Handle handle) {
 
         final AsyncCallbacks.ReadEntriesCallback callback =
-                handlePendingReadsLimits(lh, firstEntry, lastEntry, shouldCacheEntry,
+                handlePendingReadsLimits(lh, firstEntry, lastEntry, shouldCacheEntry, readerType,
                         originalCallback, ctx, handle);
         if (callback == null) {
             return;
@@ -316,7 +346,7 @@ public class RangeEntryCacheImpl implements EntryCache {
             log.debug("[{}] Reading entries range ledger {}: {} to {}", ml.getName(), ledgerId, firstEntry, lastEntry);
         }
 
-        Collection<EntryImpl> cachedEntries = entries.getRange(firstPosition, lastPosition);
+        Collection<EntryImpl> cachedEntries = getCachedEntries(firstPosition, lastPosition);
 
         if (cachedEntries.size() == entriesToRead) {
             long totalCachedSize = 0;
@@ -330,6 +360,10 @@ public class RangeEntryCacheImpl implements EntryCache {
             }
 
             manager.mlFactoryMBean.recordCacheHits(entriesToReturn.size(), totalCachedSize);
+            if (readerType != ReaderType.UNKNOWN) {
+                manager.mlFactoryMBean.recordReaderCacheHits(readerType == ReaderType.CATCH_UP,
+                        entriesToReturn.size(), totalCachedSize);
+            }
             if (log.isDebugEnabled()) {
                 log.debug("[{}] Ledger {} -- Found in cache entries: {}-{}", ml.getName(), ledgerId, firstEntry,
                         lastEntry);
@@ -341,6 +375,9 @@ public class RangeEntryCacheImpl implements EntryCache {
             if (!cachedEntries.isEmpty()) {
                 cachedEntries.forEach(entry -> entry.release());
             }
+            if (readerType != ReaderType.UNKNOWN) {
+                manager.mlFactoryMBean.recordReaderCacheMisses(readerType == ReaderType.CATCH_UP, entriesToRead);
+            }
 
             // Read all the entries from bookkeeper
             pendingReadsManager.readEntries(lh, firstEntry, lastEntry,
@@ -349,9 +386,32 @@ public class RangeEntryCacheImpl implements EntryCache {
         }
     }
 
+    /**
+     * Get an entry from the cache. The returned entry is retained and must be released by the caller.
+     *
+     * @param position the position of the entry
+     * @return the cached entry or null if the entry is not in the cache
+     */
+    EntryImpl getCachedEntry(PositionImpl position) {
+        return entries.get(position);
+    }
+
+    /**
+     * Get all the entries present in the cache for a range of positions. The returned entries are retained and must
+     * be released by the caller.
+     *
+     * @param firstPosition the first position of the range (inclusive)
+     * @param lastPosition the last position of the range (inclusive)
+     * @return the cached entries, possibly fewer than the entries in the range
+     */
+    Collection<EntryImpl> getCachedEntries(PositionImpl firstPosition, PositionImpl lastPosition) {
+        return entries.getRange(firstPosition, lastPosition);
+    }
+
     private AsyncCallbacks.ReadEntriesCallback handlePendingReadsLimits(ReadHandle lh,
                                                                 long firstEntry, long lastEntry,
                                                                 boolean shouldCacheEntry,
+                                                                ReaderType readerType,
                                                                 AsyncCallbacks.ReadEntriesCallback originalCallback,
                                                                 Object ctx, InflightReadsLimiter.Handle handle) {
         InflightReadsLimiter pendingReadsLimiter = getPendingReadsLimiter();
@@ -379,7 +439,7 @@ public class RangeEntryCacheImpl implements EntryCache {
                 return null;
             }
             ml.getExecutor().execute(() -> {
-                asyncReadEntry0WithLimits(lh, firstEntry, lastEntry, shouldCacheEntry,
+                asyncReadEntry0WithLimits(lh, firstEntry, lastEntry, shouldCacheEntry, readerType,
                         originalCallback, ctx, newHandle);
             });
             return null;
@@ -442,7 +502,8 @@ public class RangeEntryCacheImpl implements EntryCache {
                                     EntryImpl entry = RangeEntryCacheManagerImpl.create(e, interceptor);
                                     entriesToReturn.add(entry);
                                     totalSize += entry.getLength();
-                                    if (shouldCacheEntry) {
+                                    if (shouldCacheEntry && manager.getEvictionPolicy()
+                                            .shouldAdmit(e.getLedgerId(), e.getEntryId())) {
                                         EntryImpl cacheEntry = EntryImpl.create(entry);
                                         insert(cacheEntry);
                                         cacheEntry.release();
@@ -503,11 +564,40 @@ public class RangeEntryCacheImpl implements EntryCache {
         return evicted;
     }
 
+    @Override
+    public Pair<Integer, Long> evictEntries(long sizeToFree, Predicate<PositionImpl> isProtected) {
+        checkArgument(sizeToFree > 0);
+        Pair<Integer, Long> evicted = entries.evictLeastAccessedEntries(sizeToFree, isProtected);
+        int evictedEntries = evicted.getLeft();
+        long evictedSize = evicted.getRight();
+        if (log.isDebugEnabled()) {
+            log.debug(
+                    "[{}] Doing cache eviction of at least {} Mb, keeping protected entries -- Deleted {} entries "
+                            + "- Total size deleted: {} Mb -- Current Size: {} Mb",
+                    ml.getName(), sizeToFree / MB, evictedEntries, evictedSize / MB, entries.getSize() / MB);
+        }
+        manager.entriesRemoved(evictedSize, evictedEntries);
+        return evicted;
+    }
+
     @Override
     public void invalidateEntriesBeforeTimestamp(long timestamp) {
         Pair<Integer, Long> evictedPair = entries.evictLEntriesBeforeTimestamp(timestamp);
         manager.entriesRemoved(evictedPair.getRight(), evictedPair.getLeft());
     }
 
+    /**
+     * The kind of reader a range read is done for, used to account the cache hits and misses.
+     */
+    enum ReaderType {
+        TAILING,
+        CATCH_UP,
+        /**
+         * Reads done for internal purposes, eg: the parts of a read that are not covered by a pending read, that are
+         * not accounted per reader type.
+         */
+        UNKNOWN
+    }
+
     private static final Logger log = LoggerFactory.getLogger(RangeEntryCacheImpl.class);
 }
@@ -63,20 +63,31 @@ public class RangeEntryCacheManagerImpl implements EntryCacheManager {
                 factory.getConfig().getManagedLedgerMaxReadsInFlightSize());
         this.evictionTriggerThreshold = (long) (maxSize * evictionTriggerThresholdPercent);
         this.cacheEvictionWatermark = factory.getConfig().getCacheEvictionWatermark();
-        this.evictionPolicy = new EntryCacheDefaultEvictionPolicy();
+        this.evictionPolicy = createEvictionPolicy(factory.getConfig().getEntryCacheEvictionPolicyClassName());
         this.mlFactory = factory;
         this.mlFactoryMBean = factory.getMbean();
 
         log.info("Initialized managed-ledger entry cache of {} Mb", maxSize / MB);
     }
 
+    private static EntryCacheEvictionPolicy createEvictionPolicy(String className) {
+        if (className == null || className.equals(EntryCacheDefaultEvictionPolicy.class.getName())) {
+            return new EntryCacheDefaultEvictionPolicy();
+        }
+        try {
+            return (EntryCacheEvictionPolicy) Class.forName(className).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Failed to create entry cache eviction policy " + className, e);
+        }
+    }
+
     public EntryCache getEntryCache(ManagedLedgerImpl ml) {
         if (maxSize == 0) {
             // Cache is disabled
             return new EntryCacheDisabled(ml);
         }
 
-        EntryCache newEntryCache = new RangeEntryCacheImpl(this, ml, mlFactory.getConfig().isCopyEntriesInCache());
+        EntryCache newEntryCache = newEntryCache(ml);
         EntryCache currentEntryCache = caches.putIfAbsent(ml.getName(), newEntryCache);
         if (currentEntryCache != null) {
             return currentEntryCache;
@@ -85,6 +96,10 @@ public class RangeEntryCacheManagerImpl implements EntryCacheManager {
         }
     }
 
+    protected EntryCache newEntryCache(ManagedLedgerImpl ml) {
+        return new RangeEntryCacheImpl(this, ml, mlFactory.getConfig().isCopyEntriesInCache());
+    }
+
     @Override
     public void updateCacheSizeAndThreshold(long maxSize) {
         this.maxSize = maxSize;
@@ -125,7 +140,7 @@ public class RangeEntryCacheManagerImpl implements EntryCacheManager {
                         sizeToEvict / MB);
 
                 try {
-                    evictionPolicy.doEviction(Lists.newArrayList(caches.values()), sizeToEvict);
+                    doEviction(sizeToEvict);
 
                     long endTime = System.nanoTime();
                     double durationMs = TimeUnit.NANOSECONDS.toMicros(endTime - startTime) / 1000.0;
@@ -142,6 +157,15 @@ public class RangeEntryCacheManagerImpl implements EntryCacheManager {
         return currentSize < maxSize;
     }
 
+    /**
+     * Free at least the given amount of memory from the cache.
+     *
+     * @param sizeToEvict the size to free, in bytes
+     */
+    protected void doEviction(long sizeToEvict) {
+        evictionPolicy.doEviction(Lists.newArrayList(caches.values()), sizeToEvict);
+    }
+
     void entryAdded(long size) {
         mlFactoryMBean.recordCacheInsertion();
         currentSize.addAndGet(size);
@@ -197,6 +221,10 @@ public class RangeEntryCacheManagerImpl implements EntryCacheManager {
         return returnEntry;
     }
 
+    EntryCacheEvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
     public InflightReadsLimiter getInflightReadsLimiter() {
         return inflightReadsLimiter;
     }
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl.cache;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pulsar.common.util.collections.ConcurrentLongLongPairHashMap;
+import org.apache.pulsar.common.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry cache of a managed ledger backed by the off-heap segments of a {@link SegmentedEntryCacheManagerImpl}.
+ *
+ * <p/>The cache only keeps a primitive index from (ledgerId, entryId) to (offset, length) of the entry in the
+ * segments, and the keys of its entries in each slot of the ring, to remove them from the index when the segment in
+ * the slot is dropped. Cached entries share the memory of the segments. Reads from storage and pending reads are
+ * handled as in {@link RangeEntryCacheImpl}.
+ */
+public class SegmentedEntryCacheImpl extends RangeEntryCacheImpl {
+
+    private final SegmentedEntryCacheManagerImpl manager;
+    private final ConcurrentLongLongPairHashMap index = ConcurrentLongLongPairHashMap.newBuilder()
+            .autoShrink(true)
+            .build();
+    private final AtomicLong size = new AtomicLong(0);
+    private final SegmentKeys[] segmentKeys;
+
+    // Entries before this position have been invalidated, they are removed from the index at the next eviction
+    private volatile PositionImpl invalidatedPosition = PositionImpl.EARLIEST;
+
+    /**
+     * The (ledgerId, entryId) pairs of the entries written in a slot of the ring.
+     */
+    private static final class SegmentKeys {
+        long segment = -1;
+        long[] keys = new long[16];
+        int size = 0;
+
+        void add(long ledgerId, long entryId) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            keys[size++] = ledgerId;
+            keys[size++] = entryId;
+        }
+    }
+
+    public SegmentedEntryCacheImpl(SegmentedEntryCacheManagerImpl manager, ManagedLedgerImpl ml) {
+        super(manager, ml, true);
+        this.manager = manager;
+        this.segmentKeys = new SegmentKeys[manager.getSegmentsCount()];
+        for (int i = 0; i < segmentKeys.length; i++) {
+            segmentKeys[i] = new SegmentKeys();
+        }
+    }
+
+    @Override
+    public boolean insert(EntryImpl entry) {
+        if (!manager.hasSpaceInCache()) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Skipping cache while doing eviction: {} - size: {}", ml.getName(), entry.getPosition(),
+                        entry.getLength());
+            }
+            return false;
+        }
+
+        long ledgerId = entry.getLedgerId();
+        long entryId = entry.getEntryId();
+        if (index.containsKey(ledgerId, entryId)) {
+            return false;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Adding entry to cache: {}:{} - size: {}", ml.getName(), ledgerId, entryId,
+                    entry.getLength());
+        }
+
+        long offset = manager.append(entry.getDataBuffer());
+        if (offset < 0) {
+            return false;
+        }
+        int length = entry.getLength();
+        if (index.putIfAbsent(ledgerId, entryId, offset, length)) {
+            size.addAndGet(length);
+            recordKey(offset, ledgerId, entryId);
+            return true;
+        } else {
+            // The space used in the segment is reclaimed when the segment is dropped
+            return false;
+        }
+    }
+
+    private void recordKey(long offset, long ledgerId, long entryId) {
+        long segment = manager.segmentOf(offset);
+        SegmentKeys keys = segmentKeys[manager.slotOf(segment)];
+        synchronized (keys) {
+            if (keys.segment != segment) {
+                // First entry in this segment: the previous segment of the slot has already been dropped
+                purge(keys, PositionImpl.EARLIEST, null);
+                keys.segment = segment;
+                manager.register(this, segment);
+            }
+            keys.add(ledgerId, entryId);
+        }
+    }
+
+    /**
+     * Remove from the index the entries of the given slot whose segment has been dropped.
+     */
+    void segmentDropped(int slot) {
+        SegmentKeys keys = segmentKeys[slot];
+        synchronized (keys) {
+            purge(keys, PositionImpl.EARLIEST, null);
+        }
+    }
+
+    /**
+     * Remove from the index the entries whose segment has been dropped and the ones before the given position.
+     *
+     * @param removed if not null, the number of entries removed and their size are added to it
+     */
+    private void purge(SegmentKeys keys, PositionImpl invalidatedPosition, long[] removed) {
+        long invalidatedLedgerId = invalidatedPosition.getLedgerId();
+        long invalidatedEntryId = invalidatedPosition.getEntryId();
+        int kept = 0;
+        for (int i = 0; i < keys.size; i += 2) {
+            long ledgerId = keys.keys[i];
+            long entryId = keys.keys[i + 1];
+            LongPair location = index.get(ledgerId, entryId);
+            if (location == null) {
+                continue;
+            }
+            if (manager.isValid(location.first) && (ledgerId > invalidatedLedgerId
+                    || (ledgerId == invalidatedLedgerId && entryId >= invalidatedEntryId))) {
+                keys.keys[kept++] = ledgerId;
+                keys.keys[kept++] = entryId;
+            } else if (index.remove(ledgerId, entryId, location.first, location.second)) {
+                size.addAndGet(-location.second);
+                if (removed != null) {
+                    removed[0]++;
+                    removed[1] += location.second;
+                }
+            }
+        }
+        keys.size = kept;
+    }
+
+    @Override
+    EntryImpl getCachedEntry(PositionImpl position) {
+        return getCachedEntry(position.getLedgerId(), position.getEntryId());
+    }
+
+    private EntryImpl getCachedEntry(long ledgerId, long entryId) {
+        LongPair location = index.get(ledgerId, entryId);
+        if (location == null) {
+            return null;
+        }
+
+        ByteBuf data = manager.read(location.first, (int) location.second);
+        if (data == null) {
+            // The segment has been dropped
+            if (index.remove(ledgerId, entryId, location.first, location.second)) {
+                size.addAndGet(-location.second);
+            }
+            return null;
+        }
+
+        EntryImpl entry = EntryImpl.create(ledgerId, entryId, data);
+        data.release();
+        return entry;
+    }
+
+    @Override
+    Collection<EntryImpl> getCachedEntries(PositionImpl firstPosition, PositionImpl lastPosition) {
+        long ledgerId = firstPosition.getLedgerId();
+        int entriesCount = (int) (lastPosition.getEntryId() - firstPosition.getEntryId()) + 1;
+        List<EntryImpl> entries = new ArrayList<>(entriesCount);
+        for (long entryId = firstPosition.getEntryId(); entryId <= lastPosition.getEntryId(); entryId++) {
+            EntryImpl entry = getCachedEntry(ledgerId, entryId);
+            if (entry == null) {
+                // The read will go to storage anyway, there is no need to read the rest of the range
+                entries.forEach(EntryImpl::release);
+                return Collections.emptyList();
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    @Override
+    public void invalidateEntries(PositionImpl lastPosition) {
+        // The memory is only released when a whole segment is dropped, so just record the position and remove the
+        // invalidated entries from the index at the next eviction
+        if (lastPosition.compareTo(invalidatedPosition) > 0) {
+            invalidatedPosition = lastPosition;
+        }
+    }
+
+    @Override
+    public void invalidateAllEntries(long ledgerId) {
+        long[] removedSize = new long[1];
+        int removedEntries = index.removeIf((key1, key2, offset, length) -> {
+            if (key1 == ledgerId) {
+                removedSize[0] += length;
+                return true;
+            }
+            return false;
+        });
+        size.addAndGet(-removedSize[0]);
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Invalidated all entries on ledger {} - Entries removed: {} - Size removed: {}",
+                    ml.getName(), ledgerId, removedEntries, removedSize[0]);
+        }
+        getPendingReadsManager().invalidateLedger(ledgerId);
+    }
+
+    @Override
+    public void invalidateEntriesBeforeTimestamp(long timestamp) {
+        // The index is cleaned up when the manager notifies the dropped segments
+        manager.evictSegmentsBeforeTimestamp(timestamp);
+    }
+
+    @Override
+    public void clear() {
+        for (SegmentKeys keys : segmentKeys) {
+            synchronized (keys) {
+                keys.segment = -1;
+                keys.size = 0;
+            }
+        }
+        index.clear();
+        size.set(0);
+        getPendingReadsManager().clear();
+    }
+
+    @Override
+    public long getSize() {
+        return size.get();
+    }
+
+    @Override
+    public Pair<Integer, Long> evictEntries(long sizeToFree) {
+        // Eviction is driven by the manager dropping whole segments, here we can only remove the invalidated entries
+        // from the index
+        PositionImpl invalidatedPosition = this.invalidatedPosition;
+        long[] removed = new long[2];
+        for (SegmentKeys keys : segmentKeys) {
+            synchronized (keys) {
+                purge(keys, invalidatedPosition, removed);
+            }
+        }
+        return Pair.of((int) removed[0], removed[1]);
+    }
+
+    @Override
+    public Pair<Integer, Long> evictEntries(long sizeToFree, Predicate<PositionImpl> isProtected) {
+        // Single entries cannot be kept in place when a segment is dropped
+        return evictEntries(sizeToFree);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedEntryCacheImpl.class);
+}
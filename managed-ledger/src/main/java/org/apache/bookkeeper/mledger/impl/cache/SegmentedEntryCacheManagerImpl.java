@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.IllegalReferenceCountException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerFactoryImpl;
+import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry cache manager that stores the cached entries of all the managed ledgers in a ring of large off-heap
+ * segments, similar to the BookKeeper {@code WriteCache}.
+ *
+ * <p/>Entries are appended into the current segment and each managed ledger keeps a primitive index from
+ * (ledgerId, entryId) to the location of the entry in the ring. When the ring is full, or when the cache goes above
+ * its eviction threshold, the oldest segment is dropped as a whole, so the eviction cost depends on the number of
+ * segments and on the number of entries they hold, not on the number of cached entries. Each
+ * {@link SegmentedEntryCacheImpl} that wrote into a segment is notified when the segment is dropped, to remove the
+ * entries of the segment from its index.
+ *
+ * <p/>Each location is a "global offset": the number of bytes written in the ring since its creation. The segment
+ * holding an entry is {@code offset / segmentSize}, and every offset lower than {@link #firstValidOffset} belongs
+ * to a segment that has been dropped.
+ *
+ * <p/>Appenders reserve their space in the current segment with a CAS on the write offset and copy their data
+ * concurrently, the lock on the manager is only taken to start or drop a segment. Cached entries are handed out as
+ * retained slices of the segment buffer, without any copy. A dropped segment is only reused if its buffer is not
+ * retained anymore, otherwise the buffer is left to the entries still in use and a new one is allocated, so the
+ * memory used by the cache can temporarily go above its max size while old entries are being dispatched.
+ */
+public class SegmentedEntryCacheManagerImpl extends RangeEntryCacheManagerImpl {
+
+    // The usage of a segment packs its number of entries in the upper 32 bits and its size in the lower 32 bits
+    private static final long ENTRY = 1L << 32;
+    private static final long SIZE_MASK = ENTRY - 1;
+
+    private final int segmentsCount;
+
+    private volatile Segments segments;
+    private volatile long firstValidOffset = 0;
+    private final AtomicLong writeOffset = new AtomicLong(0);
+
+    // Segment being written, only changed while holding the lock on "this"
+    private volatile long currentSegment = -1;
+
+    private static final class Segment {
+        volatile ByteBuf buffer;
+        final AtomicLong usage = new AtomicLong(0);
+        volatile long lastWriteTimestamp;
+        // Caches that have entries in the segment, to notify when the segment is dropped
+        final Set<SegmentedEntryCacheImpl> caches = ConcurrentHashMap.newKeySet();
+    }
+
+    private static final class Segments {
+        final int segmentSize;
+        final Segment[] slots;
+
+        Segments(int segmentsCount, int segmentSize) {
+            this.segmentSize = segmentSize;
+            this.slots = new Segment[segmentsCount];
+            for (int i = 0; i < segmentsCount; i++) {
+                slots[i] = new Segment();
+            }
+        }
+    }
+
+    public SegmentedEntryCacheManagerImpl(ManagedLedgerFactoryImpl factory) {
+        super(factory);
+        this.segmentsCount = Math.max(2, factory.getConfig().getEntryCacheSegmentsCount());
+        this.segments = new Segments(segmentsCount, segmentSize(getMaxSize()));
+        log.info("Initialized segmented managed-ledger entry cache with {} segments of {} Mb", segmentsCount,
+                segments.segmentSize / MB);
+    }
+
+    private int segmentSize(long maxSize) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxSize / segmentsCount));
+    }
+
+    @Override
+    protected EntryCache newEntryCache(ManagedLedgerImpl ml) {
+        return new SegmentedEntryCacheImpl(this, ml);
+    }
+
+    int slotOf(long segment) {
+        return (int) (segment % segmentsCount);
+    }
+
+    long segmentOf(long offset) {
+        return offset / segments.segmentSize;
+    }
+
+    /**
+     * Copy the readable bytes of the buffer into the current segment.
+     *
+     * @param data the data to cache, its reader index is not modified
+     * @return the global offset of the cached data, or -1 if the data cannot be cached
+     */
+    long append(ByteBuf data) {
+        int length = data.readableBytes();
+        while (true) {
+            Segments segments = this.segments;
+            int segmentSize = segments.segmentSize;
+            if (length > segmentSize) {
+                return -1;
+            }
+
+            long current = currentSegment;
+            long expectedOffset = writeOffset.get();
+            // Entries are never written before the current segment and never span across two segments
+            long offset = Math.max(expectedOffset, current * segmentSize);
+            int offsetInSegment = (int) (offset % segmentSize);
+            if (offsetInSegment + length > segmentSize) {
+                offset += segmentSize - offsetInSegment;
+                offsetInSegment = 0;
+            }
+
+            long segment = offset / segmentSize;
+            if (segment != current) {
+                if (!startSegment(segments, segment)) {
+                    return -1;
+                }
+            } else if (writeOffset.compareAndSet(expectedOffset, offset + length)) {
+                return write(segments, segments.slots[slotOf(segment)], offsetInSegment, offset, data, length)
+                        ? offset : -1;
+            }
+        }
+    }
+
+    private boolean write(Segments segments, Segment segment, int offsetInSegment, long offset, ByteBuf data,
+                          int length) {
+        ByteBuf buffer = segment.buffer;
+        if (buffer == null) {
+            return false;
+        }
+        try {
+            buffer.retain();
+        } catch (IllegalReferenceCountException e) {
+            return false;
+        }
+        try {
+            // Once retained, the buffer cannot be reused, unless the segment had already been dropped
+            if (!isValid(segments, offset)) {
+                return false;
+            }
+            buffer.setBytes(offsetInSegment, data, data.readerIndex(), length);
+        } finally {
+            buffer.release();
+        }
+        segment.usage.addAndGet(ENTRY | length);
+        segment.lastWriteTimestamp = System.nanoTime();
+        entryAdded(length);
+        return true;
+    }
+
+    private synchronized boolean startSegment(Segments segments, long segment) {
+        if (segments != this.segments || segment <= currentSegment
+                || (segment + 1) * segments.segmentSize <= firstValidOffset) {
+            // Another appender has started the segment or the cache was cleared or resized, just retry
+            return true;
+        }
+
+        int slot = slotOf(segment);
+        if (segment >= segmentsCount) {
+            // The slot is still holding an older segment: drop it before starting to overwrite its content
+            invalidateUpTo((segment - segmentsCount + 1) * segments.segmentSize);
+            dropSegment(segments, slot);
+        }
+
+        Segment next = segments.slots[slot];
+        ByteBuf buffer = next.buffer;
+        if (buffer != null && buffer.refCnt() > 1) {
+            // Entries of the dropped segment are still in use, they keep the buffer until they are released
+            next.buffer = null;
+            buffer.release();
+            buffer = null;
+        }
+        if (buffer == null) {
+            try {
+                buffer = RangeEntryCacheImpl.ALLOCATOR.directBuffer(segments.segmentSize, segments.segmentSize);
+            } catch (Throwable t) {
+                log.warn("Failed to allocate segment for entry cache: {}", t.getMessage());
+                return false;
+            }
+            next.buffer = buffer;
+        }
+        currentSegment = segment;
+        return true;
+    }
+
+    // Must be called before checking whether the buffers of the dropped segments are still retained
+    private void invalidateUpTo(long validOffset) {
+        if (validOffset > firstValidOffset) {
+            firstValidOffset = validOffset;
+        }
+    }
+
+    private void dropSegment(Segments segments, int slot) {
+        Segment segment = segments.slots[slot];
+        long usage = segment.usage.getAndSet(0);
+        if (usage != 0) {
+            entriesRemoved(usage & SIZE_MASK, (int) (usage >>> 32));
+        }
+        for (SegmentedEntryCacheImpl cache : segment.caches) {
+            cache.segmentDropped(slot);
+        }
+        segment.caches.clear();
+    }
+
+    /**
+     * Register a cache that has written entries into a segment, to notify it when the segment is dropped.
+     */
+    void register(SegmentedEntryCacheImpl cache, long segment) {
+        segments.slots[slotOf(segment)].caches.add(cache);
+    }
+
+    /**
+     * Read data from the ring.
+     *
+     * @param offset the global offset returned by {@link #append(ByteBuf)}
+     * @param length the length of the data
+     * @return a retained slice of the segment holding the data, or null if the segment has been dropped
+     */
+    ByteBuf read(long offset, int length) {
+        Segments segments = this.segments;
+        if (!isValid(segments, offset)) {
+            return null;
+        }
+        ByteBuf buffer = segments.slots[slotOf(offset / segments.segmentSize)].buffer;
+        if (buffer == null) {
+            return null;
+        }
+
+        ByteBuf data;
+        try {
+            data = buffer.retainedSlice((int) (offset % segments.segmentSize), length);
+        } catch (IllegalReferenceCountException | IndexOutOfBoundsException e) {
+            // The segments were released while clearing or resizing the cache
+            return null;
+        }
+
+        // Once retained, the buffer cannot be reused, unless the segment had already been dropped
+        if (!isValid(segments, offset)) {
+            data.release();
+            return null;
+        }
+        return data;
+    }
+
+    private boolean isValid(Segments segments, long offset) {
+        return offset >= firstValidOffset && segments == this.segments;
+    }
+
+    /**
+     * Check whether data written at the given offset is still in the ring.
+     */
+    boolean isValid(long offset) {
+        return offset >= firstValidOffset;
+    }
+
+    long getFirstValidOffset() {
+        return firstValidOffset;
+    }
+
+    /**
+     * Drop the oldest segments whose last write happened before the given timestamp. The segment currently being
+     * written is never dropped.
+     *
+     * @param maxTimestamp the timestamp, in nanoseconds
+     */
+    synchronized void evictSegmentsBeforeTimestamp(long maxTimestamp) {
+        Segments segments = this.segments;
+        long segment = firstValidOffset / segments.segmentSize;
+        while (segment < currentSegment) {
+            int slot = slotOf(segment);
+            Segment oldest = segments.slots[slot];
+            if (oldest.usage.get() != 0 && oldest.lastWriteTimestamp >= maxTimestamp) {
+                break;
+            }
+            segment++;
+            invalidateUpTo(segment * segments.segmentSize);
+            dropSegment(segments, slot);
+        }
+    }
+
+    /**
+     * Drop the oldest segments until the given size is freed. The segment currently being written is never dropped.
+     *
+     * @param sizeToEvict the size to free, in bytes
+     */
+    synchronized void evictSegments(long sizeToEvict) {
+        Segments segments = this.segments;
+        long segment = firstValidOffset / segments.segmentSize;
+        long evictedSize = 0;
+        while (evictedSize < sizeToEvict && segment < currentSegment) {
+            int slot = slotOf(segment);
+            evictedSize += segments.slots[slot].usage.get() & SIZE_MASK;
+            segment++;
+            invalidateUpTo(segment * segments.segmentSize);
+            dropSegment(segments, slot);
+        }
+    }
+
+    @Override
+    protected void doEviction(long sizeToEvict) {
+        // Single entries cannot be removed from the segments
+        evictSegments(sizeToEvict);
+    }
+
+    @Override
+    public void updateCacheSizeAndThreshold(long maxSize) {
+        super.updateCacheSizeAndThreshold(maxSize);
+        int newSegmentSize = segmentSize(maxSize);
+        Segments oldSegments;
+        synchronized (this) {
+            oldSegments = this.segments;
+            if (oldSegments.segmentSize == newSegmentSize) {
+                return;
+            }
+            this.segments = new Segments(segmentsCount, newSegmentSize);
+            // Continue writing from a boundary of the new segment size, so that all the data written with the old
+            // layout stays below the first valid offset
+            long offset = (writeOffset.get() / newSegmentSize + 1) * newSegmentSize;
+            writeOffset.set(offset);
+            invalidateUpTo(offset);
+            currentSegment = -1;
+            for (int slot = 0; slot < segmentsCount; slot++) {
+                dropSegment(oldSegments, slot);
+            }
+        }
+        releaseBuffers(oldSegments);
+        log.info("Resized segmented managed-ledger entry cache to {} segments of {} Mb", segmentsCount,
+                newSegmentSize / MB);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        synchronized (this) {
+            Segments segments = this.segments;
+            long offset = (writeOffset.get() / segments.segmentSize + 1) * segments.segmentSize;
+            writeOffset.set(offset);
+            invalidateUpTo(offset);
+            currentSegment = -1;
+            for (int slot = 0; slot < segmentsCount; slot++) {
+                dropSegment(segments, slot);
+            }
+            releaseBuffers(segments);
+        }
+    }
+
+    private static void releaseBuffers(Segments segments) {
+        for (Segment segment : segments.slots) {
+            ByteBuf buffer = segment.buffer;
+            if (buffer != null) {
+                segment.buffer = null;
+                buffer.release();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    int getSegmentSize() {
+        return segments.segmentSize;
+    }
+
+    int getSegmentsCount() {
+        return segmentsCount;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedEntryCacheManagerImpl.class);
+}
@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -182,6 +183,47 @@ public class RangeCache<Key extends Comparable<Key>, Value extends ReferenceCoun
         return Pair.of(removedEntries, removedSize);
     }
 
+    /**
+     * Evict entries in key order, skipping the protected ones. If skipping the protected entries is not enough to
+     * free minSize bytes, the remaining size is evicted in key order regardless of the protection.
+     *
+     * @param minSize
+     * @param isProtected
+     *            predicate telling whether the entry associated with a key should be kept in the first pass
+     * @return a pair containing the number of entries evicted and their total size
+     */
+    public Pair<Integer, Long> evictLeastAccessedEntries(long minSize, Predicate<Key> isProtected) {
+        checkArgument(minSize > 0);
+
+        long removedSize = 0;
+        int removedEntries = 0;
+
+        for (Map.Entry<Key, Value> entry : entries.entrySet()) {
+            if (removedSize >= minSize) {
+                break;
+            }
+            if (isProtected.test(entry.getKey())) {
+                continue;
+            }
+
+            Value value = entry.getValue();
+            if (entries.remove(entry.getKey(), value)) {
+                ++removedEntries;
+                removedSize += weighter.getSize(value);
+                value.release();
+            }
+        }
+
+        size.addAndGet(-removedSize);
+
+        if (removedSize < minSize) {
+            Pair<Integer, Long> evicted = evictLeastAccessedEntries(minSize - removedSize);
+            removedEntries += evicted.getLeft();
+            removedSize += evicted.getRight();
+        }
+        return Pair.of(removedEntries, removedSize);
+    }
+
     /**
     *
     * @param maxTimestamp the max timestamp of the entries to be evicted
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.ManagedLedger;
+import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactory;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
+import org.apache.bookkeeper.mledger.impl.cache.InflightReadsLimiter;
+import org.apache.bookkeeper.test.MockedBookKeeperTestCase;
+import org.awaitility.Awaitility;
+import org.testng.annotations.Test;
+
+public class CursorReadAheadPrefetcherTest extends MockedBookKeeperTestCase {
+
+    private static void assertEntries(List<Entry> entries, int first, int count) {
+        assertEquals(entries.size(), count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(new String(entries.get(i).getData(), UTF_8), "entry-" + (first + i));
+        }
+        entries.forEach(Entry::release);
+    }
+
+    private ManagedLedger openLedger(String name, int readAheadBatches) throws Exception {
+        return openLedger(factory, name, readAheadBatches);
+    }
+
+    private static ManagedLedger openLedger(ManagedLedgerFactory factory, String name, int readAheadBatches)
+            throws Exception {
+        ManagedLedgerConfig config = new ManagedLedgerConfig();
+        config.setReadAheadPrefetchBatches(readAheadBatches);
+        config.setReadEntryTimeoutSeconds(1);
+        return factory.open(name, config);
+    }
+
+    @Override
+    protected void setUpTestCase() throws Exception {
+        // The read-ahead is only enabled when the reads in flight are limited
+        factory.shutdown();
+        factory = newFactory(1024 * 1024);
+    }
+
+    private ManagedLedgerFactoryImpl newFactory(long maxReadsInFlightSize) throws Exception {
+        ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
+        config.setManagedLedgerMaxReadsInFlightSize(maxReadsInFlightSize);
+        return new ManagedLedgerFactoryImpl(metadataStore, bkc, config);
+    }
+
+    @Test(timeOut = 20000)
+    public void testReadAheadOfInactiveCursor() throws Exception {
+        ManagedLedger ledger = openLedger("my_test_ledger", 3);
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        for (int i = 0; i < 30; i++) {
+            ledger.addEntry(("entry-" + i).getBytes(UTF_8));
+        }
+        cursor.setInactive();
+        CursorReadAheadPrefetcher prefetcher = cursor.getReadAheadPrefetcher();
+
+        assertEntries(cursor.readEntries(5), 0, 5);
+        // 5-9, 10-14 and 15-19 are read ahead
+        assertEquals(prefetcher.getNumberOfBatches(), 3);
+
+        // Smaller reads keep the end of the batch for the next read
+        assertEntries(cursor.readEntries(3), 5, 3);
+        assertEquals(prefetcher.getNumberOfBatches(), 3);
+
+        // Bigger reads are served by several batches
+        assertEntries(cursor.readEntries(10), 8, 10);
+
+        // The batches are dropped when the cursor moves back
+        cursor.rewind();
+        assertEntries(cursor.readEntries(4), 0, 4);
+        assertEntries(cursor.readEntries(26), 4, 26);
+        assertFalse(cursor.hasMoreEntries());
+
+        cursor.close();
+        assertEquals(prefetcher.getNumberOfBatches(), 0);
+    }
+
+    @Test(timeOut = 20000)
+    public void testNoReadAheadOfActiveCursor() throws Exception {
+        ManagedLedger ledger = openLedger("my_test_ledger", 3);
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        for (int i = 0; i < 10; i++) {
+            ledger.addEntry(("entry-" + i).getBytes(UTF_8));
+        }
+        assertTrue(cursor.isActive());
+
+        assertEntries(cursor.readEntries(5), 0, 5);
+        assertEquals(cursor.getReadAheadPrefetcher().getNumberOfBatches(), 0);
+    }
+
+    @Test(timeOut = 20000)
+    public void testReadAheadDisabledByDefault() throws Exception {
+        ManagedLedger ledger = openLedger("my_test_ledger", 0);
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        assertNull(cursor.getReadAheadPrefetcher());
+    }
+
+    @Test(timeOut = 20000)
+    public void testNoReadAheadWithoutReadsInFlightLimit() throws Exception {
+        ManagedLedgerFactory factory1 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ManagedLedger ledger = openLedger(factory1, "my_test_ledger", 3);
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        for (int i = 0; i < 10; i++) {
+            ledger.addEntry(("entry-" + i).getBytes(UTF_8));
+        }
+        cursor.setInactive();
+
+        assertEntries(cursor.readEntries(5), 0, 5);
+        assertEquals(cursor.getReadAheadPrefetcher().getNumberOfBatches(), 0);
+        factory1.shutdown();
+    }
+
+    @Test(timeOut = 20000)
+    public void testEntriesReadAheadAreAccountedInReadsInFlight() throws Exception {
+        ManagedLedger ledger = openLedger("my_test_ledger", 3);
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        for (int i = 0; i < 30; i++) {
+            ledger.addEntry(("entry-" + i).getBytes(UTF_8));
+        }
+        cursor.setInactive();
+        InflightReadsLimiter limiter = ((ManagedLedgerImpl) ledger).getInflightReadsLimiter();
+
+        // The entries read ahead are retained until the cursor reads them
+        assertEntries(cursor.readEntries(5), 0, 5);
+        assertEquals(cursor.getReadAheadPrefetcher().getNumberOfBatches(), 3);
+        assertTrue(limiter.getRemainingBytes() < limiter.getMaxReadsInFlightSize());
+
+        cursor.close();
+        Awaitility.await().untilAsserted(
+                () -> assertEquals(limiter.getRemainingBytes(), limiter.getMaxReadsInFlightSize()));
+    }
+
+    @Test(timeOut = 20000)
+    public void testReadAheadBoundedByReadsInFlight() throws Exception {
+        // The first read is estimated to 5 entries of 10KB, more than the half of the budget
+        factory.shutdown();
+        factory = newFactory(64 * 1024);
+        ManagedLedger ledger = openLedger("my_test_ledger", 3);
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        for (int i = 0; i < 30; i++) {
+            ledger.addEntry(("entry-" + i).getBytes(UTF_8));
+        }
+        cursor.setInactive();
+
+        assertEntries(cursor.readEntries(5), 0, 5);
+        assertEquals(cursor.getReadAheadPrefetcher().getNumberOfBatches(), 0);
+    }
+
+    @Test(timeOut = 20000)
+    public void testReadAheadTimeout() throws Exception {
+        ManagedLedger ledger = openLedger("my_test_ledger", 1);
+        ManagedCursorImpl cursor = (ManagedCursorImpl) ledger.openCursor("c1");
+        for (int i = 0; i < 10; i++) {
+            ledger.addEntry(("entry-" + i).getBytes(UTF_8));
+        }
+        cursor.setInactive();
+        // Read the entries from the bookies
+        factory.getEntryCacheManager().clear();
+        InflightReadsLimiter limiter = ((ManagedLedgerImpl) ledger).getInflightReadsLimiter();
+
+        // The read of 0-4 completes, while the read ahead of 5-9 is stuck
+        CompletableFuture<Void> stuckRead = bkc.promiseAfter(1);
+        assertEntries(cursor.readEntries(5), 0, 5);
+        assertEquals(cursor.getReadAheadPrefetcher().getNumberOfBatches(), 1);
+
+        // The read ahead times out and the cursor reads the entries again, which joins the stuck read and times out
+        // as well instead of waiting for it
+        assertThrows(ManagedLedgerException.class, () -> cursor.readEntries(5));
+
+        stuckRead.complete(null);
+        assertEntries(cursor.readEntries(5), 5, 5);
+        assertFalse(cursor.hasMoreEntries());
+
+        // The entries of the stuck read are released
+        cursor.close();
+        Awaitility.await().untilAsserted(
+                () -> assertEquals(limiter.getRemainingBytes(), limiter.getMaxReadsInFlightSize()));
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
+import org.apache.bookkeeper.mledger.impl.cache.EntryCache;
+import org.apache.bookkeeper.mledger.impl.cache.EntryCacheTinyLfuEvictionPolicy;
+import org.apache.bookkeeper.test.MockedBookKeeperTestCase;
+import org.awaitility.Awaitility;
+import org.testng.annotations.Test;
+
+public class EntryCacheTinyLfuEvictionPolicyTest extends MockedBookKeeperTestCase {
+
+    private ManagedLedgerImpl ml;
+    private ManagedCursorContainer activeCursors;
+
+    @Override
+    protected void setUpTestCase() throws Exception {
+        activeCursors = new ManagedCursorContainer();
+        ml = mock(ManagedLedgerImpl.class);
+        when(ml.getName()).thenReturn("cache1");
+        when(ml.getExecutor()).thenReturn(executor);
+        when(ml.getMbean()).thenReturn(new ManagedLedgerMBeanImpl(ml));
+        when(ml.getConfig()).thenReturn(new ManagedLedgerConfig());
+        when(ml.getActiveCursors()).thenReturn(activeCursors);
+    }
+
+    private ManagedLedgerFactoryImpl createFactory(long maxCacheSize) throws Exception {
+        ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
+        config.setMaxCacheSize(maxCacheSize);
+        config.setEntryCacheEvictionPolicyClassName(EntryCacheTinyLfuEvictionPolicy.class.getName());
+        return new ManagedLedgerFactoryImpl(metadataStore, bkc, config);
+    }
+
+    private void addActiveCursors(int count) {
+        for (int i = 0; i < count; i++) {
+            ManagedCursor cursor = mock(ManagedCursor.class);
+            when(cursor.getName()).thenReturn("cursor-" + i);
+            activeCursors.add(cursor, null);
+        }
+    }
+
+    @Test(timeOut = 5000)
+    public void testAdmitBacklogReadsRequestedTwice() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = createFactory(1024);
+        EntryCache cache = factory2.getEntryCacheManager().getEntryCache(ml);
+
+        ReadHandle lh = EntryCacheTest.getLedgerHandle();
+        when(lh.getId()).thenReturn(0L);
+
+        // A single reader of the backlog doesn't bring the entries in the cache
+        readEntries(cache, lh, 0, 9, false).forEach(Entry::release);
+        assertEquals(cache.getSize(), 0);
+        verify(lh, times(1)).readAsync(0, 9);
+
+        // A second reader of the same entries does
+        readEntries(cache, lh, 0, 9, false).forEach(Entry::release);
+        assertEquals(cache.getSize(), 100);
+        verify(lh, times(2)).readAsync(0, 9);
+
+        readEntries(cache, lh, 0, 9, false).forEach(Entry::release);
+        verify(lh, times(2)).readAsync(0, 9);
+    }
+
+    @Test(timeOut = 5000)
+    public void testProtectEntriesExpectedByManyCursors() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = createFactory(100);
+        EntryCache cache = factory2.getEntryCacheManager().getEntryCache(ml);
+
+        // Entries 0-4 are written while 3 cursors are tailing the managed ledger
+        addActiveCursors(3);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(cache.insertAddedEntry(EntryImpl.create(0, i, new byte[10])));
+        }
+        activeCursors.removeCursor("cursor-0");
+        activeCursors.removeCursor("cursor-1");
+        activeCursors.removeCursor("cursor-2");
+        for (int i = 5; i < 10; i++) {
+            assertTrue(cache.insertAddedEntry(EntryImpl.create(0, i, new byte[10])));
+        }
+        assertEquals(cache.getSize(), 100);
+
+        // The next insertion triggers the eviction of 10 bytes, the oldest entries are kept since they are protected
+        assertFalse(cache.insertAddedEntry(EntryImpl.create(0, 10, new byte[10])));
+        Awaitility.await().untilAsserted(() -> assertEquals(cache.getSize(), 90));
+
+        ReadHandle lh = EntryCacheTest.getLedgerHandle();
+        when(lh.getId()).thenReturn(0L);
+        readEntries(cache, lh, 0, 4, false).forEach(Entry::release);
+        verify(lh, never()).readAsync(anyLong(), anyLong());
+        readEntries(cache, lh, 5, 5, false).forEach(Entry::release);
+        verify(lh, times(1)).readAsync(5, 5);
+    }
+
+    @Test(timeOut = 5000)
+    public void testReadmittedBacklogEntriesAreNotProtected() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = createFactory(100);
+        EntryCache cache = factory2.getEntryCacheManager().getEntryCache(ml);
+        addActiveCursors(3);
+
+        // Entries 0-4 are written while 3 cursors are tailing the managed ledger
+        for (int i = 0; i < 5; i++) {
+            assertTrue(cache.insertAddedEntry(EntryImpl.create(0, i, new byte[10])));
+        }
+
+        // Entries 5-9 are read twice from the backlog, they are admitted without the boost of the active cursors
+        ReadHandle lh = getLedgerHandle();
+        readEntries(cache, lh, 5, 9, true).forEach(Entry::release);
+        readEntries(cache, lh, 5, 9, true).forEach(Entry::release);
+        assertEquals(cache.getSize(), 100);
+        verify(lh, times(2)).readAsync(5, 9);
+
+        // The eviction drops a backlog entry rather than the older written entries
+        assertFalse(cache.insertAddedEntry(EntryImpl.create(0, 10, new byte[10])));
+        Awaitility.await().untilAsserted(() -> assertEquals(cache.getSize(), 90));
+        readEntries(cache, lh, 0, 4, false).forEach(Entry::release);
+        verify(lh, never()).readAsync(0, 4);
+        readEntries(cache, lh, 5, 5, true).forEach(Entry::release);
+        verify(lh, times(1)).readAsync(5, 5);
+    }
+
+    @Test(timeOut = 5000)
+    public void testHitRatiosByReaderType() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = createFactory(1024);
+        EntryCache cache = factory2.getEntryCacheManager().getEntryCache(ml);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cache.insert(EntryImpl.create(0, i, new byte[10])));
+        }
+
+        ReadHandle lh = EntryCacheTest.getLedgerHandle();
+        when(lh.getId()).thenReturn(0L);
+
+        // Tailing reader only hits the cache
+        readEntries(cache, lh, 0, 9, false).forEach(Entry::release);
+        // Catch-up reader hits once and misses once
+        readEntries(cache, lh, 0, 4, true).forEach(Entry::release);
+        readEntries(cache, lh, 10, 14, true).forEach(Entry::release);
+
+        ManagedLedgerFactoryMBeanImpl mbean = factory2.getMbean();
+        mbean.refreshStats(1, TimeUnit.SECONDS);
+        assertEquals(mbean.getTailingReadsCacheHitRatio(), 1.0);
+        assertEquals(mbean.getTailingReadsCacheHitsRate(), 10.0);
+        assertEquals(mbean.getTailingReadsCacheMissesRate(), 0.0);
+        assertEquals(mbean.getCatchUpReadsCacheHitRatio(), 0.5);
+        assertEquals(mbean.getCatchUpReadsCacheHitsRate(), 5.0);
+        assertEquals(mbean.getCatchUpReadsCacheMissesRate(), 5.0);
+
+        // Reads not done on behalf of a cursor are not accounted per reader type
+        readEntries(cache, lh, 0, 9).forEach(Entry::release);
+        mbean.refreshStats(1, TimeUnit.SECONDS);
+        assertEquals(mbean.getTailingReadsCacheHitsRate(), 0.0);
+        assertEquals(mbean.getCatchUpReadsCacheHitsRate(), 0.0);
+        assertEquals(mbean.getCacheHitsRate(), 10.0);
+    }
+
+    private static ReadHandle getLedgerHandle() {
+        ReadHandle lh = mock(ReadHandle.class);
+        when(lh.getId()).thenReturn(0L);
+        when(lh.readAsync(anyLong(), anyLong())).then(invocation -> {
+            long firstEntry = invocation.getArgument(0, Long.class);
+            long lastEntry = invocation.getArgument(1, Long.class);
+            List<LedgerEntry> entries = new ArrayList<>();
+            for (long entryId = firstEntry; entryId <= lastEntry; entryId++) {
+                entries.add(LedgerEntryImpl.create(0, entryId, 10, Unpooled.wrappedBuffer(new byte[10])));
+            }
+            LedgerEntries ledgerEntries = mock(LedgerEntries.class);
+            when(ledgerEntries.iterator()).then(i -> entries.iterator());
+            return CompletableFuture.completedFuture(ledgerEntries);
+        });
+        return lh;
+    }
+
+    private static List<Entry> readEntries(EntryCache cache, ReadHandle lh, long firstEntry, long lastEntry,
+                                           boolean catchUpRead) throws Exception {
+        CompletableFuture<List<Entry>> future = new CompletableFuture<>();
+        cache.asyncReadEntry(lh, firstEntry, lastEntry, true, catchUpRead, callback(future), null);
+        return future.get();
+    }
+
+    private static List<Entry> readEntries(EntryCache cache, ReadHandle lh, long firstEntry, long lastEntry)
+            throws Exception {
+        CompletableFuture<List<Entry>> future = new CompletableFuture<>();
+        cache.asyncReadEntry(lh, firstEntry, lastEntry, true, callback(future), null);
+        return future.get();
+    }
+
+    private static ReadEntriesCallback callback(CompletableFuture<List<Entry>> future) {
+        return new ReadEntriesCallback() {
+            @Override
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                future.complete(entries);
+            }
+
+            @Override
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                future.completeExceptionally(exception);
+            }
+        };
+    }
+}
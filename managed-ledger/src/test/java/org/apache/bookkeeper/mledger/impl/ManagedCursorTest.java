@@ -38,6 +38,7 @@ import io.netty.buffer.ByteBufAllocator;
 import java.lang.reflect.Field;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -48,6 +49,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -71,6 +73,7 @@ import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.client.BookKeeper.DigestType;
 import org.apache.bookkeeper.client.LedgerEntry;
+import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.mledger.AsyncCallbacks;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.AddEntryCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.DeleteCallback;
@@ -2622,6 +2625,52 @@ public class ManagedCursorTest extends MockedBookKeeperTestCase {
         }
     }
 
+    @Test(timeOut = 20000)
+    void testReplayContiguousEntries() throws Exception {
+        ManagedLedger ledger = factory.open("my_test_ledger", new ManagedLedgerConfig().setMaxEntriesPerLedger(4));
+
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        List<PositionImpl> added = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            added.add((PositionImpl) ledger.addEntry(("entry" + i).getBytes(Encoding)));
+        }
+        c1.delete(added.get(2));
+
+        // Ranges within a ledger, a range spanning two ledgers, an acked entry in a range and a single entry
+        Set<PositionImpl> positions = new TreeSet<>(List.of(added.get(0), added.get(1), added.get(2), added.get(3),
+                added.get(4), added.get(5), added.get(8)));
+        CompletableFuture<List<Entry>> future = new CompletableFuture<>();
+        Set<? extends Position> skipped = c1.asyncReplayEntries(positions, new ReadEntriesCallback() {
+            @Override
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                future.complete(entries);
+            }
+
+            @Override
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                future.completeExceptionally(exception);
+            }
+        }, null, true);
+        assertEquals(skipped, Set.of(added.get(2)));
+
+        List<Entry> entries = future.get();
+        assertEquals(entries.stream().map(Entry::getPosition).collect(Collectors.toList()),
+                List.of(added.get(0), added.get(1), added.get(3), added.get(4), added.get(5), added.get(8)));
+        for (Entry entry : entries) {
+            int i = added.indexOf((PositionImpl) entry.getPosition());
+            assertEquals(entry.getData(), ("entry" + i).getBytes(Encoding));
+            entry.release();
+        }
+
+        // A range of a ledger that doesn't exist fails as a whole
+        try {
+            c1.replayEntries(Set.of(new PositionImpl(100, 0), new PositionImpl(100, 1)));
+            fail("Should fail");
+        } catch (ManagedLedgerException e) {
+            // ok
+        }
+    }
+
     @Test(timeOut = 20000)
     void testGetLastIndividualDeletedRange() throws Exception {
         ManagedLedger ledger = factory.open("test_last_individual_deleted");
@@ -2649,6 +2698,119 @@ public class ManagedCursorTest extends MockedBookKeeperTestCase {
 
     }
 
+    @Test(timeOut = 20000)
+    void testDeletePositionBatch() throws Exception {
+        ManagedLedger ledger = factory.open("test_delete_position_batch");
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        Position[] positions = new Position[10];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = ledger.addEntry(("entry" + i).getBytes(Encoding));
+        }
+        long ledgerId = positions[0].getLedgerId();
+
+        // Entries 0, 1 and 3 are acked, entry 5 is partially acked
+        BitSet ackSet = new BitSet();
+        ackSet.set(5, 10);
+        PositionBatchRecyclable batch = PositionBatchRecyclable.create();
+        batch.add(ledgerId, positions[0].getEntryId());
+        batch.add(ledgerId, positions[1].getEntryId());
+        batch.add(ledgerId, positions[3].getEntryId());
+        batch.add(ledgerId, positions[5].getEntryId(), ackSet.toLongArray());
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        c1.asyncDelete(batch, new DeleteCallback() {
+            @Override
+            public void deleteComplete(Object ctx) {
+                future.complete(null);
+            }
+
+            @Override
+            public void deleteFailed(ManagedLedgerException exception, Object ctx) {
+                future.completeExceptionally(exception);
+            }
+        }, null);
+        batch.recycle();
+        future.get();
+
+        assertEquals(c1.getMarkDeletedPosition(), positions[1]);
+        assertTrue(c1.isMessageDeleted(positions[3]));
+        assertFalse(c1.isMessageDeleted(positions[5]));
+        assertEquals(c1.getDeletedBatchIndexesAsLongArray((PositionImpl) positions[5]), ackSet.toLongArray());
+        assertEquals(c1.getNumberOfEntriesInBacklog(false), 7);
+
+        c1.delete(positions[2]);
+        assertEquals(c1.getMarkDeletedPosition(), positions[3]);
+    }
+
+    private Position[] prepareIdleCursor(ManagedLedger ledger) throws Exception {
+        ManagedCursor c1 = ledger.openCursor("c1");
+        Position[] positions = new Position[10];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = ledger.addEntry(("entry" + i).getBytes(Encoding));
+        }
+        // The cursor ledger is created by the first mark-delete, the next ones are only written to it
+        c1.markDelete(positions[1]);
+        c1.markDelete(positions[3]);
+        c1.delete(positions[5]);
+        return positions;
+    }
+
+    private ManagedLedgerConfig dormantCursorConfig() {
+        // A day after the cursors were last active
+        ManagedLedgerConfig config = new ManagedLedgerConfig();
+        config.setClock(Clock.offset(Clock.systemUTC(), Duration.ofDays(1)));
+        config.setDormantCursorThresholdMs(TimeUnit.HOURS.toMillis(1));
+        return config;
+    }
+
+    @Test(timeOut = 20000)
+    void testDormantCursorRecovery() throws Exception {
+        ManagedLedger ledger = factory.open("my_test_ledger");
+        Position[] positions = prepareIdleCursor(ledger);
+
+        // Reopen without closing
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ledger = factory2.open("my_test_ledger", dormantCursorConfig());
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        assertTrue(c1.isDormant());
+        assertFalse(c1.isActive());
+        // Only the position from the metadata is known, which is behind the one in the cursor ledger
+        assertTrue(((PositionImpl) c1.getMarkDeletedPosition()).compareTo((PositionImpl) positions[1]) <= 0);
+
+        // The cursor is fully recovered by the first read
+        List<Entry> entries = c1.readEntries(2);
+        assertEquals(entries.get(0).getPosition(), positions[4]);
+        assertEquals(entries.get(1).getPosition(), positions[6]);
+        entries.forEach(Entry::release);
+        assertFalse(c1.isDormant());
+        assertEquals(c1.getMarkDeletedPosition(), positions[3]);
+        assertTrue(c1.isMessageDeleted(positions[5]));
+
+        c1.markDelete(positions[6]);
+        assertEquals(c1.getMarkDeletedPosition(), positions[6]);
+    }
+
+    @Test(timeOut = 20000)
+    void testCloseDormantCursor() throws Exception {
+        ManagedLedger ledger = factory.open("my_test_ledger");
+        Position[] positions = prepareIdleCursor(ledger);
+
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ledger = factory2.open("my_test_ledger", dormantCursorConfig());
+        assertTrue(((ManagedCursorImpl) ledger.openCursor("c1")).isDormant());
+        ledger.close();
+
+        // Closing the dormant cursor didn't overwrite the state in its cursor ledger
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory3 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ledger = factory3.open("my_test_ledger");
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        assertFalse(c1.isDormant());
+        assertEquals(c1.getMarkDeletedPosition(), positions[3]);
+        assertTrue(c1.isMessageDeleted(positions[5]));
+    }
+
     @Test(timeOut = 20000)
     void testTrimDeletedEntries() throws ManagedLedgerException, InterruptedException {
         ManagedLedger ledger = factory.open("my_test_ledger");
@@ -3119,6 +3281,234 @@ public class ManagedCursorTest extends MockedBookKeeperTestCase {
         assertEquals(entries.size(), totalAddEntries / 2);
     }
 
+    @Test(timeOut = 20000)
+    public void testOutOfOrderDeletePersistenceAsBitmapsWithClose() throws Exception {
+        final int totalAddEntries = 100;
+        String ledgerName = "my_test_ledger_bitmap";
+        ManagedLedgerConfig managedLedgerConfig = new ManagedLedgerConfig();
+        managedLedgerConfig.setMaxUnackedRangesToPersistInMetadataStore(10);
+        // The ranges would be truncated without the bitmap encoding
+        managedLedgerConfig.setMaxUnackedRangesToPersist(10);
+        managedLedgerConfig.setUnackedRangesBitmapEncodingEnabled(true);
+        // Write the bitmap of each ledger in its own chunk
+        managedLedgerConfig.setUnackedRangesBitmapChunkSize(1);
+        managedLedgerConfig.setMaxEntriesPerLedger(25);
+        ManagedLedgerImpl ledger = (ManagedLedgerImpl) factory.open(ledgerName, managedLedgerConfig);
+
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+
+        List<Position> addedPositions = new ArrayList<>();
+        for (int i = 0; i < totalAddEntries; i++) {
+            Position p = ledger.addEntry(("dummy-entry-" + i).getBytes(Encoding));
+            addedPositions.add(p);
+            if (i % 2 == 0) {
+                c1.delete(addedPositions.get(i));
+            }
+        }
+        assertEquals(c1.getNumberOfEntriesInBacklog(false), totalAddEntries / 2);
+        int deletedRanges = c1.getTotalNonContiguousDeletedMessagesRange();
+
+        ledger.close();
+
+        // verify cursor-ledger's last entry only refers to the chunks
+        CompletableFuture<PositionInfo> positionInfoFuture = new CompletableFuture<>();
+        bkc.asyncOpenLedger(c1.getCursorLedger(), DigestType.CRC32C, "".getBytes(), (rc, lh, ctx) -> {
+            long lastEntry = lh.getLastAddConfirmed();
+            lh.asyncReadEntries(lastEntry, lastEntry, (rc1, lh1, seq, ctx1) -> {
+                try {
+                    positionInfoFuture.complete(PositionInfo.parseFrom(seq.nextElement().getEntry()));
+                } catch (Exception e) {
+                    positionInfoFuture.completeExceptionally(e);
+                }
+            }, null);
+        }, null);
+        PositionInfo positionInfo = positionInfoFuture.get();
+        assertEquals(positionInfo.getIndividualDeletedMessagesCount(), 0);
+        assertEquals(positionInfo.getIndividualDeletedMessagesBitmapsCount(), 0);
+        assertEquals(positionInfo.getIndividualDeletedMessagesChunkEntryIdsCount(), 4);
+
+        // Re-Open
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ledger = (ManagedLedgerImpl) factory2.open(ledgerName, managedLedgerConfig);
+        c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        // verify all the holes have been recovered
+        assertEquals(c1.getNumberOfEntriesInBacklog(false), totalAddEntries / 2);
+        assertEquals(c1.getTotalNonContiguousDeletedMessagesRange(), deletedRanges);
+
+        List<Entry> entries = c1.readEntries(totalAddEntries);
+        assertEquals(entries.size(), totalAddEntries / 2);
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).getPosition(), addedPositions.get(2 * i + 1));
+        }
+        entries.forEach(Entry::release);
+    }
+
+    @Test(timeOut = 20000)
+    public void testOutOfOrderDeletePersistenceWithDeltasAfterCrash() throws Exception {
+        final int totalAddEntries = 40;
+        ManagedLedgerConfig managedLedgerConfig = new ManagedLedgerConfig();
+        managedLedgerConfig.setUnackedRangesMaxDeltasBetweenSnapshots(4);
+        managedLedgerConfig.setMaxEntriesPerLedger(10);
+        ManagedLedger ledger = factory.open("my_test_ledger_deltas", managedLedgerConfig);
+
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        List<Position> addedPositions = new ArrayList<>();
+        for (int i = 0; i < totalAddEntries; i++) {
+            addedPositions.add(ledger.addEntry(("dummy-entry-" + i).getBytes(Encoding)));
+        }
+
+        // Leave a hole every 3 entries, and then move the mark-delete position
+        Set<Position> remainingPositions = new TreeSet<>(addedPositions);
+        for (int i = 2; i < totalAddEntries; i++) {
+            if (i % 3 != 1) {
+                c1.delete(addedPositions.get(i));
+                remainingPositions.remove(addedPositions.get(i));
+            }
+        }
+        c1.delete(addedPositions.get(0));
+        remainingPositions.remove(addedPositions.get(0));
+        assertEquals(c1.getNumberOfEntriesInBacklog(false), remainingPositions.size());
+
+        // The last update only holds the range added by the last delete
+        CompletableFuture<PositionInfo> positionInfoFuture = new CompletableFuture<>();
+        bkc.asyncOpenLedger(c1.getCursorLedger(), DigestType.CRC32C, "".getBytes(), (rc, lh, ctx) -> {
+            long lastEntry = lh.getLastAddConfirmed();
+            lh.asyncReadEntries(lastEntry, lastEntry, (rc1, lh1, seq, ctx1) -> {
+                try {
+                    positionInfoFuture.complete(PositionInfo.parseFrom(seq.nextElement().getEntry()));
+                } catch (Exception e) {
+                    positionInfoFuture.completeExceptionally(e);
+                }
+            }, null);
+        }, null);
+        PositionInfo positionInfo = positionInfoFuture.get();
+        assertTrue(positionInfo.hasDeltaBaseEntryId());
+        assertTrue(positionInfo.getIndividualDeletedMessagesCount() <= 1);
+
+        // Re-Open
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ledger = factory2.open("my_test_ledger_deltas", managedLedgerConfig);
+        ManagedCursor c2 = ledger.openCursor("c1");
+        assertEquals(c2.getMarkDeletedPosition(), c1.getMarkDeletedPosition());
+        assertEquals(c2.getNumberOfEntriesInBacklog(false), remainingPositions.size());
+
+        List<Entry> entries = c2.readEntries(totalAddEntries);
+        assertEquals(entries.stream().map(Entry::getPosition).collect(Collectors.toList()),
+                new ArrayList<>(remainingPositions));
+        entries.forEach(Entry::release);
+    }
+
+    @Test(timeOut = 20000)
+    public void testOutOfOrderDeletePersistenceAsBitmapsAfterIncompleteUpdate() throws Exception {
+        final int totalAddEntries = 100;
+        ManagedLedgerConfig managedLedgerConfig = new ManagedLedgerConfig();
+        managedLedgerConfig.setUnackedRangesBitmapEncodingEnabled(true);
+        // Write the bitmap of each ledger in its own chunk
+        managedLedgerConfig.setUnackedRangesBitmapChunkSize(1);
+        managedLedgerConfig.setMaxEntriesPerLedger(25);
+        ManagedLedger ledger = factory.open("my_test_ledger_bitmap", managedLedgerConfig);
+
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        List<Position> addedPositions = new ArrayList<>();
+        for (int i = 0; i < totalAddEntries; i++) {
+            addedPositions.add(ledger.addEntry(("dummy-entry-" + i).getBytes(Encoding)));
+        }
+
+        // Leave a hole every 2 entries, and then move the mark-delete position
+        for (int i = 2; i < totalAddEntries; i += 2) {
+            c1.delete(addedPositions.get(i));
+        }
+        c1.delete(addedPositions.get(0));
+        int deletedRanges = c1.getTotalNonContiguousDeletedMessagesRange();
+
+        // The next updates crash half-way: a chunk is written without the position that refers to it, an entry is
+        // not a position at all, and a position refers to chunks that were never written
+        PositionImpl lastPosition = (PositionImpl) addedPositions.get(totalAddEntries - 1);
+        LedgerHandle lh = bkc.openLedger(c1.getCursorLedger(), DigestType.CRC32C, "".getBytes());
+        lh.addEntry(PositionInfo.newBuilder().setLedgerId(lastPosition.getLedgerId())
+                .setEntryId(lastPosition.getEntryId()).setIndividualDeletedMessagesChunk(true)
+                .build().toByteArray());
+        long invalidEntryId = lh.addEntry(new byte[] { -1 });
+        lh.addEntry(PositionInfo.newBuilder().setLedgerId(lastPosition.getLedgerId())
+                .setEntryId(lastPosition.getEntryId()).addIndividualDeletedMessagesChunkEntryIds(invalidEntryId)
+                .build().toByteArray());
+
+        // Re-Open
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ledger = factory2.open("my_test_ledger_bitmap", managedLedgerConfig);
+        ManagedCursorImpl c2 = (ManagedCursorImpl) ledger.openCursor("c1");
+        // The cursor is recovered from the last complete update
+        assertEquals(c2.getMarkDeletedPosition(), c1.getMarkDeletedPosition());
+        assertEquals(c2.getNumberOfEntriesInBacklog(false), totalAddEntries / 2);
+        assertEquals(c2.getTotalNonContiguousDeletedMessagesRange(), deletedRanges);
+
+        List<Entry> entries = c2.readEntries(totalAddEntries);
+        assertEquals(entries.size(), totalAddEntries / 2);
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).getPosition(), addedPositions.get(2 * i + 1));
+        }
+        entries.forEach(Entry::release);
+    }
+
+    @Test(timeOut = 20000)
+    public void testOutOfOrderDeletePersistenceWithDeltasAfterIncompleteUpdate() throws Exception {
+        final int totalAddEntries = 40;
+        ManagedLedgerConfig managedLedgerConfig = new ManagedLedgerConfig();
+        managedLedgerConfig.setUnackedRangesMaxDeltasBetweenSnapshots(4);
+        managedLedgerConfig.setUnackedRangesBitmapEncodingEnabled(true);
+        managedLedgerConfig.setUnackedRangesBitmapChunkSize(1);
+        managedLedgerConfig.setMaxEntriesPerLedger(10);
+        ManagedLedger ledger = factory.open("my_test_ledger_deltas", managedLedgerConfig);
+
+        ManagedCursorImpl c1 = (ManagedCursorImpl) ledger.openCursor("c1");
+        List<Position> addedPositions = new ArrayList<>();
+        for (int i = 0; i < totalAddEntries; i++) {
+            addedPositions.add(ledger.addEntry(("dummy-entry-" + i).getBytes(Encoding)));
+        }
+
+        // Leave a hole every 3 entries, and then move the mark-delete position
+        Set<Position> remainingPositions = new TreeSet<>(addedPositions);
+        for (int i = 2; i < totalAddEntries; i++) {
+            if (i % 3 != 1) {
+                c1.delete(addedPositions.get(i));
+                remainingPositions.remove(addedPositions.get(i));
+            }
+        }
+        c1.delete(addedPositions.get(0));
+        remainingPositions.remove(addedPositions.get(0));
+
+        // A snapshot crashes after writing its first chunk, and a delta refers to it as its base
+        PositionImpl lastPosition = (PositionImpl) addedPositions.get(totalAddEntries - 1);
+        LedgerHandle lh = bkc.openLedger(c1.getCursorLedger(), DigestType.CRC32C, "".getBytes());
+        long chunkEntryId = lh.addEntry(PositionInfo.newBuilder().setLedgerId(lastPosition.getLedgerId())
+                .setEntryId(lastPosition.getEntryId()).setIndividualDeletedMessagesChunk(true)
+                .build().toByteArray());
+        lh.addEntry(PositionInfo.newBuilder().setLedgerId(lastPosition.getLedgerId())
+                .setEntryId(lastPosition.getEntryId()).setDeltaBaseEntryId(chunkEntryId)
+                .build().toByteArray());
+        // A delta refers to a base that was never written
+        lh.addEntry(PositionInfo.newBuilder().setLedgerId(lastPosition.getLedgerId())
+                .setEntryId(lastPosition.getEntryId()).setDeltaBaseEntryId(chunkEntryId + 10)
+                .build().toByteArray());
+
+        // Re-Open
+        @Cleanup("shutdown")
+        ManagedLedgerFactory factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ledger = factory2.open("my_test_ledger_deltas", managedLedgerConfig);
+        ManagedCursor c2 = ledger.openCursor("c1");
+        // The cursor is recovered from the last complete update
+        assertEquals(c2.getMarkDeletedPosition(), c1.getMarkDeletedPosition());
+        assertEquals(c2.getNumberOfEntriesInBacklog(false), remainingPositions.size());
+
+        List<Entry> entries = c2.readEntries(totalAddEntries);
+        assertEquals(entries.stream().map(Entry::getPosition).collect(Collectors.toList()),
+                new ArrayList<>(remainingPositions));
+        entries.forEach(Entry::release);
+    }
+
     /**
      * Close Cursor without MaxUnackedRangesToPersistInZK: It should store individually unack range into Zk
      *
@@ -19,13 +19,24 @@
 package org.apache.bookkeeper.mledger.impl;
 
 import static org.testng.Assert.assertEquals;
-
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.OpenLedgerCallback;
 import org.apache.bookkeeper.mledger.ManagedCursor;
+import org.apache.bookkeeper.mledger.ManagedLedger;
 import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
 import org.apache.bookkeeper.mledger.ManagedLedgerInfo;
 import org.apache.bookkeeper.mledger.ManagedLedgerInfo.CursorInfo;
 import org.apache.bookkeeper.mledger.ManagedLedgerInfo.MessageRangeInfo;
 import org.apache.bookkeeper.test.MockedBookKeeperTestCase;
+import org.awaitility.Awaitility;
 import org.testng.annotations.Test;
 
 public class ManagedLedgerFactoryTest extends MockedBookKeeperTestCase {
@@ -71,4 +82,78 @@ public class ManagedLedgerFactoryTest extends MockedBookKeeperTestCase {
         assertEquals(mri.to.entryId, 0);
     }
 
+    @Test(timeOut = 20000)
+    public void testBoundedConcurrentRecoveries() throws Exception {
+        ManagedLedgerFactoryConfig factoryConfig = new ManagedLedgerFactoryConfig();
+        factoryConfig.setMaxConcurrentManagedLedgerRecoveries(2);
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc, factoryConfig);
+
+        // Stall the creation of the ledgers of the first 2 recoveries
+        CompletableFuture<Void> firstCreate = bkc.promiseAfter(0);
+        CompletableFuture<Void> secondCreate = bkc.promiseAfter(1);
+
+        List<CompletableFuture<ManagedLedger>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            CompletableFuture<ManagedLedger> future = new CompletableFuture<>();
+            factory2.asyncOpen("ledger-" + i, new ManagedLedgerConfig(), new OpenLedgerCallback() {
+                @Override
+                public void openLedgerComplete(ManagedLedger ledger, Object ctx) {
+                    future.complete(ledger);
+                }
+
+                @Override
+                public void openLedgerFailed(ManagedLedgerException exception, Object ctx) {
+                    future.completeExceptionally(exception);
+                }
+            }, null, null);
+            futures.add(future);
+        }
+
+        // The other recoveries wait for the 2 stalled ones, which are the only ones in flight
+        Awaitility.await().untilAsserted(() -> assertEquals(factory2.getNumberOfPendingRecoveries(), 8));
+        Thread.sleep(100);
+        assertEquals(factory2.getNumberOfPendingRecoveries(), 8);
+        assertTrue(futures.stream().noneMatch(CompletableFuture::isDone));
+
+        firstCreate.complete(null);
+        secondCreate.complete(null);
+        for (CompletableFuture<ManagedLedger> future : futures) {
+            future.get().addEntry("entry".getBytes());
+        }
+
+        assertEquals(factory2.getNumberOfPendingRecoveries(), 0);
+        factory2.getMbean().refreshStats(1, TimeUnit.SECONDS);
+        assertEquals(factory2.getMbean().getRecoveriesCount(), 10);
+        assertTrue(factory2.getMbean().getRecoveryLatencyAvgMs()
+                >= factory2.getMbean().getRecoveryCursorsLatencyAvgMs());
+    }
+
+    @Test(timeOut = 20000)
+    public void testPipelinedCursorsRecovery() throws Exception {
+        ManagedLedgerConfig conf = new ManagedLedgerConfig();
+        conf.setCursorsRecoveryPipelined(true);
+        ManagedLedgerImpl ledger = (ManagedLedgerImpl) factory.open("testPipelinedCursorsRecovery", conf);
+        ManagedCursor c1 = ledger.openCursor("c1");
+        ManagedCursor c2 = ledger.openCursor("c2");
+        List<PositionImpl> positions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            positions.add((PositionImpl) ledger.addEntry(("entry" + i).getBytes()));
+        }
+        c1.markDelete(positions.get(3));
+        c1.delete(positions.get(6));
+        c2.markDelete(positions.get(8));
+
+        // Recover the cursors from their cursor ledgers, without closing the managed ledger
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = new ManagedLedgerFactoryImpl(metadataStore, bkc);
+        ManagedLedgerImpl ledger2 = (ManagedLedgerImpl) factory2.open("testPipelinedCursorsRecovery", conf);
+        assertNull(ledger2.getCursorsRecoveryPrefetcher());
+        ManagedCursorImpl recovered1 = (ManagedCursorImpl) ledger2.openCursor("c1");
+        ManagedCursor recovered2 = ledger2.openCursor("c2");
+        assertEquals(recovered1.getMarkDeletedPosition(), positions.get(3));
+        assertTrue(recovered1.isMessageDeleted(positions.get(6)));
+        assertEquals(recovered1.getNumberOfEntriesInBacklog(false), 5);
+        assertEquals(recovered2.getMarkDeletedPosition(), positions.get(8));
+    }
 }
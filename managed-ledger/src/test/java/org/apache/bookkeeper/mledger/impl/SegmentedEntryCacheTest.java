@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.impl;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.mledger.AsyncCallbacks.ReadEntriesCallback;
+import org.apache.bookkeeper.mledger.Entry;
+import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.ManagedLedgerException;
+import org.apache.bookkeeper.mledger.ManagedLedgerFactoryConfig;
+import org.apache.bookkeeper.mledger.impl.cache.EntryCache;
+import org.apache.bookkeeper.mledger.impl.cache.EntryCacheManager;
+import org.apache.bookkeeper.mledger.impl.cache.SegmentedEntryCacheImpl;
+import org.apache.bookkeeper.mledger.impl.cache.SegmentedEntryCacheManagerImpl;
+import org.apache.bookkeeper.test.MockedBookKeeperTestCase;
+import org.awaitility.Awaitility;
+import org.testng.annotations.Test;
+
+public class SegmentedEntryCacheTest extends MockedBookKeeperTestCase {
+
+    private ManagedLedgerImpl ml1;
+    private ManagedLedgerImpl ml2;
+
+    @Override
+    protected void setUpTestCase() throws Exception {
+        ml1 = mockManagedLedger("cache1");
+        ml2 = mockManagedLedger("cache2");
+    }
+
+    private ManagedLedgerImpl mockManagedLedger(String name) {
+        ManagedLedgerImpl ml = mock(ManagedLedgerImpl.class);
+        when(ml.getName()).thenReturn(name);
+        when(ml.getExecutor()).thenReturn(executor);
+        when(ml.getMbean()).thenReturn(new ManagedLedgerMBeanImpl(ml));
+        when(ml.getConfig()).thenReturn(new ManagedLedgerConfig());
+        return ml;
+    }
+
+    private ManagedLedgerFactoryImpl createFactory(long maxCacheSize, int segments) throws Exception {
+        ManagedLedgerFactoryConfig config = new ManagedLedgerFactoryConfig();
+        config.setMaxCacheSize(maxCacheSize);
+        config.setEntryCacheManagerClassName(SegmentedEntryCacheManagerImpl.class.getName());
+        config.setEntryCacheSegmentsCount(segments);
+        return new ManagedLedgerFactoryImpl(metadataStore, bkc, config);
+    }
+
+    @Test(timeOut = 5000)
+    public void testInsertAndRead() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = createFactory(1024, 4);
+        EntryCacheManager cacheManager = factory2.getEntryCacheManager();
+        assertTrue(cacheManager instanceof SegmentedEntryCacheManagerImpl);
+
+        EntryCache cache = cacheManager.getEntryCache(ml1);
+        assertTrue(cache instanceof SegmentedEntryCacheImpl);
+
+        for (int i = 0; i < 10; i++) {
+            byte[] data = new byte[10];
+            data[0] = (byte) i;
+            assertTrue(cache.insert(EntryImpl.create(0, i, data)));
+        }
+        // Duplicated entries are not cached twice
+        assertFalse(cache.insert(EntryImpl.create(0, 0, new byte[10])));
+
+        assertEquals(cache.getSize(), 100);
+        assertEquals(cacheManager.getSize(), 100);
+
+        ReadHandle lh = EntryCacheTest.getLedgerHandle();
+        when(lh.getId()).thenReturn(0L);
+
+        List<Entry> entries = readEntries(cache, lh, 0, 9);
+        assertEquals(entries.size(), 10);
+        for (int i = 0; i < 10; i++) {
+            Entry entry = entries.get(i);
+            assertEquals(entry.getEntryId(), i);
+            assertEquals(entry.getLength(), 10);
+            assertEquals(entry.getData()[0], (byte) i);
+            entry.release();
+        }
+
+        // Verify no entries were read from bookkeeper
+        verify(lh, never()).readAsync(anyLong(), anyLong());
+    }
+
+    @Test(timeOut = 5000)
+    public void testEvictWholeSegments() throws Exception {
+        // 4 segments of 100 bytes each
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = createFactory(400, 4);
+        EntryCacheManager cacheManager = factory2.getEntryCacheManager();
+        EntryCache cache1 = cacheManager.getEntryCache(ml1);
+        EntryCache cache2 = cacheManager.getEntryCache(ml2);
+
+        // Fill the first segment with entries of cache1 and the following 3 with entries of cache2
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cache1.insert(EntryImpl.create(1, i, new byte[10])));
+        }
+        for (int i = 0; i < 30; i++) {
+            assertTrue(cache2.insert(EntryImpl.create(2, i, new byte[10])));
+        }
+        assertEquals(cacheManager.getSize(), 400);
+
+        // The cache is full: the entry is skipped and the eviction drops the first segment in background
+        assertFalse(cache2.insert(EntryImpl.create(2, 30, new byte[10])));
+        Awaitility.await().untilAsserted(() -> assertEquals(cacheManager.getSize(), 300));
+        // The entries of the dropped segment are removed from the index right away
+        assertEquals(cache1.getSize(), 0);
+
+        assertTrue(cache2.insert(EntryImpl.create(2, 30, new byte[10])));
+        assertEquals(cacheManager.getSize(), 310);
+
+        factory2.getMbean().refreshStats(1, TimeUnit.SECONDS);
+        assertEquals(factory2.getMbean().getCacheInsertedEntriesCount(), 41);
+        assertEquals(factory2.getMbean().getCacheEvictedEntriesCount(), 10);
+
+        // Entries of cache1 must now be read from bookkeeper
+        ReadHandle lh = EntryCacheTest.getLedgerHandle();
+        when(lh.getId()).thenReturn(1L);
+        List<Entry> entries = readEntries(cache1, lh, 0, 9);
+        assertEquals(entries.size(), 10);
+        entries.forEach(Entry::release);
+        verify(lh, times(1)).readAsync(0, 9);
+        assertEquals(cache2.getSize(), 310);
+
+        // Entries of cache2 are still in the cache
+        ReadHandle lh2 = EntryCacheTest.getLedgerHandle();
+        when(lh2.getId()).thenReturn(2L);
+        entries = readEntries(cache2, lh2, 0, 30);
+        assertEquals(entries.size(), 31);
+        entries.forEach(Entry::release);
+        verify(lh2, never()).readAsync(anyLong(), anyLong());
+    }
+
+    @Test(timeOut = 5000)
+    public void testEvictByTimestamp() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = createFactory(400, 4);
+        EntryCacheManager cacheManager = factory2.getEntryCacheManager();
+        EntryCache cache = cacheManager.getEntryCache(ml1);
+
+        for (int i = 0; i < 25; i++) {
+            assertTrue(cache.insert(EntryImpl.create(1, i, new byte[10])));
+        }
+        assertEquals(cacheManager.getSize(), 250);
+
+        // The 2 full segments are evicted, the one being written is kept
+        cache.invalidateEntriesBeforeTimestamp(System.nanoTime());
+        assertEquals(cacheManager.getSize(), 50);
+        assertEquals(cache.getSize(), 50);
+    }
+
+    @Test(timeOut = 5000)
+    public void testInvalidate() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = createFactory(1024, 4);
+        EntryCacheManager cacheManager = factory2.getEntryCacheManager();
+        EntryCache cache = cacheManager.getEntryCache(ml1);
+
+        for (int i = 0; i < 10; i++) {
+            cache.insert(EntryImpl.create(1, i, new byte[10]));
+            cache.insert(EntryImpl.create(2, i, new byte[10]));
+        }
+        assertEquals(cache.getSize(), 200);
+
+        cache.invalidateAllEntries(1);
+        assertEquals(cache.getSize(), 100);
+
+        // Invalidated entries are dropped from the index at the next eviction
+        cache.invalidateEntries(new PositionImpl(2, 5));
+        cache.evictEntries(1);
+        assertEquals(cache.getSize(), 50);
+
+        cacheManager.removeEntryCache("cache1");
+        assertEquals(cache.getSize(), 0);
+
+        cacheManager.clear();
+        assertEquals(cacheManager.getSize(), 0);
+    }
+
+    @Test(timeOut = 5000)
+    public void testWrapAround() throws Exception {
+        // 4 segments of 100 bytes each
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = createFactory(400, 4);
+        EntryCacheManager cacheManager = factory2.getEntryCacheManager();
+        EntryCache cache1 = cacheManager.getEntryCache(ml1);
+        EntryCache cache2 = cacheManager.getEntryCache(ml2);
+
+        // Entries that do not fit at the end of a segment are written at the start of the next one
+        for (int i = 0; i < 12; i++) {
+            assertTrue(cache1.insert(EntryImpl.create(1, i, new byte[30])));
+        }
+        assertEquals(cacheManager.getSize(), 360);
+
+        // The ring wraps around by dropping the first segment, when the eviction has not caught up yet
+        assertTrue(cache2.insert(EntryImpl.create(2, 0, new byte[30])));
+        assertEquals(cache1.getSize(), 270);
+        assertEquals(cacheManager.getSize(), 300);
+    }
+
+    @Test(timeOut = 5000)
+    public void testCachedEntrySharesSegment() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = createFactory(400, 4);
+        EntryCacheManager cacheManager = factory2.getEntryCacheManager();
+        EntryCache cache = cacheManager.getEntryCache(ml1);
+
+        byte[] data = new byte[10];
+        Arrays.fill(data, (byte) 1);
+        assertTrue(cache.insert(EntryImpl.create(1, 0, data)));
+        ReadHandle lh = EntryCacheTest.getLedgerHandle();
+        when(lh.getId()).thenReturn(1L);
+        Entry entry = readEntries(cache, lh, 0, 0).get(0);
+        Entry entry2 = readEntries(cache, lh, 0, 0).get(0);
+        // Both entries are slices of the same segment
+        assertEquals(entry.getDataBuffer().memoryAddress(), entry2.getDataBuffer().memoryAddress());
+        entry2.release();
+
+        // Wrap around the ring, the segment of the entry is dropped but not overwritten while the entry is in use
+        for (int i = 1; i < 60; i++) {
+            byte[] other = new byte[10];
+            Arrays.fill(other, (byte) 2);
+            cache.invalidateEntriesBeforeTimestamp(System.nanoTime());
+            assertTrue(cache.insert(EntryImpl.create(1, i, other)));
+        }
+        assertEquals(entry.getData(), data);
+        entry.release();
+        verify(lh, never()).readAsync(anyLong(), anyLong());
+
+        // The dropped entry is now read from storage
+        readEntries(cache, lh, 0, 0).forEach(Entry::release);
+        verify(lh, times(1)).readAsync(0, 0);
+    }
+
+    @Test(timeOut = 20000)
+    public void testConcurrentInserts() throws Exception {
+        @Cleanup("shutdown")
+        ManagedLedgerFactoryImpl factory2 = createFactory(1024 * 1024, 4);
+        EntryCacheManager cacheManager = factory2.getEntryCacheManager();
+        int threads = 4;
+        int entries = 1000;
+        EntryCache[] caches = new EntryCache[threads];
+        for (int t = 0; t < threads; t++) {
+            caches[t] = cacheManager.getEntryCache(mockManagedLedger("concurrent" + t));
+        }
+
+        @Cleanup("shutdownNow")
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            EntryCache cache = caches[t];
+            long ledgerId = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < entries; i++) {
+                    byte[] data = new byte[100];
+                    Arrays.fill(data, (byte) (ledgerId * 31 + i));
+                    assertTrue(cache.insert(EntryImpl.create(ledgerId, i, data)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        assertEquals(cacheManager.getSize(), (long) threads * entries * 100);
+
+        for (int t = 0; t < threads; t++) {
+            ReadHandle lh = EntryCacheTest.getLedgerHandle();
+            when(lh.getId()).thenReturn((long) t);
+            List<Entry> read = readEntries(caches[t], lh, 0, entries - 1);
+            for (int i = 0; i < entries; i++) {
+                byte[] expected = new byte[100];
+                Arrays.fill(expected, (byte) (t * 31 + i));
+                assertEquals(read.get(i).getData(), expected);
+                read.get(i).release();
+            }
+            verify(lh, never()).readAsync(anyLong(), anyLong());
+        }
+    }
+
+    private static List<Entry> readEntries(EntryCache cache, ReadHandle lh, long firstEntry, long lastEntry)
+            throws Exception {
+        CompletableFuture<List<Entry>> future = new CompletableFuture<>();
+        cache.asyncReadEntry(lh, firstEntry, lastEntry, false, new ReadEntriesCallback() {
+            @Override
+            public void readEntriesComplete(List<Entry> entries, Object ctx) {
+                future.complete(entries);
+            }
+
+            @Override
+            public void readEntriesFailed(ManagedLedgerException exception, Object ctx) {
+                future.completeExceptionally(exception);
+            }
+        }, null);
+        return future.get();
+    }
+}
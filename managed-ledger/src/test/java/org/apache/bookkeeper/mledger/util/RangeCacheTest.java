@@ -239,6 +239,35 @@ public class RangeCacheTest {
         }
     }
 
+    @Test
+    public void evictLeastAccessedEntriesSkippingProtected() {
+        RangeCache<Integer, RefString> cache = new RangeCache<>();
+
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, new RefString(Integer.toString(i)));
+        }
+
+        // Even keys are protected, they are skipped as long as the other entries are enough
+        Pair<Integer, Long> res = cache.evictLeastAccessedEntries(3, key -> key % 2 == 0);
+        assertEquals(res, Pair.of(3, 3L));
+        assertEquals(cache.getSize(), 7);
+        assertNull(cache.get(1));
+        assertNull(cache.get(3));
+        assertNull(cache.get(5));
+        assertEquals(cache.get(0).s, "0");
+        assertEquals(cache.get(7).s, "7");
+
+        // Protected entries are evicted in key order once all the others are gone
+        res = cache.evictLeastAccessedEntries(4, key -> key % 2 == 0);
+        assertEquals(res, Pair.of(4, 4L));
+        assertEquals(cache.getSize(), 3);
+        assertNull(cache.get(7));
+        assertNull(cache.get(9));
+        assertNull(cache.get(0));
+        assertNull(cache.get(2));
+        assertEquals(cache.get(4).s, "4");
+    }
+
     @Test
     public void evictions() {
         RangeCache<Integer, RefString> cache = new RangeCache<>();
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.mledger.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.mledger.impl.EntryImpl;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the managed-ledger entry cache the way {@code RangeEntryCacheImpl} drives it: every added entry is
+ * copied into the cache, tailing readers fetch it back right away and the cache is kept within its size limit by
+ * evicting the least accessed entries.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class RangeCacheBenchmark {
+
+    @Param({"1024"})
+    private int entrySize;
+
+    @Param({"10000"})
+    private int maxCachedEntries;
+
+    private RangeCache<PositionImpl, EntryImpl> cache;
+    private ByteBuf payload;
+    private long maxCacheSize;
+    private long nextEntryId;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        cache = new RangeCache<>(EntryImpl::getLength, EntryImpl::getTimestamp);
+        payload = PooledByteBufAllocator.DEFAULT.directBuffer(entrySize);
+        payload.writeZero(entrySize);
+        maxCacheSize = (long) entrySize * maxCachedEntries;
+        nextEntryId = 0;
+        for (int i = 0; i < maxCachedEntries; i++) {
+            insert();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown() {
+        cache.clear();
+        payload.release();
+    }
+
+    @Benchmark
+    public void insertAndEvict() {
+        insert();
+        evictIfNeeded();
+    }
+
+    @Benchmark
+    public void insertReadTailAndEvict(Blackhole bh) {
+        PositionImpl position = insert();
+        EntryImpl entry = cache.get(position);
+        bh.consume(entry.getLength());
+        entry.release();
+        evictIfNeeded();
+    }
+
+    @Benchmark
+    public void getRange(Blackhole bh) {
+        long last = nextEntryId - 1;
+        for (EntryImpl entry : cache.getRange(PositionImpl.get(1, last - 100), PositionImpl.get(1, last))) {
+            bh.consume(entry.getLength());
+            entry.release();
+        }
+    }
+
+    private PositionImpl insert() {
+        PositionImpl position = PositionImpl.get(1, nextEntryId++);
+        // Like RangeEntryCacheImpl#insert, copy the payload so the cached entry does not pin the original buffer
+        ByteBuf cachedData = PooledByteBufAllocator.DEFAULT.directBuffer(entrySize, entrySize);
+        cachedData.writeBytes(payload, payload.readerIndex(), entrySize);
+        EntryImpl entry = EntryImpl.create(position, cachedData);
+        cachedData.release();
+        if (!cache.put(position, entry)) {
+            entry.release();
+        }
+        return position;
+    }
+
+    private void evictIfNeeded() {
+        long sizeToFree = cache.getSize() - maxCacheSize;
+        if (sizeToFree > 0) {
+            cache.evictLeastAccessedEntries(sizeToFree);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the {@link InMemoryDelayedDeliveryTracker} with the {@link TimingWheelDelayedDeliveryTracker}, on a
+ * tracker holding a steady number of messages delayed by up to a day.
+ *
+ * <p>Each operation adds a message and moves the clock forward by the average interval at which the messages of the
+ * tracker are due, delivering the ones that are. The trackers are used without a dispatcher and with a timer that
+ * never fires, so only the index of the messages is measured. The {@code BucketDelayedDeliveryTracker} is not part of
+ * the comparison, since it needs a managed cursor and a snapshot storage.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class DelayedDeliveryTrackerBenchmark {
+
+    private static final int OPS = 1000;
+    private static final long MAX_DELAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int DELAYS = 1 << 16;
+
+    @Param({"inMemory", "timingWheel"})
+    private String tracker;
+
+    @Param({"100000", "1000000"})
+    private int numberOfMessages;
+
+    private final MutableClock clock = new MutableClock();
+    private final long[] delays = new long[DELAYS];
+    private DelayedDeliveryTracker delayedDeliveryTracker;
+    private long interval;
+    private long entryId;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        Random random = new Random(1);
+        for (int i = 0; i < DELAYS; i++) {
+            delays[i] = 1 + (long) (random.nextDouble() * MAX_DELAY_MILLIS);
+        }
+        clock.millis = 1_700_000_000_000L;
+        // Messages are added as fast as they are due, to keep the tracker at the same size
+        interval = Math.max(1, MAX_DELAY_MILLIS / 2 / numberOfMessages);
+        entryId = 0;
+
+        delayedDeliveryTracker = switch (tracker) {
+            case "inMemory" -> new InMemoryDelayedDeliveryTracker(null, NoopTimer.INSTANCE, 1, clock, true, 0);
+            case "timingWheel" -> new TimingWheelDelayedDeliveryTracker(null, NoopTimer.INSTANCE, 1, clock, true, 1);
+            default -> throw new IllegalArgumentException(tracker);
+        };
+        for (int i = 0; i < numberOfMessages; i++) {
+            add();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown() {
+        delayedDeliveryTracker.close();
+    }
+
+    private void add() {
+        long id = entryId++;
+        delayedDeliveryTracker.addMessage(id >> 16, id, clock.millis + delays[(int) (id & (DELAYS - 1))]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void addAndDeliver(Blackhole bh) {
+        for (int i = 0; i < OPS; i++) {
+            add();
+            clock.millis += interval;
+            if (delayedDeliveryTracker.hasMessageAvailable()) {
+                bh.consume(delayedDeliveryTracker.getScheduledMessages(100));
+            }
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis;
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class NoopTimer implements Timer {
+        private static final NoopTimer INSTANCE = new NoopTimer();
+
+        @Override
+        public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+            return new Timeout() {
+                @Override
+                public Timer timer() {
+                    return NoopTimer.this;
+                }
+
+                @Override
+                public TimerTask task() {
+                    return task;
+                }
+
+                @Override
+                public boolean isExpired() {
+                    return false;
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return false;
+                }
+
+                @Override
+                public boolean cancel() {
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        public Set<Timeout> stop() {
+            return Collections.emptySet();
+        }
+    }
+}
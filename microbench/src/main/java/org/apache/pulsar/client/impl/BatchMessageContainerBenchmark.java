@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.common.api.proto.CompressionType;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.compression.CompressionCodecProvider;
+import org.apache.pulsar.common.protocol.ByteBufPair;
+import org.apache.pulsar.common.protocol.Commands;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures building a batch with {@link BatchMessageContainerImpl}: adding the messages, serializing them with
+ * their single message metadata, compressing the batch and framing the resulting SEND command.
+ *
+ * <p>The container is used without a producer, so the memory limit and semaphore accounting of
+ * {@link ProducerImpl} are not part of the measurement.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchMessageContainerBenchmark {
+
+    @Param({"10", "100"})
+    private int messagesPerBatch;
+
+    @Param({"256"})
+    private int messageSize;
+
+    @Param({"NONE", "LZ4", "ZSTD"})
+    private String compression;
+
+    private BatchMessageContainerImpl container;
+    private final List<MessageImpl<byte[]>> messages = new ArrayList<>();
+    private long sequenceId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        container = new BatchMessageContainerImpl();
+        container.compressionType = CompressionType.valueOf(compression);
+        container.compressor = CompressionCodecProvider.getCompressionCodec(container.compressionType);
+        container.maxNumMessagesInBatch = messagesPerBatch;
+        container.maxBytesInBatch = Integer.MAX_VALUE;
+
+        byte[] payload = new byte[messageSize];
+        for (int i = 0; i < messageSize; i++) {
+            payload[i] = (byte) ('a' + i % 26);
+        }
+        for (int i = 0; i < messagesPerBatch; i++) {
+            MessageMetadata metadata = new MessageMetadata()
+                    .setProducerName("bench-producer")
+                    .setSequenceId(i)
+                    .setPublishTime(System.currentTimeMillis())
+                    .setPartitionKey("key-" + i);
+            messages.add(MessageImpl.create(metadata, ByteBuffer.wrap(payload), Schema.BYTES, "bench-topic"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        messages.forEach(MessageImpl::recycle);
+        messages.clear();
+    }
+
+    @Benchmark
+    public void buildBatch(Blackhole bh) {
+        for (int i = 0; i < messagesPerBatch; i++) {
+            MessageImpl<byte[]> msg = messages.get(i);
+            msg.getMessageBuilder().setSequenceId(sequenceId++);
+            container.add(msg, null);
+        }
+
+        ByteBuf batch = container.getCompressedBatchMetadataAndPayload();
+        MessageMetadata metadata = container.messageMetadata;
+        metadata.setNumMessagesInBatch(container.getNumMessagesInBatch());
+        metadata.setHighestSequenceId(container.highestSequenceId);
+        ByteBufPair cmd = Commands.newSend(1L, container.lowestSequenceId, container.highestSequenceId,
+                container.getNumMessagesInBatch(), Commands.ChecksumType.Crc32c, metadata, batch);
+        bh.consume(cmd.readableBytes());
+        cmd.release();
+
+        for (int i = 0; i < messagesPerBatch; i++) {
+            messages.get(i).getDataBuffer().resetReaderIndex();
+        }
+        container.clear();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.impl.conf.ClientConfigurationData;
+import org.apache.pulsar.client.impl.conf.ProducerConfigurationData;
+import org.apache.pulsar.common.api.proto.BaseCommand;
+import org.apache.pulsar.common.api.proto.CommandSend;
+import org.apache.pulsar.common.protocol.ByteBufPair;
+import org.apache.pulsar.common.util.netty.EventLoopUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ProducerImpl#sendAsync} when many threads publish on the same batching producer.
+ *
+ * <p>The producer runs on a client whose connection has a mocked channel, which acknowledges each batch written to
+ * it from the event loop of the connection, as the broker would. Like the producer, each send takes a
+ * permit of max pending messages that is released by the acknowledgement, so that the throughput measured is the rate
+ * of the completed sends, not the rate of the messages queued.
+ *
+ * <p>The number of publishing threads is set with {@code -t}. To compare with another implementation of the send
+ * path, run the benchmark on both revisions with the same thread counts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ProducerSendPathBenchmark {
+
+    @Param({"100"})
+    private int batchingMaxMessages;
+
+    @Param({"1000"})
+    private int maxPendingMessages;
+
+    @Param({"256"})
+    private int messageSize;
+
+    private EventLoopGroup eventLoopGroup;
+    private PulsarClientImpl client;
+    private ClientCnx cnx;
+    private ProducerImpl<byte[]> producer;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        eventLoopGroup = EventLoopUtil.newEventLoopGroup(1, false, new DefaultThreadFactory("bench-client-io"));
+        EventLoop eventLoop = eventLoopGroup.next();
+        payload = new byte[messageSize];
+
+        // Only the channel is mocked, so that the calls for each message are not slowed down by the mocks
+        Channel channel = mock(Channel.class);
+        when(channel.eventLoop()).thenReturn(eventLoop);
+        when(channel.isActive()).thenReturn(true);
+        ChannelHandlerContext channelContext = mock(ChannelHandlerContext.class);
+        when(channelContext.channel()).thenReturn(channel);
+        when(channelContext.executor()).thenReturn(eventLoop);
+        when(channelContext.voidPromise()).thenReturn(mock(ChannelPromise.class));
+
+        // The broker acknowledges the batches in the order they are written
+        AtomicLong entryId = new AtomicLong();
+        doAnswer(invocation -> {
+            ByteBufPair cmd = invocation.getArgument(0);
+            ByteBuf headers = cmd.getFirst();
+            headers.skipBytes(4);
+            int cmdSize = (int) headers.readUnsignedInt();
+            BaseCommand command = new BaseCommand();
+            command.parseFrom(headers, cmdSize);
+            CommandSend send = command.getSend();
+            long sequenceId = send.getSequenceId();
+            long highestSequenceId = send.getHighestSequenceId();
+            ReferenceCountUtil.release(cmd);
+            eventLoop.execute(() -> producer.ackReceived(cnx, sequenceId, highestSequenceId, 0,
+                    entryId.getAndIncrement()));
+            return null;
+        }).when(channelContext).writeAndFlush(any(), any());
+
+        ClientConfigurationData clientConf = new ClientConfigurationData();
+        clientConf.setServiceUrl("pulsar://localhost:6650");
+        cnx = new ClientCnx(clientConf, eventLoopGroup) {
+            @Override
+            public ChannelHandlerContext ctx() {
+                return channelContext;
+            }
+
+            @Override
+            Channel channel() {
+                return channel;
+            }
+
+            @Override
+            CompletableFuture<ProducerResponse> sendRequestWithId(ByteBuf cmd, long requestId) {
+                cmd.release();
+                return CompletableFuture.completedFuture(
+                        new ProducerResponse("bench-producer", -1, null, Optional.empty()));
+            }
+        };
+        client = new PulsarClientImpl(clientConf, eventLoopGroup) {
+            @Override
+            public CompletableFuture<ClientCnx> getConnection(String topic) {
+                return CompletableFuture.completedFuture(cnx);
+            }
+        };
+
+        ProducerConfigurationData conf = new ProducerConfigurationData();
+        conf.setTopicName("persistent://public/default/bench-topic");
+        conf.setBatchingEnabled(true);
+        conf.setBatchingMaxMessages(batchingMaxMessages);
+        conf.setBatchingMaxPublishDelayMicros(TimeUnit.MILLISECONDS.toMicros(1));
+        conf.setMaxPendingMessages(maxPendingMessages);
+        conf.setBlockIfQueueFull(true);
+
+        CompletableFuture<Producer<byte[]>> producerCreatedFuture = new CompletableFuture<>();
+        producer = new ProducerImpl<>(client, conf.getTopicName(), conf, producerCreatedFuture, -1, Schema.BYTES,
+                null, Optional.empty());
+        producerCreatedFuture.get(10, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        producer.flushAsync().get(10, TimeUnit.SECONDS);
+        client.close();
+        eventLoopGroup.shutdownGracefully().sync();
+    }
+
+    @Benchmark
+    public CompletableFuture<MessageId> send() {
+        return producer.sendAsync(payload);
+    }
+}
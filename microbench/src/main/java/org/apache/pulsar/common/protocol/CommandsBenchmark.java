@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.common.api.proto.CommandSend;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of framing a SEND command with {@link Commands#newSend} and of decoding the
+ * resulting frame through {@link PulsarDecoder}, as done by the client and the broker for every publish.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandsBenchmark {
+
+    @Param({"128", "4096"})
+    private int payloadSize;
+
+    @Param({"None", "Crc32c"})
+    private String checksumType;
+
+    private Commands.ChecksumType checksum;
+    private MessageMetadata metadata;
+    private ByteBuf payload;
+    private ByteBuf frame;
+    private final BlackholeDecoder decoder = new BlackholeDecoder();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        checksum = Commands.ChecksumType.valueOf(checksumType);
+        metadata = new MessageMetadata()
+                .setProducerName("bench-producer")
+                .setSequenceId(1)
+                .setPublishTime(System.currentTimeMillis())
+                .setPartitionKey("bench-key");
+        metadata.addProperty().setKey("k").setValue("v");
+        payload = Unpooled.directBuffer(payloadSize);
+        payload.writeZero(payloadSize);
+
+        // Build the frame the way it is seen by the broker, i.e. without the leading total-size field that is
+        // consumed by the length field based frame decoder
+        ByteBufPair pair = Commands.newSend(1L, 1L, 1, checksum, metadata, payload.retainedDuplicate());
+        ByteBuf coalesced = ByteBufPair.coalesce(pair);
+        pair.release();
+        frame = Unpooled.directBuffer(coalesced.readableBytes());
+        frame.writeBytes(coalesced, 4, coalesced.readableBytes() - 4);
+        coalesced.release();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        payload.release();
+        frame.release();
+    }
+
+    @Benchmark
+    public void newSend(Blackhole bh) {
+        ByteBufPair pair = Commands.newSend(1L, 1L, 1, checksum, metadata, payload.retainedDuplicate());
+        bh.consume(pair.readableBytes());
+        pair.release();
+    }
+
+    @Benchmark
+    public void decodeSend(Blackhole bh) throws Exception {
+        decoder.blackhole = bh;
+        // The decoder releases the buffer once the command has been handled
+        decoder.channelRead(null, frame.retainedDuplicate());
+    }
+
+    @Benchmark
+    public void decodeSendAndParseMetadata(Blackhole bh) throws Exception {
+        decoder.blackhole = bh;
+        decoder.parseMetadata = true;
+        try {
+            decoder.channelRead(null, frame.retainedDuplicate());
+        } finally {
+            decoder.parseMetadata = false;
+        }
+    }
+
+    private static class BlackholeDecoder extends PulsarDecoder {
+        private final MessageMetadata msgMetadata = new MessageMetadata();
+        private Blackhole blackhole;
+        private boolean parseMetadata;
+
+        @Override
+        protected void messageReceived() {
+            // no-op
+        }
+
+        @Override
+        protected void handleSend(CommandSend send, ByteBuf headersAndPayload) {
+            blackhole.consume(send.getSequenceId());
+            if (parseMetadata) {
+                Commands.skipChecksumIfPresent(headersAndPayload);
+                Commands.parseMessageMetadata(headersAndPayload, msgMetadata);
+                blackhole.consume(msgMetadata.getPublishTime());
+            }
+        }
+    }
+}
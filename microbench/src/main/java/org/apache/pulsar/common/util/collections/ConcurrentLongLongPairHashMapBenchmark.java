@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link ConcurrentLongLongPairHashMap}, which is used by the broker to track the pending acks of
+ * every consumer keyed by (ledgerId, entryId).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentLongLongPairHashMapBenchmark {
+
+    private static final int OPS = 1000;
+
+    @Param({"1000", "100000"})
+    private int mapSize;
+
+    private ConcurrentLongLongPairHashMap map;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        map = ConcurrentLongLongPairHashMap.newBuilder()
+                .expectedItems(mapSize)
+                .concurrencyLevel(1)
+                .build();
+        for (int i = 0; i < mapSize; i++) {
+            map.put(1, i, 1, 1);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void get(Blackhole bh) {
+        for (int i = 0; i < OPS; i++) {
+            bh.consume(map.get(1, i % mapSize));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    @Threads(4)
+    public void getConcurrent(Blackhole bh) {
+        for (int i = 0; i < OPS; i++) {
+            bh.consume(map.get(1, i % mapSize));
+        }
+    }
+
+    /**
+     * Simulates the dispatch/ack cycle of a consumer: an entry is added when dispatched and removed when acked.
+     */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void putAndRemove() {
+        for (int i = 0; i < OPS; i++) {
+            map.put(2, i, 1, 1);
+        }
+        for (int i = 0; i < OPS; i++) {
+            map.remove(2, i);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.util.collections;
+
+import com.google.common.collect.Range;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.common.util.collections.LongPairRangeSet.LongPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link ConcurrentOpenLongPairRangeSet}, which backs the individually deleted messages of a managed
+ * cursor. The set is pre-filled with one ack hole every other entry, the worst case for random acks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ConcurrentOpenLongPairRangeSetBenchmark {
+
+    @Param({"10", "1000"})
+    private int ledgers;
+
+    @Param({"1000"})
+    private int entriesPerLedger;
+
+    private ConcurrentOpenLongPairRangeSet<LongPair> set;
+    private long next;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        set = new ConcurrentOpenLongPairRangeSet<>(4096, LongPair::new);
+        for (long ledger = 0; ledger < ledgers; ledger++) {
+            for (long entry = 0; entry < entriesPerLedger; entry += 2) {
+                set.addOpenClosed(ledger, entry - 1, ledger, entry);
+            }
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public void contains(Blackhole bh) {
+        long n = next++;
+        bh.consume(set.contains(n % ledgers, n % entriesPerLedger));
+    }
+
+    @Benchmark
+    public void addAndRemove() {
+        long ledger = ledgers + (next++ % 1000);
+        set.addOpenClosed(ledger, -1, ledger, 0);
+        removeEntry(ledger, 0);
+    }
+
+    @Benchmark
+    public void size(Blackhole bh) {
+        // Invalidate the cached size so that it is computed again
+        long ledger = ledgers + 1;
+        set.addOpenClosed(ledger, -1, ledger, 0);
+        bh.consume(set.size());
+        removeEntry(ledger, 0);
+    }
+
+    @Benchmark
+    public void forEachRawRange(Blackhole bh) {
+        set.forEachRawRange((lowerKey, lowerValue, upperKey, upperValue) -> {
+            bh.consume(upperValue);
+            return true;
+        });
+    }
+
+    private void removeEntry(long ledger, long entry) {
+        LongPair position = new LongPair(ledger, entry);
+        set.remove(Range.closed(position, position));
+    }
+}
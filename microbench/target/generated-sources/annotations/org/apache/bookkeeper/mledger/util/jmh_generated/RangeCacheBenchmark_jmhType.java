@@ -0,0 +1,4 @@
+package org.apache.bookkeeper.mledger.util.jmh_generated;
+public class RangeCacheBenchmark_jmhType extends RangeCacheBenchmark_jmhType_B3 {
+}
+
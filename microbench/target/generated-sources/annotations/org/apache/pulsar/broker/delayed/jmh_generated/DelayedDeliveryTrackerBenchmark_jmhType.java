@@ -0,0 +1,4 @@
+package org.apache.pulsar.broker.delayed.jmh_generated;
+public class DelayedDeliveryTrackerBenchmark_jmhType extends DelayedDeliveryTrackerBenchmark_jmhType_B3 {
+}
+
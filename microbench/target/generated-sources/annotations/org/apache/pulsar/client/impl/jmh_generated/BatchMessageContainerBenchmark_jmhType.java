@@ -0,0 +1,4 @@
+package org.apache.pulsar.client.impl.jmh_generated;
+public class BatchMessageContainerBenchmark_jmhType extends BatchMessageContainerBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.apache.pulsar.client.impl.jmh_generated;
+public class ProducerSendPathBenchmark_jmhType extends ProducerSendPathBenchmark_jmhType_B3 {
+}
+
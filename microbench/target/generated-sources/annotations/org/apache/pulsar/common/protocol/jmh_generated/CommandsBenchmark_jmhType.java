@@ -0,0 +1,4 @@
+package org.apache.pulsar.common.protocol.jmh_generated;
+public class CommandsBenchmark_jmhType extends CommandsBenchmark_jmhType_B3 {
+}
+
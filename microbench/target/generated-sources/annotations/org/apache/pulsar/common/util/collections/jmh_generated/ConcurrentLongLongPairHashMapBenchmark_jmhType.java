@@ -0,0 +1,4 @@
+package org.apache.pulsar.common.util.collections.jmh_generated;
+public class ConcurrentLongLongPairHashMapBenchmark_jmhType extends ConcurrentLongLongPairHashMapBenchmark_jmhType_B3 {
+}
+
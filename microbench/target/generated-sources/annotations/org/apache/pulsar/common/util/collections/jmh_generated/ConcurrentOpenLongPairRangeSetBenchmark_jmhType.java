@@ -0,0 +1,4 @@
+package org.apache.pulsar.common.util.collections.jmh_generated;
+public class ConcurrentOpenLongPairRangeSetBenchmark_jmhType extends ConcurrentOpenLongPairRangeSetBenchmark_jmhType_B3 {
+}
+
@@ -335,6 +335,8 @@ public class ServiceConfiguration implements PulsarConfiguration {
             Class name of the factory that implements the delayed deliver tracker.
             If value is "org.apache.pulsar.broker.delayed.BucketDelayedDeliveryTrackerFactory", \
             will create bucket based delayed message index tracker.
+            If value is "org.apache.pulsar.broker.delayed.TimingWheelDelayedDeliveryTrackerFactory", \
+            will create timing wheel based delayed message index tracker.
             """)
     private String delayedDeliveryTrackerFactoryClassName = "org.apache.pulsar.broker.delayed"
             + ".InMemoryDelayedDeliveryTrackerFactory";
@@ -354,6 +356,13 @@ public class ServiceConfiguration implements PulsarConfiguration {
             + "delayedDeliveryTickTimeMillis.")
     private boolean isDelayedDeliveryDeliverAtTimeStrict = false;
 
+    @FieldContext(category = CATEGORY_SERVER, doc = """
+            Release the delayed messages in ticks of this interval (in milliseconds), instead of as soon as they \
+            are due. The messages that are due within the same tick are released together at its end, so that a \
+            burst of messages due around the same time causes a single dispatcher wakeup and replay read, at the cost \
+            of delivering the messages up to this much later. Default is 0, which disables the ticks.""")
+    private long delayedDeliveryQuantumMillis = 0;
+
     @FieldContext(category = CATEGORY_SERVER, doc = """
             The delayed message index bucket min index count. When the index count of the current bucket is more than \
             this value and all message indexes of current ledger have already been added to the tracker \
@@ -379,6 +388,13 @@ public class ServiceConfiguration implements PulsarConfiguration {
             + "logic to handle fixed delays in messages in a different way.")
     private long delayedDeliveryFixedDelayDetectionLookahead = 50_000;
 
+    @FieldContext(category = CATEGORY_SERVER, doc = """
+            The resolution (in milliseconds) of the timing wheel of the TimingWheelDelayedDeliveryTrackerFactory. \
+            A message is delivered once the whole resolution interval of its deliverAt time has passed, so it may be \
+            delivered up to this much later. A coarser resolution moves the messages fewer times across the levels \
+            of the wheel.""")
+    private long delayedDeliveryTimingWheelResolutionMillis = 1;
+
     @FieldContext(category = CATEGORY_SERVER, doc = "Whether to enable the acknowledge of batch local index")
     private boolean acknowledgmentAtBatchIndexLevelEnabled = false;
 
@@ -756,7 +772,9 @@ public class ServiceConfiguration implements PulsarConfiguration {
 
     @FieldContext(
         category = CATEGORY_POLICIES,
-        doc = "Maximum number of producer information that it's going to be persisted for deduplication purposes"
+        doc = "Maximum number of producer information that it's going to be persisted for deduplication purposes.\n\n"
+            + "It also bounds the number of disconnected producers whose information is kept in memory, the least"
+            + " recently active ones being discarded first"
     )
     private int brokerDeduplicationMaxNumberOfProducers = 10000;
 
@@ -789,6 +807,15 @@ public class ServiceConfiguration implements PulsarConfiguration {
             + " relative to a disconnected producer. Default is 6 hours.")
     private int brokerDeduplicationProducerInactivityTimeoutMinutes = 360;
 
+    @FieldContext(
+        category = CATEGORY_POLICIES,
+        doc = "Whether to store the deduplication snapshots in a ledger of their own instead of the properties of"
+            + " the deduplication cursor.\n\n"
+            + "Only the information of the producers that changed since the previous snapshot is appended to the"
+            + " ledger, which is rolled over with a full snapshot once the changes outgrow it"
+    )
+    private boolean brokerDeduplicationSnapshotLedgerEnabled = false;
+
     @FieldContext(
         category = CATEGORY_POLICIES,
         dynamic = true,
@@ -1077,6 +1104,28 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private boolean dispatcherDispatchMessagesInSubscriptionThread = true;
 
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Whether to schedule the dispatches of the subscriptions that dispatch messages in a per-subscription"
+                    + " thread by deficit round-robin, instead of in the order of the reads. The subscriptions sharing"
+                    + " a thread get an equal share of it, in bytes and messages, so that the ones reading large"
+                    + " batches from a backlog cannot delay the others. Only applies when"
+                    + " dispatcherDispatchMessagesInSubscriptionThread is enabled."
+    )
+    private boolean dispatcherSchedulingEnabled = false;
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "The number of bytes a subscription can dispatch on each round of the dispatch scheduler."
+    )
+    private long dispatcherSchedulingQuantumBytes = 1024 * 1024;
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "The number of entries a subscription can dispatch on each round of the dispatch scheduler."
+    )
+    private int dispatcherSchedulingQuantumEntries = 100;
+
     @FieldContext(
         dynamic = false,
         category = CATEGORY_SERVER,
@@ -1169,6 +1218,16 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private boolean allowOverrideEntryFilters = false;
 
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = """
+                    Number of threads of the pool on which the entry filters are run. When it is 0, the filters \
+                    are run on the dispatcher thread, one entry after the other. Otherwise, the filters of the \
+                    entries read for a consumer are run in parallel on the pool, along with the dispatcher \
+                    thread, so the entry filters have to be thread safe."""
+    )
+    private int entryFilterExecutorThreads = 0;
+
     @FieldContext(
         category = CATEGORY_SERVER,
         doc = "Whether to use streaming read dispatcher. Currently is in preview and can be changed "
@@ -1322,6 +1381,23 @@ public class ServiceConfiguration implements PulsarConfiguration {
             + "delete position can be recovered or not.")
     private boolean lazyCursorRecovery = false;
 
+    @FieldContext(category = CATEGORY_SERVER, doc = "Whether to read the cursors metadata and open the cursor ledgers"
+            + " of a managed ledger while its data ledgers are being recovered, instead of after. It shortens the"
+            + " recovery of the topics with many cursors.")
+    private boolean pipelinedCursorRecovery = false;
+
+    @FieldContext(category = CATEGORY_SERVER, doc = "Maximum number of managed ledgers recovered at the same time when"
+            + " loading topics, the other ones wait for their turn. It bounds the load put on the metadata store and"
+            + " the bookies when a bundle with many topics is loaded. (Default =0 for no limit)")
+    private int managedLedgerMaxConcurrentRecoveries = 0;
+
+    @FieldContext(category = CATEGORY_SERVER, doc = "Subscriptions that have not been active for longer than this are"
+            + " recovered in a dormant state when their topic is loaded: only their mark-delete position is read from"
+            + " the metadata store, and their cursor ledger and individually acknowledged messages are only recovered"
+            + " when a consumer attaches to them or acknowledges. Until then, their backlog can be reported larger than"
+            + " it is. (Default =0 to always recover the subscriptions fully)")
+    private int dormantCursorRecoveryThresholdMinutes = 0;
+
     @FieldContext(
         category = CATEGORY_SERVER,
         doc = "Check between intervals to see if consumed ledgers need to be trimmed"
@@ -1889,6 +1965,26 @@ public class ServiceConfiguration implements PulsarConfiguration {
             + "inserting in cache")
     private boolean managedLedgerCacheCopyEntries = false;
 
+    @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Class name of the managed ledger entry cache manager."
+            + " The default `RangeEntryCacheManagerImpl` keeps the entries in an on-heap sorted map, while"
+            + " `org.apache.bookkeeper.mledger.impl.cache.SegmentedEntryCacheManagerImpl` appends them into"
+            + " pre-allocated off-heap segments and evicts whole segments at a time")
+    private String managedLedgerCacheManagerClassName =
+            "org.apache.bookkeeper.mledger.impl.cache.RangeEntryCacheManagerImpl";
+
+    @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Number of off-heap segments the managed ledger cache is"
+            + " split into when using the segmented entry cache manager")
+    private int managedLedgerCacheSegmentsCount = 8;
+
+    @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Class name of the eviction policy of the managed ledger"
+            + " cache. The default `org.apache.bookkeeper.mledger.impl.cache.EntryCacheDefaultEvictionPolicy` evicts"
+            + " the oldest entries of the biggest caches, while"
+            + " `org.apache.bookkeeper.mledger.impl.cache.EntryCacheTinyLfuEvictionPolicy` tracks how often the"
+            + " entries are read, keeps the entries that many cursors read and only caches the backlog reads that"
+            + " several cursors need")
+    private String managedLedgerCacheEvictionPolicyClassName =
+            "org.apache.bookkeeper.mledger.impl.cache.EntryCacheDefaultEvictionPolicy";
+
     @FieldContext(category = CATEGORY_STORAGE_ML, doc = "Maximum buffer size for bytes read from storage."
             + " This is the memory retained by data read from storage (or cache) until it has been delivered to the"
             + " Consumer Netty channel. Use O to disable")
@@ -1917,6 +2013,13 @@ public class ServiceConfiguration implements PulsarConfiguration {
             doc = "Configure the threshold (in number of entries) from where a cursor should be considered 'backlogged'"
                     + " and thus should be set as inactive.")
     private long managedLedgerCursorBackloggedThreshold = 1000;
+    @FieldContext(category = CATEGORY_STORAGE_ML,
+            doc = "Number of batches of entries read ahead of a cursor that is backlogged (inactive), so that catching"
+                    + " up with a backlog is not limited by the latency of the reads from the bookies. The batches read"
+                    + " ahead are accounted in managedLedgerMaxReadsInFlightSizeInMB, and the read-ahead is only"
+                    + " enabled when it is set and the entry cache is enabled."
+                    + " (Default =0 to disable the read-ahead)")
+    private int managedLedgerCursorReadAheadPrefetchBatches = 0;
     @FieldContext(
         category = CATEGORY_STORAGE_ML,
         doc = "Rate limit the amount of writes per second generated by consumer acking the messages"
@@ -2023,6 +2126,26 @@ public class ServiceConfiguration implements PulsarConfiguration {
         doc = "If enabled, the maximum \"acknowledgment holes\" will not be limited and \"acknowledgment holes\" "
                 + "are stored in multiple entries.")
     private boolean persistentUnackedRangesWithMultipleEntriesEnabled = false;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "If enabled, the \"acknowledgment holes\" are persisted in the cursor ledger as compressed bitmaps of"
+                + " the acknowledged entries of each ledger, instead of a list of ranges, and are not limited by"
+                + " managedLedgerMaxUnackedRangesToPersist. The bitmaps that don't fit in a single entry are written"
+                + " in chunks of managedLedgerUnackedRangesBitmapChunkSizeBytes. Cursors persisted with this encoding"
+                + " lose their \"acknowledgment holes\" when recovered by older versions.")
+    private boolean managedLedgerUnackedRangesBitmapEncodingEnabled = false;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Max size in bytes of the \"acknowledgment holes\" bitmaps written in a single entry of the cursor"
+                + " ledger, when managedLedgerUnackedRangesBitmapEncodingEnabled is enabled.")
+    private int managedLedgerUnackedRangesBitmapChunkSizeBytes = 512 * 1024;
+    @FieldContext(
+        category = CATEGORY_STORAGE_ML,
+        doc = "Max number of deltas of the \"acknowledgment holes\" written in the cursor ledger between two full"
+                + " snapshots. When greater than 0, each mark-delete update only writes the ranges acknowledged since"
+                + " the previous update, and the recovery replays them on top of the last snapshot. Cursors persisted"
+                + " with deltas are only partially recovered by older versions. 0 to always write full snapshots.")
+    private int managedLedgerUnackedRangesMaxDeltasBetweenSnapshots = 0;
     @Deprecated
     @FieldContext(
         category = CATEGORY_STORAGE_ML,
@@ -2616,6 +2739,45 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private long brokerServiceCompactionPhaseOneLoopTimeInSeconds = 30;
 
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Number of shards the key space of a topic is split into by the compaction. With more than 1 shard,"
+                    + " the keys are extracted by as many threads, and the latest position of each key is spilled to"
+                    + " disk once the positions exceed brokerServiceCompactionMemoryBudgetInBytes."
+    )
+    private int brokerServiceCompactionShards = 1;
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Memory budget of the latest positions of the keys of a topic, during the compaction of the topic"
+                    + " with more than 1 shard"
+    )
+    private long brokerServiceCompactionMemoryBudgetInBytes = 256 * 1024 * 1024;
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Directory where the compaction with more than 1 shard spills the latest positions of the keys."
+                    + " The temporary directory of the JVM is used if it's not set."
+    )
+    private String brokerServiceCompactionSpillDirectory = "";
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Whether the compaction of a topic that was already compacted only reads the messages after the"
+                    + " compaction horizon through the topic, and copies the compacted ledger from BookKeeper minus"
+                    + " the keys that changed since the horizon."
+    )
+    private boolean brokerServiceCompactionIncrementalEnabled = false;
+
+    @FieldContext(
+            category = CATEGORY_SERVER,
+            doc = "Number of entries of the compacted ledger per block of the index the compaction writes along with"
+                    + " it, which records the first message id and the hashes of the keys of each block. The index"
+                    + " lets the reads of the compacted ledger locate an entry without a binary search over"
+                    + " BookKeeper, and serves the lookups of the latest message of a key. Disable with value 0."
+    )
+    private int brokerServiceCompactionIndexBlockSize = 0;
+
     @FieldContext(
         category = CATEGORY_SERVER,
         doc = "Interval between checks to see if cluster is migrated and marks topic migrated "
@@ -2655,6 +2817,14 @@ public class ServiceConfiguration implements PulsarConfiguration {
     )
     private SchemaCompatibilityStrategy schemaCompatibilityStrategy = SchemaCompatibilityStrategy.FULL;
 
+    @FieldContext(
+            category = CATEGORY_SCHEMA,
+            doc = "Max number of schema compatibility check results to cache. A result is reused when the same schema"
+                    + " is checked again against the same existing schemas of a topic, for example when producers"
+                    + " reconnect. Setting it to 0 disables the cache."
+    )
+    private int schemaRegistryCompatibilityCheckCacheSize = 10000;
+
     /**** --- WebSocket. --- ****/
     @FieldContext(
         category = CATEGORY_WEBSOCKET,
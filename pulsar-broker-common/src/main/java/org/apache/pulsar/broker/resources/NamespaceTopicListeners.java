@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.resources;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import org.apache.pulsar.common.topics.TopicList;
+import org.apache.pulsar.metadata.api.NotificationType;
+
+/**
+ * The listeners of the topics of a namespace, for {@link TopicResources}.
+ *
+ * <p>The {@link TopicPatternListener}s are grouped by pattern, and the groups are indexed in a trie by the literal
+ * prefix of their pattern. A topic is then only matched against the patterns whose prefix it starts with, and each
+ * pattern is evaluated once for all of its listeners.
+ */
+class NamespaceTopicListeners {
+
+    private static final class PatternGroup {
+        private final Pattern pattern;
+        private final Set<TopicPatternListener> listeners = new LinkedHashSet<>();
+
+        private PatternGroup(Pattern pattern) {
+            this.pattern = pattern;
+        }
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private final List<PatternGroup> groups = new ArrayList<>(1);
+
+        private boolean isEmpty() {
+            return children.isEmpty() && groups.isEmpty();
+        }
+    }
+
+    private final Set<BiConsumer<String, NotificationType>> listeners = new LinkedHashSet<>();
+    // Groups by pattern and flags, and trie of their literal prefixes
+    private final Map<String, PatternGroup> patternGroups = new HashMap<>();
+    private final Node root = new Node();
+
+    synchronized void add(BiConsumer<String, NotificationType> listener) {
+        if (!(listener instanceof TopicPatternListener patternListener)) {
+            listeners.add(listener);
+            return;
+        }
+        Pattern pattern = patternListener.getTopicsPattern();
+        PatternGroup group = patternGroups.get(groupKey(pattern));
+        if (group == null) {
+            group = new PatternGroup(pattern);
+            patternGroups.put(groupKey(pattern), group);
+            Node node = root;
+            for (char c : TopicList.literalPrefix(pattern).toCharArray()) {
+                node = node.children.computeIfAbsent(c, __ -> new Node());
+            }
+            node.groups.add(group);
+        }
+        group.listeners.add(patternListener);
+    }
+
+    synchronized void remove(BiConsumer<String, NotificationType> listener) {
+        if (!(listener instanceof TopicPatternListener patternListener)) {
+            listeners.remove(listener);
+            return;
+        }
+        Pattern pattern = patternListener.getTopicsPattern();
+        PatternGroup group = patternGroups.get(groupKey(pattern));
+        if (group == null || !group.listeners.remove(patternListener) || !group.listeners.isEmpty()) {
+            return;
+        }
+        patternGroups.remove(groupKey(pattern));
+        String prefix = TopicList.literalPrefix(pattern);
+        Node[] path = new Node[prefix.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            path[i + 1] = path[i].children.get(prefix.charAt(i));
+        }
+        path[prefix.length()].groups.remove(group);
+        // Prune the nodes that no longer lead to any group
+        for (int i = prefix.length(); i > 0 && path[i].isEmpty(); i--) {
+            path[i - 1].children.remove(prefix.charAt(i - 1));
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return listeners.isEmpty() && patternGroups.isEmpty();
+    }
+
+    /**
+     * Notify the listeners of a topic, outside the lock of the listeners.
+     */
+    void notify(String topicName, NotificationType notificationType) {
+        List<BiConsumer<String, NotificationType>> plainListeners;
+        List<TopicPatternListener> matchingListeners = new ArrayList<>();
+        synchronized (this) {
+            plainListeners = listeners.isEmpty() ? List.of() : new ArrayList<>(listeners);
+            Node node = root;
+            for (int i = 0; node != null; i++) {
+                for (PatternGroup group : node.groups) {
+                    if (group.pattern.matcher(topicName).matches()) {
+                        matchingListeners.addAll(group.listeners);
+                    }
+                }
+                node = i < topicName.length() ? node.children.get(topicName.charAt(i)) : null;
+            }
+        }
+        for (BiConsumer<String, NotificationType> listener : plainListeners) {
+            listener.accept(topicName, notificationType);
+        }
+        for (TopicPatternListener listener : matchingListeners) {
+            listener.onMatchingTopic(topicName, notificationType);
+        }
+    }
+
+    private static String groupKey(Pattern pattern) {
+        return pattern.flags() + ":" + pattern.pattern();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.resources;
+
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import org.apache.pulsar.metadata.api.NotificationType;
+
+/**
+ * Listener of the topics of a namespace that match a pattern.
+ *
+ * <p>When registered with {@link TopicResources#registerPersistentTopicListener}, the listeners are indexed by their
+ * pattern: the pattern is only evaluated for the topics that start with its literal prefix, and once for all the
+ * listeners that share it. The listener is then only notified of the topics that match.
+ */
+public interface TopicPatternListener extends BiConsumer<String, NotificationType> {
+
+    Pattern getTopicsPattern();
+
+    /**
+     * Called when a topic that matches the pattern is created or deleted.
+     */
+    void onMatchingTopic(String topicName, NotificationType notificationType);
+}
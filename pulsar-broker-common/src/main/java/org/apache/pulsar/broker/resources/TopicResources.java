@@ -40,13 +40,20 @@ import org.apache.pulsar.metadata.api.NotificationType;
 public class TopicResources {
     private static final String MANAGED_LEDGER_PATH = "/managed-ledgers";
 
+    // Path of a topic, with its namespace, domain and encoded local name
+    private static final Pattern TOPIC_PATH_PATTERN = Pattern.compile(
+            MANAGED_LEDGER_PATH + "/(.+)/(" + TopicDomain.persistent + ")/([^/]+)");
+
     private final MetadataStore store;
 
-    private final Map<BiConsumer<String, NotificationType>, Pattern> topicListeners;
+    // Namespace of each listener, and listeners of each namespace
+    private final Map<BiConsumer<String, NotificationType>, NamespaceName> topicListeners;
+    private final Map<String, NamespaceTopicListeners> namespaceTopicListeners;
 
     public TopicResources(MetadataStore store) {
         this.store = store;
         topicListeners = new ConcurrentHashMap<>();
+        namespaceTopicListeners = new ConcurrentHashMap<>();
         store.registerListener(this::handleNotification);
     }
 
@@ -131,30 +138,51 @@ public class TopicResources {
         if (notification.getPath().startsWith(MANAGED_LEDGER_PATH)
                 && (notification.getType() == NotificationType.Created
                 || notification.getType() == NotificationType.Deleted)) {
-            for (Map.Entry<BiConsumer<String, NotificationType>, Pattern> entry :
-                    topicListeners.entrySet()) {
-                Matcher matcher = entry.getValue().matcher(notification.getPath());
-                if (matcher.matches()) {
+            Matcher matcher = TOPIC_PATH_PATTERN.matcher(notification.getPath());
+            if (matcher.matches()) {
+                NamespaceTopicListeners listeners = namespaceTopicListeners.get(matcher.group(1));
+                if (listeners != null) {
                     TopicName topicName = TopicName.get(
                             matcher.group(2), NamespaceName.get(matcher.group(1)), matcher.group(3));
-                    entry.getKey().accept(topicName.toString(), notification.getType());
+                    listeners.notify(topicName.toString(), notification.getType());
                 }
             }
         }
     }
 
-    Pattern namespaceNameToTopicNamePattern(NamespaceName namespaceName) {
-        return Pattern.compile(
-                MANAGED_LEDGER_PATH + "/(" + namespaceName + ")/(" + TopicDomain.persistent + ")/(" + "[^/]+)");
-    }
-
+    /**
+     * Register a listener of the persistent topics that are created or deleted in a namespace.
+     *
+     * <p>A {@link TopicPatternListener} is only notified of the topics that match its pattern.
+     */
     public void registerPersistentTopicListener(
             NamespaceName namespaceName, BiConsumer<String, NotificationType> listener) {
-        topicListeners.put(listener, namespaceNameToTopicNamePattern(namespaceName));
+        NamespaceName previous = topicListeners.put(listener, namespaceName);
+        if (previous != null && !previous.equals(namespaceName)) {
+            removeNamespaceTopicListener(previous, listener);
+        }
+        namespaceTopicListeners.compute(namespaceName.toString(), (namespace, listeners) -> {
+            if (listeners == null) {
+                listeners = new NamespaceTopicListeners();
+            }
+            listeners.add(listener);
+            return listeners;
+        });
     }
 
     public void deregisterPersistentTopicListener(BiConsumer<String, NotificationType> listener) {
-        topicListeners.remove(listener);
+        NamespaceName namespaceName = topicListeners.remove(listener);
+        if (namespaceName != null) {
+            removeNamespaceTopicListener(namespaceName, listener);
+        }
+    }
+
+    private void removeNamespaceTopicListener(NamespaceName namespaceName,
+                                              BiConsumer<String, NotificationType> listener) {
+        namespaceTopicListeners.computeIfPresent(namespaceName.toString(), (namespace, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
     }
 
 }
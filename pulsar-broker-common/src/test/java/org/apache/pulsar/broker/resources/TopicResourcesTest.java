@@ -26,10 +26,15 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+import java.util.List;
 import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
 
 public class TopicResourcesTest {
 
@@ -106,4 +111,44 @@ public class TopicResourcesTest {
         verifyNoMoreInteractions(listener);
     }
 
+    @Test
+    public void testPatternListenersOnlyInvokedForMatchingTopics() {
+        TopicPatternListener listener1 = patternListener("persistent://tenant/namespace/topic-.*");
+        TopicPatternListener listener2 = patternListener("persistent://tenant/namespace/topic-.*");
+        TopicPatternListener listener3 = patternListener("persistent://tenant/namespace/other-.*");
+        TopicPatternListener listener4 = patternListener(".*-1");
+        topicResources.registerPersistentTopicListener(NamespaceName.get("tenant/namespace"), listener1);
+        topicResources.registerPersistentTopicListener(NamespaceName.get("tenant/namespace"), listener2);
+        topicResources.registerPersistentTopicListener(NamespaceName.get("tenant/namespace"), listener3);
+        topicResources.registerPersistentTopicListener(NamespaceName.get("tenant/namespace"), listener4);
+
+        topicResources.handleNotification(new Notification(NotificationType.Created, "/managed-ledgers/tenant/namespace/persistent/topic-1"));
+        verify(listener1).onMatchingTopic("persistent://tenant/namespace/topic-1", NotificationType.Created);
+        verify(listener2).onMatchingTopic("persistent://tenant/namespace/topic-1", NotificationType.Created);
+        verify(listener4).onMatchingTopic("persistent://tenant/namespace/topic-1", NotificationType.Created);
+
+        topicResources.handleNotification(new Notification(NotificationType.Deleted, "/managed-ledgers/tenant/namespace/persistent/other-2"));
+        verify(listener3).onMatchingTopic("persistent://tenant/namespace/other-2", NotificationType.Deleted);
+
+        // The pattern is still evaluated for the remaining listener that shares it
+        topicResources.deregisterPersistentTopicListener(listener1);
+        topicResources.deregisterPersistentTopicListener(listener3);
+        topicResources.handleNotification(new Notification(NotificationType.Created, "/managed-ledgers/tenant/namespace/persistent/topic-2"));
+        topicResources.handleNotification(new Notification(NotificationType.Created, "/managed-ledgers/tenant/namespace/persistent/other-3"));
+        verify(listener2).onMatchingTopic("persistent://tenant/namespace/topic-2", NotificationType.Created);
+
+        for (TopicPatternListener listener : List.of(listener1, listener2, listener3, listener4)) {
+            verify(listener, never()).accept(any(), any());
+        }
+        verify(listener1, times(1)).onMatchingTopic(any(), any());
+        verify(listener2, times(2)).onMatchingTopic(any(), any());
+        verify(listener3, times(1)).onMatchingTopic(any(), any());
+        verify(listener4, times(1)).onMatchingTopic(any(), any());
+    }
+
+    private static TopicPatternListener patternListener(String pattern) {
+        TopicPatternListener listener = mock(TopicPatternListener.class);
+        when(listener.getTopicsPattern()).thenReturn(Pattern.compile(pattern));
+        return listener;
+    }
 }
@@ -63,6 +63,10 @@ public class ManagedLedgerClientFactory implements ManagedLedgerStorage {
         managedLedgerFactoryConfig.setCacheEvictionTimeThresholdMillis(
                 conf.getManagedLedgerCacheEvictionTimeThresholdMillis());
         managedLedgerFactoryConfig.setCopyEntriesInCache(conf.isManagedLedgerCacheCopyEntries());
+        managedLedgerFactoryConfig.setEntryCacheManagerClassName(conf.getManagedLedgerCacheManagerClassName());
+        managedLedgerFactoryConfig.setEntryCacheSegmentsCount(conf.getManagedLedgerCacheSegmentsCount());
+        managedLedgerFactoryConfig.setEntryCacheEvictionPolicyClassName(
+                conf.getManagedLedgerCacheEvictionPolicyClassName());
         managedLedgerFactoryConfig.setManagedLedgerMaxReadsInFlightSize(
                 conf.getManagedLedgerMaxReadsInFlightSizeInMB() * 1024L * 1024L);
         managedLedgerFactoryConfig.setPrometheusStatsLatencyRolloverSeconds(
@@ -72,6 +76,8 @@ public class ManagedLedgerClientFactory implements ManagedLedgerStorage {
         managedLedgerFactoryConfig.setManagedLedgerInfoCompressionType(conf.getManagedLedgerInfoCompressionType());
         managedLedgerFactoryConfig.setStatsPeriodSeconds(conf.getManagedLedgerStatsPeriodSeconds());
         managedLedgerFactoryConfig.setManagedCursorInfoCompressionType(conf.getManagedCursorInfoCompressionType());
+        managedLedgerFactoryConfig.setMaxConcurrentManagedLedgerRecoveries(
+                conf.getManagedLedgerMaxConcurrentRecoveries());
 
         Configuration configuration = new ClientConfiguration();
         if (conf.isBookkeeperClientExposeStatsToPrometheus()) {
@@ -49,6 +49,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -103,6 +104,7 @@ import org.apache.pulsar.broker.service.SystemTopicBasedTopicPoliciesService;
 import org.apache.pulsar.broker.service.Topic;
 import org.apache.pulsar.broker.service.TopicPoliciesService;
 import org.apache.pulsar.broker.service.TransactionBufferSnapshotServiceFactory;
+import org.apache.pulsar.broker.service.schema.CompressionDictionaryRegistry;
 import org.apache.pulsar.broker.service.schema.SchemaRegistryService;
 import org.apache.pulsar.broker.service.schema.SchemaStorageFactory;
 import org.apache.pulsar.broker.stats.MetricsGenerator;
@@ -147,6 +149,7 @@ import org.apache.pulsar.common.util.Reflections;
 import org.apache.pulsar.common.util.ThreadDumpUtil;
 import org.apache.pulsar.common.util.netty.EventLoopUtil;
 import org.apache.pulsar.compaction.Compactor;
+import org.apache.pulsar.compaction.ShardedTwoPhaseCompactor;
 import org.apache.pulsar.compaction.StrategicTwoPhaseCompactor;
 import org.apache.pulsar.compaction.TwoPhaseCompactor;
 import org.apache.pulsar.functions.worker.ErrorNotifier;
@@ -210,6 +213,7 @@ public class PulsarService implements AutoCloseable, ShutdownService {
     private OrderedExecutor orderedExecutor;
     private final ScheduledExecutorService loadManagerExecutor;
     private ScheduledExecutorService compactorExecutor;
+    private ExecutorService compactorShardsExecutor;
     private OrderedScheduler offloaderScheduler;
     private OffloadersCache offloadersCache = new OffloadersCache();
     private LedgerOffloader defaultOffloader;
@@ -233,6 +237,7 @@ public class PulsarService implements AutoCloseable, ShutdownService {
     private final String brokerVersion;
     private SchemaStorage schemaStorage = null;
     private SchemaRegistryService schemaRegistryService = null;
+    private CompressionDictionaryRegistry compressionDictionaryRegistry = null;
     private final WorkerConfig workerConfig;
     private final Optional<WorkerService> functionWorkerService;
     private ProtocolHandlers protocolHandlers = null;
@@ -531,6 +536,7 @@ public class PulsarService implements AutoCloseable, ShutdownService {
             }
 
             executorServicesShutdown.shutdown(compactorExecutor);
+            executorServicesShutdown.shutdown(compactorShardsExecutor);
             executorServicesShutdown.shutdown(offloaderScheduler);
             executorServicesShutdown.shutdown(executor);
             executorServicesShutdown.shutdown(orderedExecutor);
@@ -766,7 +772,9 @@ public class PulsarService implements AutoCloseable, ShutdownService {
 
             schemaStorage = createAndStartSchemaStorage();
             schemaRegistryService = SchemaRegistryService.create(
-                    schemaStorage, config.getSchemaRegistryCompatibilityCheckers(), this.executor);
+                    schemaStorage, config.getSchemaRegistryCompatibilityCheckers(), this.executor,
+                    config.getSchemaRegistryCompatibilityCheckCacheSize());
+            compressionDictionaryRegistry = new CompressionDictionaryRegistry(schemaStorage);
 
             OffloadPoliciesImpl defaultOffloadPolicies =
                     OffloadPoliciesImpl.create(this.getConfiguration().getProperties());
@@ -1467,8 +1475,22 @@ public class PulsarService implements AutoCloseable, ShutdownService {
         return this.compactorExecutor;
     }
 
+    protected synchronized ExecutorService getCompactorShardsExecutor() {
+        if (this.compactorShardsExecutor == null) {
+            compactorShardsExecutor = Executors.newFixedThreadPool(
+                    this.getConfiguration().getBrokerServiceCompactionShards(),
+                    new ExecutorProvider.ExtendedThreadFactory("compaction-shard"));
+        }
+        return this.compactorShardsExecutor;
+    }
+
     // only public so mockito can mock it
     public Compactor newCompactor() throws PulsarServerException {
+        if (this.getConfiguration().getBrokerServiceCompactionShards() > 1) {
+            return new ShardedTwoPhaseCompactor(this.getConfiguration(),
+                    getClient(), getBookKeeperClient(),
+                    getCompactorExecutor(), getCompactorShardsExecutor());
+        }
         return new TwoPhaseCompactor(this.getConfiguration(),
                 getClient(), getBookKeeperClient(),
                 getCompactorExecutor());
@@ -144,6 +144,7 @@ import org.apache.pulsar.common.stats.AnalyzeSubscriptionBacklogResult;
 import org.apache.pulsar.common.util.DateFormatter;
 import org.apache.pulsar.common.util.FutureUtil;
 import org.apache.pulsar.common.util.collections.BitSetRecyclable;
+import org.apache.pulsar.compaction.CompactedTopic;
 import org.apache.pulsar.metadata.api.MetadataStoreException;
 import org.apache.pulsar.transaction.coordinator.TransactionCoordinatorID;
 import org.slf4j.Logger;
@@ -2895,6 +2896,58 @@ public class PersistentTopicsBase extends AdminResource {
         });
     }
 
+    protected CompletableFuture<Response> internalGetCompactedMessageByKey(String key, boolean authoritative) {
+        CompletableFuture<Void> future;
+        if (topicName.isGlobal()) {
+            future = validateGlobalNamespaceOwnershipAsync(namespaceName);
+        } else {
+            future = CompletableFuture.completedFuture(null);
+        }
+        return future.thenCompose(__ -> {
+            if (topicName.isPartitioned()) {
+                return CompletableFuture.completedFuture(null);
+            } else {
+                return getPartitionedTopicMetadataAsync(topicName, authoritative, false)
+                        .thenAccept(topicMetadata -> {
+                            if (topicMetadata.partitions > 0) {
+                                log.warn("[{}] Not supported getCompactedMessageByKey operation on "
+                                        + "partitioned-topic {}", clientAppId(), topicName);
+                                throw new RestException(Status.METHOD_NOT_ALLOWED,
+                                        "GetCompactedMessageByKey is not allowed on partitioned-topic");
+                            }
+                        });
+            }
+        })
+        .thenCompose(ignore -> validateTopicOwnershipAsync(topicName, authoritative))
+        .thenCompose(__ -> validateTopicOperationAsync(topicName, TopicOperation.PEEK_MESSAGES))
+        .thenCompose(__ -> getTopicReferenceAsync(topicName))
+        .thenCompose(topic -> {
+            CompactedTopic compactedTopic = ((PersistentTopic) topic).getCompactedTopic();
+            if (compactedTopic.getCompactionHorizon().isEmpty()) {
+                throw new RestException(Status.NOT_FOUND, "Topic " + topicName + " is not compacted");
+            }
+            return compactedTopic.readLatestEntryOfKey(key).exceptionally(ex -> {
+                Throwable cause = FutureUtil.unwrapCompletionException(ex);
+                if (cause instanceof IllegalStateException) {
+                    throw new RestException(Status.PRECONDITION_FAILED, cause.getMessage());
+                }
+                throw new RestException(cause);
+            });
+        })
+        .thenApply(entry -> {
+            if (entry.isEmpty()) {
+                throw new RestException(Status.NOT_FOUND, "Key not found in the compacted topic");
+            }
+            try {
+                return generateResponseWithEntry(entry.get());
+            } catch (IOException exception) {
+                throw new RestException(exception);
+            } finally {
+                entry.get().release();
+            }
+        });
+    }
+
     protected CompletableFuture<MessageId> internalGetMessageIdByTimestampAsync(long timestamp, boolean authoritative) {
         CompletableFuture<Void> future;
         if (topicName.isGlobal()) {
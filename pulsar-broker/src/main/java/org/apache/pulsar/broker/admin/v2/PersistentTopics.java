@@ -1953,6 +1953,50 @@ public class PersistentTopics extends PersistentTopicsBase {
                 });
     }
 
+    @GET
+    @Path("/{tenant}/{namespace}/{topic}/compaction/message")
+    @ApiOperation(value = "Get the latest message of a key in the compacted topic, as of the compaction horizon.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 307, message = "Current broker doesn't serve the namespace of this topic"),
+            @ApiResponse(code = 401, message = "Don't have permission to administrate resources on this tenant or"
+                    + "subscriber is not authorized to access this operation"),
+            @ApiResponse(code = 403, message = "Don't have admin permission"),
+            @ApiResponse(code = 404, message = "Namespace or topic does not exist, the topic is not compacted or the"
+                    + " key is not in the compacted topic"),
+            @ApiResponse(code = 405, message = "Operation is not allowed on a partitioned topic"),
+            @ApiResponse(code = 412, message = "Topic name is not valid or the compacted topic has no index"),
+            @ApiResponse(code = 500, message = "Internal server error"),
+            @ApiResponse(code = 503, message = "Failed to validate global cluster configuration")})
+    public void getCompactedMessageByKey(
+            @Suspended final AsyncResponse asyncResponse,
+            @ApiParam(value = "Specify the tenant", required = true)
+            @PathParam("tenant") String tenant,
+            @ApiParam(value = "Specify the namespace", required = true)
+            @PathParam("namespace") String namespace,
+            @ApiParam(value = "Specify topic name", required = true)
+            @PathParam("topic") @Encoded String encodedTopic,
+            @ApiParam(value = "The key of the message", required = true)
+            @QueryParam("key") String key,
+            @ApiParam(value = "Whether leader broker redirected this call to this broker. For internal use.")
+            @QueryParam("authoritative") @DefaultValue("false") boolean authoritative) {
+        validateTopicName(tenant, namespace, encodedTopic);
+        if (key == null) {
+            asyncResponse.resume(new RestException(Response.Status.PRECONDITION_FAILED, "Key is required"));
+            return;
+        }
+        internalGetCompactedMessageByKey(key, authoritative)
+                .thenAccept(asyncResponse::resume)
+                .exceptionally(ex -> {
+                    // If the exception is not redirect exception we need to log it.
+                    if (!isRedirectException(ex) && !isNotFoundException(ex)) {
+                        log.error("[{}] Failed to get the compacted message of key {} from {}",
+                                clientAppId(), key, topicName, ex);
+                    }
+                    resumeAsyncResponseExceptionally(asyncResponse, ex);
+                    return null;
+                });
+    }
+
     @GET
     @Path("/{tenant}/{namespace}/{topic}/messageid/{timestamp}")
     @ApiOperation(value = "Get message ID published at or just after this absolute timestamp (in ms).")
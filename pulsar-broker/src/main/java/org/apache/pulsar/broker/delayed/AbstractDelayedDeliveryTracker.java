@@ -49,6 +49,9 @@ public abstract class AbstractDelayedDeliveryTracker implements DelayedDeliveryT
 
     private final boolean isDelayedDeliveryDeliverAtTimeStrict;
 
+    // Interval of the ticks at which the messages are released, or 0 to release them as soon as they are due
+    private final long deliveryQuantumMillis;
+
     public AbstractDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer,
                                           long tickTimeMillis,
                                           boolean isDelayedDeliveryDeliverAtTimeStrict) {
@@ -58,11 +61,19 @@ public abstract class AbstractDelayedDeliveryTracker implements DelayedDeliveryT
     public AbstractDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer,
                                           long tickTimeMillis, Clock clock,
                                           boolean isDelayedDeliveryDeliverAtTimeStrict) {
+        this(dispatcher, timer, tickTimeMillis, clock, isDelayedDeliveryDeliverAtTimeStrict, 0);
+    }
+
+    public AbstractDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer,
+                                          long tickTimeMillis, Clock clock,
+                                          boolean isDelayedDeliveryDeliverAtTimeStrict,
+                                          long deliveryQuantumMillis) {
         this.dispatcher = dispatcher;
         this.timer = timer;
         this.tickTimeMillis = tickTimeMillis;
         this.clock = clock;
         this.isDelayedDeliveryDeliverAtTimeStrict = isDelayedDeliveryDeliverAtTimeStrict;
+        this.deliveryQuantumMillis = Math.max(0, deliveryQuantumMillis);
     }
 
 
@@ -75,10 +86,17 @@ public abstract class AbstractDelayedDeliveryTracker implements DelayedDeliveryT
      * can be delivered. As a consequence, there are two delays that will affect delivery. The first is the
      * {@link #tickTimeMillis} and the second is the {@link Timer}'s granularity.
      *
+     * When {@link #deliveryQuantumMillis} is set, the cutoff time is rounded down to a multiple of it, so that the
+     * messages that are due within the same quantum are released together, at the end of the quantum.
+     *
      * @return the cutoff time to determine whether a message is ready to deliver to the consumer
      */
     protected long getCutoffTime() {
-        return isDelayedDeliveryDeliverAtTimeStrict ? clock.millis() : clock.millis() + tickTimeMillis;
+        long cutoffTime = isDelayedDeliveryDeliverAtTimeStrict ? clock.millis() : clock.millis() + tickTimeMillis;
+        if (deliveryQuantumMillis > 0) {
+            cutoffTime -= Math.floorMod(cutoffTime, deliveryQuantumMillis);
+        }
+        return cutoffTime;
     }
 
     public void resetTickTime(long tickTime) {
@@ -97,6 +115,11 @@ public abstract class AbstractDelayedDeliveryTracker implements DelayedDeliveryT
             return;
         }
         long timestamp = nextDeliveryTime();
+        if (deliveryQuantumMillis > 0) {
+            // Wake up at the end of the quantum of the next message, which doesn't change as long as the messages
+            // added in the meantime are due within the same quantum
+            timestamp += Math.floorMod(-timestamp, deliveryQuantumMillis);
+        }
         if (timestamp == currentTimeoutTarget) {
             // The timer is already set to the correct target time
             return;
@@ -39,6 +39,8 @@ public class BucketDelayedDeliveryTrackerFactory implements DelayedDeliveryTrack
 
     private boolean isDelayedDeliveryDeliverAtTimeStrict;
 
+    private long deliveryQuantumMillis;
+
     private int delayedDeliveryMaxNumBuckets;
 
     private long delayedDeliveryMinIndexCountPerBucket;
@@ -53,6 +55,7 @@ public class BucketDelayedDeliveryTrackerFactory implements DelayedDeliveryTrack
                 config.getDelayedDeliveryTickTimeMillis(), TimeUnit.MILLISECONDS);
         this.tickTimeMillis = config.getDelayedDeliveryTickTimeMillis();
         this.isDelayedDeliveryDeliverAtTimeStrict = config.isDelayedDeliveryDeliverAtTimeStrict();
+        this.deliveryQuantumMillis = config.getDelayedDeliveryQuantumMillis();
         this.delayedDeliveryMinIndexCountPerBucket = config.getDelayedDeliveryMinIndexCountPerBucket();
         this.delayedDeliveryMaxNumBuckets = config.getDelayedDeliveryMaxNumBuckets();
         this.delayedDeliveryMaxTimeStepPerBucketSnapshotSegmentSeconds =
@@ -64,7 +67,7 @@ public class BucketDelayedDeliveryTrackerFactory implements DelayedDeliveryTrack
         return new BucketDelayedDeliveryTracker(dispatcher, timer, tickTimeMillis, isDelayedDeliveryDeliverAtTimeStrict,
                 bucketSnapshotStorage, delayedDeliveryMinIndexCountPerBucket,
                 delayedDeliveryMaxTimeStepPerBucketSnapshotSegmentSeconds,
-                delayedDeliveryMaxNumBuckets);
+                delayedDeliveryMaxNumBuckets, deliveryQuantumMillis);
     }
 
     @Override
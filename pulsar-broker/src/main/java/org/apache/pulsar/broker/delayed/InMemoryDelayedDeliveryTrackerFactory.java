@@ -34,6 +34,8 @@ public class InMemoryDelayedDeliveryTrackerFactory implements DelayedDeliveryTra
 
     private boolean isDelayedDeliveryDeliverAtTimeStrict;
 
+    private long deliveryQuantumMillis;
+
     private long fixedDelayDetectionLookahead;
 
     @Override
@@ -43,13 +45,14 @@ public class InMemoryDelayedDeliveryTrackerFactory implements DelayedDeliveryTra
                 config.getDelayedDeliveryTickTimeMillis(), TimeUnit.MILLISECONDS);
         this.tickTimeMillis = config.getDelayedDeliveryTickTimeMillis();
         this.isDelayedDeliveryDeliverAtTimeStrict = config.isDelayedDeliveryDeliverAtTimeStrict();
+        this.deliveryQuantumMillis = config.getDelayedDeliveryQuantumMillis();
         this.fixedDelayDetectionLookahead = config.getDelayedDeliveryFixedDelayDetectionLookahead();
     }
 
     @Override
     public DelayedDeliveryTracker newTracker(PersistentDispatcherMultipleConsumers dispatcher) {
         return new InMemoryDelayedDeliveryTracker(dispatcher, timer, tickTimeMillis,
-                isDelayedDeliveryDeliverAtTimeStrict, fixedDelayDetectionLookahead);
+                isDelayedDeliveryDeliverAtTimeStrict, fixedDelayDetectionLookahead, deliveryQuantumMillis);
     }
 
     @Override
@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import java.util.Arrays;
+import java.util.Collection;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.common.util.collections.SegmentedLongArray;
+
+/**
+ * Hierarchical timing wheel of the positions of delayed messages, for the {@link TimingWheelDelayedDeliveryTracker}.
+ *
+ * <p>The time is split into ticks of a fixed resolution. Each level of the wheel has 64 slots, and a slot of a level
+ * spans 64 times the ticks of a slot of the level below, so that a message is added to the slot of the lowest level
+ * that holds its tick in O(1). When the wheel advances, the slots of the elapsed ticks are moved as a whole to the
+ * list of the ready messages, and the messages of the slot of a higher level that is reached are moved down to the
+ * lower levels. A message is then moved at most once per level, whatever the number of messages in the wheel.
+ *
+ * <p>A message is ready once the whole tick of its delivery time has elapsed, so it may be ready up to the resolution
+ * of the wheel later than its delivery time, but never earlier. The messages are stored in direct memory, as linked
+ * lists of items.
+ */
+@NotThreadSafe
+class TimingWheel implements AutoCloseable {
+    private static final int BITS_PER_LEVEL = 6;
+    private static final int SLOTS_PER_LEVEL = 1 << BITS_PER_LEVEL;
+    private static final int SLOT_MASK = SLOTS_PER_LEVEL - 1;
+    // Enough levels for the slots to cover any tick
+    private static final int LEVELS = (Long.SIZE + BITS_PER_LEVEL - 1) / BITS_PER_LEVEL;
+
+    // Each item is composed of the delivery time, the ledger id, the entry id and the next item of its list
+    private static final int ITEMS_COUNT = 4;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long NIL = -1;
+
+    private final long resolutionMillis;
+    private final SegmentedLongArray items;
+    // Number of items allocated so far, and the list of the ones that were freed since
+    private long allocatedItems;
+    private long freeItems = NIL;
+
+    private final Level[] levels = new Level[LEVELS];
+    // Last tick that elapsed
+    private long now;
+    // Number of messages in the slots of the levels
+    private long wheelSize;
+
+    private long readyHead = NIL;
+    private long readyTail = NIL;
+    private long readySize;
+
+    private static final class Level {
+        private final long[] heads = new long[SLOTS_PER_LEVEL];
+        private final long[] tails = new long[SLOTS_PER_LEVEL];
+        private final long[] sizes = new long[SLOTS_PER_LEVEL];
+        // Bit set of the slots that are not empty
+        private long occupied;
+    }
+
+    TimingWheel(long resolutionMillis) {
+        checkArgument(resolutionMillis > 0);
+        this.resolutionMillis = resolutionMillis;
+        this.items = new SegmentedLongArray(INITIAL_CAPACITY * ITEMS_COUNT);
+    }
+
+    /**
+     * Add the position of a message. If the tick of its delivery time already elapsed, the message is ready right away.
+     */
+    void add(long deliverAt, long ledgerId, long entryId) {
+        long item = allocate();
+        long offset = item * ITEMS_COUNT;
+        items.writeLong(offset, deliverAt);
+        items.writeLong(offset + 1, ledgerId);
+        items.writeLong(offset + 2, entryId);
+        place(item, tickOf(deliverAt));
+    }
+
+    private void place(long item, long tick) {
+        if (tick <= now) {
+            setNext(item, NIL);
+            if (readySize == 0) {
+                readyHead = item;
+            } else {
+                setNext(readyTail, item);
+            }
+            readyTail = item;
+            readySize++;
+            return;
+        }
+
+        // The level is the one of the highest digit that differs from the current tick
+        int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(tick ^ now)) / BITS_PER_LEVEL;
+        int slot = digit(tick, level);
+        Level l = levels[level];
+        if (l == null) {
+            l = levels[level] = new Level();
+        }
+        setNext(item, NIL);
+        if (l.sizes[slot] == 0) {
+            l.heads[slot] = item;
+            l.occupied |= 1L << slot;
+        } else {
+            setNext(l.tails[slot], item);
+        }
+        l.tails[slot] = item;
+        l.sizes[slot]++;
+        wheelSize++;
+    }
+
+    /**
+     * Advance the wheel to a time, making ready the messages of all the ticks that elapsed by then.
+     */
+    void advance(long time) {
+        long tick = Math.floorDiv(time + 1, resolutionMillis) - 1;
+        if (tick <= now) {
+            return;
+        }
+        if (wheelSize == 0) {
+            now = tick;
+            return;
+        }
+
+        // All the slots below the level of the highest digit that changed are elapsed, as are the slots of that level
+        // up to the digit of the new tick. The slot of that digit is only elapsed on the lowest level, otherwise its
+        // messages have to be moved down.
+        int top = (Long.SIZE - 1 - Long.numberOfLeadingZeros(tick ^ now)) / BITS_PER_LEVEL;
+        for (int level = 0; level < top; level++) {
+            Level l = levels[level];
+            if (l != null) {
+                makeReady(l, l.occupied);
+            }
+        }
+        long cascade = NIL;
+        Level l = levels[top];
+        if (l != null) {
+            int from = digit(now, top) + 1;
+            int to = digit(tick, top);
+            if (top == 0) {
+                makeReady(l, l.occupied & slotRange(from, to));
+            } else {
+                makeReady(l, l.occupied & slotRange(from, to - 1));
+                if ((l.occupied & (1L << to)) != 0) {
+                    cascade = l.heads[to];
+                    wheelSize -= l.sizes[to];
+                    clearSlot(l, to);
+                }
+            }
+        }
+
+        now = tick;
+        while (cascade != NIL) {
+            long next = getNext(cascade);
+            place(cascade, tickOf(items.readLong(cascade * ITEMS_COUNT)));
+            cascade = next;
+        }
+    }
+
+    private void makeReady(Level l, long slots) {
+        while (slots != 0) {
+            int slot = Long.numberOfTrailingZeros(slots);
+            slots &= slots - 1;
+            if (readySize == 0) {
+                readyHead = l.heads[slot];
+            } else {
+                setNext(readyTail, l.heads[slot]);
+            }
+            readyTail = l.tails[slot];
+            readySize += l.sizes[slot];
+            wheelSize -= l.sizes[slot];
+            clearSlot(l, slot);
+        }
+    }
+
+    private static void clearSlot(Level l, int slot) {
+        l.sizes[slot] = 0;
+        l.occupied &= ~(1L << slot);
+    }
+
+    /**
+     * Remove up to the given number of the ready messages, and add their positions to a collection.
+     *
+     * @return the number of messages removed
+     */
+    int pollReady(int maxMessages, Collection<PositionImpl> positions) {
+        int n = 0;
+        while (n < maxMessages && readySize > 0) {
+            long item = readyHead;
+            long offset = item * ITEMS_COUNT;
+            positions.add(new PositionImpl(items.readLong(offset + 1), items.readLong(offset + 2)));
+            readyHead = getNext(item);
+            readySize--;
+            free(item);
+            n++;
+        }
+        if (readySize == 0) {
+            readyHead = readyTail = NIL;
+        }
+        if (size() == 0) {
+            releaseItems();
+        }
+        return n;
+    }
+
+    boolean hasReady() {
+        return readySize > 0;
+    }
+
+    /**
+     * @return the time by which some messages may be ready, which is in the past if there are ready messages already
+     */
+    long nextReadyTime() {
+        if (readySize > 0) {
+            return endOfTick(now);
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            Level l = levels[level];
+            if (l != null && l.occupied != 0) {
+                // First tick of the first slot that is not empty, which is the tick of its messages on the lowest
+                // level and the tick at which they have to be moved down on the upper ones
+                int shift = level * BITS_PER_LEVEL;
+                long tick = (((now >>> shift) & ~SLOT_MASK) | Long.numberOfTrailingZeros(l.occupied)) << shift;
+                return endOfTick(tick);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    long size() {
+        return wheelSize + readySize;
+    }
+
+    void clear() {
+        Arrays.fill(levels, null);
+        wheelSize = 0;
+        readyHead = readyTail = NIL;
+        readySize = 0;
+        releaseItems();
+    }
+
+    /**
+     * The amount of memory used to back the items of the messages.
+     */
+    long bytesCapacity() {
+        return items.bytesCapacity();
+    }
+
+    @Override
+    public void close() {
+        items.close();
+    }
+
+    private long tickOf(long time) {
+        return Math.floorDiv(time, resolutionMillis);
+    }
+
+    private long endOfTick(long tick) {
+        return tick * resolutionMillis + resolutionMillis - 1;
+    }
+
+    private static int digit(long tick, int level) {
+        return (int) (tick >>> (level * BITS_PER_LEVEL)) & SLOT_MASK;
+    }
+
+    /**
+     * @return the bit set of the slots from the first to the last one, inclusive
+     */
+    private static long slotRange(int first, int last) {
+        if (first > last) {
+            return 0;
+        }
+        return (-1L << first) & (-1L >>> (Long.SIZE - 1 - last));
+    }
+
+    private long allocate() {
+        if (freeItems != NIL) {
+            long item = freeItems;
+            freeItems = getNext(item);
+            return item;
+        }
+        while ((allocatedItems + 1) * ITEMS_COUNT > items.getCapacity()) {
+            items.increaseCapacity();
+        }
+        return allocatedItems++;
+    }
+
+    private void free(long item) {
+        setNext(item, freeItems);
+        freeItems = item;
+    }
+
+    /**
+     * Shrink the memory of the items back to its initial capacity, once there are no messages left.
+     */
+    private void releaseItems() {
+        allocatedItems = 0;
+        freeItems = NIL;
+        items.shrink(items.getInitialCapacity());
+    }
+
+    private long getNext(long item) {
+        return items.readLong(item * ITEMS_COUNT + 3);
+    }
+
+    private void setNext(long item, long next) {
+        items.writeLong(item * ITEMS_COUNT + 3, next);
+    }
+}
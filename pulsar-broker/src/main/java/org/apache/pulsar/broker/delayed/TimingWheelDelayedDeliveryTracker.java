@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.util.Timer;
+import java.time.Clock;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+
+/**
+ * Delayed delivery tracker that indexes the messages in a hierarchical {@link TimingWheel}, which adds and expires
+ * a message in O(1) instead of the O(log n) of the priority queue of the {@link InMemoryDelayedDeliveryTracker}.
+ *
+ * <p>Like the {@link InMemoryDelayedDeliveryTracker}, it detects when all the messages have a fixed delay, and pauses
+ * the reads of the dispatcher once it holds the lookahead number of messages and none is due on the earliest tick of
+ * the wheel.
+ */
+@Slf4j
+public class TimingWheelDelayedDeliveryTracker extends AbstractDelayedDeliveryTracker {
+
+    private final TimingWheel wheel;
+
+    @Getter
+    @VisibleForTesting
+    private final long fixedDelayDetectionLookahead;
+
+    // Highest delivery time of the messages tracked, reset to 0 once the tracker is emptied
+    private long highestDeliveryTimeTracked = 0;
+
+    // Whether all the messages tracked so far have a fixed delay
+    private boolean messagesHaveFixedDelay = true;
+
+    TimingWheelDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer,
+                                      long tickTimeMillis, boolean isDelayedDeliveryDeliverAtTimeStrict,
+                                      long resolutionMillis, long fixedDelayDetectionLookahead,
+                                      long deliveryQuantumMillis) {
+        this(dispatcher, timer, tickTimeMillis, Clock.systemUTC(), isDelayedDeliveryDeliverAtTimeStrict,
+                resolutionMillis, fixedDelayDetectionLookahead, deliveryQuantumMillis);
+    }
+
+    public TimingWheelDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer,
+                                             long tickTimeMillis, Clock clock,
+                                             boolean isDelayedDeliveryDeliverAtTimeStrict,
+                                             long resolutionMillis) {
+        this(dispatcher, timer, tickTimeMillis, clock, isDelayedDeliveryDeliverAtTimeStrict, resolutionMillis, 0, 0);
+    }
+
+    public TimingWheelDelayedDeliveryTracker(PersistentDispatcherMultipleConsumers dispatcher, Timer timer,
+                                             long tickTimeMillis, Clock clock,
+                                             boolean isDelayedDeliveryDeliverAtTimeStrict,
+                                             long resolutionMillis, long fixedDelayDetectionLookahead,
+                                             long deliveryQuantumMillis) {
+        super(dispatcher, timer, tickTimeMillis, clock, isDelayedDeliveryDeliverAtTimeStrict, deliveryQuantumMillis);
+        this.wheel = new TimingWheel(resolutionMillis);
+        this.fixedDelayDetectionLookahead = fixedDelayDetectionLookahead;
+    }
+
+    @Override
+    public boolean addMessage(long ledgerId, long entryId, long deliverAt) {
+        long cutoffTime = getCutoffTime();
+        if (deliverAt < 0 || deliverAt <= cutoffTime) {
+            messagesHaveFixedDelay = false;
+            return false;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Add message {}:{} -- Delivery in {} ms ", dispatcher.getName(), ledgerId, entryId,
+                    deliverAt - clock.millis());
+        }
+
+        // Catch up with the time first, so that the message is added relative to the current tick
+        wheel.advance(cutoffTime);
+        wheel.add(deliverAt, ledgerId, entryId);
+        updateTimer();
+
+        checkAndUpdateHighest(deliverAt);
+
+        return true;
+    }
+
+    /**
+     * Check that new delivery time comes after the current highest, or at
+     * least within a single tick time interval.
+     */
+    private void checkAndUpdateHighest(long deliverAt) {
+        if (deliverAt < (highestDeliveryTimeTracked - tickTimeMillis)) {
+            messagesHaveFixedDelay = false;
+        }
+
+        highestDeliveryTimeTracked = Math.max(highestDeliveryTimeTracked, deliverAt);
+    }
+
+    /**
+     * Return true if there's at least a message that is scheduled to be delivered already.
+     */
+    @Override
+    public boolean hasMessageAvailable() {
+        wheel.advance(getCutoffTime());
+        boolean hasMessageAvailable = wheel.hasReady();
+        if (!hasMessageAvailable) {
+            updateTimer();
+        }
+        return hasMessageAvailable;
+    }
+
+    /**
+     * Get a set of position of messages that have already reached.
+     */
+    @Override
+    public NavigableSet<PositionImpl> getScheduledMessages(int maxMessages) {
+        NavigableSet<PositionImpl> positions = new TreeSet<>();
+        wheel.advance(getCutoffTime());
+        wheel.pollReady(maxMessages, positions);
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Get scheduled messages - found {}", dispatcher.getName(), positions.size());
+        }
+
+        if (wheel.size() == 0) {
+            // Reset to initial state
+            highestDeliveryTimeTracked = 0;
+            messagesHaveFixedDelay = true;
+        }
+
+        updateTimer();
+        return positions;
+    }
+
+    @Override
+    public void clear() {
+        wheel.clear();
+    }
+
+    @Override
+    public long getNumberOfDelayedMessages() {
+        return wheel.size();
+    }
+
+    @Override
+    public long getBufferMemoryUsage() {
+        return wheel.bytesCapacity();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        wheel.close();
+    }
+
+    @Override
+    public boolean shouldPauseAllDeliveries() {
+        // Pause deliveries if we know all delays are fixed within the lookahead window
+        return fixedDelayDetectionLookahead > 0
+                && messagesHaveFixedDelay
+                && getNumberOfDelayedMessages() >= fixedDelayDetectionLookahead
+                && !hasMessageAvailable();
+    }
+
+    @Override
+    public boolean containsMessage(long ledgerId, long entryId) {
+        return false;
+    }
+
+    @Override
+    protected long nextDeliveryTime() {
+        return wheel.nextReadyTime();
+    }
+}
@@ -121,29 +121,31 @@ public abstract class AbstractBaseDispatcher extends EntryFilterSupport implemen
         long filteredBytesCount = 0;
         List<Position> entriesToFiltered = hasFilter ? new ArrayList<>() : null;
         List<PositionImpl> entriesToRedeliver = hasFilter ? new ArrayList<>() : null;
+        // With an entry filter executor, the metadata of the entries is decoded and filtered in parallel first
+        MessageMetadata[] entriesMetadata = null;
+        EntryFilter.FilterResult[] filterResults = null;
+        if (shouldRunFiltersInParallel(entries.size())) {
+            entriesMetadata = new MessageMetadata[entries.size()];
+            filterResults = runFiltersForEntries(entries, entriesMetadata,
+                    i -> getMessageMetadata(metadataArray, startOffset, entries, i), consumer);
+        }
         for (int i = 0, entriesSize = entries.size(); i < entriesSize; i++) {
             final Entry entry = entries.get(i);
             if (entry == null) {
                 continue;
             }
             ByteBuf metadataAndPayload = entry.getDataBuffer();
-            final int metadataIndex = i + startOffset;
-
-            MessageMetadata msgMetadata;
-            if (metadataArray != null) {
-                msgMetadata = metadataArray[metadataIndex];
-            } else if (entry instanceof EntryAndMetadata) {
-                msgMetadata = ((EntryAndMetadata) entry).getMetadata();
-            } else {
-                msgMetadata = Commands.peekAndCopyMessageMetadata(metadataAndPayload, subscription.toString(), -1);
-            }
+
+            MessageMetadata msgMetadata = entriesMetadata != null
+                    ? entriesMetadata[i] : getMessageMetadata(metadataArray, startOffset, entries, i);
 
             int entryMsgCnt = msgMetadata == null ? 1 : msgMetadata.getNumMessagesInBatch();
             if (hasFilter) {
                 this.filterProcessedMsgs.add(entryMsgCnt);
             }
 
-            EntryFilter.FilterResult filterResult = runFiltersForEntry(entry, msgMetadata, consumer);
+            EntryFilter.FilterResult filterResult = filterResults != null
+                    ? filterResults[i] : runFiltersForEntry(entry, msgMetadata, consumer);
             if (filterResult == EntryFilter.FilterResult.REJECT) {
                 entriesToFiltered.add(entry.getPosition());
                 entries.set(i, null);
@@ -264,6 +266,18 @@ public abstract class AbstractBaseDispatcher extends EntryFilterSupport implemen
         return totalEntries;
     }
 
+    private MessageMetadata getMessageMetadata(@Nullable MessageMetadata[] metadataArray, int startOffset,
+                                               List<? extends Entry> entries, int index) {
+        Entry entry = entries.get(index);
+        if (metadataArray != null) {
+            return metadataArray[index + startOffset];
+        } else if (entry instanceof EntryAndMetadata) {
+            return ((EntryAndMetadata) entry).getMetadata();
+        } else {
+            return Commands.peekAndCopyMessageMetadata(entry.getDataBuffer(), subscription.toString(), -1);
+        }
+    }
+
     private void individualAcknowledgeMessageIfNeeded(Position position, Map<String, Long> properties) {
         if (!(subscription instanceof CompactorSubscription)) {
             subscription.acknowledgeMessage(Collections.singletonList(position), AckType.Individual, properties);
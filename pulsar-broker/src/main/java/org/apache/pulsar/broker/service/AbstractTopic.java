@@ -56,6 +56,7 @@ import org.apache.pulsar.broker.service.BrokerServiceException.TopicMigratedExce
 import org.apache.pulsar.broker.service.BrokerServiceException.TopicTerminatedException;
 import org.apache.pulsar.broker.service.plugin.EntryFilter;
 import org.apache.pulsar.broker.service.schema.BookkeeperSchemaStorage;
+import org.apache.pulsar.broker.service.schema.CompressionDictionaryRegistry;
 import org.apache.pulsar.broker.service.schema.SchemaRegistryService;
 import org.apache.pulsar.broker.service.schema.exceptions.IncompatibleSchemaException;
 import org.apache.pulsar.broker.stats.prometheus.metrics.Summary;
@@ -108,6 +109,10 @@ public abstract class AbstractTopic implements Topic, TopicPolicyListener<TopicP
     // doesn't support batch-message
     protected volatile boolean hasBatchMessagePublished = false;
 
+    // Flag to signal that the producers of this topic compress their batches with a dictionary so, broker should not
+    // allow consumer which doesn't support compression dictionaries
+    protected volatile boolean hasCompressionDictionary = false;
+
     protected StatsBuckets addEntryLatencyStatsUsec = new StatsBuckets(ENTRY_LATENCY_BUCKETS_USEC);
 
     // Whether messages published must be encrypted or not in this topic
@@ -623,6 +628,34 @@ public abstract class AbstractTopic implements Topic, TopicPolicyListener<TopicP
         this.hasBatchMessagePublished = true;
     }
 
+    public void markCompressionDictionaryUsed() {
+        this.hasCompressionDictionary = true;
+    }
+
+    @Override
+    public boolean hasCompressionDictionary() {
+        return hasCompressionDictionary;
+    }
+
+    /**
+     * Restore the flag of the compression dictionaries when the topic is loaded, before the consumers that don't
+     * support them can subscribe.
+     */
+    protected CompletableFuture<Void> initCompressionDictionary() {
+        CompressionDictionaryRegistry compressionDictionaryRegistry =
+                brokerService.pulsar().getCompressionDictionaryRegistry();
+        if (compressionDictionaryRegistry == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return BookkeeperSchemaStorage.ignoreUnrecoverableBKException(
+                compressionDictionaryRegistry.getDictionary(getSchemaId(), Optional.empty()))
+                .thenAccept(dictionary -> {
+                    if (dictionary != null && dictionary.isPresent()) {
+                        markCompressionDictionaryUsed();
+                    }
+                });
+    }
+
     public String getReplicatorPrefix() {
         return replicatorPrefix;
     }
@@ -689,7 +722,17 @@ public abstract class AbstractTopic implements Topic, TopicPolicyListener<TopicP
                     } else {
                         return CompletableFuture.completedFuture(null);
                     }
-                });
+                }).thenCompose(version -> deleteCompressionDictionaries(id).thenApply(__ -> version));
+    }
+
+    private CompletableFuture<Void> deleteCompressionDictionaries(String id) {
+        CompressionDictionaryRegistry compressionDictionaryRegistry =
+                brokerService.pulsar().getCompressionDictionaryRegistry();
+        if (compressionDictionaryRegistry == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return BookkeeperSchemaStorage.ignoreUnrecoverableBKException(
+                compressionDictionaryRegistry.deleteDictionaries(id));
     }
 
     @Override
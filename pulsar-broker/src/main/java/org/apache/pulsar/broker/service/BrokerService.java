@@ -56,6 +56,7 @@ import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
@@ -278,6 +279,10 @@ public class BrokerService implements Closeable {
     private final LongAdder pausedConnections = new LongAdder();
     private BrokerInterceptor interceptor;
     private final EntryFilterProvider entryFilterProvider;
+    // Pool on which the entry filters are run, or null when they are run on the dispatcher threads
+    private final ExecutorService entryFilterExecutor;
+    // Scheduler of the dispatches on the topic ordered executor, or null when they are run in the order of the reads
+    private final DispatchScheduler dispatchScheduler;
     private TopicFactory topicFactory;
 
     private Set<BrokerEntryMetadataInterceptor> brokerEntryMetadataInterceptors;
@@ -327,6 +332,17 @@ public class BrokerService implements Closeable {
         this.authorizationService = new AuthorizationService(
                 pulsar.getConfiguration(), pulsar().getPulsarResources());
         this.entryFilterProvider = new EntryFilterProvider(pulsar.getConfiguration());
+        int entryFilterExecutorThreads = pulsar.getConfiguration().getEntryFilterExecutorThreads();
+        this.entryFilterExecutor = entryFilterExecutorThreads > 0
+                ? Executors.newFixedThreadPool(entryFilterExecutorThreads,
+                        new ExecutorProvider.ExtendedThreadFactory("pulsar-entry-filter"))
+                : null;
+        this.dispatchScheduler = pulsar.getConfiguration().isDispatcherSchedulingEnabled()
+                ? new DispatchScheduler(topicOrderedExecutor,
+                        pulsar.getConfiguration().getNumWorkerThreadsForNonPersistentTopic(),
+                        pulsar.getConfiguration().getDispatcherSchedulingQuantumBytes(),
+                        pulsar.getConfiguration().getDispatcherSchedulingQuantumEntries())
+                : null;
 
         pulsar.getLocalMetadataStore().registerListener(this::handleMetadataChanges);
         pulsar.getConfigurationMetadataStore().registerListener(this::handleMetadataChanges);
@@ -858,7 +874,8 @@ public class BrokerService implements Closeable {
                                                 topicOrderedExecutor,
                                                 topicPublishRateLimiterMonitor.scheduler,
                                                 brokerPublishRateLimiterMonitor.scheduler,
-                                                deduplicationSnapshotMonitor)
+                                                deduplicationSnapshotMonitor,
+                                                entryFilterExecutor)
                                         .handle());
 
                                 CompletableFuture<Void> combined =
@@ -1775,6 +1792,12 @@ public class BrokerService implements Closeable {
                             .setMaxUnackedRangesToPersist(serviceConfig.getManagedLedgerMaxUnackedRangesToPersist());
                     managedLedgerConfig.setPersistentUnackedRangesWithMultipleEntriesEnabled(
                             serviceConfig.isPersistentUnackedRangesWithMultipleEntriesEnabled());
+                    managedLedgerConfig.setUnackedRangesBitmapEncodingEnabled(
+                            serviceConfig.isManagedLedgerUnackedRangesBitmapEncodingEnabled());
+                    managedLedgerConfig.setUnackedRangesBitmapChunkSize(
+                            serviceConfig.getManagedLedgerUnackedRangesBitmapChunkSizeBytes());
+                    managedLedgerConfig.setUnackedRangesMaxDeltasBetweenSnapshots(
+                            serviceConfig.getManagedLedgerUnackedRangesMaxDeltasBetweenSnapshots());
                     managedLedgerConfig.setMaxUnackedRangesToPersistInMetadataStore(
                             serviceConfig.getManagedLedgerMaxUnackedRangesToPersistInMetadataStore());
                     managedLedgerConfig.setMaxEntriesPerLedger(serviceConfig.getManagedLedgerMaxEntriesPerLedger());
@@ -1807,6 +1830,9 @@ public class BrokerService implements Closeable {
                     managedLedgerConfig.setRetentionSizeInMB(retentionPolicies.getRetentionSizeInMB());
                     managedLedgerConfig.setAutoSkipNonRecoverableData(serviceConfig.isAutoSkipNonRecoverableData());
                     managedLedgerConfig.setLazyCursorRecovery(serviceConfig.isLazyCursorRecovery());
+                    managedLedgerConfig.setCursorsRecoveryPipelined(serviceConfig.isPipelinedCursorRecovery());
+                    managedLedgerConfig.setDormantCursorThresholdMs(
+                            TimeUnit.MINUTES.toMillis(serviceConfig.getDormantCursorRecoveryThresholdMinutes()));
                     managedLedgerConfig.setInactiveLedgerRollOverTime(
                             serviceConfig.getManagedLedgerInactiveLedgerRolloverTimeSeconds(), TimeUnit.SECONDS);
                     managedLedgerConfig.setCacheEvictionByMarkDeletedPosition(
@@ -1817,6 +1843,8 @@ public class BrokerService implements Closeable {
                             serviceConfig.getManagedLedgerMinimumBacklogEntriesForCaching());
                     managedLedgerConfig.setMaxBacklogBetweenCursorsForCaching(
                             serviceConfig.getManagedLedgerMaxBacklogBetweenCursorsForCaching());
+                    managedLedgerConfig.setReadAheadPrefetchBatches(
+                            serviceConfig.getManagedLedgerCursorReadAheadPrefetchBatches());
 
                     OffloadPoliciesImpl nsLevelOffloadPolicies =
                             (OffloadPoliciesImpl) policies.map(p -> p.offload_policies).orElse(null);
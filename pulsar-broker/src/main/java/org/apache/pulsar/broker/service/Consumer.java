@@ -40,6 +40,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.apache.bookkeeper.mledger.Entry;
 import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.impl.PositionBatchRecyclable;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.commons.lang3.tuple.MutablePair;
@@ -452,7 +453,7 @@ public class Consumer {
             if (ack.hasTxnidLeastBits() && ack.hasTxnidMostBits()) {
                 future = individualAckWithTransaction(ack);
             } else {
-                future = individualAckNormal(ack, properties);
+                future = CompletableFuture.completedFuture(individualAckNormal(ack, properties));
             }
         }
 
@@ -464,60 +465,67 @@ public class Consumer {
     }
 
     //this method is for individual ack not carry the transaction
-    private CompletableFuture<Long> individualAckNormal(CommandAck ack, Map<String, Long> properties) {
-        List<Position> positionsAcked = new ArrayList<>();
+    private long individualAckNormal(CommandAck ack, Map<String, Long> properties) {
+        // The positions are only materialized for the messages acknowledged at batch index level
+        PositionBatchRecyclable positionsAcked = PositionBatchRecyclable.create();
+        boolean individualAckMode = Subscription.isIndividualAckMode(subType);
         long totalAckCount = 0;
         for (int i = 0; i < ack.getMessageIdsCount(); i++) {
             MessageIdData msgId = ack.getMessageIdAt(i);
-            PositionImpl position;
-            long ackedCount = 0;
-            long batchSize = getBatchSize(msgId);
-            Consumer ackOwnerConsumer = getAckOwnerConsumer(msgId.getLedgerId(), msgId.getEntryId());
+            long ledgerId = msgId.getLedgerId();
+            long entryId = msgId.getEntryId();
+            long ackedCount;
+            Consumer ackOwnerConsumer = getAckOwnerConsumer(ledgerId, entryId);
+            // Consumer may ack the msg that not belongs to it.
+            long batchSize = individualAckMode
+                    ? ackOwnerConsumer.getPendingAcks().getFirstOrDefault(ledgerId, entryId, 1) : 1;
             if (msgId.getAckSetsCount() > 0) {
                 long[] ackSets = new long[msgId.getAckSetsCount()];
                 for (int j = 0; j < msgId.getAckSetsCount(); j++) {
                     ackSets[j] = msgId.getAckSetAt(j);
                 }
-                position = PositionImpl.get(msgId.getLedgerId(), msgId.getEntryId(), ackSets);
+                PositionImpl position = PositionImpl.get(ledgerId, entryId, ackSets);
                 ackedCount = getAckedCountForBatchIndexLevelEnabled(position, batchSize, ackSets, ackOwnerConsumer);
                 if (isTransactionEnabled()) {
                     //sync the batch position bit set point, in order to delete the position in pending acks
-                    if (Subscription.isIndividualAckMode(subType)) {
+                    if (individualAckMode) {
                         ((PersistentSubscription) subscription)
                                 .syncBatchPositionBitSetForPendingAck(position);
                     }
                 }
+                positionsAcked.add(ledgerId, entryId, ackSets);
             } else {
-                position = PositionImpl.get(msgId.getLedgerId(), msgId.getEntryId());
-                ackedCount = getAckedCountForMsgIdNoAckSets(batchSize, position, ackOwnerConsumer);
+                ackedCount = getAckedCountForMsgIdNoAckSets(batchSize, ledgerId, entryId, ackOwnerConsumer);
+                positionsAcked.add(ledgerId, entryId);
             }
 
             addAndGetUnAckedMsgs(ackOwnerConsumer, -(int) ackedCount);
 
-            positionsAcked.add(position);
-
-            checkCanRemovePendingAcksAndHandle(position, msgId);
+            if (individualAckMode && msgId.getAckSetsCount() == 0) {
+                removePendingAcks(ledgerId, entryId);
+            }
 
-            checkAckValidationError(ack, position);
+            checkAckValidationError(ack, ledgerId, entryId);
 
             totalAckCount += ackedCount;
         }
-        subscription.acknowledgeMessage(positionsAcked, AckType.Individual, properties);
-        CompletableFuture<Long> completableFuture = new CompletableFuture<>();
-        completableFuture.complete(totalAckCount);
-        if (isTransactionEnabled() && Subscription.isIndividualAckMode(subType)) {
-            completableFuture.whenComplete((v, e) -> positionsAcked.forEach(position -> {
+        subscription.acknowledgeMessage(positionsAcked, properties);
+        if (isTransactionEnabled() && individualAckMode) {
+            for (int i = 0; i < positionsAcked.size(); i++) {
                 //check if the position can remove from the consumer pending acks.
                 // the bit set is empty in pending ack handle.
-                if (((PositionImpl) position).getAckSet() != null) {
-                    if (((PersistentSubscription) subscription)
-                            .checkIsCanDeleteConsumerPendingAck((PositionImpl) position)) {
-                        removePendingAcks((PositionImpl) position);
+                long[] ackSet = positionsAcked.getAckSet(i);
+                if (ackSet != null) {
+                    PositionImpl position = PositionImpl.get(positionsAcked.getLedgerId(i),
+                            positionsAcked.getEntryId(i), ackSet);
+                    if (((PersistentSubscription) subscription).checkIsCanDeleteConsumerPendingAck(position)) {
+                        removePendingAcks(position);
                     }
                 }
-            }));
+            }
         }
-        return completableFuture;
+        positionsAcked.recycle();
+        return totalAckCount;
     }
 
 
@@ -561,7 +569,7 @@ public class Consumer {
 
             checkCanRemovePendingAcksAndHandle(position, msgId);
 
-            checkAckValidationError(ack, position);
+            checkAckValidationError(ack, position.getLedgerId(), position.getEntryId());
 
             totalAckCount.add(ackedCount);
         }
@@ -582,26 +590,9 @@ public class Consumer {
         return completableFuture.thenApply(__ -> totalAckCount.sum());
     }
 
-    private long getBatchSize(MessageIdData msgId) {
-        long batchSize = 1;
-        if (Subscription.isIndividualAckMode(subType)) {
-            LongPair longPair = pendingAcks.get(msgId.getLedgerId(), msgId.getEntryId());
-            // Consumer may ack the msg that not belongs to it.
-            if (longPair == null) {
-                Consumer ackOwnerConsumer = getAckOwnerConsumer(msgId.getLedgerId(), msgId.getEntryId());
-                longPair = ackOwnerConsumer.getPendingAcks().get(msgId.getLedgerId(), msgId.getEntryId());
-                if (longPair != null) {
-                    batchSize = longPair.first;
-                }
-            } else {
-                batchSize = longPair.first;
-            }
-        }
-        return batchSize;
-    }
-
-    private long getAckedCountForMsgIdNoAckSets(long batchSize, PositionImpl position, Consumer consumer) {
+    private long getAckedCountForMsgIdNoAckSets(long batchSize, long ledgerId, long entryId, Consumer consumer) {
         if (isAcknowledgmentAtBatchIndexLevelEnabled && Subscription.isIndividualAckMode(subType)) {
+            PositionImpl position = PositionImpl.get(ledgerId, entryId);
             long[] cursorAckSet = getCursorAckSet(position);
             if (cursorAckSet != null) {
                 return getAckedCountForBatchIndexLevelEnabled(position, batchSize, EMPTY_ACK_SET, consumer);
@@ -652,10 +643,10 @@ public class Consumer {
         return unAckedCount;
     }
 
-    private void checkAckValidationError(CommandAck ack, PositionImpl position) {
+    private void checkAckValidationError(CommandAck ack, long ledgerId, long entryId) {
         if (ack.hasValidationError()) {
-            log.error("[{}] [{}] Received ack for corrupted message at {} - Reason: {}", subscription,
-                    consumerId, position, ack.getValidationError());
+            log.error("[{}] [{}] Received ack for corrupted message at {}:{} - Reason: {}", subscription,
+                    consumerId, ledgerId, entryId, ack.getValidationError());
         }
     }
 
@@ -928,11 +919,14 @@ public class Consumer {
      * @param position
      */
     private void removePendingAcks(PositionImpl position) {
+        removePendingAcks(position.getLedgerId(), position.getEntryId());
+    }
+
+    private void removePendingAcks(long ledgerId, long entryId) {
         Consumer ackOwnedConsumer = null;
-        if (pendingAcks.get(position.getLedgerId(), position.getEntryId()) == null) {
+        if (!pendingAcks.containsKey(ledgerId, entryId)) {
             for (Consumer consumer : subscription.getConsumers()) {
-                if (!consumer.equals(this) && consumer.getPendingAcks().containsKey(position.getLedgerId(),
-                        position.getEntryId())) {
+                if (!consumer.equals(this) && consumer.getPendingAcks().containsKey(ledgerId, entryId)) {
                     ackOwnedConsumer = consumer;
                     break;
                 }
@@ -942,16 +936,14 @@ public class Consumer {
         }
 
         // remove pending message from appropriate consumer and unblock unAckMsg-flow if requires
-        LongPair ackedPosition = ackOwnedConsumer != null
-                ? ackOwnedConsumer.getPendingAcks().get(position.getLedgerId(), position.getEntryId())
-                : null;
-        if (ackedPosition != null) {
-            if (!ackOwnedConsumer.getPendingAcks().remove(position.getLedgerId(), position.getEntryId())) {
+        if (ackOwnedConsumer != null) {
+            if (!ackOwnedConsumer.getPendingAcks().remove(ledgerId, entryId)) {
                 // Message was already removed by the other consumer
                 return;
             }
             if (log.isDebugEnabled()) {
-                log.debug("[{}-{}] consumer {} received ack {}", topicName, subscription, consumerId, position);
+                log.debug("[{}-{}] consumer {} received ack {}:{}", topicName, subscription, consumerId, ledgerId,
+                        entryId);
             }
             // unblock consumer-throttling when limit check is disabled or receives half of maxUnackedMessages =>
             // consumer can start again consuming messages
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import io.prometheus.client.Histogram;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the dispatch of the entries read by the dispatchers on the threads of the topic ordered executor.
+ *
+ * <p>Each dispatcher is a {@link Flow} bound to one of the threads. Instead of being queued on the thread in the
+ * order they are submitted, the dispatches of the flows of a thread are run by deficit round-robin: on each round,
+ * every flow with pending dispatches gets a quantum of bytes and entries, and runs its dispatches as long as they
+ * fit into what it accumulated. A subscription that reads large batches can then no longer delay the dispatches of
+ * the other subscriptions of the thread by more than a round.
+ *
+ * <p>Within a round, the flows reading at the tail of their topic are served first, since their consumers are
+ * waiting for the messages, while the ones catching up with a backlog are not sensitive to a few more milliseconds.
+ * A round is run as a single task of the thread, so that the other tasks of the thread are interleaved with them.
+ */
+public class DispatchScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(DispatchScheduler.class);
+
+    private static final Histogram SCHEDULING_LATENCY = Histogram
+            .build("pulsar_broker_dispatch_scheduling_latency_seconds",
+                    "The time the dispatches of the entries read by the dispatchers wait in the dispatch scheduler")
+            .buckets(0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1)
+            .register();
+
+    // Weight of the last scheduling latency in the average latency of a flow
+    private static final double LATENCY_AVERAGE_WEIGHT = 0.1;
+
+    private final Lane[] lanes;
+    private final long quantumBytes;
+    private final int quantumEntries;
+    private final AtomicInteger nextLane = new AtomicInteger();
+
+    public DispatchScheduler(OrderedExecutor executor, int numThreads, long quantumBytes, int quantumEntries) {
+        this.lanes = new Lane[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            lanes[i] = new Lane(executor.chooseThread((long) i));
+        }
+        this.quantumBytes = quantumBytes;
+        this.quantumEntries = quantumEntries;
+    }
+
+    /**
+     * Create the flow of a dispatcher, bound to one of the threads.
+     */
+    public Flow newFlow(String name) {
+        return new Flow(name, lanes[Math.floorMod(nextLane.getAndIncrement(), lanes.length)]);
+    }
+
+    /**
+     * The dispatches of a dispatcher, which are run one at a time and in the order they are submitted.
+     */
+    public class Flow {
+        private final String name;
+        private final Lane lane;
+        // The fields below are guarded by the lane
+        private final ArrayDeque<Dispatch> dispatches = new ArrayDeque<>();
+        private boolean active;
+        private long deficitBytes;
+        private long deficitEntries;
+
+        private volatile double averageSchedulingLatencyMs;
+
+        private Flow(String name, Lane lane) {
+            this.name = name;
+            this.lane = lane;
+        }
+
+        /**
+         * Submit the dispatch of entries.
+         *
+         * @param bytes the size of the entries
+         * @param entries the number of entries
+         * @param atTail whether the entries were read at the tail of the topic
+         * @param task the dispatch of the entries
+         */
+        public void submit(long bytes, int entries, boolean atTail, Runnable task) {
+            lane.submit(this, new Dispatch(bytes, entries, atTail, task));
+        }
+
+        /**
+         * The average time the dispatches of the flow recently waited before being run.
+         */
+        public double getAverageSchedulingLatencyMs() {
+            return averageSchedulingLatencyMs;
+        }
+
+        private void recordSchedulingLatency(long nanos) {
+            SCHEDULING_LATENCY.observe(nanos / 1_000_000_000.0);
+            double latencyMs = nanos / 1_000_000.0;
+            averageSchedulingLatencyMs = averageSchedulingLatencyMs * (1 - LATENCY_AVERAGE_WEIGHT)
+                    + latencyMs * LATENCY_AVERAGE_WEIGHT;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static class Dispatch {
+        private final long bytes;
+        private final int entries;
+        private final boolean atTail;
+        private final Runnable task;
+        private final long submittedNanos = System.nanoTime();
+
+        private Dispatch(long bytes, int entries, boolean atTail, Runnable task) {
+            this.bytes = bytes;
+            this.entries = entries;
+            this.atTail = atTail;
+            this.task = task;
+        }
+    }
+
+    /**
+     * The flows bound to a thread.
+     */
+    private class Lane implements Runnable {
+        private final ExecutorService executor;
+        // The flows with pending dispatches, guarded by this
+        private final ArrayDeque<Flow> tailFlows = new ArrayDeque<>();
+        private final ArrayDeque<Flow> backlogFlows = new ArrayDeque<>();
+        private boolean scheduled;
+        // Only accessed by the thread of the lane
+        private final List<Dispatch> toRun = new ArrayList<>();
+
+        private Lane(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        private void submit(Flow flow, Dispatch dispatch) {
+            synchronized (this) {
+                flow.dispatches.add(dispatch);
+                if (!flow.active) {
+                    flow.active = true;
+                    (dispatch.atTail ? tailFlows : backlogFlows).add(flow);
+                }
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // The broker is shutting down, the dispatches are not needed anymore
+                log.warn("Dispatch scheduler is closed, dropping the pending dispatches: {}", e.getMessage());
+                synchronized (this) {
+                    for (ArrayDeque<Flow> flows : List.of(tailFlows, backlogFlows)) {
+                        for (Flow flow : flows) {
+                            flow.dispatches.clear();
+                            deactivate(flow);
+                        }
+                    }
+                    tailFlows.clear();
+                    backlogFlows.clear();
+                    scheduled = false;
+                }
+            }
+        }
+
+        /**
+         * Run a round over the flows that have pending dispatches.
+         */
+        @Override
+        public void run() {
+            int tail;
+            int backlog;
+            synchronized (this) {
+                tail = tailFlows.size();
+                backlog = backlogFlows.size();
+            }
+            for (int i = 0; i < tail; i++) {
+                runFlow(tailFlows);
+            }
+            for (int i = 0; i < backlog; i++) {
+                runFlow(backlogFlows);
+            }
+            synchronized (this) {
+                if (tailFlows.isEmpty() && backlogFlows.isEmpty()) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            schedule();
+        }
+
+        private void runFlow(ArrayDeque<Flow> flows) {
+            Flow flow;
+            synchronized (this) {
+                flow = flows.poll();
+                flow.deficitBytes += quantumBytes;
+                flow.deficitEntries += quantumEntries;
+                Dispatch dispatch;
+                while ((dispatch = flow.dispatches.peek()) != null
+                        && dispatch.bytes <= flow.deficitBytes && dispatch.entries <= flow.deficitEntries) {
+                    flow.dispatches.poll();
+                    flow.deficitBytes -= dispatch.bytes;
+                    flow.deficitEntries -= dispatch.entries;
+                    toRun.add(dispatch);
+                }
+                if (flow.dispatches.isEmpty()) {
+                    deactivate(flow);
+                } else {
+                    // Move the flow to the end of the round, in the queue of its next dispatch
+                    (flow.dispatches.peek().atTail ? tailFlows : backlogFlows).add(flow);
+                }
+            }
+            for (int i = 0; i < toRun.size(); i++) {
+                Dispatch dispatch = toRun.get(i);
+                flow.recordSchedulingLatency(System.nanoTime() - dispatch.submittedNanos);
+                try {
+                    dispatch.task.run();
+                } catch (Throwable t) {
+                    log.error("[{}] Failed to dispatch entries", flow, t);
+                }
+            }
+            toRun.clear();
+        }
+    }
+
+    private static void deactivate(Flow flow) {
+        flow.active = false;
+        // An idle flow doesn't keep its deficit, so that it can't send a burst when it becomes active again
+        flow.deficitBytes = 0;
+        flow.deficitEntries = 0;
+    }
+}
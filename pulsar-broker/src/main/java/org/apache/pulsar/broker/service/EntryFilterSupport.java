@@ -18,8 +18,13 @@
  */
 package org.apache.pulsar.broker.service;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.IntFunction;
 import org.apache.bookkeeper.mledger.Entry;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.pulsar.broker.service.plugin.EntryFilter;
@@ -32,6 +37,9 @@ public class EntryFilterSupport {
     protected final boolean hasFilter;
     protected final FilterContext filterContext;
     protected final Subscription subscription;
+    // Pool on which the filters of the entries are run in parallel, or null when they are run inline
+    protected final ExecutorService filterExecutor;
+    protected final int filterExecutorThreads;
 
     public EntryFilterSupport(Subscription subscription) {
         this.subscription = subscription;
@@ -51,13 +59,88 @@ public class EntryFilterSupport {
                 }
             }
             this.filterContext = new FilterContext();
+            this.filterExecutor = brokerService.getEntryFilterExecutor();
+            this.filterExecutorThreads = brokerService.pulsar().getConfiguration().getEntryFilterExecutorThreads();
         } else {
             this.entryFilters = Collections.emptyList();
             this.filterContext = FilterContext.FILTER_CONTEXT_DISABLED;
+            this.filterExecutor = null;
+            this.filterExecutorThreads = 0;
         }
         hasFilter = CollectionUtils.isNotEmpty(entryFilters);
     }
 
+    /**
+     * Whether the filters of a number of entries are run in parallel with
+     * {@link #runFiltersForEntries(List, MessageMetadata[], IntFunction, Consumer)}, rather than one entry after the
+     * other with {@link #runFiltersForEntry(Entry, MessageMetadata, Consumer)}.
+     */
+    protected boolean shouldRunFiltersInParallel(int numberOfEntries) {
+        return hasFilter && filterExecutor != null && numberOfEntries > 1;
+    }
+
+    /**
+     * Run the filters of a list of entries on the entry filter executor, in parallel with the calling thread, and wait
+     * for their results. The metadata of the entries is decoded by the same tasks, and stored into an array so that
+     * the caller doesn't have to decode it again.
+     *
+     * @param entries the entries to filter, where the null ones are skipped
+     * @param entriesMetadata the array where the metadata of each entry is stored
+     * @param metadataReader the function decoding the metadata of the entry at an index
+     * @return the result of the filters of each entry
+     */
+    protected EntryFilter.FilterResult[] runFiltersForEntries(List<? extends Entry> entries,
+                                                              MessageMetadata[] entriesMetadata,
+                                                              IntFunction<MessageMetadata> metadataReader,
+                                                              Consumer consumer) {
+        int size = entries.size();
+        EntryFilter.FilterResult[] filterResults = new EntryFilter.FilterResult[size];
+        // The calling thread runs a share of the entries as well
+        int tasks = Math.min(filterExecutorThreads + 1, size);
+        int entriesPerTask = (size + tasks - 1) / tasks;
+        List<CompletableFuture<Void>> futures = new ArrayList<>(tasks - 1);
+        CompletableFuture<Void> allTasks;
+        try {
+            for (int from = entriesPerTask; from < size; from += entriesPerTask) {
+                int start = from;
+                int end = Math.min(from + entriesPerTask, size);
+                Runnable task = () -> runFilters(entries, start, end, entriesMetadata, metadataReader,
+                        filterResults, consumer);
+                try {
+                    futures.add(CompletableFuture.runAsync(task, filterExecutor));
+                } catch (RejectedExecutionException e) {
+                    // The executor is shutting down
+                    task.run();
+                }
+            }
+            runFilters(entries, 0, Math.min(entriesPerTask, size), entriesMetadata, metadataReader, filterResults,
+                    consumer);
+        } finally {
+            // Never return while a task is still using the entries
+            allTasks = CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new));
+            allTasks.exceptionally(ex -> null).join();
+        }
+        // Propagate the failure of a task
+        allTasks.join();
+        return filterResults;
+    }
+
+    private void runFilters(List<? extends Entry> entries, int from, int to, MessageMetadata[] entriesMetadata,
+                            IntFunction<MessageMetadata> metadataReader, EntryFilter.FilterResult[] filterResults,
+                            Consumer consumer) {
+        FilterContext context = new FilterContext();
+        for (int i = from; i < to; i++) {
+            Entry entry = entries.get(i);
+            if (entry == null) {
+                continue;
+            }
+            MessageMetadata msgMetadata = metadataReader.apply(i);
+            entriesMetadata[i] = msgMetadata;
+            fillContext(context, msgMetadata, subscription, consumer);
+            filterResults[i] = getFilterResult(context, entry, entryFilters);
+        }
+    }
+
     public EntryFilter.FilterResult runFiltersForEntry(Entry entry, MessageMetadata msgMetadata,
                                                        Consumer consumer) {
         if (hasFilter) {
@@ -46,7 +46,12 @@ public class InMemoryRedeliveryTracker implements RedeliveryTracker {
     @Override
     public void remove(Position position) {
         PositionImpl positionImpl = (PositionImpl) position;
-        trackerCache.remove(positionImpl.getLedgerId(), positionImpl.getEntryId());
+        remove(positionImpl.getLedgerId(), positionImpl.getEntryId());
+    }
+
+    @Override
+    public void remove(long ledgerId, long entryId) {
+        trackerCache.remove(ledgerId, entryId);
     }
 
     @Override
@@ -62,6 +62,14 @@ public interface PulsarCommandSender {
 
     void sendGetOrCreateSchemaErrorResponse(long requestId, ServerError error, String errorMessage);
 
+    void sendGetCompressionDictionaryResponse(long requestId, long dictionaryId, byte[] dictionary);
+
+    void sendGetCompressionDictionaryErrorResponse(long requestId, ServerError error, String errorMessage);
+
+    void sendAddCompressionDictionaryResponse(long requestId, long dictionaryId);
+
+    void sendAddCompressionDictionaryErrorResponse(long requestId, ServerError error, String errorMessage);
+
     void sendConnectedResponse(int clientProtocolVersion, int maxMessageSize, boolean supportsTopicWatchers);
 
     void sendLookupResponse(String brokerServiceUrl, String brokerServiceUrlTls, boolean authoritative,
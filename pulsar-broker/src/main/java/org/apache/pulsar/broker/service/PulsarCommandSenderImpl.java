@@ -32,6 +32,7 @@ import org.apache.pulsar.client.api.transaction.TxnID;
 import org.apache.pulsar.common.api.proto.BaseCommand;
 import org.apache.pulsar.common.api.proto.CommandLookupTopicResponse;
 import org.apache.pulsar.common.api.proto.CommandTopicMigrated.ResourceType;
+import org.apache.pulsar.common.api.proto.MessageMetadata;
 import org.apache.pulsar.common.api.proto.ProtocolVersion;
 import org.apache.pulsar.common.api.proto.ServerError;
 import org.apache.pulsar.common.protocol.Commands;
@@ -162,6 +163,41 @@ public class PulsarCommandSenderImpl implements PulsarCommandSender {
         writeAndFlush(outBuf);
     }
 
+    @Override
+    public void sendGetCompressionDictionaryResponse(long requestId, long dictionaryId, byte[] dictionary) {
+        BaseCommand command =
+                Commands.newGetCompressionDictionaryResponseCommand(requestId, dictionaryId, dictionary);
+        safeIntercept(command, cnx);
+        ByteBuf outBuf = Commands.serializeWithSize(command);
+        writeAndFlush(outBuf);
+    }
+
+    @Override
+    public void sendGetCompressionDictionaryErrorResponse(long requestId, ServerError error, String errorMessage) {
+        BaseCommand command =
+                Commands.newGetCompressionDictionaryResponseErrorCommand(requestId, error, errorMessage);
+        safeIntercept(command, cnx);
+        ByteBuf outBuf = Commands.serializeWithSize(command);
+        writeAndFlush(outBuf);
+    }
+
+    @Override
+    public void sendAddCompressionDictionaryResponse(long requestId, long dictionaryId) {
+        BaseCommand command = Commands.newAddCompressionDictionaryResponseCommand(requestId, dictionaryId);
+        safeIntercept(command, cnx);
+        ByteBuf outBuf = Commands.serializeWithSize(command);
+        writeAndFlush(outBuf);
+    }
+
+    @Override
+    public void sendAddCompressionDictionaryErrorResponse(long requestId, ServerError error, String errorMessage) {
+        BaseCommand command =
+                Commands.newAddCompressionDictionaryResponseErrorCommand(requestId, error, errorMessage);
+        safeIntercept(command, cnx);
+        ByteBuf outBuf = Commands.serializeWithSize(command);
+        writeAndFlush(outBuf);
+    }
+
     @Override
     public void sendConnectedResponse(int clientProtocolVersion, int maxMessageSize, boolean supportsTopicWatchers) {
         BaseCommand command = Commands.newConnectedCommand(
@@ -249,6 +285,16 @@ public class PulsarCommandSenderImpl implements PulsarCommandSender {
                     continue;
                 }
 
+                if (!cnx.isCompressionDictionaryCompatibleVersion() && hasCompressionDictionary(entry, subscription,
+                        consumerId)) {
+                    log.warn("[{}-{}] Consumer doesn't support compression dictionaries -  consumerId {}, msg id {}-{}",
+                            topicName, subscription,
+                            consumerId, entry.getLedgerId(), entry.getEntryId());
+                    ctx.close();
+                    entry.release();
+                    continue;
+                }
+
                 ByteBuf metadataAndPayload = entry.getDataBuffer();
                 // increment ref-count of data and release at the end of process:
                 // so, we can get chance to call entry.release
@@ -302,6 +348,17 @@ public class PulsarCommandSenderImpl implements PulsarCommandSender {
         return writePromise;
     }
 
+    private static boolean hasCompressionDictionary(Entry entry, Subscription subscription, long consumerId) {
+        // Only the topics that use compression dictionaries pay for the metadata parsing
+        Topic topic = subscription != null ? subscription.getTopic() : null;
+        if (topic == null || !topic.hasCompressionDictionary()) {
+            return false;
+        }
+        MessageMetadata metadata = entry instanceof EntryAndMetadata ? ((EntryAndMetadata) entry).getMetadata()
+                : Commands.peekMessageMetadata(entry.getDataBuffer(), String.valueOf(subscription), consumerId);
+        return metadata != null && metadata.hasCompressionDictionaryId();
+    }
+
     @Override
     public void sendTcClientConnectResponse(long requestId, ServerError error, String message) {
         BaseCommand command = Commands.newTcClientConnectResponse(requestId, error, message);
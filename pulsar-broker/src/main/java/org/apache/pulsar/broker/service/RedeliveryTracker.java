@@ -20,6 +20,7 @@ package org.apache.pulsar.broker.service;
 
 import java.util.List;
 import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
 
 public interface RedeliveryTracker {
 
@@ -31,5 +32,9 @@ public interface RedeliveryTracker {
 
     void removeBatch(List<Position> positions);
 
+    default void remove(long ledgerId, long entryId) {
+        remove(PositionImpl.get(ledgerId, entryId));
+    }
+
     void clear();
 }
\ No newline at end of file
@@ -42,6 +42,11 @@ public class RedeliveryTrackerDisabled implements RedeliveryTracker {
         // no-op
     }
 
+    @Override
+    public void remove(long ledgerId, long entryId) {
+        // no-op
+    }
+
     @Override
     public void removeBatch(List<Position> positions) {
         // no-op
@@ -29,6 +29,7 @@ import static org.apache.pulsar.broker.service.persistent.PersistentTopic.getMig
 import static org.apache.pulsar.common.api.proto.ProtocolVersion.v5;
 import static org.apache.pulsar.common.protocol.Commands.DEFAULT_CONSUMER_EPOCH;
 import static org.apache.pulsar.common.protocol.Commands.newLookupErrorResponse;
+import com.github.luben.zstd.Zstd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import io.netty.buffer.ByteBuf;
@@ -97,6 +98,7 @@ import org.apache.pulsar.client.impl.schema.SchemaInfoUtil;
 import org.apache.pulsar.common.api.AuthData;
 import org.apache.pulsar.common.api.proto.BaseCommand;
 import org.apache.pulsar.common.api.proto.CommandAck;
+import org.apache.pulsar.common.api.proto.CommandAddCompressionDictionary;
 import org.apache.pulsar.common.api.proto.CommandAddPartitionToTxn;
 import org.apache.pulsar.common.api.proto.CommandAddSubscriptionToTxn;
 import org.apache.pulsar.common.api.proto.CommandAuthResponse;
@@ -108,6 +110,7 @@ import org.apache.pulsar.common.api.proto.CommandEndTxn;
 import org.apache.pulsar.common.api.proto.CommandEndTxnOnPartition;
 import org.apache.pulsar.common.api.proto.CommandEndTxnOnSubscription;
 import org.apache.pulsar.common.api.proto.CommandFlow;
+import org.apache.pulsar.common.api.proto.CommandGetCompressionDictionary;
 import org.apache.pulsar.common.api.proto.CommandGetLastMessageId;
 import org.apache.pulsar.common.api.proto.CommandGetOrCreateSchema;
 import org.apache.pulsar.common.api.proto.CommandGetSchema;
@@ -156,6 +159,7 @@ import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.protocol.PulsarHandler;
 import org.apache.pulsar.common.protocol.schema.SchemaData;
 import org.apache.pulsar.common.protocol.schema.SchemaVersion;
+import org.apache.pulsar.common.schema.LongSchemaVersion;
 import org.apache.pulsar.common.schema.SchemaType;
 import org.apache.pulsar.common.topics.TopicList;
 import org.apache.pulsar.common.util.FutureUtil;
@@ -2310,6 +2314,141 @@ public class ServerCnx extends PulsarHandler implements TransportCnx {
         });
     }
 
+    @Override
+    protected void handleGetCompressionDictionary(CommandGetCompressionDictionary commandGetCompressionDictionary) {
+        checkArgument(state == State.Connected);
+        final long requestId = commandGetCompressionDictionary.getRequestId();
+        final Optional<Long> dictionaryId = commandGetCompressionDictionary.hasDictionaryId()
+                ? Optional.of(commandGetCompressionDictionary.getDictionaryId()) : Optional.empty();
+        if (log.isDebugEnabled()) {
+            log.debug("Received CommandGetCompressionDictionary call from {}, dictionaryId: {}, topic: {}, "
+                            + "requestId: {}", remoteAddress, dictionaryId.orElse(null),
+                    commandGetCompressionDictionary.getTopic(), requestId);
+        }
+
+        final TopicName topicName;
+        try {
+            topicName = TopicName.get(commandGetCompressionDictionary.getTopic());
+        } catch (Throwable t) {
+            commandSender.sendGetCompressionDictionaryErrorResponse(requestId, ServerError.InvalidTopicName,
+                    t.getMessage());
+            return;
+        }
+
+        isTopicOperationAllowed(topicName, TopicOperation.LOOKUP, authenticationData, originalAuthData)
+                .thenCompose(isAuthorized -> {
+                    if (!isAuthorized) {
+                        commandSender.sendGetCompressionDictionaryErrorResponse(requestId,
+                                ServerError.AuthorizationError, "Client is not authorized to get the compression "
+                                        + "dictionaries of " + topicName);
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return service.pulsar().getCompressionDictionaryRegistry()
+                            .getDictionary(topicName.getSchemaName(), dictionaryId).thenAccept(dictionary -> {
+                                if (!dictionary.isPresent()) {
+                                    commandSender.sendGetCompressionDictionaryErrorResponse(requestId,
+                                            ServerError.TopicNotFound, "Topic not found or no compression dictionary");
+                                    return;
+                                }
+                                // The producers of the topic may compress with this dictionary
+                                service.getTopicReference(topicName.toString())
+                                        .filter(topic -> topic instanceof AbstractTopic)
+                                        .ifPresent(topic -> ((AbstractTopic) topic).markCompressionDictionaryUsed());
+                                commandSender.sendGetCompressionDictionaryResponse(requestId,
+                                        ((LongSchemaVersion) dictionary.get().version).getVersion(),
+                                        dictionary.get().data);
+                            });
+                }).exceptionally(ex -> {
+                    commandSender.sendGetCompressionDictionaryErrorResponse(requestId,
+                            BrokerServiceException.getClientErrorCode(ex), ex.getMessage());
+                    return null;
+                });
+    }
+
+    @Override
+    protected void handleAddCompressionDictionary(CommandAddCompressionDictionary commandAddCompressionDictionary) {
+        checkArgument(state == State.Connected);
+        final long requestId = commandAddCompressionDictionary.getRequestId();
+        final byte[] dictionary = commandAddCompressionDictionary.getDictionary();
+        if (log.isDebugEnabled()) {
+            log.debug("Received CommandAddCompressionDictionary call from {}, topic: {}, requestId: {}",
+                    remoteAddress, commandAddCompressionDictionary.getTopic(), requestId);
+        }
+
+        final TopicName topicName;
+        try {
+            topicName = TopicName.get(commandAddCompressionDictionary.getTopic());
+        } catch (Throwable t) {
+            commandSender.sendAddCompressionDictionaryErrorResponse(requestId, ServerError.InvalidTopicName,
+                    t.getMessage());
+            return;
+        }
+
+        if (Zstd.getDictIdFromDict(dictionary) == 0) {
+            commandSender.sendAddCompressionDictionaryErrorResponse(requestId, ServerError.NotAllowedError,
+                    "Not a zstd dictionary");
+            return;
+        }
+
+        isTopicOperationAllowed(topicName, TopicOperation.PRODUCE, authenticationData, originalAuthData)
+                .thenCompose(isAuthorized -> {
+                    if (!isAuthorized) {
+                        commandSender.sendAddCompressionDictionaryErrorResponse(requestId,
+                                ServerError.AuthorizationError, "Client is not authorized to add a compression "
+                                        + "dictionary to " + topicName);
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return service.getTopicIfExists(topicName.toString()).thenCompose(topicOpt -> {
+                        if (!topicOpt.isPresent()) {
+                            commandSender.sendAddCompressionDictionaryErrorResponse(requestId,
+                                    ServerError.TopicNotFound, "Topic not found");
+                            return CompletableFuture.completedFuture(null);
+                        }
+                        Topic topic = topicOpt.get();
+                        String reason = checkCompressionDictionaryAllowed(topic);
+                        if (reason != null) {
+                            commandSender.sendAddCompressionDictionaryErrorResponse(requestId,
+                                    ServerError.NotAllowedError, reason);
+                            return CompletableFuture.completedFuture(null);
+                        }
+                        if (topic instanceof AbstractTopic) {
+                            ((AbstractTopic) topic).markCompressionDictionaryUsed();
+                        }
+                        return service.pulsar().getCompressionDictionaryRegistry()
+                                .putDictionary(topicName.getSchemaName(), dictionary)
+                                .thenAccept(dictionaryId -> {
+                                    log.info("[{}] Added the compression dictionary {} of topic {}", remoteAddress,
+                                            dictionaryId, topicName);
+                                    commandSender.sendAddCompressionDictionaryResponse(requestId, dictionaryId);
+                                });
+                    });
+                }).exceptionally(ex -> {
+                    commandSender.sendAddCompressionDictionaryErrorResponse(requestId,
+                            BrokerServiceException.getClientErrorCode(ex), ex.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * The messages compressed with a dictionary can only be consumed by the clients that support the compression
+     * dictionaries, and the replicators don't forward the dictionaries to the remote clusters.
+     *
+     * @return the reason why a dictionary can't be added to the topic, or null if it can
+     */
+    private static String checkCompressionDictionaryAllowed(Topic topic) {
+        if (!topic.getReplicators().isEmpty()) {
+            return "Compression dictionaries are not supported on replicated topics";
+        }
+        for (Subscription subscription : topic.getSubscriptions().values()) {
+            for (Consumer consumer : subscription.getConsumers()) {
+                if (!consumer.cnx().isCompressionDictionaryCompatibleVersion()) {
+                    return "Consumer " + consumer.consumerName() + " doesn't support compression dictionaries";
+                }
+            }
+        }
+        return null;
+    }
+
     @Override
     protected void handleTcClientConnectRequest(CommandTcClientConnectRequest command) {
         checkArgument(state == State.Connected);
@@ -3112,6 +3251,11 @@ public class ServerCnx extends PulsarHandler implements TransportCnx {
         return getRemoteEndpointProtocolVersion() >= ProtocolVersion.v4.getValue();
     }
 
+    @Override
+    public boolean isCompressionDictionaryCompatibleVersion() {
+        return Commands.peerSupportsCompressionDictionaries(getRemoteEndpointProtocolVersion());
+    }
+
     boolean supportsAuthenticationRefresh() {
         return features != null && features.isSupportsAuthRefresh();
     }
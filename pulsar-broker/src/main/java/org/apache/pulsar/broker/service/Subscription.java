@@ -24,6 +24,7 @@ import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.mledger.Entry;
 import org.apache.bookkeeper.mledger.Position;
+import org.apache.bookkeeper.mledger.impl.PositionBatchRecyclable;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.pulsar.broker.intercept.BrokerInterceptor;
 import org.apache.pulsar.common.api.proto.CommandAck.AckType;
@@ -50,6 +51,14 @@ public interface Subscription {
 
     void acknowledgeMessage(List<Position> positions, AckType ackType, Map<String, Long> properties);
 
+    /**
+     * Individually acknowledge a batch of positions. The batch is not retained and can be recycled by the caller
+     * once the method returns.
+     */
+    default void acknowledgeMessage(PositionBatchRecyclable positions, Map<String, Long> properties) {
+        acknowledgeMessage(positions.toPositions(), AckType.Individual, properties);
+    }
+
     String getTopicName();
 
     boolean isReplicated();
@@ -325,6 +325,13 @@ public interface Topic {
         return false;
     }
 
+    /**
+     * Whether the producers of this topic compress their batches with a dictionary.
+     */
+    default boolean hasCompressionDictionary() {
+        return false;
+    }
+
     boolean isPersistent();
 
     /* ------ Transaction related ------ */
@@ -23,10 +23,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Semaphore;
-import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 import org.apache.pulsar.broker.PulsarService;
 import org.apache.pulsar.broker.namespace.NamespaceService;
+import org.apache.pulsar.broker.resources.TopicPatternListener;
 import org.apache.pulsar.broker.resources.TopicResources;
 import org.apache.pulsar.common.api.proto.CommandWatchTopicListClose;
 import org.apache.pulsar.common.api.proto.ServerError;
@@ -40,7 +40,7 @@ import org.slf4j.LoggerFactory;
 public class TopicListService {
 
 
-    public static class TopicListWatcher implements BiConsumer<String, NotificationType> {
+    public static class TopicListWatcher implements TopicPatternListener {
 
         private final List<String> matchingTopics;
         private final TopicListService topicListService;
@@ -59,23 +59,33 @@ public class TopicListService {
             return matchingTopics;
         }
 
+        @Override
+        public Pattern getTopicsPattern() {
+            return topicsPattern;
+        }
+
         @Override
         public void accept(String topicName, NotificationType notificationType) {
             if (topicsPattern.matcher(topicName).matches()) {
-                List<String> newTopics;
-                List<String> deletedTopics;
-                if (notificationType == NotificationType.Deleted) {
-                    newTopics = Collections.emptyList();
-                    deletedTopics = Collections.singletonList(topicName);
-                    matchingTopics.remove(topicName);
-                } else {
-                    deletedTopics = Collections.emptyList();
-                    newTopics = Collections.singletonList(topicName);
-                    matchingTopics.add(topicName);
-                }
-                String hash = TopicList.calculateHash(matchingTopics);
-                topicListService.sendTopicListUpdate(id, hash, deletedTopics, newTopics);
+                onMatchingTopic(topicName, notificationType);
+            }
+        }
+
+        @Override
+        public void onMatchingTopic(String topicName, NotificationType notificationType) {
+            List<String> newTopics;
+            List<String> deletedTopics;
+            if (notificationType == NotificationType.Deleted) {
+                newTopics = Collections.emptyList();
+                deletedTopics = Collections.singletonList(topicName);
+                matchingTopics.remove(topicName);
+            } else {
+                deletedTopics = Collections.emptyList();
+                newTopics = Collections.singletonList(topicName);
+                matchingTopics.add(topicName);
             }
+            String hash = TopicList.calculateHash(matchingTopics);
+            topicListService.sendTopicListUpdate(id, hash, deletedTopics, newTopics);
         }
     }
 
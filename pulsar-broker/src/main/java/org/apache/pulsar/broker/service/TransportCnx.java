@@ -35,6 +35,8 @@ public interface TransportCnx {
 
     boolean isBatchMessageCompatibleVersion();
 
+    boolean isCompressionDictionaryCompatibleVersion();
+
     /**
      * The security role for this connection.
      *
@@ -179,7 +179,8 @@ public class NonPersistentTopic extends AbstractTopic implements Topic, TopicPol
                     updatePublishDispatcher();
                     updateResourceGroupLimiter(optPolicies);
                     return updateClusterMigrated();
-                });
+                })
+                .thenCompose(__ -> initCompressionDictionary());
     }
 
     @Override
@@ -292,6 +293,15 @@ public class NonPersistentTopic extends AbstractTopic implements Topic, TopicPol
                 return future;
             }
 
+            if (hasCompressionDictionary && !cnx.isCompressionDictionaryCompatibleVersion()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] Consumer doesn't support compression dictionaries {}", topic, subscriptionName);
+                }
+                future.completeExceptionally(
+                        new UnsupportedVersionException("Consumer doesn't support compression dictionaries"));
+                return future;
+            }
+
             if (subscriptionName.startsWith(replicatorPrefix)) {
                 log.warn("[{}] Failed to create subscription for {}", topic, subscriptionName);
                 future.completeExceptionally(
@@ -588,6 +598,12 @@ public class NonPersistentTopic extends AbstractTopic implements Topic, TopicPol
     }
 
     CompletableFuture<Void> startReplicator(String remoteCluster) {
+        if (hasCompressionDictionary) {
+            // The remote cluster doesn't have the dictionaries of the topic, its consumers couldn't decode the batches
+            log.warn("[{}] Not starting replicator to remote: {}, the topic uses compression dictionaries", topic,
+                    remoteCluster);
+            return CompletableFuture.completedFuture(null);
+        }
         log.info("[{}] Starting replicator to remote: {}", topic, remoteCluster);
         String localCluster = brokerService.pulsar().getConfiguration().getClusterName();
         return addReplicationCluster(remoteCluster, NonPersistentTopic.this, localCluster);
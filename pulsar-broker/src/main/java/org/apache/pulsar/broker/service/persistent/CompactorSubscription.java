@@ -22,12 +22,14 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static org.apache.pulsar.broker.service.AbstractBaseDispatcher.checkAndApplyReachedEndOfTopicOrTopicMigration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.MarkDeleteCallback;
 import org.apache.bookkeeper.mledger.ManagedCursor;
 import org.apache.bookkeeper.mledger.ManagedLedgerException;
 import org.apache.bookkeeper.mledger.Position;
 import org.apache.pulsar.common.api.proto.CommandAck.AckType;
 import org.apache.pulsar.compaction.CompactedTopic;
+import org.apache.pulsar.compaction.CompactedTopicContext;
 import org.apache.pulsar.compaction.Compactor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,13 +48,8 @@ public class CompactorSubscription extends PersistentSubscription {
 
         Map<String, Long> properties = cursor.getProperties();
         if (properties.containsKey(Compactor.COMPACTED_TOPIC_LEDGER_PROPERTY)) {
-            long compactedLedgerId = properties.get(Compactor.COMPACTED_TOPIC_LEDGER_PROPERTY);
-            compactedTopic.newCompactedLedger(cursor.getMarkDeletedPosition(), compactedLedgerId)
-                    .thenAccept(previousContext -> {
-                        if (previousContext != null) {
-                            compactedTopic.deleteCompactedLedger(previousContext.getLedger().getId());
-                        }
-                    });
+            newCompactedLedger(cursor.getMarkDeletedPosition(), properties)
+                    .thenAccept(this::deleteCompactedLedger);
         }
     }
 
@@ -61,7 +58,6 @@ public class CompactorSubscription extends PersistentSubscription {
         checkArgument(ackType == AckType.Cumulative);
         checkArgument(positions.size() == 1);
         checkArgument(properties.containsKey(Compactor.COMPACTED_TOPIC_LEDGER_PROPERTY));
-        long compactedLedgerId = properties.get(Compactor.COMPACTED_TOPIC_LEDGER_PROPERTY);
 
         Position position = positions.get(0);
 
@@ -76,7 +72,7 @@ public class CompactorSubscription extends PersistentSubscription {
         // to read the complete compacted data again.
         // And we can only delete the previous ledger after the mark delete succeed, otherwise we will loss the
         // compacted data if mark delete failed.
-        compactedTopic.newCompactedLedger(position, compactedLedgerId).thenAccept(previousContext -> {
+        newCompactedLedger(position, properties).thenAccept(previousContext -> {
             cursor.asyncMarkDelete(position, properties, new MarkDeleteCallback() {
                 @Override
                 public void markDeleteComplete(Object ctx) {
@@ -84,9 +80,7 @@ public class CompactorSubscription extends PersistentSubscription {
                         log.debug("[{}][{}] Mark deleted messages until position on compactor subscription {}",
                                 topicName, subName, position);
                     }
-                    if (previousContext != null) {
-                        compactedTopic.deleteCompactedLedger(previousContext.getLedger().getId());
-                    }
+                    deleteCompactedLedger(previousContext);
                 }
 
                 @Override
@@ -106,5 +100,23 @@ public class CompactorSubscription extends PersistentSubscription {
         }
     }
 
+    private CompletableFuture<CompactedTopicContext> newCompactedLedger(Position position,
+                                                                        Map<String, Long> properties) {
+        long compactedLedgerId = properties.get(Compactor.COMPACTED_TOPIC_LEDGER_PROPERTY);
+        Long indexLedgerId = properties.get(Compactor.COMPACTED_TOPIC_INDEX_LEDGER_PROPERTY);
+        return indexLedgerId != null
+                ? compactedTopic.newCompactedLedger(position, compactedLedgerId, indexLedgerId)
+                : compactedTopic.newCompactedLedger(position, compactedLedgerId);
+    }
+
+    private void deleteCompactedLedger(CompactedTopicContext context) {
+        if (context != null) {
+            compactedTopic.deleteCompactedLedger(context.getLedger().getId());
+            if (context.getIndexLedgerId() >= 0) {
+                compactedTopic.deleteCompactedLedger(context.getIndexLedgerId());
+            }
+        }
+    }
+
     private static final Logger log = LoggerFactory.getLogger(CompactorSubscription.class);
 }
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.persistent;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.LedgerEntry;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.mledger.ManagedLedgerConfig;
+import org.apache.bookkeeper.mledger.impl.LedgerMetadataUtils;
+import org.apache.pulsar.broker.service.BrokerServiceException.PersistenceException;
+import org.apache.pulsar.broker.service.persistent.proto.DeduplicationSnapshotFormat.DeduplicationSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ledger of the snapshots of the {@link DeduplicationState} of a topic.
+ *
+ * <p/>A ledger starts with a full snapshot, and the next snapshots are appended to it as the changes since the
+ * previous one. Once the changes appended add up to more than twice the size of the state, the next snapshot is a
+ * full one, written to a new ledger that replaces the previous one. Snapshots are written one at a time.
+ */
+class DeduplicationSnapshotStorage {
+    // Minimum number of changes appended to a ledger before it's rolled over
+    private static final long MIN_CHANGES_PER_LEDGER = 1000;
+
+    private final String name;
+    private final BookKeeper bookKeeper;
+    private final ManagedLedgerConfig config;
+
+    // Ledger the snapshots are appended to, or null if the next snapshot has to be a full one
+    private LedgerHandle ledger;
+    // Number of producers in the full snapshot of the ledger, and in the changes appended since
+    private long numberOfProducers;
+    private long numberOfChanges;
+
+    DeduplicationSnapshotStorage(String name, BookKeeper bookKeeper, ManagedLedgerConfig config) {
+        this.name = name;
+        this.bookKeeper = bookKeeper;
+        this.config = config;
+    }
+
+    /**
+     * @return whether the next snapshot has to be a full one, in a new ledger
+     */
+    synchronized boolean needsFullSnapshot() {
+        return ledger == null || numberOfChanges > Math.max(MIN_CHANGES_PER_LEDGER, 2 * numberOfProducers);
+    }
+
+    /**
+     * Store a snapshot, in a new ledger if it's a full one.
+     *
+     * @return the id of the ledger the snapshot was stored to
+     */
+    CompletableFuture<Long> store(DeduplicationSnapshot snapshot) {
+        if (!snapshot.getFull()) {
+            LedgerHandle lh;
+            synchronized (this) {
+                lh = ledger;
+                numberOfChanges += snapshot.getSequenceIdsCount() + snapshot.getRemovedProducersCount();
+            }
+            return addEntry(lh, snapshot).whenComplete((__, ex) -> {
+                if (ex != null) {
+                    reset(lh);
+                }
+            }).thenApply(__ -> lh.getId());
+        }
+        return createLedger().thenCompose(lh -> addEntry(lh, snapshot)
+                .whenComplete((__, ex) -> {
+                    if (ex != null) {
+                        close(lh);
+                        delete(lh.getId());
+                    }
+                })
+                .thenApply(__ -> {
+                    LedgerHandle previous;
+                    synchronized (this) {
+                        previous = ledger;
+                        ledger = lh;
+                        numberOfProducers = snapshot.getSequenceIdsCount();
+                        numberOfChanges = 0;
+                    }
+                    if (previous != null) {
+                        close(previous);
+                    }
+                    return lh.getId();
+                }));
+    }
+
+    /**
+     * Read the snapshots of a ledger, from the full one.
+     */
+    CompletableFuture<List<DeduplicationSnapshot>> read(long ledgerId) {
+        CompletableFuture<List<DeduplicationSnapshot>> future = new CompletableFuture<>();
+        bookKeeper.asyncOpenLedger(ledgerId, digestType(), config.getPassword(), (rc, lh, ctx) -> {
+            if (rc != BKException.Code.OK) {
+                future.completeExceptionally(bkException("Failed to open ledger", rc, ledgerId));
+                return;
+            }
+            if (lh.getLastAddConfirmed() < 0) {
+                close(lh);
+                future.complete(new ArrayList<>());
+                return;
+            }
+            lh.asyncReadEntries(0, lh.getLastAddConfirmed(), (rc1, lh1, entries, ctx1) -> {
+                close(lh);
+                if (rc1 != BKException.Code.OK) {
+                    future.completeExceptionally(bkException("Failed to read entries", rc1, ledgerId));
+                    return;
+                }
+                List<DeduplicationSnapshot> snapshots = new ArrayList<>();
+                try {
+                    while (entries.hasMoreElements()) {
+                        LedgerEntry entry = entries.nextElement();
+                        snapshots.add(DeduplicationSnapshot.parseFrom(entry.getEntry()));
+                    }
+                } catch (InvalidProtocolBufferException e) {
+                    future.completeExceptionally(e);
+                    return;
+                }
+                future.complete(snapshots);
+            }, null);
+        }, null);
+        return future;
+    }
+
+    CompletableFuture<Void> delete(long ledgerId) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        bookKeeper.asyncDeleteLedger(ledgerId, (rc, ctx) -> {
+            if (rc != BKException.Code.OK && rc != BKException.Code.NoSuchLedgerExistsException
+                    && rc != BKException.Code.NoSuchLedgerExistsOnMetadataServerException) {
+                log.warn("[{}] Failed to delete deduplication snapshot ledger {}: {}", name, ledgerId,
+                        BKException.getMessage(rc));
+                future.completeExceptionally(bkException("Failed to delete ledger", rc, ledgerId));
+            } else {
+                future.complete(null);
+            }
+        }, null);
+        return future;
+    }
+
+    /**
+     * Close the ledger the snapshots are appended to, so that the next snapshot is a full one.
+     *
+     * @return the id of the ledger, or -1 if there was none
+     */
+    long close() {
+        LedgerHandle lh;
+        synchronized (this) {
+            lh = ledger;
+            ledger = null;
+        }
+        if (lh == null) {
+            return -1;
+        }
+        close(lh);
+        return lh.getId();
+    }
+
+    private synchronized void reset(LedgerHandle lh) {
+        if (ledger == lh) {
+            ledger = null;
+        }
+    }
+
+    private CompletableFuture<LedgerHandle> createLedger() {
+        CompletableFuture<LedgerHandle> future = new CompletableFuture<>();
+        bookKeeper.asyncCreateLedger(config.getEnsembleSize(), config.getWriteQuorumSize(),
+                config.getAckQuorumSize(), digestType(), config.getPassword(), (rc, lh, ctx) -> {
+                    if (rc != BKException.Code.OK) {
+                        future.completeExceptionally(bkException("Failed to create ledger", rc, -1));
+                    } else {
+                        future.complete(lh);
+                    }
+                }, null, LedgerMetadataUtils.buildMetadataForDeduplicationSnapshot(name));
+        return future;
+    }
+
+    private CompletableFuture<Void> addEntry(LedgerHandle lh, DeduplicationSnapshot snapshot) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        lh.asyncAddEntry(snapshot.toByteArray(), (rc, handle, entryId, ctx) -> {
+            if (rc != BKException.Code.OK) {
+                future.completeExceptionally(bkException("Failed to add entry", rc, lh.getId()));
+            } else {
+                future.complete(null);
+            }
+        }, null);
+        return future;
+    }
+
+    private void close(LedgerHandle lh) {
+        lh.asyncClose((rc, handle, ctx) -> {
+            if (rc != BKException.Code.OK) {
+                log.warn("[{}] Failed to close deduplication snapshot ledger {}: {}", name, lh.getId(),
+                        BKException.getMessage(rc));
+            }
+        }, null);
+    }
+
+    private BookKeeper.DigestType digestType() {
+        return BookKeeper.DigestType.fromApiDigestType(config.getDigestType());
+    }
+
+    private static PersistenceException bkException(String operation, int rc, long ledgerId) {
+        return new PersistenceException(BKException.getMessage(rc) + " - ledger=" + ledgerId
+                + " - operation=" + operation);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(DeduplicationSnapshotStorage.class);
+}
@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.persistent;
+
+import com.carrotsearch.hppc.IntArrayDeque;
+import com.carrotsearch.hppc.ObjectIntHashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.apache.pulsar.broker.service.persistent.proto.DeduplicationSnapshotFormat.DeduplicationSnapshot;
+import org.apache.pulsar.broker.service.persistent.proto.DeduplicationSnapshotFormat.ProducerSequenceId;
+
+/**
+ * Highest sequence ids pushed and persisted by each producer of a topic, for the {@link MessageDeduplication}.
+ *
+ * <p/>In each of the pushed and persisted sequence ids, the producer names are interned to dense int ids, which
+ * index primitive arrays, so that a producer costs its name and a few slots of arrays instead of a map entry and a
+ * boxed long. The ids of the removed producers are reused. The producers whose persisted sequence id changed, and
+ * the ones that were removed, since the last snapshot are tracked as well, for the incremental snapshots of the state.
+ *
+ * <p/>The pushed and the persisted sequence ids are guarded by their own lock, since they are updated by different
+ * threads. When both are needed, the lock of the pushed ones is taken first.
+ */
+class DeduplicationState {
+    private static final int INITIAL_CAPACITY = 16;
+    // Rough size of a String object, on top of its characters
+    private static final long STRING_OVERHEAD = 40;
+
+    final SequenceIds highestSequencedPushed = new SequenceIds(false);
+    final SequenceIds highestSequencedPersisted = new SequenceIds(true);
+
+    /**
+     * Sequence ids by producer name.
+     */
+    static class SequenceIds {
+        private final ObjectIntHashMap<String> ids = new ObjectIntHashMap<>();
+        private final IntArrayDeque freeIds = new IntArrayDeque();
+        private int nextId;
+        private String[] names = new String[INITIAL_CAPACITY];
+        private long[] values = new long[INITIAL_CAPACITY];
+        private long namesSize;
+
+        private final boolean trackChanges;
+        // Producers whose sequence id changed since the last snapshot, by id
+        private final BitSet changed = new BitSet();
+        // Producers that were removed since the last snapshot
+        private final Set<String> removed = new HashSet<>();
+
+        private SequenceIds(boolean trackChanges) {
+            this.trackChanges = trackChanges;
+        }
+
+        /**
+         * @return the sequence id of the producer, or the default value if there is none
+         */
+        public synchronized long get(String producerName, long defaultValue) {
+            int id = ids.getOrDefault(producerName, -1);
+            return id >= 0 ? values[id] : defaultValue;
+        }
+
+        /**
+         * @return the sequence id of the producer, or null if there is none
+         */
+        public synchronized Long get(String producerName) {
+            int id = ids.getOrDefault(producerName, -1);
+            return id >= 0 ? values[id] : null;
+        }
+
+        public synchronized void put(String producerName, long sequenceId) {
+            int id = intern(producerName);
+            values[id] = sequenceId;
+            if (trackChanges) {
+                changed.set(id);
+            }
+        }
+
+        public synchronized boolean containsKey(String producerName) {
+            return ids.containsKey(producerName);
+        }
+
+        public synchronized int size() {
+            return ids.size();
+        }
+
+        private int intern(String producerName) {
+            int id = ids.getOrDefault(producerName, -1);
+            if (id >= 0) {
+                return id;
+            }
+            if (!freeIds.isEmpty()) {
+                id = freeIds.removeFirst();
+            } else {
+                id = nextId++;
+                if (id == names.length) {
+                    int capacity = names.length * 2;
+                    names = Arrays.copyOf(names, capacity);
+                    values = Arrays.copyOf(values, capacity);
+                }
+            }
+            ids.put(producerName, id);
+            names[id] = producerName;
+            namesSize += STRING_OVERHEAD + 2L * producerName.length();
+            if (trackChanges) {
+                removed.remove(producerName);
+            }
+            return id;
+        }
+
+        private synchronized void remove(String producerName) {
+            int id = ids.getOrDefault(producerName, -1);
+            if (id < 0) {
+                return;
+            }
+            ids.remove(producerName);
+            names[id] = null;
+            freeIds.addLast(id);
+            namesSize -= STRING_OVERHEAD + 2L * producerName.length();
+            if (trackChanges) {
+                changed.clear(id);
+                removed.add(producerName);
+            }
+        }
+
+        private synchronized void clear() {
+            ids.clear();
+            freeIds.clear();
+            nextId = 0;
+            names = new String[INITIAL_CAPACITY];
+            values = new long[INITIAL_CAPACITY];
+            namesSize = 0;
+            changed.clear();
+            removed.clear();
+        }
+
+        /**
+         * Replace the sequence ids by the ones of other producers, without tracking the changes.
+         */
+        private synchronized void copyFrom(SequenceIds other) {
+            ids.clear();
+            freeIds.clear();
+            synchronized (other) {
+                nextId = other.nextId;
+                names = other.names.clone();
+                values = other.values.clone();
+                namesSize = other.namesSize;
+                for (int id = 0; id < nextId; id++) {
+                    if (names[id] != null) {
+                        ids.put(names[id], id);
+                    } else {
+                        freeIds.addLast(id);
+                    }
+                }
+            }
+        }
+
+        private synchronized long getEstimatedSizeInBytes() {
+            // Slots of the hash map are a reference and an int each, and ids are a reference and a long each
+            return ids.keys.length * 12L + names.length * 16L + namesSize + changed.size() / 8;
+        }
+    }
+
+    /**
+     * Forget the sequence ids of a producer.
+     */
+    void remove(String producerName) {
+        highestSequencedPushed.remove(producerName);
+        highestSequencedPersisted.remove(producerName);
+    }
+
+    /**
+     * Reset the pushed sequence ids to the persisted ones.
+     */
+    void resetPushed() {
+        highestSequencedPushed.copyFrom(highestSequencedPersisted);
+    }
+
+    void clear() {
+        synchronized (highestSequencedPushed) {
+            highestSequencedPushed.clear();
+            highestSequencedPersisted.clear();
+        }
+    }
+
+    /**
+     * @return the persisted sequence ids of at most the given number of producers, sorted by producer name
+     */
+    Map<String, Long> getPersisted(int maxNumberOfProducers) {
+        SequenceIds persisted = highestSequencedPersisted;
+        synchronized (persisted) {
+            Map<String, Long> sequenceIds = new TreeMap<>();
+            for (int id = 0; id < persisted.nextId && sequenceIds.size() < maxNumberOfProducers; id++) {
+                if (persisted.names[id] != null) {
+                    sequenceIds.put(persisted.names[id], persisted.values[id]);
+                }
+            }
+            return sequenceIds;
+        }
+    }
+
+    /**
+     * Take a snapshot of the persisted sequence ids, and start tracking the changes from it.
+     *
+     * @param full whether to snapshot all the sequence ids, or only what changed since the last snapshot
+     */
+    DeduplicationSnapshot takeSnapshot(long ledgerId, long entryId, boolean full) {
+        SequenceIds persisted = highestSequencedPersisted;
+        synchronized (persisted) {
+            DeduplicationSnapshot.Builder snapshot = DeduplicationSnapshot.newBuilder()
+                    .setLedgerId(ledgerId)
+                    .setEntryId(entryId)
+                    .setFull(full);
+            if (full) {
+                for (int id = 0; id < persisted.nextId; id++) {
+                    addSequenceId(snapshot, persisted, id);
+                }
+            } else {
+                BitSet changed = persisted.changed;
+                for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+                    addSequenceId(snapshot, persisted, id);
+                }
+                snapshot.addAllRemovedProducers(persisted.removed);
+            }
+            persisted.changed.clear();
+            persisted.removed.clear();
+            return snapshot.build();
+        }
+    }
+
+    private static void addSequenceId(DeduplicationSnapshot.Builder snapshot, SequenceIds persisted, int id) {
+        if (persisted.names[id] != null) {
+            snapshot.addSequenceIds(ProducerSequenceId.newBuilder()
+                    .setProducerName(persisted.names[id])
+                    .setSequenceId(persisted.values[id]));
+        }
+    }
+
+    /**
+     * Track the changes of the snapshots that failed to be stored, for the next one.
+     */
+    void snapshotFailed(DeduplicationSnapshot snapshot) {
+        SequenceIds persisted = highestSequencedPersisted;
+        synchronized (persisted) {
+            for (ProducerSequenceId sequenceId : snapshot.getSequenceIdsList()) {
+                int id = persisted.ids.getOrDefault(sequenceId.getProducerName(), -1);
+                if (id >= 0) {
+                    persisted.changed.set(id);
+                }
+            }
+            for (String producerName : snapshot.getRemovedProducersList()) {
+                if (!persisted.ids.containsKey(producerName)) {
+                    persisted.removed.add(producerName);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of producers that changed since the last snapshot
+     */
+    int getNumberOfChanges() {
+        SequenceIds persisted = highestSequencedPersisted;
+        synchronized (persisted) {
+            return persisted.changed.cardinality() + persisted.removed.size();
+        }
+    }
+
+    /**
+     * @return the number of producers, which all have a pushed sequence id except the ones that were only recovered
+     *         with a persisted sequence id
+     */
+    int getNumberOfProducers() {
+        return Math.max(highestSequencedPushed.size(), highestSequencedPersisted.size());
+    }
+
+    /**
+     * @return a rough estimation of the heap used by the state, in bytes
+     */
+    long getEstimatedSizeInBytes() {
+        return highestSequencedPushed.getEstimatedSizeInBytes() + highestSequencedPersisted.getEstimatedSizeInBytes();
+    }
+}
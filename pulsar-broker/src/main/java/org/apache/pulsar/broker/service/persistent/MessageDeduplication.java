@@ -20,13 +20,15 @@ package org.apache.pulsar.broker.service.persistent;
 
 import com.google.common.annotations.VisibleForTesting;
 import io.netty.buffer.ByteBuf;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.DeleteCursorCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.MarkDeleteCallback;
 import org.apache.bookkeeper.mledger.AsyncCallbacks.OpenCursorCallback;
@@ -39,9 +41,10 @@ import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.pulsar.broker.PulsarService;
 import org.apache.pulsar.broker.service.Topic.PublishContext;
+import org.apache.pulsar.broker.service.persistent.proto.DeduplicationSnapshotFormat.DeduplicationSnapshot;
+import org.apache.pulsar.broker.service.persistent.proto.DeduplicationSnapshotFormat.ProducerSequenceId;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
 import org.apache.pulsar.common.protocol.Commands;
-import org.apache.pulsar.common.util.collections.ConcurrentOpenHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -93,25 +96,21 @@ public class MessageDeduplication {
     }
 
 
+    // Cursor property with the id of the ledger of the deduplication snapshots, if they are stored in a ledger
+    static final String SNAPSHOT_LEDGER_PROPERTY = "pulsar.deduplication.snapshotLedger";
+
     private volatile Status status;
 
-    // Map that contains the highest sequenceId that have been sent by each producers. The map will be updated before
-    // the messages are persisted
+    private final DeduplicationState state = new DeduplicationState();
+
+    // Highest sequenceId that have been sent by each producers. It will be updated before the messages are persisted
     @VisibleForTesting
-    final ConcurrentOpenHashMap<String, Long> highestSequencedPushed =
-            ConcurrentOpenHashMap.<String, Long>newBuilder()
-                    .expectedItems(16)
-                    .concurrencyLevel(1)
-                    .build();
-
-    // Map that contains the highest sequenceId that have been persistent by each producers. The map will be updated
-    // after the messages are persisted
+    final DeduplicationState.SequenceIds highestSequencedPushed = state.highestSequencedPushed;
+
+    // Highest sequenceId that have been persistent by each producers. It will be updated after the messages are
+    // persisted
     @VisibleForTesting
-    final ConcurrentOpenHashMap<String, Long> highestSequencedPersisted =
-            ConcurrentOpenHashMap.<String, Long>newBuilder()
-            .expectedItems(16)
-            .concurrencyLevel(1)
-            .build();
+    final DeduplicationState.SequenceIds highestSequencedPersisted = state.highestSequencedPersisted;
 
     // Number of persisted entries after which to store a snapshot of the sequence ids map
     private final int snapshotInterval;
@@ -125,11 +124,36 @@ public class MessageDeduplication {
     // Max number of producer for which to persist the sequence id information
     private final int maxNumberOfProducers;
 
-    // Map used to track the inactive producer along with the timestamp of their last activity
-    private final Map<String, Long> inactiveProducers = new HashMap<>();
+    // Map used to track the inactive producer along with the timestamp of their last activity, from the least
+    // recently active one. The information of the least recently active producers is discarded once there are more
+    // than maxNumberOfProducers of them
+    private final Map<String, Long> inactiveProducers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            if (size() <= maxNumberOfProducers) {
+                return false;
+            }
+            state.remove(eldest.getKey());
+            return true;
+        }
+    };
 
     private final String replicatorPrefix;
 
+    // Whether to store the snapshots in a ledger instead of the properties of the cursor
+    private final boolean snapshotLedgerEnabled;
+
+    // Storage of the snapshots in a ledger, created when it's first used
+    private DeduplicationSnapshotStorage snapshotStorage;
+
+    // Id of the ledger of the snapshots stored in the cursor properties, or -1 if there is none
+    private volatile long snapshotLedgerId = -1;
+
+    private final AtomicBoolean snapshotInProgress = new AtomicBoolean();
+
+    // Position of the snapshot to take once the one in progress is stored
+    private final AtomicReference<Position> pendingSnapshotPosition = new AtomicReference<>();
+
     public MessageDeduplication(PulsarService pulsar, PersistentTopic topic, ManagedLedger managedLedger) {
         this.pulsar = pulsar;
         this.topic = topic;
@@ -139,21 +163,59 @@ public class MessageDeduplication {
         this.maxNumberOfProducers = pulsar.getConfiguration().getBrokerDeduplicationMaxNumberOfProducers();
         this.snapshotCounter = 0;
         this.replicatorPrefix = pulsar.getConfiguration().getReplicatorPrefix();
+        this.snapshotLedgerEnabled = pulsar.getConfiguration().isBrokerDeduplicationSnapshotLedgerEnabled();
     }
 
     private CompletableFuture<Void> recoverSequenceIdsMap() {
-        // Load the sequence ids from the snapshot in the cursor properties
-        managedCursor.getProperties().forEach((k, v) -> {
-            producerRemoved(k);
-            highestSequencedPushed.put(k, v);
-            highestSequencedPersisted.put(k, v);
+        // Load the sequence ids from the snapshots in a ledger, if any
+        String snapshotLedger = managedCursor.getCursorProperties().get(SNAPSHOT_LEDGER_PROPERTY);
+        CompletableFuture<Void> snapshotsRecovered;
+        if (snapshotLedger != null) {
+            snapshotLedgerId = Long.parseLong(snapshotLedger);
+            snapshotsRecovered = getSnapshotStorage().read(snapshotLedgerId).thenAccept(snapshots -> {
+                log.info("[{}] Recovering {} deduplication snapshots from ledger {}", topic.getName(),
+                        snapshots.size(), snapshotLedgerId);
+                snapshots.forEach(this::applySnapshot);
+            });
+        } else {
+            snapshotsRecovered = CompletableFuture.completedFuture(null);
+        }
+
+        return snapshotsRecovered.thenCompose(__ -> {
+            // Load the sequence ids from the snapshot in the cursor properties
+            managedCursor.getProperties().forEach((k, v) -> {
+                producerRemoved(k);
+                highestSequencedPushed.put(k, v);
+                highestSequencedPersisted.put(k, v);
+            });
+
+            // Replay all the entries and apply all the sequence ids updates
+            log.info("[{}] Replaying {} entries for deduplication", topic.getName(),
+                    managedCursor.getNumberOfEntries());
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            replayCursor(future);
+            return future;
         });
+    }
 
-        // Replay all the entries and apply all the sequence ids updates
-        log.info("[{}] Replaying {} entries for deduplication", topic.getName(), managedCursor.getNumberOfEntries());
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        replayCursor(future);
-        return future;
+    private void applySnapshot(DeduplicationSnapshot snapshot) {
+        if (snapshot.getFull()) {
+            state.clear();
+            synchronized (this) {
+                inactiveProducers.clear();
+            }
+        }
+        for (String producerName : snapshot.getRemovedProducersList()) {
+            synchronized (this) {
+                inactiveProducers.remove(producerName);
+            }
+            state.remove(producerName);
+        }
+        for (ProducerSequenceId sequenceId : snapshot.getSequenceIdsList()) {
+            producerRemoved(sequenceId.getProducerName());
+            highestSequencedPushed.put(sequenceId.getProducerName(), sequenceId.getSequenceId());
+            highestSequencedPersisted.put(sequenceId.getProducerName(), sequenceId.getSequenceId());
+        }
     }
 
     /**
@@ -214,11 +276,20 @@ public class MessageDeduplication {
             }
             if (status == Status.Initialized && !shouldBeEnabled) {
                 status = Status.Removing;
+                for (ManagedCursor cursor : managedLedger.getCursors()) {
+                    if (PersistentTopic.DEDUPLICATION_CURSOR_NAME.equals(cursor.getName())) {
+                        String snapshotLedger = cursor.getCursorProperties().get(SNAPSHOT_LEDGER_PROPERTY);
+                        if (snapshotLedger != null) {
+                            snapshotLedgerId = Long.parseLong(snapshotLedger);
+                        }
+                    }
+                }
                 managedLedger.asyncDeleteCursor(PersistentTopic.DEDUPLICATION_CURSOR_NAME,
                         new DeleteCursorCallback() {
                             @Override
                             public void deleteCursorComplete(Object ctx) {
                                 status = Status.Disabled;
+                                deleteSnapshotLedger();
                                 log.info("[{}] Deleted deduplication cursor", topic.getName());
                             }
 
@@ -244,8 +315,8 @@ public class MessageDeduplication {
                             public void deleteCursorComplete(Object ctx) {
                                 status = Status.Disabled;
                                 managedCursor = null;
-                                highestSequencedPushed.clear();
-                                highestSequencedPersisted.clear();
+                                state.clear();
+                                deleteSnapshotLedger();
                                 future.complete(null);
                                 log.info("[{}] Disabled deduplication", topic.getName());
                             }
@@ -256,8 +327,8 @@ public class MessageDeduplication {
                                 if (exception instanceof ManagedLedgerException.CursorNotFoundException) {
                                     status = Status.Disabled;
                                     managedCursor = null;
-                                    highestSequencedPushed.clear();
-                                    highestSequencedPersisted.clear();
+                                    state.clear();
+                                    deleteSnapshotLedger();
                                     future.complete(null);
                                 } else {
                                     log.warn("[{}] Failed to disable deduplication: {}", topic.getName(),
@@ -279,6 +350,7 @@ public class MessageDeduplication {
                         // We don't want to retain cache for this cursor
                         cursor.setAlwaysInactive();
                         managedCursor = cursor;
+                        state.clear();
                         recoverSequenceIdsMap().thenRun(() -> {
                             status = Status.Enabled;
                             future.complete(null);
@@ -341,8 +413,8 @@ public class MessageDeduplication {
         // Synchronize the get() and subsequent put() on the map. This would only be relevant if the producer
         // disconnects and re-connects very quickly. At that point the call can be coming from a different thread
         synchronized (highestSequencedPushed) {
-            Long lastSequenceIdPushed = highestSequencedPushed.get(producerName);
-            if (lastSequenceIdPushed != null && sequenceId <= lastSequenceIdPushed) {
+            long lastSequenceIdPushed = highestSequencedPushed.get(producerName, Long.MIN_VALUE);
+            if (sequenceId <= lastSequenceIdPushed) {
                 if (log.isDebugEnabled()) {
                     log.debug("[{}] Message identified as duplicated producer={} seq-id={} -- highest-seq-id={}",
                             topic.getName(), producerName, sequenceId, lastSequenceIdPushed);
@@ -354,8 +426,8 @@ public class MessageDeduplication {
                 // If current message's seq id is between lastSequenceIdPersisted and
                 // lastSequenceIdPushed, then we cannot be sure whether the message is a dup or not
                 // we should return an error to the producer for the latter case so that it can retry at a future time
-                Long lastSequenceIdPersisted = highestSequencedPersisted.get(producerName);
-                if (lastSequenceIdPersisted != null && sequenceId <= lastSequenceIdPersisted) {
+                long lastSequenceIdPersisted = highestSequencedPersisted.get(producerName, Long.MIN_VALUE);
+                if (sequenceId <= lastSequenceIdPersisted) {
                     return MessageDupStatus.Dup;
                 } else {
                     return MessageDupStatus.Unknown;
@@ -396,37 +468,126 @@ public class MessageDeduplication {
             return;
         }
 
-        highestSequencedPushed.clear();
-        for (String producer : highestSequencedPersisted.keys()) {
-            highestSequencedPushed.put(producer, highestSequencedPersisted.get(producer));
-        }
+        state.resetPushed();
     }
 
     private void takeSnapshot(Position position) {
         if (log.isDebugEnabled()) {
             log.debug("[{}] Taking snapshot of sequence ids map", topic.getName());
         }
-        Map<String, Long> snapshot = new TreeMap<>();
-        highestSequencedPersisted.forEach((producerName, sequenceId) -> {
-            if (snapshot.size() < maxNumberOfProducers) {
-                snapshot.put(producerName, sequenceId);
-            }
-        });
+        if (!snapshotLedgerEnabled) {
+            markDelete(position, state.getPersisted(maxNumberOfProducers)).thenRun(() -> {
+                long ledgerId = snapshotLedgerId;
+                if (ledgerId >= 0) {
+                    // The snapshots used to be stored in a ledger, which is superseded by the cursor properties
+                    snapshotLedgerId = -1;
+                    getManagedCursor().removeCursorProperty(SNAPSHOT_LEDGER_PROPERTY)
+                            .thenRun(() -> getSnapshotStorage().delete(ledgerId));
+                }
+            });
+            return;
+        }
+
+        if (!snapshotInProgress.compareAndSet(false, true)) {
+            // The changes are kept for the next snapshot
+            pendingSnapshotPosition.set(position);
+            return;
+        }
+        ManagedCursor cursor = getManagedCursor();
+        PositionImpl positionImpl = (PositionImpl) position;
+        DeduplicationSnapshotStorage storage = getSnapshotStorage();
+        DeduplicationSnapshot snapshot = state.takeSnapshot(positionImpl.getLedgerId(), positionImpl.getEntryId(),
+                storage.needsFullSnapshot());
+        storage.store(snapshot)
+                .thenCompose(ledgerId -> {
+                    long previousLedgerId = snapshotLedgerId;
+                    if (ledgerId == previousLedgerId) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    // The snapshots were rolled over to a new ledger
+                    return cursor.putCursorProperty(SNAPSHOT_LEDGER_PROPERTY, String.valueOf(ledgerId))
+                            .whenComplete((__, ex) -> {
+                                if (ex != null) {
+                                    storage.close();
+                                    storage.delete(ledgerId);
+                                } else {
+                                    snapshotLedgerId = ledgerId;
+                                    if (previousLedgerId >= 0) {
+                                        storage.delete(previousLedgerId);
+                                    }
+                                }
+                            });
+                })
+                .thenCompose(__ -> markDelete(position, Collections.emptyMap()))
+                .whenComplete((__, ex) -> {
+                    if (ex != null) {
+                        log.warn("[{}] Failed to store new deduplication snapshot in a ledger at {}: {}",
+                                topic.getName(), position, ex.getMessage());
+                        state.snapshotFailed(snapshot);
+                    }
+                    snapshotInProgress.set(false);
+                    Position pendingPosition = pendingSnapshotPosition.getAndSet(null);
+                    if (pendingPosition != null && isEnabled()) {
+                        takeSnapshot(pendingPosition);
+                    }
+                });
+    }
 
-        getManagedCursor().asyncMarkDelete(position, snapshot, new MarkDeleteCallback() {
+    private CompletableFuture<Void> markDelete(Position position, Map<String, Long> properties) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        getManagedCursor().asyncMarkDelete(position, properties, new MarkDeleteCallback() {
             @Override
             public void markDeleteComplete(Object ctx) {
                 if (log.isDebugEnabled()) {
                     log.debug("[{}] Stored new deduplication snapshot at {}", topic.getName(), position);
                 }
                 lastSnapshotTimestamp = System.currentTimeMillis();
+                future.complete(null);
             }
 
             @Override
             public void markDeleteFailed(ManagedLedgerException exception, Object ctx) {
                 log.warn("[{}] Failed to store new deduplication snapshot at {}", topic.getName(), position);
+                future.completeExceptionally(exception);
             }
         }, null);
+        return future;
+    }
+
+    private synchronized DeduplicationSnapshotStorage getSnapshotStorage() {
+        if (snapshotStorage == null) {
+            snapshotStorage = new DeduplicationSnapshotStorage(managedLedger.getName(),
+                    pulsar.getBookKeeperClient(), managedLedger.getConfig());
+        }
+        return snapshotStorage;
+    }
+
+    /**
+     * Delete the ledger of the snapshots, once the cursor that references it is deleted.
+     */
+    private void deleteSnapshotLedger() {
+        long ledgerId = snapshotLedgerId;
+        snapshotLedgerId = -1;
+        close();
+        if (ledgerId >= 0) {
+            getSnapshotStorage().delete(ledgerId);
+        }
+    }
+
+    /**
+     * Topic will call this method once it's deleted, along with the deduplication cursor.
+     */
+    public void topicDeleted() {
+        deleteSnapshotLedger();
+    }
+
+    /**
+     * Topic will call this method once it's closed.
+     */
+    public synchronized void close() {
+        if (snapshotStorage != null) {
+            snapshotStorage.close();
+        }
     }
 
     private boolean isDeduplicationEnabled() {
@@ -466,8 +627,7 @@ public class MessageDeduplication {
             if (lastActiveTimestamp < minimumActiveTimestamp) {
                 log.info("[{}] Purging dedup information for producer {}", topic.getName(), producerName);
                 mapIterator.remove();
-                highestSequencedPushed.remove(producerName);
-                highestSequencedPersisted.remove(producerName);
+                state.remove(producerName);
                 hasInactive = true;
             }
         }
@@ -476,9 +636,15 @@ public class MessageDeduplication {
         }
     }
 
+    /**
+     * @return a rough estimation of the heap used by the deduplication information, in bytes
+     */
+    public long getEstimatedStateSizeInBytes() {
+        return state.getEstimatedSizeInBytes();
+    }
+
     public long getLastPublishedSequenceId(String producerName) {
-        Long sequenceId = highestSequencedPushed.get(producerName);
-        return sequenceId != null ? sequenceId : -1;
+        return highestSequencedPushed.get(producerName, -1L);
     }
 
     public void takeSnapshot() {
@@ -54,6 +54,7 @@ import org.apache.pulsar.broker.service.AbstractDispatcherMultipleConsumers;
 import org.apache.pulsar.broker.service.BrokerServiceException;
 import org.apache.pulsar.broker.service.BrokerServiceException.ConsumerBusyException;
 import org.apache.pulsar.broker.service.Consumer;
+import org.apache.pulsar.broker.service.DispatchScheduler;
 import org.apache.pulsar.broker.service.Dispatcher;
 import org.apache.pulsar.broker.service.EntryAndMetadata;
 import org.apache.pulsar.broker.service.EntryBatchIndexesAcks;
@@ -117,6 +118,8 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
     protected Optional<DispatchRateLimiter> dispatchRateLimiter = Optional.empty();
     private AtomicBoolean isRescheduleReadInProgress = new AtomicBoolean(false);
     protected final ExecutorService dispatchMessagesThread;
+    // The flow of the dispatcher in the dispatch scheduler, or null when it's not enabled
+    protected final DispatchScheduler.Flow dispatchFlow;
     private final SharedConsumerAssignor assignor;
 
     protected enum ReadType {
@@ -136,6 +139,8 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
         this.name = topic.getName() + " / " + Codec.decode(cursor.getName());
         this.topic = topic;
         this.dispatchMessagesThread = topic.getBrokerService().getTopicOrderedExecutor().chooseThread();
+        DispatchScheduler dispatchScheduler = topic.getBrokerService().getDispatchScheduler();
+        this.dispatchFlow = dispatchScheduler != null ? dispatchScheduler.newFlow(name) : null;
         this.redeliveryMessages = new MessageRedeliveryController(allowOutOfOrderDelivery);
         this.redeliveryTracker = this.serviceConfig.isSubscriptionRedeliveryTrackerEnabled()
                 ? new InMemoryRedeliveryTracker()
@@ -573,14 +578,21 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
             // setting sendInProgress here, because sendMessagesToConsumers will be executed
             // in a separate thread, and we want to prevent more reads
             acquireSendInProgress();
-            dispatchMessagesThread.execute(safeRun(() -> {
+            Runnable dispatch = safeRun(() -> {
                 if (sendMessagesToConsumers(readType, entries, false)) {
                     updatePendingBytesToDispatch(-size);
                     readMoreEntries();
                 } else {
                     updatePendingBytesToDispatch(-size);
                 }
-            }));
+            });
+            if (dispatchFlow != null) {
+                // The consumers of a subscription reading at the tail are waiting for the entries
+                boolean atTail = readType == ReadType.Normal && !cursor.hasMoreEntries();
+                dispatchFlow.submit(size, entries.size(), atTail, dispatch);
+            } else {
+                dispatchMessagesThread.execute(dispatch);
+            }
         } else {
             if (sendMessagesToConsumers(readType, entries, true)) {
                 updatePendingBytesToDispatch(-size);
@@ -591,6 +603,10 @@ public class PersistentDispatcherMultipleConsumers extends AbstractDispatcherMul
         }
     }
 
+    public double getDispatchSchedulingLatencyMs() {
+        return dispatchFlow != null ? dispatchFlow.getAverageSchedulingLatencyMs() : 0;
+    }
+
     protected synchronized void acquireSendInProgress() {
         sendInProgress = true;
     }
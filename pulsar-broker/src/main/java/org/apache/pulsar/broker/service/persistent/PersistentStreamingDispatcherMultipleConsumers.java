@@ -105,13 +105,18 @@ public class PersistentStreamingDispatcherMultipleConsumers extends PersistentDi
             // setting sendInProgress here, because sendMessagesToConsumers will be executed
             // in a separate thread, and we want to prevent more reads
             acquireSendInProgress();
-            dispatchMessagesThread.execute(safeRun(() -> {
+            Runnable dispatch = safeRun(() -> {
                 if (sendMessagesToConsumers(readType, Lists.newArrayList(entry), false)) {
                     readMoreEntries();
                 } else {
                     updatePendingBytesToDispatch(-size);
                 }
-            }));
+            });
+            if (dispatchFlow != null) {
+                dispatchFlow.submit(size, 1, readType == ReadType.Normal && !cursor.hasMoreEntries(), dispatch);
+            } else {
+                dispatchMessagesThread.execute(dispatch);
+            }
         } else {
             if (sendMessagesToConsumers(readType, Lists.newArrayList(entry), true)) {
                 readMoreEntriesAsync();
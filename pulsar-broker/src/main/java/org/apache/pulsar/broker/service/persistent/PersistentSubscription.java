@@ -52,6 +52,7 @@ import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.ScanOutcome;
 import org.apache.bookkeeper.mledger.impl.ManagedCursorImpl;
 import org.apache.bookkeeper.mledger.impl.ManagedLedgerImpl;
+import org.apache.bookkeeper.mledger.impl.PositionBatchRecyclable;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.tuple.MutablePair;
@@ -68,6 +69,7 @@ import org.apache.pulsar.broker.service.BrokerServiceException.SubscriptionInval
 import org.apache.pulsar.broker.service.Consumer;
 import org.apache.pulsar.broker.service.Dispatcher;
 import org.apache.pulsar.broker.service.EntryFilterSupport;
+import org.apache.pulsar.broker.service.RedeliveryTracker;
 import org.apache.pulsar.broker.service.Subscription;
 import org.apache.pulsar.broker.service.Topic;
 import org.apache.pulsar.broker.service.plugin.EntryFilter;
@@ -409,6 +411,38 @@ public class PersistentSubscription extends AbstractSubscription implements Subs
             }
         }
 
+        handleMessagesAcknowledged(previousMarkDeletePosition);
+    }
+
+    @Override
+    public void acknowledgeMessage(PositionBatchRecyclable positions, Map<String, Long> properties) {
+        cursor.updateLastActive();
+        Position previousMarkDeletePosition = cursor.getMarkDeletedPosition();
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}][{}] Individual acks on {}", topicName, subName, positions);
+        }
+        cursor.asyncDelete(positions, deleteCallback, previousMarkDeletePosition);
+        if (topic.getBrokerService().getPulsar().getConfig().isTransactionCoordinatorEnabled()) {
+            for (int i = 0; i < positions.size(); i++) {
+                PositionImpl position = PositionImpl.get(positions.getLedgerId(i), positions.getEntryId(i));
+                if (((ManagedCursorImpl) cursor).isMessageDeleted(position)) {
+                    pendingAckHandle.clearIndividualPosition(position);
+                }
+            }
+        }
+
+        if (dispatcher != null) {
+            RedeliveryTracker redeliveryTracker = dispatcher.getRedeliveryTracker();
+            for (int i = 0; i < positions.size(); i++) {
+                redeliveryTracker.remove(positions.getLedgerId(i), positions.getEntryId(i));
+            }
+        }
+
+        handleMessagesAcknowledged(previousMarkDeletePosition);
+    }
+
+    private void handleMessagesAcknowledged(Position previousMarkDeletePosition) {
         if (!cursor.getMarkDeletedPosition().equals(previousMarkDeletePosition)) {
             this.updateLastMarkDeleteAdvancedTimestamp();
 
@@ -1103,6 +1137,10 @@ public class PersistentSubscription extends AbstractSubscription implements Subs
             subStats.filterAcceptedMsgCount = dispatcher.getFilterAcceptedMsgCount();
             subStats.filterRejectedMsgCount = dispatcher.getFilterRejectedMsgCount();
             subStats.filterRescheduledMsgCount = dispatcher.getFilterRescheduledMsgCount();
+            if (dispatcher instanceof PersistentDispatcherMultipleConsumers) {
+                subStats.dispatchSchedulingLatencyMs =
+                        ((PersistentDispatcherMultipleConsumers) dispatcher).getDispatchSchedulingLatencyMs();
+            }
         }
 
         SubType subType = getType();
@@ -78,6 +78,7 @@ import org.apache.bookkeeper.mledger.impl.ShadowManagedLedgerImpl;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pulsar.broker.PulsarServerException;
 import org.apache.pulsar.broker.loadbalance.extensions.channel.ServiceUnitStateChannelImpl;
 import org.apache.pulsar.broker.loadbalance.extensions.channel.ServiceUnitStateCompactionStrategy;
@@ -165,6 +166,7 @@ import org.apache.pulsar.compaction.CompactedTopicContext;
 import org.apache.pulsar.compaction.CompactedTopicImpl;
 import org.apache.pulsar.compaction.Compactor;
 import org.apache.pulsar.compaction.CompactorMXBean;
+import org.apache.pulsar.compaction.TwoPhaseCompactor;
 import org.apache.pulsar.metadata.api.MetadataStoreException;
 import org.apache.pulsar.policies.data.loadbalancer.NamespaceBundleStats;
 import org.apache.pulsar.utils.StatsOutputStream;
@@ -373,7 +375,8 @@ public class PersistentTopic extends AbstractTopic implements Topic, AddEntryCal
                             topic, ex.getMessage());
                     isEncryptionRequired = false;
                     return null;
-                }));
+                }))
+                .thenCompose(__ -> initCompressionDictionary());
     }
 
     // for testing purposes
@@ -787,6 +790,14 @@ public class PersistentTopic extends AbstractTopic implements Topic, AddEntryCal
                         new UnsupportedVersionException("Consumer doesn't support batch-message"));
             }
 
+            if (hasCompressionDictionary && !cnx.isCompressionDictionaryCompatibleVersion()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] Consumer doesn't support compression dictionaries {}", topic, subscriptionName);
+                }
+                return FutureUtil.failedFuture(
+                        new UnsupportedVersionException("Consumer doesn't support compression dictionaries"));
+            }
+
             if (subscriptionName.startsWith(replicatorPrefix)
                     || subscriptionName.equals(DEDUPLICATION_CURSOR_NAME)) {
                 log.warn("[{}] Failed to create subscription for {}", topic, subscriptionName);
@@ -1270,6 +1281,8 @@ public class PersistentTopic extends AbstractTopic implements Topic, AddEntryCal
                                                 public void deleteLedgerComplete(Object ctx) {
                                                     brokerService.removeTopicFromCache(PersistentTopic.this);
 
+                                                    messageDeduplication.topicDeleted();
+
                                                     dispatchRateLimiter.ifPresent(DispatchRateLimiter::close);
 
                                                     subscribeRateLimiter.ifPresent(SubscribeRateLimiter::close);
@@ -1411,6 +1424,8 @@ public class PersistentTopic extends AbstractTopic implements Topic, AddEntryCal
                 .thenRun(() -> {
                     replicatedSubscriptionsController.ifPresent(ReplicatedSubscriptionsController::close);
 
+                    messageDeduplication.close();
+
                     dispatchRateLimiter.ifPresent(DispatchRateLimiter::close);
 
                     subscribeRateLimiter.ifPresent(SubscribeRateLimiter::close);
@@ -1624,6 +1639,12 @@ public class PersistentTopic extends AbstractTopic implements Topic, AddEntryCal
     }
 
     CompletableFuture<Void> startReplicator(String remoteCluster) {
+        if (hasCompressionDictionary) {
+            // The remote cluster doesn't have the dictionaries of the topic, its consumers couldn't decode the batches
+            log.warn("[{}] Not starting replicator to remote: {}, the topic uses compression dictionaries", topic,
+                    remoteCluster);
+            return CompletableFuture.completedFuture(null);
+        }
         log.info("[{}] Starting replicator to remote: {}", topic, remoteCluster);
         final CompletableFuture<Void> future = new CompletableFuture<>();
 
@@ -2161,6 +2182,7 @@ public class PersistentTopic extends AbstractTopic implements Topic, AddEntryCal
         stats.storageSize = ledger.getTotalSize();
         stats.backlogSize = ledger.getEstimatedBacklogSize();
         stats.deduplicationStatus = messageDeduplication.getStatus().toString();
+        stats.deduplicationStateSizeInBytes = messageDeduplication.getEstimatedStateSizeInBytes();
         stats.topicEpoch = topicEpoch.orElse(null);
         stats.ownerBroker = brokerService.pulsar().getLookupServiceAddress();
         stats.offloadedStorageSize = ledger.getOffloadedSize();
@@ -3029,7 +3051,16 @@ public class PersistentTopic extends AbstractTopic implements Topic, AddEntryCal
                 currentCompaction = brokerService.pulsar().getStrategicCompactor()
                         .compact(topic, strategicCompactionMap.get(topic));
             } else {
-                currentCompaction = brokerService.pulsar().getCompactor().compact(topic);
+                Compactor compactor = brokerService.pulsar().getCompactor();
+                Optional<Pair<Position, Long>> horizonAndLedgerId =
+                        ((CompactedTopicImpl) compactedTopic).getCompactionHorizonAndLedgerId();
+                if (brokerService.pulsar().getConfiguration().isBrokerServiceCompactionIncrementalEnabled()
+                        && compactor instanceof TwoPhaseCompactor && horizonAndLedgerId.isPresent()) {
+                    currentCompaction = ((TwoPhaseCompactor) compactor).compactIncrementally(topic,
+                            horizonAndLedgerId.get().getLeft(), horizonAndLedgerId.get().getRight());
+                } else {
+                    currentCompaction = compactor.compact(topic);
+                }
             }
             currentCompaction.whenComplete((ignore, ex) -> {
                if (ex != null){
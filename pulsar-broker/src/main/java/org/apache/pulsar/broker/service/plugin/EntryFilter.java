@@ -27,6 +27,10 @@ public interface EntryFilter {
      * 2. Do not deserialize the entire entry in this method,
      * which has a great impact on the broker's memory and CPU.
      * 3. Return ACCEPT or null will be regarded as ACCEPT.
+     * 4. Prefer {@link FilterContext#getProperty(String)} to read the properties of the message,
+     * which only decodes the property that is read.
+     * 5. When entryFilterExecutorThreads is set, this method is called concurrently for different entries,
+     * so it has to be thread safe.
      * @param entry
      * @param context
      * @return
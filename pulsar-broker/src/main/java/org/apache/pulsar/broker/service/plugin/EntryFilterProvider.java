@@ -197,7 +197,7 @@ public class EntryFilterProvider implements AutoCloseable {
                         + " does not implement entry filter interface");
             }
             EntryFilter pi = (EntryFilter) filter;
-            return new EntryFilterWithClassLoader(pi, ncl);
+            return new EntryFilterWithClassLoader(def.getName(), pi, ncl);
         } catch (Throwable e) {
             if (e instanceof IOException) {
                 throw (IOException) e;
@@ -19,7 +19,10 @@
 package org.apache.pulsar.broker.service.plugin;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.mledger.Entry;
@@ -28,17 +31,52 @@ import org.apache.pulsar.common.nar.NarClassLoader;
 @Slf4j
 @ToString
 public class EntryFilterWithClassLoader implements EntryFilter {
+
+    private static final String[] FILTER_LABEL = {"entry_filter"};
+    private static final String[] FILTER_RESULT_LABELS = {"entry_filter", "result"};
+
+    private static final Histogram FILTER_LATENCY = Histogram.build()
+            .name("pulsar_broker_entry_filter_latency_seconds")
+            .help("Time spent by an entry filter to filter an entry, in seconds")
+            .labelNames(FILTER_LABEL)
+            .buckets(0.000_01, 0.000_05, 0.000_1, 0.000_5, 0.001, 0.005, 0.01, 0.05, 0.1)
+            .register();
+
+    private static final Counter FILTER_RESULTS = Counter.build()
+            .name("pulsar_broker_entry_filter_results")
+            .help("Number of entries filtered by an entry filter, by result")
+            .labelNames(FILTER_RESULT_LABELS)
+            .register();
+
     private final EntryFilter entryFilter;
     private final NarClassLoader classLoader;
+    @ToString.Exclude
+    private final Histogram.Child latency;
+    @ToString.Exclude
+    private final Counter.Child[] results;
 
     public EntryFilterWithClassLoader(EntryFilter entryFilter, NarClassLoader classLoader) {
+        this(entryFilter.getClass().getName(), entryFilter, classLoader);
+    }
+
+    public EntryFilterWithClassLoader(String name, EntryFilter entryFilter, NarClassLoader classLoader) {
         this.entryFilter = entryFilter;
         this.classLoader = classLoader;
+        this.latency = FILTER_LATENCY.labels(name);
+        FilterResult[] filterResults = FilterResult.values();
+        this.results = new Counter.Child[filterResults.length];
+        for (FilterResult filterResult : filterResults) {
+            results[filterResult.ordinal()] = FILTER_RESULTS.labels(name, filterResult.name());
+        }
     }
 
     @Override
     public FilterResult filterEntry(Entry entry, FilterContext context) {
-        return entryFilter.filterEntry(entry, context);
+        long start = System.nanoTime();
+        FilterResult filterResult = entryFilter.filterEntry(entry, context);
+        latency.observe((double) (System.nanoTime() - start) / TimeUnit.SECONDS.toNanos(1));
+        results[filterResult == null ? FilterResult.ACCEPT.ordinal() : filterResult.ordinal()].inc();
+        return filterResult;
     }
 
     @VisibleForTesting
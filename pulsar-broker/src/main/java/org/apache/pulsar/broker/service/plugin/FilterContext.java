@@ -18,9 +18,18 @@
  */
 package org.apache.pulsar.broker.service.plugin;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.apache.pulsar.broker.service.Consumer;
 import org.apache.pulsar.broker.service.Subscription;
+import org.apache.pulsar.common.api.proto.KeyValue;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
 
 @Data
@@ -28,11 +37,65 @@ public class FilterContext {
     private Subscription subscription;
     private MessageMetadata msgMetadata;
     private Consumer consumer;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Map<String, String> properties;
+
+    public void setMsgMetadata(MessageMetadata msgMetadata) {
+        this.msgMetadata = msgMetadata;
+        this.properties = null;
+    }
+
+    /**
+     * Get the value of a property of the message.
+     *
+     * <p>The properties of the metadata are only decoded when they are read, so looking up a property doesn't decode
+     * the values of the other ones.
+     *
+     * @return the value of the property, or null if the message doesn't have it
+     */
+    public String getProperty(String key) {
+        if (properties != null) {
+            return properties.get(key);
+        }
+        if (msgMetadata == null) {
+            return null;
+        }
+        for (int i = 0, n = msgMetadata.getPropertiesCount(); i < n; i++) {
+            KeyValue property = msgMetadata.getPropertyAt(i);
+            if (property.getKey().equals(key)) {
+                return property.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get all the properties of the message, which are decoded on the first call for the message.
+     */
+    public Map<String, String> getProperties() {
+        if (properties == null) {
+            if (msgMetadata == null || msgMetadata.getPropertiesCount() == 0) {
+                properties = Collections.emptyMap();
+            } else {
+                Map<String, String> map = new HashMap<>(msgMetadata.getPropertiesCount() * 2);
+                for (int i = 0, n = msgMetadata.getPropertiesCount(); i < n; i++) {
+                    KeyValue property = msgMetadata.getPropertyAt(i);
+                    map.put(property.getKey(), property.getValue());
+                }
+                properties = Collections.unmodifiableMap(map);
+            }
+        }
+        return properties;
+    }
 
     public void reset() {
         subscription = null;
         msgMetadata = null;
         consumer = null;
+        properties = null;
     }
 
     public static final FilterContext FILTER_CONTEXT_DISABLED = new FilterContext();
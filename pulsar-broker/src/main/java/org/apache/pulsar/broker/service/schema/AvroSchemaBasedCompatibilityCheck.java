@@ -19,7 +19,6 @@
 package org.apache.pulsar.broker.service.schema;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static java.nio.charset.StandardCharsets.UTF_8;
 import java.util.Collections;
 import java.util.LinkedList;
 import lombok.extern.slf4j.Slf4j;
@@ -51,13 +50,9 @@ abstract class AvroSchemaBasedCompatibilityCheck implements SchemaCompatibilityC
         checkArgument(from != null, "check compatibility list is null");
         try {
             for (SchemaData schemaData : from) {
-                Schema.Parser parser = new Schema.Parser();
-                parser.setValidateDefaults(false);
-                fromList.addFirst(parser.parse(new String(schemaData.getData(), UTF_8)));
+                fromList.addFirst(AvroSchemaCache.parse(schemaData.getData()));
             }
-            Schema.Parser parser = new Schema.Parser();
-            parser.setValidateDefaults(false);
-            Schema toSchema = parser.parse(new String(to.getData(), UTF_8));
+            Schema toSchema = AvroSchemaCache.parse(to.getData());
             SchemaValidator schemaValidator = createSchemaValidator(strategy);
             schemaValidator.validate(toSchema, fromList);
         } catch (SchemaParseException e) {
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.schema;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.prometheus.client.Counter;
+import java.nio.ByteBuffer;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaParseException;
+
+/**
+ * Bounded cache of the Avro schemas parsed from their definitions, shared by the compatibility checks.
+ *
+ * <p>The schemas of a topic are checked against the same stored definitions each time a producer or a consumer
+ * connects, and parsing them is the most expensive part of the checks. The schemas are parsed without validating the
+ * default values, as the compatibility checks do, and they must not be modified.
+ */
+final class AvroSchemaCache {
+
+    private static final int MAX_SIZE = 1000;
+
+    private static final Counter HITS = Counter.build("pulsar_schema_parsed_cache_hits_total",
+            "Number of Avro schemas found in the cache of the parsed schemas").register();
+    private static final Counter MISSES = Counter.build("pulsar_schema_parsed_cache_misses_total",
+            "Number of Avro schemas parsed because they were not in the cache of the parsed schemas").register();
+
+    private static final Cache<ByteBuffer, Schema> SCHEMAS = Caffeine.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .build();
+
+    private AvroSchemaCache() {
+    }
+
+    /**
+     * Get the Avro schema of a definition, parsing it if it's not cached yet.
+     *
+     * @throws SchemaParseException if the definition is not a valid Avro schema
+     */
+    static Schema parse(byte[] definition) throws SchemaParseException {
+        ByteBuffer key = ByteBuffer.wrap(definition);
+        Schema schema = SCHEMAS.getIfPresent(key);
+        if (schema != null) {
+            HITS.inc();
+            return schema;
+        }
+        MISSES.inc();
+        Schema.Parser parser = new Schema.Parser();
+        parser.setValidateDefaults(false);
+        schema = parser.parse(new String(definition, UTF_8));
+        // The definition belongs to the caller, the key must not change if it's modified afterwards
+        SCHEMAS.put(ByteBuffer.wrap(definition.clone()), schema);
+        return schema;
+    }
+}
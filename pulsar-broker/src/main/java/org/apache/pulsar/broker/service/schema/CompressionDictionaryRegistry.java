@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.schema;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pulsar.common.protocol.schema.SchemaStorage;
+import org.apache.pulsar.common.protocol.schema.SchemaVersion;
+import org.apache.pulsar.common.protocol.schema.StoredSchema;
+import org.apache.pulsar.common.schema.LongSchemaVersion;
+
+/**
+ * The zstd dictionaries that the producers of a topic compress their batches with.
+ *
+ * <p>The dictionaries of a topic are stored in the schema storage, next to its schemas, under the schema id of the
+ * topic with the {@link #KEY_SUFFIX} suffix. A dictionary is identified by its version in the storage, which is the
+ * compression_dictionary_id of the messages compressed with it.
+ */
+@Slf4j
+public class CompressionDictionaryRegistry {
+
+    static final String KEY_SUFFIX = "__compression_dictionaries";
+
+    private static final HashFunction hashFunction = Hashing.sha256();
+
+    private final SchemaStorage schemaStorage;
+
+    public CompressionDictionaryRegistry(SchemaStorage schemaStorage) {
+        this.schemaStorage = schemaStorage;
+    }
+
+    /**
+     * Add a dictionary to a topic.
+     *
+     * @param schemaId the schema id of the topic
+     * @param dictionary the dictionary
+     * @return the id of the dictionary
+     */
+    public CompletableFuture<Long> putDictionary(String schemaId, byte[] dictionary) {
+        byte[] hash = hashFunction.hashBytes(dictionary).asBytes();
+        return schemaStorage.put(getKey(schemaId), __ -> completedFuture(Pair.of(dictionary, hash)))
+                .thenApply(version -> ((LongSchemaVersion) version).getVersion());
+    }
+
+    /**
+     * Get a dictionary of a topic.
+     *
+     * @param schemaId the schema id of the topic
+     * @param dictionaryId the id of the dictionary, or empty for the latest dictionary of the topic
+     * @return the dictionary, or empty if there is no such dictionary
+     */
+    public CompletableFuture<Optional<StoredSchema>> getDictionary(String schemaId, Optional<Long> dictionaryId) {
+        SchemaVersion version = dictionaryId.<SchemaVersion>map(LongSchemaVersion::new).orElse(SchemaVersion.Latest);
+        return schemaStorage.get(getKey(schemaId), version).thenApply(Optional::ofNullable);
+    }
+
+    /**
+     * Delete all the dictionaries of a topic.
+     *
+     * @param schemaId the schema id of the topic
+     */
+    public CompletableFuture<Void> deleteDictionaries(String schemaId) {
+        return schemaStorage.delete(getKey(schemaId), true).thenAccept(version -> {
+            if (version != null) {
+                log.info("Deleted the compression dictionaries of {}", schemaId);
+            }
+        });
+    }
+
+    private static String getKey(String schemaId) {
+        return schemaId + KEY_SUFFIX;
+    }
+}
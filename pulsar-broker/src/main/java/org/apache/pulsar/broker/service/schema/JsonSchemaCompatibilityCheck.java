@@ -22,7 +22,6 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.module.jsonSchema.JsonSchema;
 import java.io.IOException;
-import org.apache.avro.Schema;
 import org.apache.avro.SchemaParseException;
 import org.apache.pulsar.broker.service.schema.exceptions.IncompatibleSchemaException;
 import org.apache.pulsar.common.policies.data.SchemaCompatibilityStrategy;
@@ -91,10 +90,7 @@ public class JsonSchemaCompatibilityCheck extends AvroSchemaBasedCompatibilityCh
 
     private boolean isAvroSchema(SchemaData schemaData) {
         try {
-
-            Schema.Parser fromParser = new Schema.Parser();
-            fromParser.setValidateDefaults(false);
-            Schema fromSchema = fromParser.parse(new String(schemaData.getData(), UTF_8));
+            AvroSchemaCache.parse(schemaData.getData());
             return true;
         } catch (SchemaParseException e) {
             return false;
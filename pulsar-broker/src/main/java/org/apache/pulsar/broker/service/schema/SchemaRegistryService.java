@@ -44,13 +44,14 @@ public interface SchemaRegistryService extends SchemaRegistry {
     }
 
     static SchemaRegistryService create(SchemaStorage schemaStorage, Set<String> schemaRegistryCompatibilityCheckers,
-                                        ScheduledExecutorService scheduler) {
+                                        ScheduledExecutorService scheduler, int compatibilityCheckCacheSize) {
         if (schemaStorage != null) {
             try {
                 Map<SchemaType, SchemaCompatibilityCheck> checkers = getCheckers(schemaRegistryCompatibilityCheckers);
                 checkers.put(SchemaType.KEY_VALUE, new KeyValueSchemaCompatibilityCheck(checkers));
                 return SchemaRegistryServiceWithSchemaDataValidator.of(
-                        new SchemaRegistryServiceImpl(schemaStorage, checkers, scheduler));
+                        new SchemaRegistryServiceImpl(schemaStorage, checkers, scheduler,
+                                compatibilityCheckCacheSize));
             } catch (Exception e) {
                 LOG.warn("Unable to create schema registry storage, defaulting to empty storage", e);
             }
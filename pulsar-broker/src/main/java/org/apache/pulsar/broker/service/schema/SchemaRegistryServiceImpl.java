@@ -25,6 +25,8 @@ import static org.apache.pulsar.broker.service.schema.SchemaRegistryServiceImpl.
 import static org.apache.pulsar.common.policies.data.SchemaCompatibilityStrategy.BACKWARD_TRANSITIVE;
 import static org.apache.pulsar.common.policies.data.SchemaCompatibilityStrategy.FORWARD_TRANSITIVE;
 import static org.apache.pulsar.common.policies.data.SchemaCompatibilityStrategy.FULL_TRANSITIVE;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
@@ -41,6 +43,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.Collectors;
 import javax.validation.constraints.NotNull;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.Schema;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
@@ -67,22 +70,65 @@ public class SchemaRegistryServiceImpl implements SchemaRegistryService {
     private final SchemaStorage schemaStorage;
     private final Clock clock;
     private final SchemaRegistryStats stats;
+    // Results of the compatibility checks, or null when they are not cached
+    private final Cache<CompatibilityCheckKey, CompatibilityCheckResult> compatibilityCheckResults;
+
+    /**
+     * The schemas that a compatibility check was run against, and the schema that was checked.
+     *
+     * <p>The checked schemas are identified by the version and hash of the latest one, and by their number, so that a
+     * result is never reused once a schema is added or deleted, even by another broker.
+     */
+    @Value
+    private static class CompatibilityCheckKey {
+        String schemaId;
+        SchemaVersion latestVersion;
+        SchemaHash latestHash;
+        int numberOfSchemas;
+        SchemaHash newHash;
+        SchemaCompatibilityStrategy strategy;
+    }
+
+    /**
+     * The result of a compatibility check, with the time it took to run it.
+     */
+    @Value
+    private static class CompatibilityCheckResult {
+        IncompatibleSchemaException incompatibility;
+        long durationNanos;
+    }
 
     @VisibleForTesting
     SchemaRegistryServiceImpl(SchemaStorage schemaStorage,
                               Map<SchemaType, SchemaCompatibilityCheck> compatibilityChecks, Clock clock,
-                              ScheduledExecutorService scheduler) {
+                              ScheduledExecutorService scheduler, int compatibilityCheckCacheSize) {
         this.schemaStorage = schemaStorage;
         this.compatibilityChecks = compatibilityChecks;
         this.clock = clock;
         this.stats = SchemaRegistryStats.getInstance(scheduler);
+        this.compatibilityCheckResults = compatibilityCheckCacheSize > 0
+                ? Caffeine.newBuilder().maximumSize(compatibilityCheckCacheSize).build()
+                : null;
+    }
+
+    @VisibleForTesting
+    SchemaRegistryServiceImpl(SchemaStorage schemaStorage,
+                              Map<SchemaType, SchemaCompatibilityCheck> compatibilityChecks, Clock clock,
+                              ScheduledExecutorService scheduler) {
+        this(schemaStorage, compatibilityChecks, clock, scheduler, 0);
+    }
+
+    SchemaRegistryServiceImpl(SchemaStorage schemaStorage,
+                              Map<SchemaType, SchemaCompatibilityCheck> compatibilityChecks,
+                              ScheduledExecutorService scheduler, int compatibilityCheckCacheSize) {
+        this(schemaStorage, compatibilityChecks, Clock.systemUTC(), scheduler, compatibilityCheckCacheSize);
     }
 
     @VisibleForTesting
     SchemaRegistryServiceImpl(SchemaStorage schemaStorage,
                               Map<SchemaType, SchemaCompatibilityCheck> compatibilityChecks,
                               ScheduledExecutorService scheduler) {
-        this(schemaStorage, compatibilityChecks, Clock.systemUTC(), scheduler);
+        this(schemaStorage, compatibilityChecks, Clock.systemUTC(), scheduler, 0);
     }
 
     @Override
@@ -240,6 +286,7 @@ public class SchemaRegistryServiceImpl implements SchemaRegistryService {
                         }
                         // The schema storage will return null schema version if no schema is persisted to the storage
                         if (v != null) {
+                            invalidateCompatibilityCheckResults(schemaId);
                             promise.complete(v);
                             if (start.getValue() != 0) {
                                 this.stats.recordPutLatency(schemaId, this.clock.millis() - start.getValue());
@@ -261,6 +308,7 @@ public class SchemaRegistryServiceImpl implements SchemaRegistryService {
         return schemaStorage
                 .put(schemaId, deletedEntry, new byte[]{})
                 .whenComplete((v, t) -> {
+                    invalidateCompatibilityCheckResults(schemaId);
                     if (t != null) {
                         log.error("[{}] User {} delete schema failed", schemaId, user);
                         this.stats.recordDelFailed(schemaId);
@@ -284,6 +332,7 @@ public class SchemaRegistryServiceImpl implements SchemaRegistryService {
 
         return schemaStorage.delete(schemaId, forcefully)
                 .whenComplete((v, t) -> {
+                    invalidateCompatibilityCheckResults(schemaId);
                     if (t != null) {
                         this.stats.recordDelFailed(schemaId);
                         log.error("[{}] Delete schema storage failed", schemaId);
@@ -413,8 +462,7 @@ public class SchemaRegistryServiceImpl implements SchemaRegistryService {
 
             for (SchemaAndMetadata schemaAndMetadata : schemaAndMetadataList) {
                 if (isUsingAvroSchemaParser(schemaAndMetadata.schema.getType())) {
-                    Schema.Parser existParser = new Schema.Parser();
-                    Schema existSchema = existParser.parse(new String(schemaAndMetadata.schema.getData(), UTF_8));
+                    Schema existSchema = AvroSchemaCache.parse(schemaAndMetadata.schema.getData());
                     if (newSchema.equals(existSchema) && schemaAndMetadata.schema.getType() == schemaData.getType()) {
                         schemaVersion = schemaAndMetadata.version;
                         completableFuture.complete(schemaVersion);
@@ -465,17 +513,19 @@ public class SchemaRegistryServiceImpl implements SchemaRegistryService {
                     }
                 });
 
-                if (existingSchema.schema.getType() != schema.getType()) {
-                    result.completeExceptionally(new IncompatibleSchemaException(
-                            String.format("Incompatible schema: exists schema type %s, new schema type %s",
-                                    existingSchema.schema.getType(), schema.getType())));
-                } else {
-                    try {
-                        checkCompatible(existingSchema, schema, strategy);
-                        result.complete(null);
-                    } catch (IncompatibleSchemaException e) {
-                        result.completeExceptionally(e);
+                IncompatibleSchemaException incompatibility = runCompatibilityCheck(schemaId,
+                        Collections.singletonList(existingSchema), schema, strategy, () -> {
+                    if (existingSchema.schema.getType() != schema.getType()) {
+                        throw new IncompatibleSchemaException(
+                                String.format("Incompatible schema: exists schema type %s, new schema type %s",
+                                        existingSchema.schema.getType(), schema.getType()));
                     }
+                    checkCompatible(existingSchema, schema, strategy);
+                });
+                if (incompatibility == null) {
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(incompatibility);
                 }
                 return result;
             } else {
@@ -510,37 +560,79 @@ public class SchemaRegistryServiceImpl implements SchemaRegistryService {
         if (strategy == SchemaCompatibilityStrategy.ALWAYS_COMPATIBLE) {
             result.complete(null);
         } else {
-            SchemaAndMetadata breakSchema = null;
-            for (SchemaAndMetadata schemaAndMetadata : schemaAndMetadataList) {
-                if (schemaAndMetadata.schema.getType() != schema.getType()) {
-                    breakSchema = schemaAndMetadata;
-                    break;
-                }
-            }
-            if (breakSchema == null) {
-                try {
-                    compatibilityChecks.getOrDefault(schema.getType(), SchemaCompatibilityCheck.DEFAULT)
-                            .checkCompatible(schemaAndMetadataList
-                                    .stream()
-                                    .map(schemaAndMetadata -> schemaAndMetadata.schema)
-                                    .collect(Collectors.toList()), schema, strategy);
-                    result.complete(null);
-                } catch (Exception e) {
-                    if (e instanceof IncompatibleSchemaException) {
-                        result.completeExceptionally(e);
-                    } else {
-                        result.completeExceptionally(new IncompatibleSchemaException(e));
+            IncompatibleSchemaException incompatibility = runCompatibilityCheck(schemaId, schemaAndMetadataList,
+                    schema, strategy, () -> {
+                for (SchemaAndMetadata schemaAndMetadata : schemaAndMetadataList) {
+                    if (schemaAndMetadata.schema.getType() != schema.getType()) {
+                        throw new IncompatibleSchemaException(
+                                String.format("Incompatible schema: exists schema type %s, new schema type %s",
+                                        schemaAndMetadata.schema.getType(), schema.getType()));
                     }
                 }
+                compatibilityChecks.getOrDefault(schema.getType(), SchemaCompatibilityCheck.DEFAULT)
+                        .checkCompatible(schemaAndMetadataList
+                                .stream()
+                                .map(schemaAndMetadata -> schemaAndMetadata.schema)
+                                .collect(Collectors.toList()), schema, strategy);
+            });
+            if (incompatibility == null) {
+                result.complete(null);
             } else {
-                result.completeExceptionally(new IncompatibleSchemaException(
-                        String.format("Incompatible schema: exists schema type %s, new schema type %s",
-                                breakSchema.schema.getType(), schema.getType())));
+                result.completeExceptionally(incompatibility);
             }
         }
         return result;
     }
 
+    private interface CompatibilityCheck {
+        void run() throws IncompatibleSchemaException;
+    }
+
+    /**
+     * Run a compatibility check of a schema against the existing schemas of a topic, or reuse its result when it was
+     * already run against the same schemas.
+     *
+     * @return the reason why the schema is incompatible, or null if it's compatible
+     */
+    private IncompatibleSchemaException runCompatibilityCheck(String schemaId,
+                                                              List<SchemaAndMetadata> existingSchemas,
+                                                              SchemaData schema, SchemaCompatibilityStrategy strategy,
+                                                              CompatibilityCheck check) {
+        CompatibilityCheckKey key = null;
+        if (compatibilityCheckResults != null && !existingSchemas.isEmpty()) {
+            SchemaAndMetadata latest = existingSchemas.get(existingSchemas.size() - 1);
+            key = new CompatibilityCheckKey(schemaId, latest.version, SchemaHash.of(latest.schema),
+                    existingSchemas.size(), SchemaHash.of(schema), strategy);
+            CompatibilityCheckResult cached = compatibilityCheckResults.getIfPresent(key);
+            if (cached != null) {
+                stats.recordCompatibilityCacheHit(schemaId, cached.getDurationNanos());
+                return cached.getIncompatibility();
+            }
+            stats.recordCompatibilityCacheMiss(schemaId);
+        }
+
+        long start = System.nanoTime();
+        IncompatibleSchemaException incompatibility = null;
+        try {
+            check.run();
+        } catch (IncompatibleSchemaException e) {
+            incompatibility = e;
+        } catch (Exception e) {
+            incompatibility = new IncompatibleSchemaException(e);
+        }
+        if (key != null) {
+            compatibilityCheckResults.put(key, new CompatibilityCheckResult(incompatibility,
+                    System.nanoTime() - start));
+        }
+        return incompatibility;
+    }
+
+    private void invalidateCompatibilityCheckResults(String schemaId) {
+        if (compatibilityCheckResults != null) {
+            compatibilityCheckResults.asMap().keySet().removeIf(key -> key.getSchemaId().equals(schemaId));
+        }
+    }
+
     public CompletableFuture<List<SchemaAndMetadata>> trimDeletedSchemaAndGetList(String schemaId) {
         CompletableFuture<List<CompletableFuture<SchemaAndMetadata>>> schemaFutureList = getAllSchemas(schemaId);
         return trimDeletedSchemaAndGetList(schemaId, schemaFutureList);
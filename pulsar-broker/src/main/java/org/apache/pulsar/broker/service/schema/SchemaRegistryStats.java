@@ -41,6 +41,10 @@ class SchemaRegistryStats implements AutoCloseable, Runnable {
     private final Counter compatibleCounter;
     private final Counter incompatibleCounter;
 
+    private final Counter compatibilityCacheHitsCounter;
+    private final Counter compatibilityCacheMissesCounter;
+    private final Counter compatibilityCacheSavedTimeCounter;
+
     private final Summary deleteOpsLatency;
     private final Summary getOpsLatency;
     private final Summary putOpsLatency;
@@ -71,6 +75,16 @@ class SchemaRegistryStats implements AutoCloseable, Runnable {
         this.incompatibleCounter = Counter.build("pulsar_schema_incompatible_total", "-")
                 .labelNames(NAMESPACE).create().register();
 
+        this.compatibilityCacheHitsCounter = Counter.build("pulsar_schema_compatibility_cache_hits_total",
+                "The number of schema compatibility checks answered from the cache")
+                .labelNames(NAMESPACE).create().register();
+        this.compatibilityCacheMissesCounter = Counter.build("pulsar_schema_compatibility_cache_misses_total",
+                "The number of schema compatibility checks that had to be run")
+                .labelNames(NAMESPACE).create().register();
+        this.compatibilityCacheSavedTimeCounter = Counter.build("pulsar_schema_compatibility_cache_saved_ms_total",
+                "The time that the schema compatibility checks answered from the cache took to run")
+                .labelNames(NAMESPACE).create().register();
+
         this.deleteOpsLatency = this.buildSummary("pulsar_schema_del_ops_latency", "-");
         this.getOpsLatency = this.buildSummary("pulsar_schema_get_ops_latency", "-");
         this.putOpsLatency = this.buildSummary("pulsar_schema_put_ops_latency", "-");
@@ -122,6 +136,16 @@ class SchemaRegistryStats implements AutoCloseable, Runnable {
         this.compatibleCounter.labels(getNamespace(schemaId)).inc();
     }
 
+    void recordCompatibilityCacheHit(String schemaId, long savedNanos) {
+        String namespace = getNamespace(schemaId);
+        this.compatibilityCacheHitsCounter.labels(namespace).inc();
+        this.compatibilityCacheSavedTimeCounter.labels(namespace).inc(savedNanos / 1_000_000.0);
+    }
+
+    void recordCompatibilityCacheMiss(String schemaId) {
+        this.compatibilityCacheMissesCounter.labels(getNamespace(schemaId)).inc();
+    }
+
 
     private String getNamespace(String schemaId) {
         String namespace;
@@ -142,6 +166,9 @@ class SchemaRegistryStats implements AutoCloseable, Runnable {
         deleteOpsFailedCounter.remove(namespace);
         compatibleCounter.remove(namespace);
         incompatibleCounter.remove(namespace);
+        compatibilityCacheHitsCounter.remove(namespace);
+        compatibilityCacheMissesCounter.remove(namespace);
+        compatibilityCacheSavedTimeCounter.remove(namespace);
         deleteOpsLatency.remove(namespace);
         getOpsLatency.remove(namespace);
         putOpsLatency.remove(namespace);
@@ -155,6 +182,9 @@ class SchemaRegistryStats implements AutoCloseable, Runnable {
             CollectorRegistry.defaultRegistry.unregister(this.putOpsFailedCounter);
             CollectorRegistry.defaultRegistry.unregister(this.compatibleCounter);
             CollectorRegistry.defaultRegistry.unregister(this.incompatibleCounter);
+            CollectorRegistry.defaultRegistry.unregister(this.compatibilityCacheHitsCounter);
+            CollectorRegistry.defaultRegistry.unregister(this.compatibilityCacheMissesCounter);
+            CollectorRegistry.defaultRegistry.unregister(this.compatibilityCacheSavedTimeCounter);
             CollectorRegistry.defaultRegistry.unregister(this.deleteOpsLatency);
             CollectorRegistry.defaultRegistry.unregister(this.getOpsLatency);
             CollectorRegistry.defaultRegistry.unregister(this.putOpsLatency);
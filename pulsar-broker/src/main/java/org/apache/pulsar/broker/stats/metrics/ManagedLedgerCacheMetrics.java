@@ -56,6 +56,19 @@ public class ManagedLedgerCacheMetrics extends AbstractMetrics {
         m.put("brk_ml_cache_misses_rate", mlCacheStats.getCacheMissesRate());
         m.put("brk_ml_cache_hits_throughput", mlCacheStats.getCacheHitsThroughput());
         m.put("brk_ml_cache_misses_throughput", mlCacheStats.getCacheMissesThroughput());
+        m.put("brk_ml_cache_tailing_reads_hits_rate", mlCacheStats.getTailingReadsCacheHitsRate());
+        m.put("brk_ml_cache_tailing_reads_misses_rate", mlCacheStats.getTailingReadsCacheMissesRate());
+        m.put("brk_ml_cache_tailing_reads_hit_ratio", mlCacheStats.getTailingReadsCacheHitRatio());
+        m.put("brk_ml_cache_catch_up_reads_hits_rate", mlCacheStats.getCatchUpReadsCacheHitsRate());
+        m.put("brk_ml_cache_catch_up_reads_misses_rate", mlCacheStats.getCatchUpReadsCacheMissesRate());
+        m.put("brk_ml_cache_catch_up_reads_hit_ratio", mlCacheStats.getCatchUpReadsCacheHitRatio());
+        m.put("brk_ml_recovery_pending", mlCacheStats.getNumberOfPendingRecoveries());
+        m.put("brk_ml_recovery_count", mlCacheStats.getRecoveriesCount());
+        m.put("brk_ml_recovery_queue_latency_avg_ms", mlCacheStats.getRecoveryQueueLatencyAvgMs());
+        m.put("brk_ml_recovery_metadata_latency_avg_ms", mlCacheStats.getRecoveryMetadataLatencyAvgMs());
+        m.put("brk_ml_recovery_ledgers_latency_avg_ms", mlCacheStats.getRecoveryLedgersLatencyAvgMs());
+        m.put("brk_ml_recovery_cursors_latency_avg_ms", mlCacheStats.getRecoveryCursorsLatencyAvgMs());
+        m.put("brk_ml_recovery_latency_avg_ms", mlCacheStats.getRecoveryLatencyAvgMs());
 
         PooledByteBufAllocator allocator = RangeEntryCacheImpl.ALLOCATOR;
         long activeAllocations = 0;
@@ -64,6 +64,7 @@ public class AggregatedNamespaceStats {
     long compactionCompactedEntriesSize;
     StatsBuckets compactionLatencyBuckets = new StatsBuckets(CompactionRecord.WRITE_LATENCY_BUCKETS_USEC);
     int delayedTrackerMemoryUsage;
+    long deduplicationStateSize;
 
     void updateStats(TopicStats stats) {
         topicsCount++;
@@ -82,6 +83,7 @@ public class AggregatedNamespaceStats {
         bytesOutCounter += stats.bytesOutCounter;
         msgOutCounter += stats.msgOutCounter;
         delayedTrackerMemoryUsage += stats.delayedTrackerMemoryUsage;
+        deduplicationStateSize += stats.deduplicationStateSize;
 
         this.ongoingTxnCount += stats.ongoingTxnCount;
         this.abortedTxnCount += stats.abortedTxnCount;
@@ -171,5 +173,6 @@ public class AggregatedNamespaceStats {
         replicationStats.clear();
         subscriptionStats.clear();
         delayedTrackerMemoryUsage = 0;
+        deduplicationStateSize = 0;
     }
 }
@@ -69,6 +69,7 @@ class TopicStats {
     long compactionCompactedEntriesSize;
     StatsBuckets compactionLatencyBuckets = new StatsBuckets(CompactionRecord.WRITE_LATENCY_BUCKETS_USEC);
     public int delayedTrackerMemoryUsage;
+    long deduplicationStateSize;
 
     public void reset() {
         subscriptionsCount = 0;
@@ -107,6 +108,7 @@ class TopicStats {
         compactionCompactedEntriesSize = 0;
         compactionLatencyBuckets.reset();
         delayedTrackerMemoryUsage = 0;
+        deduplicationStateSize = 0;
     }
 
     public static void printTopicStats(PrometheusMetricStreams stream, TopicStats stats,
@@ -162,6 +164,9 @@ class TopicStats {
         writeMetric(stream, "pulsar_delayed_message_index_size_bytes", stats.delayedTrackerMemoryUsage,
                 cluster, namespace, topic, splitTopicAndPartitionIndexLabel);
 
+        writeMetric(stream, "pulsar_deduplication_state_size_bytes", stats.deduplicationStateSize,
+                cluster, namespace, topic, splitTopicAndPartitionIndexLabel);
+
         long[] latencyBuckets = stats.managedLedgerStats.storageWriteLatencyBuckets.getBuckets();
         writeMetric(stream, "pulsar_storage_write_latency_le_0_5",
                 latencyBuckets[0], cluster, namespace, topic, splitTopicAndPartitionIndexLabel);
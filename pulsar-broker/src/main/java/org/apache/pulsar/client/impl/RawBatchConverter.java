@@ -53,8 +53,7 @@ public class RawBatchConverter {
         MessageMetadata metadata = Commands.parseMessageMetadata(payload);
         int batchSize = metadata.getNumMessagesInBatch();
 
-        CompressionType compressionType = metadata.getCompression();
-        CompressionCodec codec = CompressionCodecProvider.getCompressionCodec(compressionType);
+        CompressionCodec codec = getCompressionCodec(msg, metadata);
         int uncompressedSize = metadata.getUncompressedSize();
         ByteBuf uncompressedPayload = codec.decode(payload, uncompressedSize);
 
@@ -80,6 +79,20 @@ public class RawBatchConverter {
         return idsAndKeysAndSize;
     }
 
+    private static CompressionCodec getCompressionCodec(RawMessage msg, MessageMetadata metadata)
+            throws IOException {
+        if (!metadata.hasCompressionDictionaryId()) {
+            return CompressionCodecProvider.getCompressionCodec(metadata.getCompression());
+        }
+        CompressionCodec codec = msg instanceof RawMessageImpl ? ((RawMessageImpl) msg).getCompressionDictionary()
+                : null;
+        if (codec == null) {
+            throw new IOException("The zstd dictionary " + metadata.getCompressionDictionaryId()
+                    + " of the message is not available");
+        }
+        return codec;
+    }
+
     /**
      * Take a batched message and a filter, and returns a message with the only the sub-messages
      * which match the filter. Returns an empty optional if no messages match.
@@ -96,7 +109,7 @@ public class RawBatchConverter {
         ByteBuf batchBuffer = PulsarByteBufAllocator.DEFAULT.buffer(payload.capacity());
 
         CompressionType compressionType = metadata.getCompression();
-        CompressionCodec codec = CompressionCodecProvider.getCompressionCodec(compressionType);
+        CompressionCodec codec = getCompressionCodec(msg, metadata);
 
         int uncompressedSize = metadata.getUncompressedSize();
         ByteBuf uncompressedPayload = codec.decode(payload, uncompressedSize);
@@ -133,9 +146,13 @@ public class RawBatchConverter {
 
             if (messagesRetained > 0) {
                 int newUncompressedSize = batchBuffer.readableBytes();
-                ByteBuf compressedPayload = codec.encode(batchBuffer);
+                // The compacted batches are compressed without dictionary, so that the compacted ledger can be read
+                // without resolving the dictionaries
+                ByteBuf compressedPayload = CompressionCodecProvider.getCompressionCodec(compressionType)
+                        .encode(batchBuffer);
 
                 metadata.setUncompressedSize(newUncompressedSize);
+                metadata.clearCompressionDictionaryId();
 
                 ByteBuf metadataAndPayload = Commands.serializeMetadataAndPayload(Commands.ChecksumType.Crc32c,
                                                                                   metadata, compressedPayload);
@@ -24,6 +24,7 @@ import org.apache.pulsar.client.api.MessageId;
 import org.apache.pulsar.client.api.RawMessage;
 import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
 import org.apache.pulsar.common.api.proto.MessageIdData;
+import org.apache.pulsar.common.compression.CompressionCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,10 +33,16 @@ public class RawMessageImpl implements RawMessage {
 
     private final MessageIdData id = new MessageIdData();
     private ByteBuf headersAndPayload;
+    private final CompressionCodec compressionDictionary;
 
     public RawMessageImpl(MessageIdData id, ByteBuf headersAndPayload) {
+        this(id, headersAndPayload, null);
+    }
+
+    public RawMessageImpl(MessageIdData id, ByteBuf headersAndPayload, CompressionCodec compressionDictionary) {
         this.id.copyFrom(id);
         this.headersAndPayload = headersAndPayload.retainedSlice();
+        this.compressionDictionary = compressionDictionary;
     }
 
     @Override
@@ -54,6 +61,14 @@ public class RawMessageImpl implements RawMessage {
         return headersAndPayload.slice();
     }
 
+    /**
+     * @return the codec of the zstd dictionary the message is compressed with, or null if the message is not
+     *         compressed with a dictionary or the dictionary is not available
+     */
+    public CompressionCodec getCompressionDictionary() {
+        return compressionDictionary;
+    }
+
     @Override
     public void close() {
         headersAndPayload.release();
@@ -38,6 +38,7 @@ import org.apache.pulsar.common.api.proto.CommandAck.AckType;
 import org.apache.pulsar.common.api.proto.CommandMessage;
 import org.apache.pulsar.common.api.proto.MessageIdData;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.compression.CompressionCodec;
 import org.apache.pulsar.common.naming.TopicName;
 import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.util.collections.GrowableArrayBlockingQueue;
@@ -249,8 +250,32 @@ public class RawReaderImpl implements RawReader {
                         messageId.getEntryId(), messageId.getLedgerId(), messageId.getPartition());
             }
 
-            incomingRawMessages.add(
-                new RawMessageAndCnx(new RawMessageImpl(messageId, headersAndPayload), cnx));
+            if (compressionDictionaries.deferIfLoading(commandMessage, headersAndPayload, cnx)) {
+                return;
+            }
+
+            // Resolve the dictionary the message is compressed with, so that the compaction can decompress it
+            CompressionCodec compressionDictionary = null;
+            int readerIndex = headersAndPayload.readerIndex();
+            try {
+                MessageMetadata msgMetadata = Commands.parseMessageMetadata(headersAndPayload);
+                if (msgMetadata.hasCompressionDictionaryId()) {
+                    long dictionaryId = msgMetadata.getCompressionDictionaryId();
+                    compressionDictionary = compressionDictionaries.get(dictionaryId);
+                    if (compressionDictionary == null && compressionDictionaries.load(dictionaryId,
+                            commandMessage, headersAndPayload, readerIndex, cnx)) {
+                        // The message is received again once the dictionary is loaded
+                        return;
+                    }
+                }
+            } catch (Throwable t) {
+                // The message is validated by the compaction
+            } finally {
+                headersAndPayload.readerIndex(readerIndex);
+            }
+
+            incomingRawMessages.add(new RawMessageAndCnx(
+                    new RawMessageImpl(messageId, headersAndPayload, compressionDictionary), cnx));
             internalPinnedExecutor.execute(this::tryCompletePending);
         }
     }
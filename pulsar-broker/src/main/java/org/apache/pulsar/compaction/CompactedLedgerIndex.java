@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.common.api.proto.MessageIdData;
+
+/**
+ * Sparse index of a compacted ledger, which the {@link TwoPhaseCompactor} writes to a ledger of its own along with
+ * the compacted ledger.
+ *
+ * <p/>The entries of the compacted ledger are split into blocks of a fixed number of entries. For each block, the
+ * index records the message id of the first entry of the block and the sorted hashes of the keys of the messages of
+ * the block. The block of a position is found by a binary search in memory, and the blocks that may hold a message of
+ * a key by their hashes.
+ */
+public class CompactedLedgerIndex {
+    private static final int MAGIC = 0x43494458;
+    private static final int VERSION = 1;
+
+    private final int blockSize;
+    private final long numberOfEntries;
+    // Message id of the first entry of each block
+    private final long[] ledgerIds;
+    private final long[] entryIds;
+    // Sorted hashes of the keys of the messages of each block
+    private final int[][] keyHashes;
+
+    private CompactedLedgerIndex(int blockSize, long numberOfEntries, long[] ledgerIds, long[] entryIds,
+                                 int[][] keyHashes) {
+        this.blockSize = blockSize;
+        this.numberOfEntries = numberOfEntries;
+        this.ledgerIds = ledgerIds;
+        this.entryIds = entryIds;
+        this.keyHashes = keyHashes;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public long getNumberOfEntries() {
+        return numberOfEntries;
+    }
+
+    public int getNumberOfBlocks() {
+        return ledgerIds.length;
+    }
+
+    public long getFirstEntryOfBlock(int block) {
+        return (long) block * blockSize;
+    }
+
+    public long getLastEntryOfBlock(int block) {
+        return Math.min(numberOfEntries, (long) (block + 1) * blockSize) - 1;
+    }
+
+    /**
+     * @return the last block whose first message is before the position, or -1 if there is none
+     */
+    public int findBlock(PositionImpl p) {
+        int low = 0;
+        int high = ledgerIds.length - 1;
+        int block = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compareToFirstMessage(p, mid) > 0) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return block;
+    }
+
+    private int compareToFirstMessage(PositionImpl p, int block) {
+        int result = Long.compare(p.getLedgerId(), ledgerIds[block]);
+        return result != 0 ? result : Long.compare(p.getEntryId(), entryIds[block]);
+    }
+
+    /**
+     * @return whether the block may hold a message of the key, which is only certain once the block is read
+     */
+    public boolean mayContainKey(int block, String key) {
+        return Arrays.binarySearch(keyHashes[block], hash(key)) >= 0;
+    }
+
+    private static int hash(String key) {
+        return key.hashCode();
+    }
+
+    public byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(blockSize);
+            out.writeLong(numberOfEntries);
+            out.writeInt(ledgerIds.length);
+            for (int i = 0; i < ledgerIds.length; i++) {
+                out.writeLong(ledgerIds[i]);
+                out.writeLong(entryIds[i]);
+                out.writeInt(keyHashes[i].length);
+                for (int keyHash : keyHashes[i]) {
+                    out.writeInt(keyHash);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static CompactedLedgerIndex fromByteArray(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a compacted ledger index");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of compacted ledger index");
+            }
+            int blockSize = in.readInt();
+            long numberOfEntries = in.readLong();
+            int numberOfBlocks = in.readInt();
+            long[] ledgerIds = new long[numberOfBlocks];
+            long[] entryIds = new long[numberOfBlocks];
+            int[][] keyHashes = new int[numberOfBlocks][];
+            for (int i = 0; i < numberOfBlocks; i++) {
+                ledgerIds[i] = in.readLong();
+                entryIds[i] = in.readLong();
+                keyHashes[i] = new int[in.readInt()];
+                for (int j = 0; j < keyHashes[i].length; j++) {
+                    keyHashes[i][j] = in.readInt();
+                }
+            }
+            return new CompactedLedgerIndex(blockSize, numberOfEntries, ledgerIds, entryIds, keyHashes);
+        }
+    }
+
+    /**
+     * Builds the index of a compacted ledger from its entries, which have to be added in the order they are added to
+     * the compacted ledger.
+     */
+    public static class Builder {
+        private final int blockSize;
+        private long numberOfEntries;
+        private final List<long[]> firstMessages = new ArrayList<>();
+        private final List<int[]> keyHashes = new ArrayList<>();
+        private final Set<Integer> blockKeyHashes = new HashSet<>();
+
+        public Builder(int blockSize) {
+            if (blockSize <= 0) {
+                throw new IllegalArgumentException("Invalid block size " + blockSize);
+            }
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * @param keys the keys of the messages of the entry, or null if they are unknown
+         */
+        public void add(MessageIdData id, Collection<String> keys) {
+            if (numberOfEntries % blockSize == 0) {
+                completeBlock();
+                firstMessages.add(new long[] {id.getLedgerId(), id.getEntryId()});
+            }
+            if (keys != null) {
+                for (String key : keys) {
+                    if (key != null) {
+                        blockKeyHashes.add(hash(key));
+                    }
+                }
+            }
+            numberOfEntries++;
+        }
+
+        private void completeBlock() {
+            if (firstMessages.size() > keyHashes.size()) {
+                int[] hashes = blockKeyHashes.stream().mapToInt(Integer::intValue).sorted().toArray();
+                keyHashes.add(hashes);
+                blockKeyHashes.clear();
+            }
+        }
+
+        public CompactedLedgerIndex build() {
+            completeBlock();
+            int numberOfBlocks = firstMessages.size();
+            long[] ledgerIds = new long[numberOfBlocks];
+            long[] entryIds = new long[numberOfBlocks];
+            for (int i = 0; i < numberOfBlocks; i++) {
+                ledgerIds[i] = firstMessages.get(i)[0];
+                entryIds[i] = firstMessages.get(i)[1];
+            }
+            return new CompactedLedgerIndex(blockSize, numberOfEntries, ledgerIds, entryIds,
+                    keyHashes.toArray(new int[0][]));
+        }
+    }
+}
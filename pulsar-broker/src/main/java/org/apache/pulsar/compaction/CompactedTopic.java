@@ -28,6 +28,16 @@ import org.apache.pulsar.broker.service.Consumer;
 
 public interface CompactedTopic {
     CompletableFuture<CompactedTopicContext> newCompactedLedger(Position p, long compactedLedgerId);
+
+    /**
+     * Switch to a new compacted ledger that has an index.
+     *
+     * @param indexLedgerId the id of the ledger of the index of the compacted ledger
+     */
+    default CompletableFuture<CompactedTopicContext> newCompactedLedger(Position p, long compactedLedgerId,
+                                                                        long indexLedgerId) {
+        return newCompactedLedger(p, compactedLedgerId);
+    }
     CompletableFuture<Void> deleteCompactedLedger(long compactedLedgerId);
     void asyncReadEntriesOrWait(ManagedCursor cursor,
                                 int numberOfEntriesToRead,
@@ -35,5 +45,12 @@ public interface CompactedTopic {
                                 ReadEntriesCallback callback,
                                 Consumer consumer);
     CompletableFuture<Entry> readLastEntryOfCompactedLedger();
+
+    /**
+     * Read the entry of the compacted ledger that holds the latest message of a key, as of the compaction horizon.
+     *
+     * @return the entry, or empty if the compacted ledger has no message of the key
+     */
+    CompletableFuture<Optional<Entry>> readLatestEntryOfKey(String key);
     Optional<Position> getCompactionHorizon();
 }
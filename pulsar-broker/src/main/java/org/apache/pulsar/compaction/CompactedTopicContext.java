@@ -28,9 +28,19 @@ public class CompactedTopicContext {
 
     final LedgerHandle ledger;
     final AsyncLoadingCache<Long, MessageIdData> cache;
+    // Index of the compacted ledger, or null if it has none
+    final CompactedLedgerIndex index;
+    final long indexLedgerId;
 
     public CompactedTopicContext(LedgerHandle ledger, AsyncLoadingCache<Long, MessageIdData> cache) {
+        this(ledger, cache, null, -1);
+    }
+
+    public CompactedTopicContext(LedgerHandle ledger, AsyncLoadingCache<Long, MessageIdData> cache,
+                                 CompactedLedgerIndex index, long indexLedgerId) {
         this.ledger = ledger;
         this.cache = cache;
+        this.index = index;
+        this.indexLedgerId = indexLedgerId;
     }
 }
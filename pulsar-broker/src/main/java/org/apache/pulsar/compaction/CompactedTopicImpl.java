@@ -24,6 +24,8 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ComparisonChain;
 import io.netty.buffer.ByteBuf;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -43,10 +45,13 @@ import org.apache.bookkeeper.mledger.ManagedLedgerException;
 import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.impl.EntryImpl;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pulsar.broker.service.Consumer;
 import org.apache.pulsar.broker.service.persistent.PersistentDispatcherSingleActiveConsumer.ReadEntriesCtx;
 import org.apache.pulsar.client.api.MessageId;
 import org.apache.pulsar.client.api.RawMessage;
+import org.apache.pulsar.client.impl.RawBatchConverter;
 import org.apache.pulsar.client.impl.RawMessageImpl;
 import org.apache.pulsar.common.api.proto.MessageIdData;
 import org.slf4j.Logger;
@@ -60,6 +65,7 @@ public class CompactedTopicImpl implements CompactedTopic {
     private final BookKeeper bk;
 
     private PositionImpl compactionHorizon = null;
+    private long compactedLedgerId = -1;
     private CompletableFuture<CompactedTopicContext> compactedTopicContext = null;
 
     public CompactedTopicImpl(BookKeeper bk) {
@@ -68,11 +74,18 @@ public class CompactedTopicImpl implements CompactedTopic {
 
     @Override
     public CompletableFuture<CompactedTopicContext> newCompactedLedger(Position p, long compactedLedgerId) {
+        return newCompactedLedger(p, compactedLedgerId, -1);
+    }
+
+    @Override
+    public CompletableFuture<CompactedTopicContext> newCompactedLedger(Position p, long compactedLedgerId,
+                                                                       long indexLedgerId) {
         synchronized (this) {
             compactionHorizon = (PositionImpl) p;
+            this.compactedLedgerId = compactedLedgerId;
 
             CompletableFuture<CompactedTopicContext> previousContext = compactedTopicContext;
-            compactedTopicContext = openCompactedLedger(bk, compactedLedgerId);
+            compactedTopicContext = openCompactedLedger(bk, compactedLedgerId, indexLedgerId);
 
             // delete the ledger from the old context once the new one is open
             return compactedTopicContext.thenCompose(__ ->
@@ -105,7 +118,8 @@ public class CompactedTopicImpl implements CompactedTopic {
                 cursor.asyncReadEntriesOrWait(numberOfEntriesToRead, callback, readEntriesCtx, PositionImpl.LATEST);
             } else {
                 compactedTopicContext.thenCompose(
-                    (context) -> findStartPoint(cursorPosition, context.ledger.getLastAddConfirmed(), context.cache)
+                    (context) -> findStartPoint(cursorPosition, context.ledger.getLastAddConfirmed(), context.cache,
+                                                context.index)
                         .thenCompose((startPoint) -> {
                             // do not need to read the compaction ledger if it is empty.
                             // the cursor just needs to be set to the compaction horizon
@@ -155,12 +169,36 @@ public class CompactedTopicImpl implements CompactedTopic {
     static CompletableFuture<Long> findStartPoint(PositionImpl p,
                                                   long lastEntryId,
                                                   AsyncLoadingCache<Long, MessageIdData> cache) {
+        return findStartPoint(p, lastEntryId, cache, null);
+    }
+
+    /**
+     * @param index the index of the compacted ledger, which narrows the search down to a single block, or null
+     */
+    static CompletableFuture<Long> findStartPoint(PositionImpl p,
+                                                  long lastEntryId,
+                                                  AsyncLoadingCache<Long, MessageIdData> cache,
+                                                  CompactedLedgerIndex index) {
         CompletableFuture<Long> promise = new CompletableFuture<>();
         // if lastEntryId is less than zero it means there are no entries in the compact ledger
         if (lastEntryId < 0) {
             promise.complete(COMPACT_LEDGER_EMPTY);
-        } else {
+        } else if (index == null) {
             findStartPointLoop(p, 0, lastEntryId, promise, cache);
+        } else {
+            int block = index.findBlock(p);
+            if (block < 0) {
+                promise.complete(0L);
+                return promise;
+            }
+            // The start point is after the first entry of the block, and at the latest the first entry of the next
+            long start = index.getFirstEntryOfBlock(block) + 1;
+            long end = block + 1 < index.getNumberOfBlocks() ? index.getFirstEntryOfBlock(block + 1) : lastEntryId;
+            if (start > end) {
+                promise.complete(NEWER_THAN_COMPACTED);
+            } else {
+                findStartPointLoop(p, start, end, promise, cache);
+            }
         }
         return promise;
     }
@@ -227,7 +265,30 @@ public class CompactedTopicImpl implements CompactedTopic {
         return promise;
     }
 
-    private static CompletableFuture<CompactedTopicContext> openCompactedLedger(BookKeeper bk, long id) {
+    private static CompletableFuture<CompactedTopicContext> openCompactedLedger(BookKeeper bk, long id,
+                                                                               long indexLedgerId) {
+        return openLedger(bk, id).thenCompose((ledger) -> {
+            if (indexLedgerId < 0) {
+                return CompletableFuture.completedFuture(new CompactedTopicContext(
+                        ledger, createCache(ledger, DEFAULT_STARTPOINT_CACHE_SIZE)));
+            }
+            return readIndex(bk, indexLedgerId).handle((index, exception) -> {
+                if (exception != null) {
+                    log.warn("Failed to read the index {} of compacted ledger {}, reading it without index",
+                            indexLedgerId, id, exception);
+                    index = null;
+                } else if (index.getNumberOfEntries() != ledger.getLastAddConfirmed() + 1) {
+                    log.warn("The index {} of compacted ledger {} has {} entries instead of {}, ignoring it",
+                            indexLedgerId, id, index.getNumberOfEntries(), ledger.getLastAddConfirmed() + 1);
+                    index = null;
+                }
+                return new CompactedTopicContext(ledger, createCache(ledger, DEFAULT_STARTPOINT_CACHE_SIZE),
+                        index, indexLedgerId);
+            });
+        });
+    }
+
+    private static CompletableFuture<LedgerHandle> openLedger(BookKeeper bk, long id) {
         CompletableFuture<LedgerHandle> promise = new CompletableFuture<>();
         bk.asyncOpenLedger(id,
                            Compactor.COMPACTED_TOPIC_LEDGER_DIGEST_TYPE,
@@ -239,8 +300,43 @@ public class CompactedTopicImpl implements CompactedTopic {
                                    promise.complete(ledger);
                                }
                            }, null);
-        return promise.thenApply((ledger) -> new CompactedTopicContext(
-                                         ledger, createCache(ledger, DEFAULT_STARTPOINT_CACHE_SIZE)));
+        return promise;
+    }
+
+    private static CompletableFuture<CompactedLedgerIndex> readIndex(BookKeeper bk, long indexLedgerId) {
+        return openLedger(bk, indexLedgerId).thenCompose(lh -> {
+            CompletableFuture<CompactedLedgerIndex> promise = new CompletableFuture<>();
+            if (lh.getLastAddConfirmed() < 0) {
+                promise.completeExceptionally(new NoSuchElementException(
+                        String.format("The index ledger %d is empty", indexLedgerId)));
+                lh.asyncClose((rc, ledger, ctx) -> { }, null);
+                return promise;
+            }
+            lh.asyncReadEntries(0, lh.getLastAddConfirmed(), (rc, _lh, seq, ctx) -> {
+                if (rc != BKException.Code.OK) {
+                    promise.completeExceptionally(BKException.create(rc));
+                } else {
+                    ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+                    while (seq.hasMoreElements()) {
+                        ByteBuf buf = seq.nextElement().getEntryBuffer();
+                        try {
+                            buf.readBytes(serialized, buf.readableBytes());
+                        } catch (IOException e) {
+                            promise.completeExceptionally(e);
+                        } finally {
+                            buf.release();
+                        }
+                    }
+                    try {
+                        promise.complete(CompactedLedgerIndex.fromByteArray(serialized.toByteArray()));
+                    } catch (IOException e) {
+                        promise.completeExceptionally(e);
+                    }
+                }
+                lh.asyncClose((rc2, ledger, ctx2) -> { }, null);
+            }, null);
+            return promise;
+        });
     }
 
     private static CompletableFuture<Void> tryDeleteCompactedLedger(BookKeeper bk, long id) {
@@ -311,6 +407,87 @@ public class CompactedTopicImpl implements CompactedTopic {
         });
     }
 
+    @Override
+    public CompletableFuture<Optional<Entry>> readLatestEntryOfKey(String key) {
+        CompletableFuture<CompactedTopicContext> contextFuture;
+        synchronized (this) {
+            contextFuture = compactedTopicContext;
+        }
+        if (contextFuture == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return contextFuture.thenCompose(context -> {
+            if (context.index == null) {
+                return CompletableFuture.failedFuture(
+                        new IllegalStateException("The compacted ledger " + context.ledger.getId() + " has no index"));
+            }
+            return readLatestEntryOfKey(context.ledger, context.index, key, context.index.getNumberOfBlocks() - 1);
+        });
+    }
+
+    /**
+     * Look for the latest message of a key in the blocks of the compacted ledger that may hold it, from the last one.
+     */
+    private static CompletableFuture<Optional<Entry>> readLatestEntryOfKey(LedgerHandle lh, CompactedLedgerIndex index,
+                                                                         String key, int lastBlock) {
+        int block = lastBlock;
+        while (block >= 0 && !index.mayContainKey(block, key)) {
+            block--;
+        }
+        if (block < 0) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        int candidate = block;
+        CompletableFuture<Enumeration<LedgerEntry>> promise = new CompletableFuture<>();
+        lh.asyncReadEntries(index.getFirstEntryOfBlock(block), index.getLastEntryOfBlock(block),
+                            (rc, _lh, seq, ctx) -> {
+                                if (rc != BKException.Code.OK) {
+                                    promise.completeExceptionally(BKException.create(rc));
+                                } else {
+                                    promise.complete(seq);
+                                }
+                            }, null);
+        return promise.thenCompose(seq -> {
+            Entry latest = null;
+            while (seq.hasMoreElements()) {
+                ByteBuf buf = seq.nextElement().getEntryBuffer();
+                try (RawMessage m = RawMessageImpl.deserializeFrom(buf)) {
+                    if (containsKey(m, key)) {
+                        if (latest != null) {
+                            latest.release();
+                        }
+                        latest = EntryImpl.create(m.getMessageIdData().getLedgerId(),
+                                m.getMessageIdData().getEntryId(), m.getHeadersAndPayload());
+                    }
+                } finally {
+                    buf.release();
+                }
+            }
+            if (latest != null) {
+                return CompletableFuture.completedFuture(Optional.of(latest));
+            }
+            // The hash of another key of the block collides with the hash of the key
+            return readLatestEntryOfKey(lh, index, key, candidate - 1);
+        });
+    }
+
+    private static boolean containsKey(RawMessage m, String key) {
+        if (RawBatchConverter.isReadableBatch(m)) {
+            try {
+                for (ImmutableTriple<MessageId, String, Integer> e : RawBatchConverter.extractIdsAndKeysAndSize(m)) {
+                    if (key.equals(e.getMiddle())) {
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Error decoding batch for message {} of the compacted ledger", m.getMessageId(), e);
+            }
+            return false;
+        }
+        Pair<String, Integer> keyAndSize = TwoPhaseCompactor.extractKeyAndSize(m);
+        return keyAndSize != null && key.equals(keyAndSize.getLeft());
+    }
+
     private static int comparePositionAndMessageId(PositionImpl p, MessageIdData m) {
         return ComparisonChain.start()
             .compare(p.getLedgerId(), m.getLedgerId())
@@ -320,6 +497,14 @@ public class CompactedTopicImpl implements CompactedTopic {
     public synchronized Optional<Position> getCompactionHorizon() {
         return Optional.ofNullable(this.compactionHorizon);
     }
+
+    /**
+     * @return the compaction horizon and the id of the compacted ledger that goes with it, if the topic was compacted
+     */
+    public synchronized Optional<Pair<Position, Long>> getCompactionHorizonAndLedgerId() {
+        return compactionHorizon == null
+                ? Optional.empty() : Optional.of(Pair.of(compactionHorizon, compactedLedgerId));
+    }
     private static final Logger log = LoggerFactory.getLogger(CompactedTopicImpl.class);
 }
 
@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.impl.BatchMessageIdImpl;
+import org.apache.pulsar.client.impl.MessageIdImpl;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The latest position of each key of a shard of the key space of a topic, for the phase one of the
+ * {@link ShardedTwoPhaseCompactor}.
+ *
+ * <p/>The positions are kept in memory until they exceed the memory budget of the shard, and then spilled to a file
+ * sorted by key. The latest position of a key is the greatest one, so the positions can be added in any order. Once
+ * they are all added, the spilled files are merged and only the latest positions of the keys that are not deleted are
+ * retained, as bitmaps of the entries of each ledger.
+ */
+class CompactionKeyShard implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(CompactionKeyShard.class);
+
+    // Rough size of the map entry and of the position of a key, on top of the key itself
+    private static final long KEY_OVERHEAD = 96;
+    private static final int BATCH_INDEX_BITS = 24;
+    private static final Comparator<String> KEY_COMPARATOR = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private final long memoryBudget;
+    private final Path spillDirectory;
+
+    private Map<String, KeyPosition> positions = new HashMap<>();
+    private long memorySize;
+    private final List<Path> spillFiles = new ArrayList<>();
+
+    // Latest positions of the keys, by ledger id, once the shard is complete
+    private final Map<Long, Roaring64Bitmap> retained = new HashMap<>();
+    private long retainedKeys;
+    private boolean closed;
+
+    CompactionKeyShard(long memoryBudget, Path spillDirectory) {
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+    }
+
+    private static class KeyPosition implements Comparable<KeyPosition> {
+        final long ledgerId;
+        final long entryId;
+        final int batchIndex;
+        final boolean deleted;
+
+        KeyPosition(long ledgerId, long entryId, int batchIndex, boolean deleted) {
+            this.ledgerId = ledgerId;
+            this.entryId = entryId;
+            this.batchIndex = batchIndex;
+            this.deleted = deleted;
+        }
+
+        @Override
+        public int compareTo(KeyPosition other) {
+            int result = Long.compare(ledgerId, other.ledgerId);
+            if (result == 0) {
+                result = Long.compare(entryId, other.entryId);
+            }
+            if (result == 0) {
+                result = Integer.compare(batchIndex, other.batchIndex);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Add the position of a message of a key.
+     *
+     * @param batchIndex the index of the message in its batch, or -1 if it's not part of a batch
+     * @param deleted whether the message deletes the key
+     * @return true if the message deletes the key or replaces a message of the key that is still in memory
+     */
+    synchronized boolean put(String key, long ledgerId, long entryId, int batchIndex, boolean deleted)
+            throws IOException {
+        if (closed) {
+            throw new IOException("The compaction key shard is closed");
+        }
+        KeyPosition position = new KeyPosition(ledgerId, entryId, batchIndex, deleted);
+        KeyPosition old = positions.putIfAbsent(key, position);
+        if (old == null) {
+            memorySize += KEY_OVERHEAD + (key != null ? 2L * key.length() : 0);
+            if (memorySize > memoryBudget) {
+                spill();
+            }
+        } else if (position.compareTo(old) > 0) {
+            positions.put(key, position);
+        }
+        return deleted || old != null;
+    }
+
+    private void spill() throws IOException {
+        List<Map.Entry<String, KeyPosition>> entries = new ArrayList<>(positions.entrySet());
+        entries.sort(Map.Entry.comparingByKey(KEY_COMPARATOR));
+
+        Path file = Files.createTempFile(spillDirectory, "compaction-", ".keys");
+        spillFiles.add(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (Map.Entry<String, KeyPosition> entry : entries) {
+                String key = entry.getKey();
+                KeyPosition position = entry.getValue();
+                if (key == null) {
+                    out.writeInt(-1);
+                } else {
+                    byte[] keyBytes = key.getBytes(UTF_8);
+                    out.writeInt(keyBytes.length);
+                    out.write(keyBytes);
+                }
+                out.writeLong(position.ledgerId);
+                out.writeLong(position.entryId);
+                out.writeInt(position.batchIndex);
+                out.writeBoolean(position.deleted);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Spilled the positions of {} keys to {}", entries.size(), file);
+        }
+        positions = new HashMap<>();
+        memorySize = 0;
+    }
+
+    /**
+     * Retain the latest positions of the keys that are not deleted, once the positions of all the messages are added.
+     *
+     * @return the number of positions that were replaced while merging the spilled files
+     */
+    synchronized long complete() throws IOException {
+        if (spillFiles.isEmpty()) {
+            positions.values().forEach(this::retain);
+            positions = new HashMap<>();
+            return 0;
+        }
+        if (!positions.isEmpty()) {
+            spill();
+        }
+
+        long replaced = 0;
+        PriorityQueue<SpillFileReader> readers = new PriorityQueue<>(
+                (reader1, reader2) -> KEY_COMPARATOR.compare(reader1.key, reader2.key));
+        List<SpillFileReader> openReaders = new ArrayList<>(spillFiles.size());
+        try {
+            for (Path file : spillFiles) {
+                SpillFileReader reader = new SpillFileReader(file);
+                openReaders.add(reader);
+                if (reader.advance()) {
+                    readers.add(reader);
+                }
+            }
+            while (!readers.isEmpty()) {
+                SpillFileReader reader = readers.poll();
+                String key = reader.key;
+                KeyPosition latest = reader.position;
+                if (reader.advance()) {
+                    readers.add(reader);
+                }
+                while (!readers.isEmpty() && Objects.equals(readers.peek().key, key)) {
+                    reader = readers.poll();
+                    if (reader.position.compareTo(latest) > 0) {
+                        latest = reader.position;
+                    }
+                    replaced++;
+                    if (reader.advance()) {
+                        readers.add(reader);
+                    }
+                }
+                retain(latest);
+            }
+        } finally {
+            for (SpillFileReader reader : openReaders) {
+                reader.close();
+            }
+            deleteSpillFiles();
+        }
+        return replaced;
+    }
+
+    private void retain(KeyPosition position) {
+        if (position.deleted) {
+            return;
+        }
+        if (position.batchIndex + 1 >= (1 << BATCH_INDEX_BITS)) {
+            throw new IllegalArgumentException("Batch index " + position.batchIndex + " is too big");
+        }
+        retained.computeIfAbsent(position.ledgerId, ledgerId -> new Roaring64Bitmap())
+                .addLong(encode(position.entryId, position.batchIndex));
+        retainedKeys++;
+    }
+
+    private static long encode(long entryId, int batchIndex) {
+        return (entryId << BATCH_INDEX_BITS) | (batchIndex + 1);
+    }
+
+    /**
+     * @return whether a message, or a message of a batch, is at the latest position of its key
+     */
+    boolean isRetained(MessageId id) {
+        MessageIdImpl idImpl = (MessageIdImpl) id;
+        int batchIndex = id instanceof BatchMessageIdImpl ? ((BatchMessageIdImpl) id).getBatchIndex() : -1;
+        Roaring64Bitmap entries = retained.get(idImpl.getLedgerId());
+        return entries != null && entries.contains(encode(idImpl.getEntryId(), batchIndex));
+    }
+
+    long getRetainedKeys() {
+        return retainedKeys;
+    }
+
+    int getNumberOfSpillFiles() {
+        return spillFiles.size();
+    }
+
+    private void deleteSpillFiles() {
+        for (Path file : spillFiles) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete compaction spill file {}", file, e);
+            }
+        }
+        spillFiles.clear();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        deleteSpillFiles();
+        positions = new HashMap<>();
+        retained.clear();
+    }
+
+    private static class SpillFileReader implements Closeable {
+        private final DataInputStream in;
+        String key;
+        KeyPosition position;
+
+        SpillFileReader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        }
+
+        boolean advance() throws IOException {
+            int keyLength;
+            try {
+                keyLength = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (keyLength < 0) {
+                key = null;
+            } else {
+                byte[] keyBytes = new byte[keyLength];
+                in.readFully(keyBytes);
+                key = new String(keyBytes, UTF_8);
+            }
+            position = new KeyPosition(in.readLong(), in.readLong(), in.readInt(), in.readBoolean());
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.pulsar.compaction;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.pulsar.broker.ServiceConfiguration;
 import org.apache.pulsar.client.api.PulsarClient;
@@ -35,6 +36,7 @@ public abstract class Compactor {
     private static final Logger log = LoggerFactory.getLogger(Compactor.class);
     public static final String COMPACTION_SUBSCRIPTION = "__compaction";
     public static final String COMPACTED_TOPIC_LEDGER_PROPERTY = "CompactedTopicLedger";
+    public static final String COMPACTED_TOPIC_INDEX_LEDGER_PROPERTY = "CompactedTopicIndexLedger";
     static final BookKeeper.DigestType COMPACTED_TOPIC_LEDGER_DIGEST_TYPE = BookKeeper.DigestType.CRC32;
     static final byte[] COMPACTED_TOPIC_LEDGER_PASSWORD = "".getBytes(UTF_8);
 
@@ -61,9 +63,14 @@ public abstract class Compactor {
     }
 
     private CompletableFuture<Long> compactAndCloseReader(RawReader reader) {
+        return compactAndCloseReader(reader, () -> doCompaction(reader, bk));
+    }
+
+    protected CompletableFuture<Long> compactAndCloseReader(RawReader reader,
+                                                            Supplier<CompletableFuture<Long>> compaction) {
         CompletableFuture<Long> promise = new CompletableFuture<>();
         mxBean.addCompactionStartOp(reader.getTopic());
-        doCompaction(reader, bk).whenComplete(
+        compaction.get().whenComplete(
                 (ledgerId, exception) -> {
                     reader.closeAsync().whenComplete((v, exception2) -> {
                         if (exception2 != null) {
@@ -27,6 +27,7 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.nio.file.Path;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import lombok.Cleanup;
@@ -168,7 +169,13 @@ public class CompactorTool {
         @Cleanup
         PulsarClient pulsar = createClient(brokerConfig);
 
-        Compactor compactor = new TwoPhaseCompactor(brokerConfig, pulsar, bk, scheduler);
+        @Cleanup(value = "shutdownNow")
+        ExecutorService shardsExecutor = Executors.newFixedThreadPool(brokerConfig.getBrokerServiceCompactionShards(),
+                new ThreadFactoryBuilder().setNameFormat("compaction-shard-%d").setDaemon(true).build());
+
+        Compactor compactor = brokerConfig.getBrokerServiceCompactionShards() > 1
+                ? new ShardedTwoPhaseCompactor(brokerConfig, pulsar, bk, scheduler, shardsExecutor)
+                : new TwoPhaseCompactor(brokerConfig, pulsar, bk, scheduler);
         long ledgerId = compactor.compact(arguments.topic).get();
         log.info("Compaction of topic {} complete. Compacted to ledger {}", arguments.topic, ledgerId);
     }
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pulsar.broker.ServiceConfiguration;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.RawMessage;
+import org.apache.pulsar.client.api.RawReader;
+import org.apache.pulsar.client.impl.BatchMessageIdImpl;
+import org.apache.pulsar.client.impl.MessageIdImpl;
+import org.apache.pulsar.client.impl.RawBatchConverter;
+import org.apache.pulsar.common.api.proto.MessageIdData;
+import org.apache.pulsar.common.util.FutureUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link TwoPhaseCompactor} that splits the key space of the topic by hash into shards, to use several cores and a
+ * bounded amount of memory for the compaction of big topics.
+ *
+ * <p>The messages are still read in order by a single reader, and their keys are extracted on an executor shared by
+ * all the compactions of the broker, where any thread may extract the keys of any message. The shards are not
+ * threads: each one is a {@link CompactionKeyShard} that tracks, under its own lock, the latest position of the keys
+ * that hash to it, and spills the positions to a file sorted by key when they exceed its share of the memory budget.
+ * Once the first pass is over, the shards merge their files in parallel on the same executor and only retain the
+ * latest position of each key, which is what the second pass checks the messages against.
+ *
+ * <p>Only the full compaction is sharded: the incremental compaction, on top of a previously compacted ledger, runs
+ * the unsharded phase one of {@link TwoPhaseCompactor}.
+ */
+public class ShardedTwoPhaseCompactor extends TwoPhaseCompactor {
+    private static final Logger log = LoggerFactory.getLogger(ShardedTwoPhaseCompactor.class);
+    private static final int MAX_OUTSTANDING = 500;
+    private final int numShards;
+    private final long memoryBudgetPerShard;
+    private final Path spillDirectory;
+    private final Duration phaseOneLoopReadTimeout;
+    private final ExecutorService shardsExecutor;
+
+    public ShardedTwoPhaseCompactor(ServiceConfiguration conf,
+                                    PulsarClient pulsar,
+                                    BookKeeper bk,
+                                    ScheduledExecutorService scheduler,
+                                    ExecutorService shardsExecutor) {
+        super(conf, pulsar, bk, scheduler);
+        this.shardsExecutor = shardsExecutor;
+        this.numShards = Math.max(1, conf.getBrokerServiceCompactionShards());
+        this.memoryBudgetPerShard = conf.getBrokerServiceCompactionMemoryBudgetInBytes() / numShards;
+        this.spillDirectory = Paths.get(StringUtils.isNotBlank(conf.getBrokerServiceCompactionSpillDirectory())
+                ? conf.getBrokerServiceCompactionSpillDirectory() : System.getProperty("java.io.tmpdir"));
+        this.phaseOneLoopReadTimeout =
+                Duration.ofSeconds(conf.getBrokerServiceCompactionPhaseOneLoopTimeInSeconds());
+    }
+
+    @Override
+    protected CompletableFuture<Long> doCompaction(RawReader reader, BookKeeper bk) {
+        return reader.hasMessageAvailableAsync()
+                .thenCompose(available -> {
+                    if (!available) {
+                        log.info("Skip compaction of the empty topic {}", reader.getTopic());
+                        return CompletableFuture.completedFuture(-1L);
+                    }
+                    ShardedPhaseOne phaseOne = new ShardedPhaseOne(reader);
+                    return phaseOne.run()
+                            .thenCompose(__ -> phaseTwo(reader, phaseOne.from, phaseOne.to, phaseOne.lastReadId,
+                                    phaseOne::isLatestForKey, phaseOne.getRetainedKeys(), bk))
+                            .whenComplete((__, ex) -> phaseOne.close());
+                });
+    }
+
+    private class ShardedPhaseOne {
+        private final RawReader reader;
+        private final CompactionKeyShard[] shards;
+        // Extractions of the keys of the messages read, in the order of the messages
+        private final Deque<CompletableFuture<Void>> outstanding = new ArrayDeque<>();
+        private final CompletableFuture<Void> promise = new CompletableFuture<>();
+        private MessageId lastMessageId;
+        private MessageId lastReadId;
+
+        // First and last messages that don't delete a key, guarded by this
+        private MessageId from;
+        private MessageId to;
+
+        ShardedPhaseOne(RawReader reader) {
+            this.reader = reader;
+            this.shards = new CompactionKeyShard[numShards];
+            for (int i = 0; i < numShards; i++) {
+                shards[i] = new CompactionKeyShard(memoryBudgetPerShard, spillDirectory);
+            }
+        }
+
+        CompletableFuture<Void> run() {
+            reader.getLastMessageIdAsync()
+                    .thenAccept(lastMessageId -> {
+                        log.info("Commencing phase one of compaction for {} with {} shards, reading to {}",
+                                reader.getTopic(), numShards, lastMessageId);
+                        // Each entry is processed as a whole, discard the batchIndex part deliberately.
+                        MessageIdImpl lastImpl = (MessageIdImpl) lastMessageId;
+                        this.lastMessageId = new MessageIdImpl(lastImpl.getLedgerId(), lastImpl.getEntryId(),
+                                lastImpl.getPartitionIndex());
+                        readNext();
+                    }).exceptionally(ex -> {
+                        promise.completeExceptionally(ex);
+                        return null;
+                    });
+            return promise;
+        }
+
+        private void readNext() {
+            if (promise.isDone()) {
+                return;
+            }
+            CompletableFuture<RawMessage> future = reader.readNextAsync();
+            FutureUtil.addTimeoutHandling(future,
+                    phaseOneLoopReadTimeout, scheduler,
+                    () -> FutureUtil.createTimeoutException("Timeout", getClass(), "readNext(...)"));
+
+            future.thenAcceptAsync(m -> {
+                MessageId id = m.getMessageId();
+                mxBean.addCompactionReadOp(reader.getTopic(), m.getHeadersAndPayload().readableBytes());
+                CompletableFuture<Void> extracted = CompletableFuture.runAsync(() -> {
+                    try {
+                        extractKeys(m);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    } finally {
+                        m.close();
+                    }
+                }, shardsExecutor);
+                extracted.exceptionally(ex -> {
+                    promise.completeExceptionally(ex);
+                    return null;
+                });
+                outstanding.addLast(extracted);
+                while (!outstanding.isEmpty() && outstanding.peekFirst().isDone()) {
+                    outstanding.pollFirst();
+                }
+
+                if (id.compareTo(lastMessageId) == 0) {
+                    lastReadId = id;
+                    // make sure the keys of all the messages are extracted
+                    FutureUtil.waitForAll(outstanding).thenRun(this::completeShards);
+                } else if (outstanding.size() >= MAX_OUTSTANDING) {
+                    // Resume the reads once the oldest extraction is done
+                    outstanding.peekFirst().thenRun(this::readNext);
+                } else {
+                    readNext();
+                }
+            }, scheduler).exceptionally(ex -> {
+                promise.completeExceptionally(ex);
+                return null;
+            });
+        }
+
+        private void extractKeys(RawMessage m) throws IOException {
+            MessageId id = m.getMessageId();
+            MessageIdData idData = m.getMessageIdData();
+            boolean deletedMessage = false;
+            if (RawBatchConverter.isReadableBatch(m)) {
+                List<ImmutableTriple<MessageId, String, Integer>> idsAndKeysAndSize;
+                try {
+                    idsAndKeysAndSize = RawBatchConverter.extractIdsAndKeysAndSize(m);
+                } catch (IOException ioe) {
+                    log.info("Error decoding batch for message {}. Whole batch will be included in output",
+                            id, ioe);
+                    idsAndKeysAndSize = List.of();
+                }
+                for (ImmutableTriple<MessageId, String, Integer> e : idsAndKeysAndSize) {
+                    if (e != null) {
+                        boolean deleted = e.getRight() <= 0;
+                        deletedMessage |= deleted;
+                        put(e.getMiddle(), idData, ((BatchMessageIdImpl) e.getLeft()).getBatchIndex(), deleted);
+                    }
+                }
+            } else {
+                Pair<String, Integer> keyAndSize = extractKeyAndSize(m);
+                if (keyAndSize != null) {
+                    deletedMessage = keyAndSize.getRight() <= 0;
+                    put(keyAndSize.getLeft(), idData, -1, deletedMessage);
+                }
+            }
+            if (!deletedMessage) {
+                synchronized (this) {
+                    if (from == null || id.compareTo(from) < 0) {
+                        from = id;
+                    }
+                    if (to == null || id.compareTo(to) > 0) {
+                        to = id;
+                    }
+                }
+            }
+        }
+
+        private void put(String key, MessageIdData idData, int batchIndex, boolean deleted) throws IOException {
+            if (shardOf(key).put(key, idData.getLedgerId(), idData.getEntryId(), batchIndex, deleted)) {
+                mxBean.addCompactionRemovedEvent(reader.getTopic());
+            }
+        }
+
+        private CompactionKeyShard shardOf(String key) {
+            return shards[key == null ? 0 : Math.floorMod(key.hashCode(), numShards)];
+        }
+
+        private void completeShards() {
+            if (promise.isDone()) {
+                return;
+            }
+            List<CompletableFuture<Void>> futures = new ArrayList<>(numShards);
+            for (CompactionKeyShard shard : shards) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        long replaced = shard.complete();
+                        for (long i = 0; i < replaced; i++) {
+                            mxBean.addCompactionRemovedEvent(reader.getTopic());
+                        }
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, shardsExecutor));
+            }
+            FutureUtil.waitForAll(futures).whenComplete((__, ex) -> {
+                if (ex != null) {
+                    promise.completeExceptionally(ex);
+                    return;
+                }
+                synchronized (this) {
+                    if (from == null) {
+                        from = lastReadId;
+                    }
+                    if (to == null) {
+                        to = lastReadId;
+                    }
+                }
+                promise.complete(null);
+            });
+        }
+
+        boolean isLatestForKey(String key, MessageId id) {
+            return shardOf(key).isRetained(id);
+        }
+
+        long getRetainedKeys() {
+            long retainedKeys = 0;
+            for (CompactionKeyShard shard : shards) {
+                retainedKeys += shard.getRetainedKeys();
+            }
+            return retainedKeys;
+        }
+
+        void close() {
+            for (CompactionKeyShard shard : shards) {
+                shard.close();
+            }
+        }
+    }
+}
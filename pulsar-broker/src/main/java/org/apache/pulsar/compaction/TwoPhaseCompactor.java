@@ -19,19 +19,32 @@
 package org.apache.pulsar.compaction;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.LedgerEntry;
 import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.mledger.Position;
 import org.apache.bookkeeper.mledger.impl.LedgerMetadataUtils;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.pulsar.broker.ServiceConfiguration;
@@ -41,6 +54,8 @@ import org.apache.pulsar.client.api.RawMessage;
 import org.apache.pulsar.client.api.RawReader;
 import org.apache.pulsar.client.impl.MessageIdImpl;
 import org.apache.pulsar.client.impl.RawBatchConverter;
+import org.apache.pulsar.client.impl.RawMessageImpl;
+import org.apache.pulsar.common.api.proto.MessageIdData;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
 import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.util.FutureUtil;
@@ -59,8 +74,11 @@ import org.slf4j.LoggerFactory;
 public class TwoPhaseCompactor extends Compactor {
     private static final Logger log = LoggerFactory.getLogger(TwoPhaseCompactor.class);
     private static final int MAX_OUTSTANDING = 500;
+    private static final int MAX_ENTRIES_PER_COPY_READ = 100;
+    private static final int MAX_INDEX_ENTRY_SIZE = 1024 * 1024;
     protected static final String COMPACTED_TOPIC_LEDGER_PROPERTY = "CompactedTopicLedger";
     private final Duration phaseOneLoopReadTimeout;
+    private final int indexBlockSize;
 
     public TwoPhaseCompactor(ServiceConfiguration conf,
                              PulsarClient pulsar,
@@ -68,6 +86,7 @@ public class TwoPhaseCompactor extends Compactor {
                              ScheduledExecutorService scheduler) {
         super(conf, pulsar, bk, scheduler);
         phaseOneLoopReadTimeout = Duration.ofSeconds(conf.getBrokerServiceCompactionPhaseOneLoopTimeInSeconds());
+        indexBlockSize = conf.getBrokerServiceCompactionIndexBlockSize();
     }
 
     @Override
@@ -75,8 +94,9 @@ public class TwoPhaseCompactor extends Compactor {
         return reader.hasMessageAvailableAsync()
                 .thenCompose(available -> {
                     if (available) {
-                        return phaseOne(reader).thenCompose(
-                                (r) -> phaseTwo(reader, r.from, r.to, r.lastReadId, r.latestForKey, bk));
+                        return phaseOne(reader, null).thenCompose(
+                                (r) -> phaseTwo(reader, r.from, r.to, r.lastReadId,
+                                        (key, id) -> id.equals(r.latestForKey.get(key)), r.latestForKey.size(), bk));
                     } else {
                         log.info("Skip compaction of the empty topic {}", reader.getTopic());
                         return CompletableFuture.completedFuture(-1L);
@@ -84,8 +104,59 @@ public class TwoPhaseCompactor extends Compactor {
                 });
     }
 
-    private CompletableFuture<PhaseOneResult> phaseOne(RawReader reader) {
+    /**
+     * Compact the topic on top of its current compacted ledger.
+     *
+     * <p>Only the messages after the compaction horizon are read through the topic. The new compacted ledger is made
+     * of the messages of the current compacted ledger whose keys didn't change since the horizon, which are read from
+     * BookKeeper directly, followed by the latest messages of the keys that changed.
+     *
+     * @param horizon the compaction horizon of the current compacted ledger
+     * @param compactedLedgerId the id of the current compacted ledger
+     */
+    public CompletableFuture<Long> compactIncrementally(String topic, Position horizon, long compactedLedgerId) {
+        return RawReader.create(pulsar, topic, COMPACTION_SUBSCRIPTION).thenComposeAsync(
+                reader -> compactAndCloseReader(reader,
+                        () -> doIncrementalCompaction(reader, (PositionImpl) horizon, compactedLedgerId, bk)),
+                scheduler);
+    }
+
+    private CompletableFuture<Long> doIncrementalCompaction(RawReader reader, PositionImpl horizon,
+                                                            long compactedLedgerId, BookKeeper bk) {
+        return openLedger(bk, compactedLedgerId).handle((compactedLedger, ex) -> {
+            if (ex != null) {
+                log.warn("Failed to open the compacted ledger {} of {}, compacting the whole topic",
+                        compactedLedgerId, reader.getTopic(), ex);
+                return doCompaction(reader, bk);
+            }
+            return reader.getLastMessageIdAsync().thenCompose(lastMessageId -> {
+                MessageIdImpl lastImpl = (MessageIdImpl) lastMessageId;
+                if (PositionImpl.get(lastImpl.getLedgerId(), lastImpl.getEntryId()).compareTo(horizon) <= 0) {
+                    log.info("Skip compaction of {}, there is no message after the compaction horizon {}",
+                            reader.getTopic(), horizon);
+                    return CompletableFuture.completedFuture(compactedLedgerId);
+                }
+                log.info("Commencing incremental compaction for {} on top of ledger {}, from horizon {}",
+                        reader.getTopic(), compactedLedgerId, horizon);
+                return reader.seekAsync(new MessageIdImpl(horizon.getLedgerId(), horizon.getEntryId(), -1))
+                        .thenCompose(__ -> phaseOne(reader, horizon))
+                        .thenCompose(r -> phaseTwo(reader, r.from, r.to, r.lastReadId,
+                                (key, id) -> id.equals(r.latestForKey.get(key)), r.latestForKey.size(), bk,
+                                (ledger, index) -> copyCompactedLedger(reader.getTopic(), compactedLedger, ledger,
+                                        index,
+                                        key -> !r.latestForKey.containsKey(key) && !r.deletedKeys.contains(key))));
+            }).whenComplete((__, ex2) -> closeLedger(compactedLedger));
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * @param horizon the horizon of the compacted ledger the compaction is based on, or null to compact the whole
+     *                topic
+     */
+    private CompletableFuture<PhaseOneResult> phaseOne(RawReader reader, PositionImpl horizon) {
         Map<String, MessageId> latestForKey = new HashMap<>();
+        // Keys deleted since the horizon, which have to be removed from the compacted ledger the compaction is based on
+        Set<String> deletedKeys = horizon != null ? new HashSet<>() : null;
         CompletableFuture<PhaseOneResult> loopPromise = new CompletableFuture<>();
 
         reader.getLastMessageIdAsync()
@@ -96,8 +167,8 @@ public class TwoPhaseCompactor extends Compactor {
                     MessageIdImpl lastImpl = (MessageIdImpl) lastMessageId;
                     MessageIdImpl lastEntryMessageId = new MessageIdImpl(lastImpl.getLedgerId(), lastImpl.getEntryId(),
                             lastImpl.getPartitionIndex());
-                    phaseOneLoop(reader, Optional.empty(), Optional.empty(), lastEntryMessageId, latestForKey,
-                            loopPromise);
+                    phaseOneLoop(reader, Optional.empty(), Optional.empty(), lastEntryMessageId, horizon,
+                            latestForKey, deletedKeys, loopPromise);
                 }).exceptionally(ex -> {
                     loopPromise.completeExceptionally(ex);
                     return null;
@@ -110,7 +181,9 @@ public class TwoPhaseCompactor extends Compactor {
                               Optional<MessageId> firstMessageId,
                               Optional<MessageId> toMessageId,
                               MessageId lastMessageId,
+                              PositionImpl horizon,
                               Map<String, MessageId> latestForKey,
+                              Set<String> deletedKeys,
                               CompletableFuture<PhaseOneResult> loopPromise) {
         if (loopPromise.isDone()) {
             return;
@@ -123,6 +196,14 @@ public class TwoPhaseCompactor extends Compactor {
         future.thenAcceptAsync(m -> {
             try {
                 MessageId id = m.getMessageId();
+                MessageIdData idData = m.getMessageIdData();
+                if (horizon != null
+                        && PositionImpl.get(idData.getLedgerId(), idData.getEntryId()).compareTo(horizon) <= 0) {
+                    // Already part of the compacted ledger the compaction is based on
+                    phaseOneLoop(reader, firstMessageId, toMessageId, lastMessageId, horizon, latestForKey,
+                            deletedKeys, loopPromise);
+                    return;
+                }
                 boolean deletedMessage = false;
                 boolean replaceMessage = false;
                 mxBean.addCompactionReadOp(reader.getTopic(), m.getHeadersAndPayload().readableBytes());
@@ -137,6 +218,9 @@ public class TwoPhaseCompactor extends Compactor {
                                 } else {
                                     deletedMessage = true;
                                     latestForKey.remove(e.getMiddle());
+                                    if (deletedKeys != null) {
+                                        deletedKeys.add(e.getMiddle());
+                                    }
                                 }
                             }
                             if (replaceMessage || deletedMessage) {
@@ -156,6 +240,9 @@ public class TwoPhaseCompactor extends Compactor {
                         } else {
                             deletedMessage = true;
                             latestForKey.remove(keyAndSize.getLeft());
+                            if (deletedKeys != null) {
+                                deletedKeys.add(keyAndSize.getLeft());
+                            }
                         }
                     }
                     if (replaceMessage || deletedMessage) {
@@ -166,13 +253,14 @@ public class TwoPhaseCompactor extends Compactor {
                 MessageId to = deletedMessage ? toMessageId.orElse(null) : id;
                 if (id.compareTo(lastMessageId) == 0) {
                     loopPromise.complete(new PhaseOneResult(first == null ? id : first, to == null ? id : to,
-                            lastMessageId, latestForKey));
+                            lastMessageId, latestForKey, deletedKeys));
                 } else {
                     phaseOneLoop(reader,
                             Optional.ofNullable(first),
                             Optional.ofNullable(to),
                             lastMessageId,
-                            latestForKey, loopPromise);
+                            horizon,
+                            latestForKey, deletedKeys, loopPromise);
                 }
             } finally {
                 m.close();
@@ -183,31 +271,187 @@ public class TwoPhaseCompactor extends Compactor {
         });
     }
 
+    /**
+     * Write the messages from {@code from} to {@code to} that are retained by the compaction to a new ledger.
+     *
+     * @param isLatestForKey whether a message, or a message of a batch, is the latest message of its key
+     * @param keys the number of keys that are retained, for logging purposes
+     */
+    protected CompletableFuture<Long> phaseTwo(RawReader reader, MessageId from, MessageId to, MessageId lastReadId,
+            BiPredicate<String, MessageId> isLatestForKey, long keys, BookKeeper bk) {
+        return phaseTwo(reader, from, to, lastReadId, isLatestForKey, keys, bk,
+                (ledger, index) -> CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * @param writeCompactedLedger writes the messages of the compacted ledger the compaction is based on to the new
+     *                             ledger and its index, before the messages that are read from the topic
+     */
     private CompletableFuture<Long> phaseTwo(RawReader reader, MessageId from, MessageId to, MessageId lastReadId,
-            Map<String, MessageId> latestForKey, BookKeeper bk) {
+            BiPredicate<String, MessageId> isLatestForKey, long keys, BookKeeper bk,
+            BiFunction<LedgerHandle, CompactedLedgerIndex.Builder, CompletableFuture<Void>> writeCompactedLedger) {
         Map<String, byte[]> metadata =
                 LedgerMetadataUtils.buildMetadataForCompactedLedger(reader.getTopic(), to.toByteArray());
         return createLedger(bk, metadata).thenCompose((ledger) -> {
             log.info("Commencing phase two of compaction for {}, from {} to {}, compacting {} keys to ledger {}",
-                    reader.getTopic(), from, to, latestForKey.size(), ledger.getId());
-            return phaseTwoSeekThenLoop(reader, from, to, lastReadId, latestForKey, bk, ledger);
+                    reader.getTopic(), from, to, keys, ledger.getId());
+            CompletableFuture<Long> promise = new CompletableFuture<>();
+            CompactedLedgerIndex.Builder index =
+                    indexBlockSize > 0 ? new CompactedLedgerIndex.Builder(indexBlockSize) : null;
+            writeCompactedLedger.apply(ledger, index).whenComplete((__, exception) -> {
+                if (exception != null) {
+                    deleteLedger(bk, ledger).whenComplete((res, exception2) -> {
+                        if (exception2 != null) {
+                            log.warn("Cleanup of ledger {} for failed", ledger, exception2);
+                        }
+                        promise.completeExceptionally(exception);
+                    });
+                } else {
+                    phaseTwoSeekThenLoop(reader, from, to, lastReadId, isLatestForKey, bk, ledger, metadata, index)
+                            .whenComplete((ledgerId, exception2) -> {
+                                if (exception2 != null) {
+                                    promise.completeExceptionally(exception2);
+                                } else {
+                                    promise.complete(ledgerId);
+                                }
+                            });
+                }
+            });
+            return promise;
         });
     }
 
+    /**
+     * Copy the messages of a compacted ledger whose keys are kept to another ledger, in order.
+     */
+    private CompletableFuture<Void> copyCompactedLedger(String topic, LedgerHandle from, LedgerHandle to,
+                                                        CompactedLedgerIndex.Builder index,
+                                                        Predicate<String> isKeyKept) {
+        CompletableFuture<Void> promise = new CompletableFuture<>();
+        Semaphore outstanding = new Semaphore(MAX_OUTSTANDING);
+        copyCompactedLedgerLoop(topic, from, to, index, 0, isKeyKept, outstanding, promise);
+        return promise;
+    }
+
+    private void copyCompactedLedgerLoop(String topic, LedgerHandle from, LedgerHandle to,
+                                         CompactedLedgerIndex.Builder index, long firstEntryId,
+                                         Predicate<String> isKeyKept, Semaphore outstanding,
+                                         CompletableFuture<Void> promise) {
+        if (promise.isDone()) {
+            return;
+        }
+        if (firstEntryId > from.getLastAddConfirmed()) {
+            try {
+                // make sure all inflight writes have finished
+                outstanding.acquire(MAX_OUTSTANDING);
+                promise.complete(null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                promise.completeExceptionally(e);
+            }
+            return;
+        }
+        long lastEntryId = Math.min(from.getLastAddConfirmed(), firstEntryId + MAX_ENTRIES_PER_COPY_READ - 1);
+        from.asyncReadEntries(firstEntryId, lastEntryId, (rc, lh, entries, ctx) -> {
+            if (rc != BKException.Code.OK) {
+                promise.completeExceptionally(BKException.create(rc));
+                return;
+            }
+            scheduler.execute(() -> {
+                while (entries.hasMoreElements()) {
+                    LedgerEntry entry = entries.nextElement();
+                    ByteBuf buf = entry.getEntryBuffer();
+                    try (RawMessage m = RawMessageImpl.deserializeFrom(buf)) {
+                        if (!promise.isDone()) {
+                            copyMessage(topic, m, to, index, isKeyKept, outstanding, promise);
+                        }
+                    } finally {
+                        buf.release();
+                    }
+                }
+                copyCompactedLedgerLoop(topic, from, to, index, lastEntryId + 1, isKeyKept, outstanding, promise);
+            });
+        }, null);
+    }
+
+    private void copyMessage(String topic, RawMessage m, LedgerHandle to, CompactedLedgerIndex.Builder index,
+                             Predicate<String> isKeyKept, Semaphore outstanding, CompletableFuture<Void> promise) {
+        Optional<RawMessage> messageToAdd;
+        List<String> keys = index != null ? new ArrayList<>() : null;
+        mxBean.addCompactionReadOp(topic, m.getHeadersAndPayload().readableBytes());
+        if (RawBatchConverter.isReadableBatch(m)) {
+            try {
+                messageToAdd = RawBatchConverter.rebatchMessage(m,
+                        collectRetainedKeys((key, id) -> isKeyKept.test(key), keys));
+            } catch (IOException ioe) {
+                log.info("Error decoding batch for message {}. Whole batch will be included in output",
+                        m.getMessageId(), ioe);
+                messageToAdd = Optional.of(m);
+            }
+        } else {
+            Pair<String, Integer> keyAndSize = extractKeyAndSize(m);
+            messageToAdd = keyAndSize == null || isKeyKept.test(keyAndSize.getLeft())
+                    ? Optional.of(m) : Optional.empty();
+            if (keyAndSize != null && keys != null) {
+                keys.add(keyAndSize.getLeft());
+            }
+        }
+        if (messageToAdd.isEmpty()) {
+            mxBean.addCompactionRemovedEvent(topic);
+            return;
+        }
+        RawMessage message = messageToAdd.get();
+        try {
+            outstanding.acquire();
+            if (index != null) {
+                index.add(message.getMessageIdData(), keys);
+            }
+            addToCompactedLedger(to, message, topic).whenComplete((res, exception) -> {
+                outstanding.release();
+                if (exception != null) {
+                    promise.completeExceptionally(exception);
+                }
+            });
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            promise.completeExceptionally(ie);
+        } finally {
+            if (message != m) {
+                message.close();
+            }
+        }
+    }
+
     private CompletableFuture<Long> phaseTwoSeekThenLoop(RawReader reader, MessageId from, MessageId to,
-            MessageId lastReadId, Map<String, MessageId> latestForKey, BookKeeper bk, LedgerHandle ledger) {
+            MessageId lastReadId, BiPredicate<String, MessageId> isLatestForKey, BookKeeper bk, LedgerHandle ledger,
+            Map<String, byte[]> metadata, CompactedLedgerIndex.Builder index) {
         CompletableFuture<Long> promise = new CompletableFuture<>();
+        AtomicReference<LedgerHandle> indexLedger = new AtomicReference<>();
 
         reader.seekAsync(from).thenCompose((v) -> {
             Semaphore outstanding = new Semaphore(MAX_OUTSTANDING);
             CompletableFuture<Void> loopPromise = new CompletableFuture<>();
-            phaseTwoLoop(reader, to, latestForKey, ledger, outstanding, loopPromise);
+            phaseTwoLoop(reader, to, isLatestForKey, ledger, index, outstanding, loopPromise);
             return loopPromise;
         }).thenCompose((v) -> closeLedger(ledger))
-                .thenCompose((v) -> reader.acknowledgeCumulativeAsync(lastReadId,
-                        Map.of(COMPACTED_TOPIC_LEDGER_PROPERTY, ledger.getId())))
+                .thenCompose((v) -> writeIndexLedger(bk, metadata, index))
+                .thenCompose((indexLh) -> {
+                    Map<String, Long> properties = new HashMap<>();
+                    properties.put(COMPACTED_TOPIC_LEDGER_PROPERTY, ledger.getId());
+                    if (indexLh != null) {
+                        indexLedger.set(indexLh);
+                        properties.put(COMPACTED_TOPIC_INDEX_LEDGER_PROPERTY, indexLh.getId());
+                    }
+                    return reader.acknowledgeCumulativeAsync(lastReadId, properties);
+                })
                 .whenComplete((res, exception) -> {
                     if (exception != null) {
+                        if (indexLedger.get() != null) {
+                            deleteLedger(bk, indexLedger.get()).exceptionally(exception2 -> {
+                                log.warn("Cleanup of index ledger {} failed", indexLedger.get(), exception2);
+                                return null;
+                            });
+                        }
                         deleteLedger(bk, ledger).whenComplete((res2, exception2) -> {
                             if (exception2 != null) {
                                 log.warn("Cleanup of ledger {} for failed", ledger, exception2);
@@ -222,8 +466,9 @@ public class TwoPhaseCompactor extends Compactor {
         return promise;
     }
 
-    private void phaseTwoLoop(RawReader reader, MessageId to, Map<String, MessageId> latestForKey,
-                              LedgerHandle lh, Semaphore outstanding, CompletableFuture<Void> promise) {
+    private void phaseTwoLoop(RawReader reader, MessageId to, BiPredicate<String, MessageId> isLatestForKey,
+                              LedgerHandle lh, CompactedLedgerIndex.Builder index, Semaphore outstanding,
+                              CompletableFuture<Void> promise) {
         if (promise.isDone()) {
             return;
         }
@@ -235,11 +480,11 @@ public class TwoPhaseCompactor extends Compactor {
             try {
                 MessageId id = m.getMessageId();
                 Optional<RawMessage> messageToAdd = Optional.empty();
+                List<String> keys = index != null ? new ArrayList<>() : null;
                 mxBean.addCompactionReadOp(reader.getTopic(), m.getHeadersAndPayload().readableBytes());
                 if (RawBatchConverter.isReadableBatch(m)) {
                     try {
-                        messageToAdd = RawBatchConverter.rebatchMessage(
-                                m, (key, subid) -> subid.equals(latestForKey.get(key)));
+                        messageToAdd = RawBatchConverter.rebatchMessage(m, collectRetainedKeys(isLatestForKey, keys));
                     } catch (IOException ioe) {
                         log.info("Error decoding batch for message {}. Whole batch will be included in output",
                                 id, ioe);
@@ -247,16 +492,17 @@ public class TwoPhaseCompactor extends Compactor {
                     }
                 } else {
                     Pair<String, Integer> keyAndSize = extractKeyAndSize(m);
-                    MessageId msg;
                     if (keyAndSize == null) { // pass through messages without a key
                         messageToAdd = Optional.of(m);
-                    } else if ((msg = latestForKey.get(keyAndSize.getLeft())) != null
-                            && msg.equals(id)) { // consider message only if present into latestForKey map
+                    } else if (isLatestForKey.test(keyAndSize.getLeft(), id)) { // consider message only if latest
                         if (keyAndSize.getRight() <= 0) {
                             promise.completeExceptionally(new IllegalArgumentException(
                                     "Compaction phase found empty record from sorted key-map"));
                         }
                         messageToAdd = Optional.of(m);
+                        if (keys != null) {
+                            keys.add(keyAndSize.getLeft());
+                        }
                     }
                 }
 
@@ -264,6 +510,9 @@ public class TwoPhaseCompactor extends Compactor {
                     RawMessage message = messageToAdd.get();
                     try {
                         outstanding.acquire();
+                        if (index != null) {
+                            index.add(message.getMessageIdData(), keys);
+                        }
                         CompletableFuture<Void> addFuture = addToCompactedLedger(lh, message, reader.getTopic())
                                 .whenComplete((res, exception2) -> {
                                     outstanding.release();
@@ -299,7 +548,7 @@ public class TwoPhaseCompactor extends Compactor {
                     }
                     return;
                 }
-                phaseTwoLoop(reader, to, latestForKey, lh, outstanding, promise);
+                phaseTwoLoop(reader, to, isLatestForKey, lh, index, outstanding, promise);
             } finally {
                 m.close();
             }
@@ -309,6 +558,70 @@ public class TwoPhaseCompactor extends Compactor {
         });
     }
 
+    /**
+     * Collect the keys of the messages of a batch that are retained by a filter.
+     *
+     * @param keys the keys that are retained, or null if they don't need to be collected
+     */
+    private static BiPredicate<String, MessageId> collectRetainedKeys(BiPredicate<String, MessageId> filter,
+                                                                      List<String> keys) {
+        if (keys == null) {
+            return filter;
+        }
+        return (key, id) -> {
+            if (filter.test(key, id)) {
+                keys.add(key);
+                return true;
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Write the index of a compacted ledger to a new ledger, in as many entries as it needs.
+     *
+     * @return the closed index ledger, or null if there is no index to write
+     */
+    private CompletableFuture<LedgerHandle> writeIndexLedger(BookKeeper bk, Map<String, byte[]> metadata,
+                                                             CompactedLedgerIndex.Builder index) {
+        if (index == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        byte[] serialized;
+        try {
+            serialized = index.build().toByteArray();
+        } catch (IOException e) {
+            return FutureUtil.failedFuture(e);
+        }
+        return createLedger(bk, metadata).thenCompose(indexLedger -> {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int offset = 0; offset < serialized.length; offset += MAX_INDEX_ENTRY_SIZE) {
+                int length = Math.min(MAX_INDEX_ENTRY_SIZE, serialized.length - offset);
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                indexLedger.asyncAddEntry(Unpooled.wrappedBuffer(serialized, offset, length),
+                        (rc, ledger, eid, ctx) -> {
+                            if (rc != BKException.Code.OK) {
+                                future.completeExceptionally(BKException.create(rc));
+                            } else {
+                                future.complete(null);
+                            }
+                        }, null);
+                futures.add(future);
+            }
+            return FutureUtil.waitForAll(futures)
+                    .thenCompose(__ -> closeLedger(indexLedger))
+                    .thenApply(__ -> indexLedger)
+                    .whenComplete((__, exception) -> {
+                        if (exception != null) {
+                            deleteLedger(bk, indexLedger).exceptionally(exception2 -> {
+                                log.warn("Cleanup of index ledger {} failed", indexLedger, exception2);
+                                return null;
+                            });
+                        }
+                    });
+        });
+    }
+
     protected CompletableFuture<LedgerHandle> createLedger(BookKeeper bk, Map<String, byte[]> metadata) {
         CompletableFuture<LedgerHandle> bkf = new CompletableFuture<>();
 
@@ -332,6 +645,25 @@ public class TwoPhaseCompactor extends Compactor {
         return bkf;
     }
 
+    protected CompletableFuture<LedgerHandle> openLedger(BookKeeper bk, long ledgerId) {
+        CompletableFuture<LedgerHandle> bkf = new CompletableFuture<>();
+        try {
+            bk.asyncOpenLedger(ledgerId,
+                    Compactor.COMPACTED_TOPIC_LEDGER_DIGEST_TYPE,
+                    Compactor.COMPACTED_TOPIC_LEDGER_PASSWORD,
+                    (rc, ledger, ctx) -> {
+                        if (rc != BKException.Code.OK) {
+                            bkf.completeExceptionally(BKException.create(rc));
+                        } else {
+                            bkf.complete(ledger);
+                        }
+                    }, null);
+        } catch (Throwable t) {
+            return FutureUtil.failedFuture(t);
+        }
+        return bkf;
+    }
+
     protected CompletableFuture<Void> deleteLedger(BookKeeper bk, LedgerHandle lh) {
         CompletableFuture<Void> bkf = new CompletableFuture<>();
         try {
@@ -386,7 +718,7 @@ public class TwoPhaseCompactor extends Compactor {
         return bkf;
     }
 
-    private static Pair<String, Integer> extractKeyAndSize(RawMessage m) {
+    static Pair<String, Integer> extractKeyAndSize(RawMessage m) {
         ByteBuf headersAndPayload = m.getHeadersAndPayload();
         MessageMetadata msgMetadata = Commands.parseMessageMetadata(headersAndPayload);
         if (msgMetadata.hasPartitionKey()) {
@@ -405,12 +737,15 @@ public class TwoPhaseCompactor extends Compactor {
         final MessageId to; // last undeleted messageId
         final MessageId lastReadId; // last read messageId
         final Map<String, MessageId> latestForKey;
+        final Set<String> deletedKeys; // keys deleted since the horizon, if the compaction is incremental
 
-        PhaseOneResult(MessageId from, MessageId to, MessageId lastReadId, Map<String, MessageId> latestForKey) {
+        PhaseOneResult(MessageId from, MessageId to, MessageId lastReadId, Map<String, MessageId> latestForKey,
+                       Set<String> deletedKeys) {
             this.from = from;
             this.to = to;
             this.lastReadId = lastReadId;
             this.latestForKey = latestForKey;
+            this.deletedKeys = deletedKeys;
         }
     }
 
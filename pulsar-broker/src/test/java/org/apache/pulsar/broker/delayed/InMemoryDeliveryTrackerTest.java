@@ -21,6 +21,8 @@ package org.apache.pulsar.broker.delayed;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
@@ -34,9 +36,11 @@ import io.netty.util.concurrent.DefaultThreadFactory;
 import java.lang.reflect.Method;
 import java.time.Clock;
 import java.util.NavigableMap;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -207,6 +211,54 @@ public class InMemoryDeliveryTrackerTest extends AbstractDeliveryTrackerTest {
         tracker.close();
     }
 
+    @Test
+    public void testDeliveryQuantum() throws Exception {
+        PersistentDispatcherMultipleConsumers dispatcher = mock(PersistentDispatcherMultipleConsumers.class);
+        AtomicLong clockTime = new AtomicLong();
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).then(x -> clockTime.get());
+
+        Timer timer = mock(Timer.class);
+        NavigableMap<Long, TimerTask> tasks = new TreeMap<>();
+        when(timer.newTimeout(any(), anyLong(), any())).then(invocation -> {
+            long scheduleAt = clockTime.get() + invocation.getArgument(1, Long.class);
+            tasks.put(scheduleAt, invocation.getArgument(0, TimerTask.class));
+            Timeout t = mock(Timeout.class);
+            when(t.cancel()).then(i -> tasks.remove(scheduleAt) != null);
+            return t;
+        });
+
+        InMemoryDelayedDeliveryTracker tracker = new InMemoryDelayedDeliveryTracker(dispatcher, timer, 1, clock,
+                true, 0, 100);
+        clockTime.set(10);
+
+        // Messages that are due within the same quantum don't move the timer, which fires at the end of the quantum
+        assertTrue(tracker.addMessage(1, 3, 150));
+        assertTrue(tracker.addMessage(1, 2, 120));
+        assertTrue(tracker.addMessage(1, 1, 110));
+        verify(timer, times(1)).newTimeout(any(), anyLong(), any());
+        assertEquals(tasks.keySet(), Set.of(200L));
+
+        clockTime.set(199);
+        assertFalse(tracker.hasMessageAvailable());
+
+        // Messages are released together once the quantum is over
+        clockTime.set(200);
+        assertTrue(tracker.hasMessageAvailable());
+        assertEquals(tracker.getScheduledMessages(10), Set.of(new PositionImpl(1, 1), new PositionImpl(1, 2),
+                new PositionImpl(1, 3)));
+
+        // A message due before the current cutoff is released right away, as long as the quantum isn't over
+        clockTime.set(250);
+        assertFalse(tracker.addMessage(1, 4, 200));
+        assertTrue(tracker.addMessage(1, 5, 210));
+        assertFalse(tracker.hasMessageAvailable());
+        clockTime.set(300);
+        assertEquals(tracker.getScheduledMessages(10), Set.of(new PositionImpl(1, 5)));
+
+        tracker.close();
+    }
+
     @Test
     public void testClose() throws Exception {
         Timer timer = new HashedWheelTimer(new DefaultThreadFactory("pulsar-in-memory-delayed-delivery-test"),
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.delayed;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.lang.reflect.Method;
+import java.time.Clock;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.broker.service.persistent.PersistentDispatcherMultipleConsumers;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class TimingWheelDeliveryTrackerTest extends AbstractDeliveryTrackerTest {
+
+    @DataProvider(name = "delayedTracker")
+    public Object[][] provider(Method method) throws Exception {
+        dispatcher = mock(PersistentDispatcherMultipleConsumers.class);
+        clock = mock(Clock.class);
+        clockTime = new AtomicLong();
+        when(clock.millis()).then(x -> clockTime.get());
+
+        final String methodName = method.getName();
+        return switch (methodName) {
+            case "test" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 1, clock, false, 1)
+            }};
+            case "testWithTimer" -> {
+                Timer timer = mock(Timer.class);
+                NavigableMap<Long, TimerTask> tasks = new TreeMap<>();
+
+                when(timer.newTimeout(any(), anyLong(), any())).then(invocation -> {
+                    TimerTask task = invocation.getArgument(0, TimerTask.class);
+                    long timeout = invocation.getArgument(1, Long.class);
+                    TimeUnit unit = invocation.getArgument(2, TimeUnit.class);
+                    long scheduleAt = clockTime.get() + unit.toMillis(timeout);
+                    tasks.put(scheduleAt, task);
+
+                    Timeout t = mock(Timeout.class);
+                    when(t.cancel()).then(i -> {
+                        tasks.remove(scheduleAt, task);
+                        return null;
+                    });
+                    return t;
+                });
+
+                yield new Object[][]{{
+                        new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 1, clock, false, 1),
+                        tasks
+                }};
+            }
+            case "testAddWithinTickTime" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 100, clock, false, 1)
+            }};
+            case "testAddMessageWithStrictDelay" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 100, clock, true, 1)
+            }};
+            case "testAddMessageWithDeliverAtTimeAfterNowBeforeTickTimeFrequencyWithStrict" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 1000, clock, true, 1)
+            }};
+            case "testAddMessageWithDeliverAtTimeAfterNowAfterTickTimeFrequencyWithStrict" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 100000, clock, true, 1)
+            }};
+            case "testAddMessageWithDeliverAtTimeAfterFullTickTimeWithStrict" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 500, clock, true, 1)
+            }};
+            case "testResolution" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 1, clock, true, 100)
+            }};
+            case "testWithFixedDelays", "testWithMixedDelays" -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 500, clock, true, 1, 100, 0)
+            }};
+            default -> new Object[][]{{
+                    new TimingWheelDelayedDeliveryTracker(dispatcher, timer, 1, clock, true, 1)
+            }};
+        };
+    }
+
+    @Test(dataProvider = "delayedTracker")
+    public void testResolution(TimingWheelDelayedDeliveryTracker tracker) {
+        clockTime.set(1000);
+        assertTrue(tracker.addMessage(1, 1, 1050));
+        assertTrue(tracker.addMessage(1, 2, 1150));
+
+        // Messages are delivered once the whole interval of their deliverAt time has passed, never earlier
+        clockTime.set(1050);
+        assertFalse(tracker.hasMessageAvailable());
+        clockTime.set(1098);
+        assertFalse(tracker.hasMessageAvailable());
+        clockTime.set(1099);
+        assertTrue(tracker.hasMessageAvailable());
+        assertEquals(tracker.getScheduledMessages(10), new TreeSet<>(Set.of(new PositionImpl(1, 1))));
+        assertEquals(tracker.nextDeliveryTime(), 1199);
+
+        clockTime.set(1199);
+        assertEquals(tracker.getScheduledMessages(10), new TreeSet<>(Set.of(new PositionImpl(1, 2))));
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+
+        tracker.close();
+    }
+
+    /**
+     * Delays spread over several levels of the wheel, with the clock moving by steps of random sizes, have to be
+     * delivered as soon as they are due, in the same order as by the in memory tracker.
+     */
+    @Test(dataProvider = "delayedTracker")
+    public void testMatchesPriorityQueue(TimingWheelDelayedDeliveryTracker tracker) {
+        InMemoryDelayedDeliveryTracker expected =
+                new InMemoryDelayedDeliveryTracker(dispatcher, timer, 1, clock, true, 0);
+        Random random = new Random(1);
+        long start = 1_700_000_000_000L;
+        clockTime.set(start);
+        for (int i = 0; i < 10_000; i++) {
+            // Up to about one day of delay, with more short delays than long ones
+            long deliverAt = start + 1 + (long) (Math.pow(random.nextDouble(), 4) * TimeUnit.DAYS.toMillis(1));
+            assertTrue(tracker.addMessage(i / 100, i % 100, deliverAt));
+            assertTrue(expected.addMessage(i / 100, i % 100, deliverAt));
+        }
+        assertEquals(tracker.getNumberOfDelayedMessages(), 10_000);
+
+        while (expected.getNumberOfDelayedMessages() > 0) {
+            long step = random.nextInt(4) == 0 ? random.nextInt(10_000_000) : random.nextInt(1000);
+            clockTime.addAndGet(step);
+            assertEquals(tracker.hasMessageAvailable(), expected.hasMessageAvailable());
+            NavigableSet<PositionImpl> positions = expected.getScheduledMessages(Integer.MAX_VALUE);
+            assertEquals(tracker.getScheduledMessages(Integer.MAX_VALUE), positions);
+            assertEquals(tracker.getNumberOfDelayedMessages(), expected.getNumberOfDelayedMessages());
+        }
+        assertEquals(tracker.getScheduledMessages(10), new TreeSet<>());
+
+        expected.close();
+        tracker.close();
+    }
+
+    @Test(dataProvider = "delayedTracker")
+    public void testNextDeliveryTime(TimingWheelDelayedDeliveryTracker tracker) {
+        clockTime.set(10_000);
+        assertTrue(tracker.addMessage(1, 1, 10_000 + TimeUnit.HOURS.toMillis(1)));
+        long next = tracker.nextDeliveryTime();
+        assertTrue(next > 10_000 && next <= 10_000 + TimeUnit.HOURS.toMillis(1));
+
+        // The timer wakes up when the message has to be moved down the wheel, until it's due
+        int wakeups = 0;
+        while (!tracker.hasMessageAvailable()) {
+            next = tracker.nextDeliveryTime();
+            assertTrue(next > clockTime.get());
+            clockTime.set(next);
+            wakeups++;
+        }
+        assertTrue(wakeups < 10);
+        assertEquals(clockTime.get(), 10_000 + TimeUnit.HOURS.toMillis(1));
+        assertEquals(tracker.getScheduledMessages(10).size(), 1);
+
+        tracker.close();
+    }
+
+    @Test(dataProvider = "delayedTracker")
+    public void testClearAndReuse(TimingWheelDelayedDeliveryTracker tracker) {
+        long initialMemory = tracker.getBufferMemoryUsage();
+        clockTime.set(100);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(tracker.addMessage(1, i, 200 + i * 1000L));
+        }
+        assertTrue(tracker.getBufferMemoryUsage() > initialMemory);
+        tracker.clear();
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+        assertEquals(tracker.getBufferMemoryUsage(), initialMemory);
+        assertFalse(tracker.hasMessageAvailable());
+
+        assertTrue(tracker.addMessage(2, 1, 150));
+        clockTime.set(150);
+        assertEquals(tracker.getScheduledMessages(10), new TreeSet<>(Set.of(new PositionImpl(2, 1))));
+
+        tracker.close();
+    }
+
+    @Test(dataProvider = "delayedTracker")
+    public void testWithFixedDelays(TimingWheelDelayedDeliveryTracker tracker) {
+        for (int i = 1; i < tracker.getFixedDelayDetectionLookahead(); i++) {
+            assertTrue(tracker.addMessage(i, i, i * 10));
+        }
+        assertFalse(tracker.shouldPauseAllDeliveries());
+
+        long lookahead = tracker.getFixedDelayDetectionLookahead();
+        assertTrue(tracker.addMessage(lookahead, lookahead, lookahead * 10));
+        assertTrue(tracker.shouldPauseAllDeliveries());
+
+        // A message is due on the earliest tick of the wheel
+        clockTime.set(10);
+        assertFalse(tracker.shouldPauseAllDeliveries());
+
+        // Empty the tracker
+        clockTime.set(lookahead * 10);
+        while (tracker.getScheduledMessages(100).size() > 0) {
+            // keep polling
+        }
+        assertEquals(tracker.getNumberOfDelayedMessages(), 0);
+        assertFalse(tracker.shouldPauseAllDeliveries());
+
+        tracker.close();
+    }
+
+    @Test(dataProvider = "delayedTracker")
+    public void testWithMixedDelays(TimingWheelDelayedDeliveryTracker tracker) {
+        long lookahead = tracker.getFixedDelayDetectionLookahead();
+        for (int i = 1; i <= lookahead; i++) {
+            assertTrue(tracker.addMessage(i, i, 1000 + i * 10));
+        }
+        assertTrue(tracker.shouldPauseAllDeliveries());
+
+        // Add message with earlier delivery time
+        assertTrue(tracker.addMessage(lookahead + 1, 1, 10));
+        assertFalse(tracker.shouldPauseAllDeliveries());
+
+        tracker.close();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.awaitility.Awaitility;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class DispatchSchedulerTest {
+
+    private OrderedExecutor executor;
+    private DispatchScheduler scheduler;
+    private final List<String> dispatched = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeMethod
+    public void setup() {
+        executor = OrderedExecutor.newBuilder().numThreads(1).name("dispatch-scheduler-test").build();
+        scheduler = new DispatchScheduler(executor, 1, 100, 10);
+        dispatched.clear();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void cleanup() {
+        executor.shutdownNow();
+    }
+
+    private void submit(DispatchScheduler.Flow flow, long bytes, int entries, boolean atTail, String name) {
+        flow.submit(bytes, entries, atTail, () -> dispatched.add(name));
+    }
+
+    /**
+     * Runs the submissions while the thread of the scheduler is busy, then waits for all the dispatches.
+     */
+    private void runBlocked(int expectedDispatches, Runnable submissions) throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        executor.chooseThread(0L).execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        submissions.run();
+        blocked.countDown();
+        Awaitility.await().untilAsserted(() -> assertEquals(dispatched.size(), expectedDispatches));
+    }
+
+    @Test
+    public void testFlowsShareTheThread() throws Exception {
+        DispatchScheduler.Flow a = scheduler.newFlow("a");
+        DispatchScheduler.Flow b = scheduler.newFlow("b");
+        runBlocked(6, () -> {
+            // The first flow reads all its batches before the second one gets to read
+            for (int i = 0; i < 3; i++) {
+                submit(a, 100, 1, false, "a" + i);
+            }
+            for (int i = 0; i < 3; i++) {
+                submit(b, 100, 1, false, "b" + i);
+            }
+        });
+        assertEquals(dispatched, Arrays.asList("a0", "b0", "a1", "b1", "a2", "b2"));
+    }
+
+    @Test
+    public void testLargeDispatchWaitsForItsQuantum() throws Exception {
+        DispatchScheduler.Flow large = scheduler.newFlow("large");
+        DispatchScheduler.Flow small = scheduler.newFlow("small");
+        runBlocked(4, () -> {
+            // 250 bytes take three rounds of 100 bytes, and 20 entries two rounds of 10 entries
+            submit(large, 250, 1, false, "large");
+            submit(small, 10, 1, false, "small0");
+            submit(small, 10, 20, false, "small1");
+            submit(small, 10, 1, false, "small2");
+        });
+        assertEquals(dispatched, Arrays.asList("small0", "large", "small1", "small2"));
+    }
+
+    @Test
+    public void testTailFlowsFirst() throws Exception {
+        DispatchScheduler.Flow backlog = scheduler.newFlow("backlog");
+        DispatchScheduler.Flow tail = scheduler.newFlow("tail");
+        runBlocked(3, () -> {
+            submit(backlog, 100, 1, false, "backlog0");
+            submit(backlog, 100, 1, false, "backlog1");
+            submit(tail, 100, 1, true, "tail");
+        });
+        assertEquals(dispatched, Arrays.asList("tail", "backlog0", "backlog1"));
+        assertTrue(tail.getAverageSchedulingLatencyMs() > 0);
+    }
+}
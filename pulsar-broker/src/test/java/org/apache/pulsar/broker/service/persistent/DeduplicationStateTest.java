@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.broker.service.persistent;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.apache.pulsar.broker.service.persistent.proto.DeduplicationSnapshotFormat.DeduplicationSnapshot;
+import org.apache.pulsar.broker.service.persistent.proto.DeduplicationSnapshotFormat.ProducerSequenceId;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker")
+public class DeduplicationStateTest {
+
+    @Test
+    public void testSequenceIds() {
+        DeduplicationState state = new DeduplicationState();
+        state.highestSequencedPushed.put("p1", 5);
+        state.highestSequencedPushed.put("p2", 7);
+        state.highestSequencedPersisted.put("p1", 3);
+
+        assertEquals(state.highestSequencedPushed.get("p1").longValue(), 5);
+        assertEquals(state.highestSequencedPushed.get("p2").longValue(), 7);
+        assertEquals(state.highestSequencedPersisted.get("p1").longValue(), 3);
+        assertNull(state.highestSequencedPersisted.get("p2"));
+        assertNull(state.highestSequencedPushed.get("p3"));
+        assertEquals(state.highestSequencedPushed.get("p1", -1L), 5);
+        assertEquals(state.highestSequencedPushed.get("p3", -1L), -1);
+        assertEquals(state.highestSequencedPushed.size(), 2);
+        assertEquals(state.highestSequencedPersisted.size(), 1);
+        assertEquals(state.getNumberOfProducers(), 2);
+
+        state.resetPushed();
+        assertEquals(state.highestSequencedPushed.get("p1").longValue(), 3);
+        assertNull(state.highestSequencedPushed.get("p2"));
+        assertEquals(state.highestSequencedPushed.size(), 1);
+
+        state.remove("p1");
+        assertFalse(state.highestSequencedPushed.containsKey("p1"));
+        assertFalse(state.highestSequencedPersisted.containsKey("p1"));
+        assertEquals(state.highestSequencedPushed.size(), 0);
+        assertEquals(state.highestSequencedPersisted.size(), 0);
+
+        state.clear();
+        assertEquals(state.getNumberOfProducers(), 0);
+    }
+
+    @Test
+    public void testIdsAreReused() {
+        DeduplicationState state = new DeduplicationState();
+        for (int i = 0; i < 100; i++) {
+            state.highestSequencedPersisted.put("a" + i, i);
+        }
+        long size = state.getEstimatedSizeInBytes();
+        for (int i = 0; i < 100; i++) {
+            state.remove("a" + i);
+        }
+        assertTrue(state.getEstimatedSizeInBytes() < size);
+        for (int i = 0; i < 100; i++) {
+            state.highestSequencedPersisted.put("b" + i, i);
+        }
+        assertEquals(state.getEstimatedSizeInBytes(), size);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(state.highestSequencedPersisted.get("b" + i).longValue(), i);
+        }
+        assertEquals(state.getPersisted(10).size(), 10);
+    }
+
+    @Test
+    public void testSnapshots() {
+        DeduplicationState state = new DeduplicationState();
+        state.highestSequencedPersisted.put("p1", 1);
+        state.highestSequencedPersisted.put("p2", 2);
+        state.highestSequencedPushed.put("p3", 3);
+
+        DeduplicationSnapshot snapshot = state.takeSnapshot(1, 10, true);
+        assertTrue(snapshot.getFull());
+        assertEquals(snapshot.getLedgerId(), 1);
+        assertEquals(snapshot.getEntryId(), 10);
+        assertEquals(toMap(snapshot), Map.of("p1", 1L, "p2", 2L));
+        assertEquals(state.getNumberOfChanges(), 0);
+
+        state.highestSequencedPersisted.put("p2", 5);
+        state.highestSequencedPersisted.put("p4", 4);
+        state.remove("p1");
+        assertEquals(state.getNumberOfChanges(), 3);
+        snapshot = state.takeSnapshot(1, 20, false);
+        assertFalse(snapshot.getFull());
+        assertEquals(toMap(snapshot), Map.of("p2", 5L, "p4", 4L));
+        assertEquals(snapshot.getRemovedProducersList(), List.of("p1"));
+        assertEquals(state.getNumberOfChanges(), 0);
+
+        // The changes of a snapshot that failed to be stored go to the next one
+        state.snapshotFailed(snapshot);
+        state.highestSequencedPersisted.put("p5", 5);
+        snapshot = state.takeSnapshot(1, 30, false);
+        assertEquals(toMap(snapshot), Map.of("p2", 5L, "p4", 4L, "p5", 5L));
+        assertEquals(snapshot.getRemovedProducersList(), List.of("p1"));
+    }
+
+    private static Map<String, Long> toMap(DeduplicationSnapshot snapshot) {
+        return snapshot.getSequenceIdsList().stream()
+                .collect(Collectors.toMap(ProducerSequenceId::getProducerName, ProducerSequenceId::getSequenceId));
+    }
+}
@@ -49,7 +49,6 @@ import org.apache.pulsar.broker.service.BrokerService;
 import org.apache.pulsar.broker.service.Topic;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
 import org.apache.pulsar.common.protocol.Commands;
-import org.apache.pulsar.common.util.collections.ConcurrentOpenHashMap;
 import org.testng.annotations.Test;
 
 @Slf4j
@@ -216,13 +215,45 @@ public class MessageDuplicationTest {
         assertFalse(inactiveProducers.containsKey(producerName3));
         field = MessageDeduplication.class.getDeclaredField("highestSequencedPushed");
         field.setAccessible(true);
-        ConcurrentOpenHashMap<String, Long> highestSequencedPushed = (ConcurrentOpenHashMap<String, Long>) field.get(messageDeduplication);
+        DeduplicationState.SequenceIds highestSequencedPushed = (DeduplicationState.SequenceIds) field.get(messageDeduplication);
 
         assertEquals((long) highestSequencedPushed.get(producerName1), 2L);
         assertFalse(highestSequencedPushed.containsKey(producerName2));
         assertFalse(highestSequencedPushed.containsKey(producerName3));
     }
 
+    @Test
+    public void testInactiveProducersAreBounded() {
+        PulsarService pulsarService = mock(PulsarService.class);
+        ServiceConfiguration serviceConfiguration = new ServiceConfiguration();
+        serviceConfiguration.setBrokerDeduplicationEntriesInterval(BROKER_DEDUPLICATION_ENTRIES_INTERVAL);
+        serviceConfiguration.setBrokerDeduplicationMaxNumberOfProducers(BROKER_DEDUPLICATION_MAX_NUMBER_PRODUCERS);
+        serviceConfiguration.setReplicatorPrefix(REPLICATOR_PREFIX);
+
+        doReturn(serviceConfiguration).when(pulsarService).getConfiguration();
+        MessageDeduplication messageDeduplication = spyWithClassAndConstructorArgs(MessageDeduplication.class,
+                pulsarService, mock(PersistentTopic.class), mock(ManagedLedger.class));
+        doReturn(true).when(messageDeduplication).isEnabled();
+
+        int numberOfProducers = BROKER_DEDUPLICATION_MAX_NUMBER_PRODUCERS + 5;
+        for (int i = 0; i < numberOfProducers; i++) {
+            String producerName = "producer" + i;
+            messageDeduplication.producerAdded(producerName);
+            messageDeduplication.isDuplicate(getPublishContext(producerName, 0), getMessage(producerName, 0));
+        }
+        // Active producers are not discarded
+        assertEquals(messageDeduplication.highestSequencedPushed.size(), numberOfProducers);
+
+        for (int i = 0; i < numberOfProducers; i++) {
+            messageDeduplication.producerRemoved("producer" + i);
+        }
+        // The least recently active producers are discarded
+        assertEquals(messageDeduplication.highestSequencedPushed.size(), BROKER_DEDUPLICATION_MAX_NUMBER_PRODUCERS);
+        for (int i = 0; i < numberOfProducers; i++) {
+            assertEquals(messageDeduplication.highestSequencedPushed.containsKey("producer" + i), i >= 5);
+        }
+    }
+
     @Test
     public void testIsDuplicateWithFailure() {
 
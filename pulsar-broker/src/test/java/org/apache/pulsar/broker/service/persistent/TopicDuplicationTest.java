@@ -31,6 +31,8 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import lombok.Cleanup;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.mledger.ManagedCursor;
 import org.apache.bookkeeper.mledger.impl.PositionImpl;
 import org.apache.pulsar.broker.service.Topic;
@@ -380,6 +382,56 @@ public class TopicDuplicationTest extends ProducerConsumerBase {
 
     }
 
+    @Test(timeOut = 30000)
+    public void testDuplicationSnapshotLedger() throws Exception {
+        cleanup();
+        conf.setBrokerDeduplicationEnabled(true);
+        conf.setBrokerDeduplicationEntriesInterval(5);
+        conf.setBrokerDeduplicationSnapshotLedgerEnabled(true);
+        setup();
+
+        final String topicName = testTopic + UUID.randomUUID().toString();
+        final String producerName = "my-producer";
+        Producer<String> producer = pulsarClient
+                .newProducer(Schema.STRING).topic(topicName).enableBatching(false).producerName(producerName).create();
+        int msgNum = 23;
+        for (int i = 0; i < msgNum; i++) {
+            producer.newMessage().value("msg" + i).send();
+        }
+        PersistentTopic persistentTopic =
+                (PersistentTopic) pulsar.getBrokerService().getTopicIfExists(topicName).get().get();
+        ManagedCursor managedCursor = persistentTopic.getMessageDeduplication().getManagedCursor();
+        Awaitility.await().untilAsserted(() -> {
+            assertEquals(((PositionImpl) managedCursor.getMarkDeletedPosition()).getEntryId(), 19);
+            assertNotNull(managedCursor.getCursorProperties().get(MessageDeduplication.SNAPSHOT_LEDGER_PROPERTY));
+        });
+        // The sequence ids are not stored in the cursor properties anymore
+        assertTrue(managedCursor.getProperties().isEmpty());
+        assertTrue(persistentTopic.getMessageDeduplication().getEstimatedStateSizeInBytes() > 0);
+        producer.close();
+
+        // The sequence ids are recovered from the ledger, and from the entries after the last snapshot
+        admin.topics().unload(topicName);
+        producer = pulsarClient.newProducer(Schema.STRING).topic(topicName).enableBatching(false)
+                .producerName(producerName).create();
+        assertEquals(producer.getLastSequenceId(), msgNum - 1);
+        persistentTopic = (PersistentTopic) pulsar.getBrokerService().getTopicIfExists(topicName).get().get();
+        assertEquals((long) persistentTopic.getMessageDeduplication().highestSequencedPersisted.get(producerName),
+                msgNum - 1);
+        producer.close();
+
+        // The ledger is deleted along with the topic
+        long ledgerId = Long.parseLong(persistentTopic.getMessageDeduplication().getManagedCursor()
+                .getCursorProperties().get(MessageDeduplication.SNAPSHOT_LEDGER_PROPERTY));
+        admin.topics().delete(topicName);
+        Awaitility.await().untilAsserted(() -> {
+            CompletableFuture<Integer> rc = new CompletableFuture<>();
+            pulsar.getBookKeeperClient().asyncOpenLedger(ledgerId, BookKeeper.DigestType.CRC32C, new byte[0],
+                    (code, lh, ctx) -> rc.complete(code), null);
+            assertNotEquals(rc.get().intValue(), BKException.Code.OK);
+        });
+    }
+
     @Test(timeOut = 30000)
     public void testNamespacePolicyApi() throws Exception {
         Integer interval = admin.namespaces().getDeduplicationSnapshotInterval(myNamespace);
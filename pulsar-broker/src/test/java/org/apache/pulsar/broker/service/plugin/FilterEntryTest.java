@@ -31,13 +31,16 @@ import static org.testng.Assert.assertTrue;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
 
+import io.prometheus.client.CollectorRegistry;
 import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import lombok.Cleanup;
@@ -584,4 +587,63 @@ public class FilterEntryTest extends BrokerTestBase {
 
 
     }
+
+    @Test
+    public void testFilterOnExecutor() throws Exception {
+        cleanup();
+        conf.setEntryFilterExecutorThreads(2);
+        setup();
+        String topic = "persistent://prop/ns-abc/topic" + UUID.randomUUID();
+        String subName = "sub";
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING)
+                .enableBatching(false).topic(topic).create();
+        for (int i = 0; i < 100; i++) {
+            producer.newMessage().property("index", String.valueOf(i))
+                    .property("action", i % 2 == 0 ? "REJECT" : "ACCEPT").value("test").send();
+        }
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        EntryFilter filter = new EntryFilter() {
+            @Override
+            public FilterResult filterEntry(Entry entry, FilterContext context) {
+                threads.add(Thread.currentThread().getName());
+                Assert.assertEquals(context.getProperty("index"), context.getProperties().get("index"));
+                Assert.assertNull(context.getProperty("missing"));
+                return FilterResult.valueOf(context.getProperty("action"));
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        String filterName = "filter-" + UUID.randomUUID();
+        setMockBrokerFilter(List.of(new EntryFilterWithClassLoader(filterName, filter, mock(NarClassLoader.class))));
+
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING).topic(topic)
+                .subscriptionInitialPosition(Earliest)
+                .subscriptionName(subName).subscribe();
+        int counter = 0;
+        while (true) {
+            Message<String> message = consumer.receive(1, TimeUnit.SECONDS);
+            if (message != null) {
+                assertEquals("ACCEPT", message.getProperty("action"));
+                counter++;
+                consumer.acknowledge(message);
+            } else {
+                break;
+            }
+        }
+        assertEquals(50, counter);
+        assertTrue(threads.stream().anyMatch(name -> name.startsWith("pulsar-entry-filter")));
+
+        String[] labels = {"entry_filter", "result"};
+        assertEquals(50.0, CollectorRegistry.defaultRegistry.getSampleValue(
+                "pulsar_broker_entry_filter_results_total", labels, new String[]{filterName, "REJECT"}));
+        assertEquals(50.0, CollectorRegistry.defaultRegistry.getSampleValue(
+                "pulsar_broker_entry_filter_results_total", labels, new String[]{filterName, "ACCEPT"}));
+        assertEquals(100.0, CollectorRegistry.defaultRegistry.getSampleValue(
+                "pulsar_broker_entry_filter_latency_seconds_count", new String[]{"entry_filter"},
+                new String[]{filterName}));
+    }
 }
@@ -40,9 +40,12 @@ import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Cleanup;
 import org.apache.pulsar.broker.PulsarServerException;
 import org.apache.pulsar.broker.auth.MockedPulsarServiceBaseTest;
 import org.apache.pulsar.broker.service.schema.SchemaRegistry.SchemaAndMetadata;
+import org.apache.pulsar.broker.service.schema.exceptions.IncompatibleSchemaException;
 import org.apache.pulsar.broker.stats.PrometheusMetricsTest;
 import org.apache.pulsar.broker.stats.prometheus.PrometheusMetricsGenerator;
 import org.apache.pulsar.common.naming.TopicName;
@@ -313,6 +316,48 @@ public class SchemaServiceTest extends MockedPulsarServiceBaseTest {
         putSchema(schemaId1, schemaData3, version(2), SchemaCompatibilityStrategy.BACKWARD_TRANSITIVE);
     }
 
+    @Test
+    public void testCompatibilityCheckCache() throws Exception {
+        AtomicInteger checks = new AtomicInteger();
+        Map<SchemaType, SchemaCompatibilityCheck> checkMap = new HashMap<>();
+        checkMap.put(SchemaType.AVRO, new AvroSchemaCompatibilityCheck() {
+            @Override
+            public void checkCompatible(Iterable<SchemaData> from, SchemaData to,
+                                        SchemaCompatibilityStrategy strategy) throws IncompatibleSchemaException {
+                checks.incrementAndGet();
+                super.checkCompatible(from, to, strategy);
+            }
+        });
+        BookkeeperSchemaStorage storage = new BookkeeperSchemaStorage(pulsar);
+        storage.start();
+        @Cleanup
+        SchemaRegistryServiceImpl service = new SchemaRegistryServiceImpl(storage, checkMap, MockClock, null, 10);
+
+        assertEquals(service.putSchemaIfAbsent(schemaId1, schemaData1, SchemaCompatibilityStrategy.FULL).get(),
+                version(0));
+        assertTrue(service.isCompatible(schemaId1, schemaData2, SchemaCompatibilityStrategy.BACKWARD).get());
+        assertTrue(service.isCompatible(schemaId1, schemaData2, SchemaCompatibilityStrategy.BACKWARD).get());
+        assertEquals(checks.get(), 1);
+
+        // The result of another strategy isn't reused
+        service.isCompatible(schemaId1, schemaData2, SchemaCompatibilityStrategy.FORWARD).get();
+        assertEquals(checks.get(), 2);
+
+        // Adding a schema invalidates the results of the topic
+        assertEquals(service.putSchemaIfAbsent(schemaId1, schemaData2, SchemaCompatibilityStrategy.BACKWARD).get(),
+                version(1));
+        int checksAfterPut = checks.get();
+        assertTrue(service.isCompatible(schemaId1, schemaData3, SchemaCompatibilityStrategy.BACKWARD).get());
+        assertEquals(checks.get(), checksAfterPut + 1);
+
+        // Incompatibilities are cached too
+        for (int i = 0; i < 2; i++) {
+            Assert.expectThrows(ExecutionException.class, () -> service.isCompatible(schemaId1, schemaData3,
+                    SchemaCompatibilityStrategy.BACKWARD_TRANSITIVE).get());
+        }
+        assertEquals(checks.get(), checksAfterPut + 2);
+    }
+
     @Test
     public void testSchemaStorageFailed() throws Exception {
         conf.setSchemaRegistryStorageClassName("Unknown class name");
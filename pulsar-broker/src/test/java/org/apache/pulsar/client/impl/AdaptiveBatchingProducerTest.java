@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.ProducerConsumerBase;
+import org.apache.pulsar.client.api.Schema;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-impl")
+public class AdaptiveBatchingProducerTest extends ProducerConsumerBase {
+
+    @BeforeClass
+    @Override
+    protected void setup() throws Exception {
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @AfterClass(alwaysRun = true)
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    @Test(timeOut = 30_000)
+    public void testLowRateDoesNotWaitForPublishDelay() throws Exception {
+        String topic = "persistent://my-property/my-ns/adaptive-batching-low-rate";
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING)
+                .topic(topic)
+                .batchingMaxPublishDelay(10, TimeUnit.SECONDS)
+                .enableAdaptiveBatching(true)
+                .create();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            // Without batch in flight, each message is sent right away instead of after 10 seconds
+            producer.sendAsync("msg-" + i).get(5, TimeUnit.SECONDS);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        assertEquals(((ProducerImpl<String>) producer).getEffectiveBatchSize(), 1);
+    }
+
+    @Test(timeOut = 60_000)
+    public void testBurst() throws Exception {
+        String topic = "persistent://my-property/my-ns/adaptive-batching-burst";
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("sub")
+                .subscribe();
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING)
+                .topic(topic)
+                .batchingMaxPublishDelay(10, TimeUnit.SECONDS)
+                .enableAdaptiveBatching(true)
+                .create();
+
+        int numMessages = 10_000;
+        List<CompletableFuture<MessageId>> futures = new ArrayList<>(numMessages);
+        for (int i = 0; i < numMessages; i++) {
+            futures.add(producer.sendAsync("msg-" + i));
+        }
+        // The last messages are sent when the batches in flight are acked, without waiting for the publish delay
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        assertTrue(((ProducerImpl<String>) producer).getEffectiveBatchSize() >= 1);
+
+        for (int i = 0; i < numMessages; i++) {
+            Message<String> msg = consumer.receive(10, TimeUnit.SECONDS);
+            assertNotNull(msg);
+            assertEquals(msg.getValue(), "msg-" + i);
+            consumer.acknowledge(msg);
+        }
+    }
+}
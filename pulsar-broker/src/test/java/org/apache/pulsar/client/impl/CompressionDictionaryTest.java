@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+import com.google.common.collect.Sets;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.pulsar.broker.service.persistent.PersistentTopic;
+import org.apache.pulsar.client.admin.LongRunningProcessStatus;
+import org.apache.pulsar.client.api.CompressionType;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.ProducerConsumerBase;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.apache.pulsar.client.api.Reader;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.impl.conf.ClientConfigurationData;
+import org.apache.pulsar.common.api.proto.ProtocolVersion;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.common.policies.data.ClusterData;
+import org.apache.pulsar.common.policies.data.TenantInfoImpl;
+import org.apache.pulsar.common.protocol.schema.StoredSchema;
+import org.apache.pulsar.common.schema.LongSchemaVersion;
+import org.apache.pulsar.common.util.netty.EventLoopUtil;
+import org.awaitility.Awaitility;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-impl")
+public class CompressionDictionaryTest extends ProducerConsumerBase {
+
+    @BeforeClass
+    @Override
+    protected void setup() throws Exception {
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @AfterClass(alwaysRun = true)
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    private static String payload(Random random) {
+        return "{\"deviceId\":\"sensor-" + random.nextInt(10_000) + "\",\"timestamp\":"
+                + (1_700_000_000_000L + random.nextInt()) + ",\"temperature\":" + random.nextInt(100)
+                + ",\"status\":\"" + (random.nextBoolean() ? "online" : "offline") + "\"}";
+    }
+
+    private Producer<String> newProducer(String topic) throws Exception {
+        return pulsarClient.newProducer(Schema.STRING)
+                .topic(topic)
+                .compressionType(CompressionType.ZSTD)
+                .enableCompressionDictionary(true)
+                .batchingMaxMessages(20)
+                .batchingMaxPublishDelay(1, TimeUnit.SECONDS)
+                .create();
+    }
+
+    /**
+     * Send until the dictionary trained on the first messages is used, then send a few more batches.
+     *
+     * @return the number of messages sent
+     */
+    private static int sendUntilTrained(Producer<String> producer, Random random) throws Exception {
+        int sent = 0;
+        ProducerCompressionDictionary dictionary = ((ProducerImpl<String>) producer).getCompressionDictionary();
+        while (dictionary.getCodec() == null) {
+            for (int i = 0; i < 100; i++) {
+                producer.newMessage().key("key-" + sent % 10).value(sent++ + payload(random)).sendAsync();
+            }
+            producer.flush();
+        }
+        for (int i = 0; i < 100; i++) {
+            producer.newMessage().key("key-" + sent % 10).value(sent++ + payload(random)).sendAsync();
+        }
+        producer.flush();
+        return sent;
+    }
+
+    private Optional<StoredSchema> getLatestDictionary(String topic) throws Exception {
+        return pulsar.getCompressionDictionaryRegistry()
+                .getDictionary(TopicName.get(topic).getSchemaName(), Optional.empty()).get();
+    }
+
+    private PulsarClientImpl newClient(ProtocolVersion protocolVersion, EventLoopGroup eventLoop) throws Exception {
+        ClientConfigurationData conf = new ClientConfigurationData();
+        conf.setServiceUrl(pulsar.getBrokerServiceUrl());
+        // The subscriptions that are refused are retried until the operation timeout
+        conf.setOperationTimeoutMs(5_000);
+        ConnectionPool pool = new ConnectionPool(conf, eventLoop,
+                () -> new ClientCnx(conf, eventLoop, protocolVersion.getValue()));
+        return new PulsarClientImpl(conf, eventLoop, pool);
+    }
+
+    @Test(timeOut = 60_000)
+    public void testTrainAndConsume() throws Exception {
+        String topic = "persistent://my-property/my-ns/compression-dictionary-" + System.nanoTime();
+
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("sub")
+                .subscribe();
+        @Cleanup
+        Producer<String> producer = newProducer(topic);
+
+        Random random = new Random(1);
+        int sent = sendUntilTrained(producer, random);
+        assertTrue(sent >= ProducerCompressionDictionary.MAX_SAMPLES);
+        long dictionaryId = ((ProducerImpl<String>) producer).getCompressionDictionary().getCodec().getDictionaryId();
+        assertEquals(((LongSchemaVersion) getLatestDictionary(topic).get().version).getVersion(), dictionaryId);
+
+        // The consumer loads the dictionary from the broker, and receives the messages in order
+        random = new Random(1);
+        for (int i = 0; i < sent; i++) {
+            Message<String> msg = consumer.receive(10, TimeUnit.SECONDS);
+            assertNotNull(msg);
+            assertEquals(msg.getValue(), i + payload(random));
+            consumer.acknowledge(msg);
+        }
+
+        // A new producer starts with the latest dictionary of the topic
+        @Cleanup
+        Producer<String> newProducer = newProducer(topic);
+        ProducerCompressionDictionary dictionary = ((ProducerImpl<String>) newProducer).getCompressionDictionary();
+        Awaitility.await().until(() -> dictionary.getCodec() != null);
+        assertEquals(dictionary.getCodec().getDictionaryId(), dictionaryId);
+        newProducer.send("after restart");
+        assertEquals(consumer.receive(10, TimeUnit.SECONDS).getValue(), "after restart");
+
+        // The dictionaries are deleted with the topic
+        consumer.close();
+        producer.close();
+        newProducer.close();
+        admin.topics().delete(topic);
+        assertFalse(getLatestDictionary(topic).isPresent());
+    }
+
+    @Test(timeOut = 60_000)
+    public void testCompaction() throws Exception {
+        String topic = "persistent://my-property/my-ns/compression-dictionary-compaction-" + System.nanoTime();
+
+        @Cleanup
+        Producer<String> producer = newProducer(topic);
+        int sent = sendUntilTrained(producer, new Random(1));
+
+        admin.topics().triggerCompaction(topic);
+        Awaitility.await().until(() -> admin.topics().compactionStatus(topic).status
+                == LongRunningProcessStatus.Status.SUCCESS);
+        producer.newMessage().key("last").value("last").send();
+
+        // The compacted topic has the latest message of each key
+        Map<String, String> expected = new HashMap<>();
+        expected.put("last", "last");
+        Random random = new Random(1);
+        for (int i = 0; i < sent; i++) {
+            expected.put("key-" + i % 10, i + payload(random));
+        }
+        @Cleanup
+        Reader<String> reader = pulsarClient.newReader(Schema.STRING)
+                .topic(topic)
+                .startMessageId(MessageId.earliest)
+                .readCompacted(true)
+                .create();
+        Map<String, String> received = new HashMap<>();
+        while (reader.hasMessageAvailable()) {
+            Message<String> msg = reader.readNext(10, TimeUnit.SECONDS);
+            assertNotNull(msg);
+            received.put(msg.getKey(), msg.getValue());
+        }
+        assertEquals(received, expected);
+    }
+
+    @Test(timeOut = 60_000)
+    public void testConsumerWithoutCompressionDictionaries() throws Exception {
+        String topic = "persistent://my-property/my-ns/compression-dictionary-old-consumer-" + System.nanoTime();
+        @Cleanup("shutdownGracefully")
+        EventLoopGroup eventLoop = EventLoopUtil.newEventLoopGroup(1, false,
+                new DefaultThreadFactory("old-client"));
+        @Cleanup
+        PulsarClientImpl oldClient = newClient(ProtocolVersion.v20, eventLoop);
+
+        // A dictionary can't be added while a consumer doesn't support them
+        Consumer<String> oldConsumer = oldClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("old-sub")
+                .subscribe();
+        @Cleanup
+        Producer<String> producer = newProducer(topic);
+        Random random = new Random(1);
+        for (int i = 0; i < ProducerCompressionDictionary.MAX_SAMPLES + 100; i++) {
+            producer.sendAsync(i + payload(random));
+        }
+        producer.flush();
+        assertNull(((ProducerImpl<String>) producer).getCompressionDictionary().getCodec());
+        assertFalse(getLatestDictionary(topic).isPresent());
+        random = new Random(1);
+        for (int i = 0; i < ProducerCompressionDictionary.MAX_SAMPLES + 100; i++) {
+            Message<String> msg = oldConsumer.receive(10, TimeUnit.SECONDS);
+            assertNotNull(msg);
+            assertEquals(msg.getValue(), i + payload(random));
+            oldConsumer.acknowledge(msg);
+        }
+        oldConsumer.close();
+
+        // Once the topic has a dictionary, the consumers that don't support them are rejected
+        @Cleanup
+        Producer<String> newProducer = newProducer(topic);
+        sendUntilTrained(newProducer, random);
+        assertThrows(PulsarClientException.class, () -> oldClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("old-sub")
+                .subscribe());
+
+        // The topic still has a dictionary after it is reloaded
+        admin.topics().unload(topic);
+        assertThrows(PulsarClientException.class, () -> oldClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("old-sub")
+                .subscribe());
+    }
+
+    @Test(timeOut = 60_000)
+    public void testReplication() throws Exception {
+        String topic = "persistent://my-property/my-ns/compression-dictionary-replication-" + System.nanoTime();
+
+        @Cleanup
+        Producer<String> producer = newProducer(topic);
+        sendUntilTrained(producer, new Random(1));
+
+        // The replicators of the topic are not started, the remote cluster doesn't have its dictionaries
+        admin.clusters().createCluster("remote", ClusterData.builder().serviceUrl("http://localhost:1").build());
+        admin.tenants().updateTenant("my-property",
+                new TenantInfoImpl(Sets.newHashSet("appid1", "appid2"), Sets.newHashSet("test", "remote")));
+        admin.namespaces().setNamespaceReplicationClusters("my-property/my-ns", Sets.newHashSet("test", "remote"));
+        try {
+            PersistentTopic persistentTopic = (PersistentTopic) pulsar.getBrokerService().getTopicReference(topic).get();
+            Awaitility.await().until(() -> persistentTopic.getHierarchyTopicPolicies().getReplicationClusters().get()
+                    .contains("remote"));
+            persistentTopic.checkReplication().get();
+            assertTrue(persistentTopic.getReplicators().isEmpty());
+        } finally {
+            admin.namespaces().setNamespaceReplicationClusters("my-property/my-ns", Sets.newHashSet("test"));
+        }
+    }
+}
@@ -54,7 +54,6 @@ import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
-import org.testng.collections.Sets;
 
 @Slf4j
 @Test(groups = "broker-impl")
@@ -185,9 +184,11 @@ public class ConsumerAckTest extends ProducerConsumerBase {
         assertTrue(interceptor.individualAckedMessageIdList.isEmpty());
         assertTrue(interceptor.cumulativeAckedMessageIdList.isEmpty());
         assertEquals(consumer.getStats().getNumAcksSent(), 0);
-        assertNotNull(consumer.getUnAckedMessageTracker().messageIdPartitionMap);
-        assertEquals(consumer.getUnAckedMessageTracker().messageIdPartitionMap.keySet(),
-                Sets.newHashSet(firstEntryMessageId, secondEntryMessageId));
+        UnAckedMessageTimingWheelTracker unAckedMessageTracker =
+                (UnAckedMessageTimingWheelTracker) consumer.getUnAckedMessageTracker();
+        assertEquals(unAckedMessageTracker.size(), 2);
+        assertTrue(unAckedMessageTracker.contains(firstEntryMessageId));
+        assertTrue(unAckedMessageTracker.contains(secondEntryMessageId));
         return new AckTestData(consumer, interceptor, messageIds);
     }
 
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.DeadLetterPolicy;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.ProducerConsumerBase;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-impl")
+public class LazyMessageDecodingTest extends ProducerConsumerBase {
+
+    private static final int NUM_MESSAGES = 100;
+
+    @BeforeClass
+    @Override
+    protected void setup() throws Exception {
+        super.internalSetup();
+        super.producerBaseSetup();
+    }
+
+    @AfterClass(alwaysRun = true)
+    @Override
+    protected void cleanup() throws Exception {
+        super.internalCleanup();
+    }
+
+    private void produce(String topic) throws Exception {
+        @Cleanup
+        Producer<String> producer = pulsarClient.newProducer(Schema.STRING)
+                .topic(topic)
+                .batchingMaxPublishDelay(1, TimeUnit.SECONDS)
+                .batchingMaxMessages(10)
+                .create();
+        for (int i = 0; i < NUM_MESSAGES; i++) {
+            producer.newMessage()
+                    .key(i % 2 == 0 ? "key-" + i : null)
+                    .property("index", Integer.toString(i))
+                    .eventTime(1000 + i)
+                    .value("msg-" + i)
+                    .sendAsync();
+        }
+        producer.flush();
+    }
+
+    @Test(timeOut = 30_000)
+    public void testReceiveAndAcknowledge() throws Exception {
+        String topic = "persistent://my-property/my-ns/lazy-message-decoding";
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("sub")
+                .lazyMessageDecoding(true)
+                .subscribe();
+        produce(topic);
+
+        for (int i = 0; i < NUM_MESSAGES; i++) {
+            Message<String> msg = consumer.receive(5, TimeUnit.SECONDS);
+            assertNotNull(msg);
+            assertEquals(msg.getValue(), "msg-" + i);
+            assertEquals(msg.hasKey(), i % 2 == 0);
+            assertEquals(msg.getKey(), i % 2 == 0 ? "key-" + i : null);
+            assertEquals(msg.getProperty("index"), Integer.toString(i));
+            assertEquals(msg.getEventTime(), 1000 + i);
+            assertTrue(msg.getMessageId() instanceof BatchMessageIdImpl);
+            if (i % 3 == 0) {
+                consumer.acknowledge(msg);
+            } else {
+                consumer.acknowledgeAsync(msg).get();
+            }
+            // The message is released once it's acknowledged
+            assertNull(msg.getMessageId());
+        }
+        assertNull(consumer.receive(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeOut = 30_000)
+    public void testRedeliveryAfterNegativeAcknowledge() throws Exception {
+        String topic = "persistent://my-property/my-ns/lazy-message-decoding-redelivery";
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("sub")
+                .subscriptionType(SubscriptionType.Shared)
+                .negativeAckRedeliveryDelay(100, TimeUnit.MILLISECONDS)
+                .lazyMessageDecoding(true)
+                .subscribe();
+        produce(topic);
+
+        Message<String> msg = consumer.receive(5, TimeUnit.SECONDS);
+        assertEquals(msg.getValue(), "msg-0");
+        consumer.negativeAcknowledge(msg);
+        msg.release();
+
+        // The negatively acknowledged message is decoded again from the redelivered batch
+        while (true) {
+            msg = consumer.receive(5, TimeUnit.SECONDS);
+            assertNotNull(msg);
+            if (msg.getValue().equals("msg-0")) {
+                break;
+            }
+            consumer.acknowledge(msg);
+        }
+        assertEquals(msg.getKey(), "key-0");
+        assertEquals(msg.getProperty("index"), "0");
+        assertEquals(msg.getRedeliveryCount(), 1);
+        consumer.acknowledge(msg);
+    }
+
+    @Test(timeOut = 30_000)
+    public void testIgnoredWithDeadLetterPolicy() throws Exception {
+        String topic = "persistent://my-property/my-ns/lazy-message-decoding-dlq";
+        @Cleanup
+        Consumer<String> consumer = pulsarClient.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("sub")
+                .subscriptionType(SubscriptionType.Shared)
+                .deadLetterPolicy(DeadLetterPolicy.builder().maxRedeliverCount(3).build())
+                .lazyMessageDecoding(true)
+                .subscribe();
+        produce(topic);
+
+        for (int i = 0; i < NUM_MESSAGES; i++) {
+            Message<String> msg = consumer.receive(5, TimeUnit.SECONDS);
+            consumer.acknowledge(msg);
+            // The message is still usable after being acknowledged
+            assertNotNull(msg.getMessageId());
+            assertEquals(msg.getValue(), "msg-" + i);
+        }
+    }
+}
@@ -252,7 +252,7 @@ public class MessageChunkingTest extends ProducerConsumerBase {
             testMessageOrderAndDuplicates(messageSet, receivedMessage, expectedMessage);
         }
 
-        retryStrategically((test) -> consumer.getUnAckedMessageTracker().messageIdPartitionMap.isEmpty(), 10,
+        retryStrategically((test) -> consumer.getUnAckedMessageTracker().isEmpty(), 10,
                 TimeUnit.SECONDS.toMillis(1));
 
         msg = null;
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import java.util.List;
+import org.apache.bookkeeper.mledger.impl.PositionImpl;
+import org.apache.pulsar.common.api.proto.MessageIdData;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-compaction")
+public class CompactedLedgerIndexTest {
+
+    private static MessageIdData id(long ledgerId, long entryId) {
+        return new MessageIdData().setLedgerId(ledgerId).setEntryId(entryId);
+    }
+
+    private static CompactedLedgerIndex buildIndex() {
+        CompactedLedgerIndex.Builder builder = new CompactedLedgerIndex.Builder(3);
+        // 7 entries over 2 ledgers, in 3 blocks of 3, 3 and 1 entries
+        builder.add(id(1, 0), List.of("a"));
+        builder.add(id(1, 4), List.of("b", "c"));
+        builder.add(id(1, 8), null);
+        builder.add(id(2, 1), List.of("d"));
+        builder.add(id(2, 3), List.of());
+        builder.add(id(2, 5), List.of("e"));
+        builder.add(id(3, 0), List.of("f"));
+        return builder.build();
+    }
+
+    @Test
+    public void testBlocks() {
+        CompactedLedgerIndex index = buildIndex();
+        assertEquals(index.getNumberOfEntries(), 7);
+        assertEquals(index.getNumberOfBlocks(), 3);
+        assertEquals(index.getFirstEntryOfBlock(1), 3);
+        assertEquals(index.getLastEntryOfBlock(1), 5);
+        assertEquals(index.getFirstEntryOfBlock(2), 6);
+        assertEquals(index.getLastEntryOfBlock(2), 6);
+
+        assertEquals(index.findBlock(PositionImpl.EARLIEST), -1);
+        assertEquals(index.findBlock(PositionImpl.get(1, 0)), -1);
+        assertEquals(index.findBlock(PositionImpl.get(1, 1)), 0);
+        assertEquals(index.findBlock(PositionImpl.get(2, 1)), 0);
+        assertEquals(index.findBlock(PositionImpl.get(2, 2)), 1);
+        assertEquals(index.findBlock(PositionImpl.get(3, 0)), 1);
+        assertEquals(index.findBlock(PositionImpl.get(3, 1)), 2);
+        assertEquals(index.findBlock(PositionImpl.LATEST), 2);
+    }
+
+    @Test
+    public void testKeys() {
+        CompactedLedgerIndex index = buildIndex();
+        assertTrue(index.mayContainKey(0, "a"));
+        assertTrue(index.mayContainKey(0, "c"));
+        assertFalse(index.mayContainKey(0, "d"));
+        assertTrue(index.mayContainKey(1, "d"));
+        assertTrue(index.mayContainKey(1, "e"));
+        assertTrue(index.mayContainKey(2, "f"));
+        assertFalse(index.mayContainKey(2, "a"));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        CompactedLedgerIndex index = CompactedLedgerIndex.fromByteArray(buildIndex().toByteArray());
+        assertEquals(index.getBlockSize(), 3);
+        assertEquals(index.getNumberOfEntries(), 7);
+        assertEquals(index.getNumberOfBlocks(), 3);
+        assertEquals(index.findBlock(PositionImpl.get(2, 2)), 1);
+        assertTrue(index.mayContainKey(1, "e"));
+        assertFalse(index.mayContainKey(1, "a"));
+    }
+
+    @Test
+    public void testEmptyIndex() throws Exception {
+        CompactedLedgerIndex index = CompactedLedgerIndex.fromByteArray(
+                new CompactedLedgerIndex.Builder(3).build().toByteArray());
+        assertEquals(index.getNumberOfEntries(), 0);
+        assertEquals(index.getNumberOfBlocks(), 0);
+        assertEquals(index.findBlock(PositionImpl.LATEST), -1);
+    }
+}
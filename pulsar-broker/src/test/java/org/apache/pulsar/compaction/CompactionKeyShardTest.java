@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.io.FileUtils;
+import org.apache.pulsar.client.impl.BatchMessageIdImpl;
+import org.apache.pulsar.client.impl.MessageIdImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-compaction")
+public class CompactionKeyShardTest {
+    private Path spillDirectory;
+
+    @BeforeMethod
+    public void setup() throws Exception {
+        spillDirectory = Files.createTempDirectory("compaction-key-shard-test");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void cleanup() throws Exception {
+        FileUtils.deleteDirectory(spillDirectory.toFile());
+    }
+
+    private void putKeys(CompactionKeyShard shard) throws Exception {
+        // Positions of the same key are added out of order, as the shard is shared by several threads
+        shard.put("a", 1, 2, -1, false);
+        shard.put("b", 1, 3, -1, false);
+        shard.put("a", 1, 1, -1, false);
+        shard.put("c", 1, 4, 0, false);
+        shard.put("c", 1, 4, 1, false);
+        shard.put(null, 1, 5, 0, false);
+        shard.put("b", 2, 0, -1, true);
+        shard.put("d", 2, 1, -1, false);
+        shard.put("d", 2, 2, -1, true);
+        shard.put("d", 2, 3, -1, false);
+    }
+
+    private void assertRetained(CompactionKeyShard shard) {
+        assertEquals(shard.getRetainedKeys(), 4);
+        assertTrue(shard.isRetained(new MessageIdImpl(1, 2, -1)));
+        assertFalse(shard.isRetained(new MessageIdImpl(1, 1, -1)));
+        assertFalse(shard.isRetained(new MessageIdImpl(1, 3, -1)));
+        assertFalse(shard.isRetained(new BatchMessageIdImpl(1, 4, -1, 0)));
+        assertTrue(shard.isRetained(new BatchMessageIdImpl(1, 4, -1, 1)));
+        assertTrue(shard.isRetained(new BatchMessageIdImpl(1, 5, -1, 0)));
+        assertFalse(shard.isRetained(new MessageIdImpl(2, 0, -1)));
+        assertFalse(shard.isRetained(new MessageIdImpl(2, 1, -1)));
+        assertTrue(shard.isRetained(new MessageIdImpl(2, 3, -1)));
+    }
+
+    @Test
+    public void testLatestPositionsInMemory() throws Exception {
+        CompactionKeyShard shard = new CompactionKeyShard(Long.MAX_VALUE, spillDirectory);
+        putKeys(shard);
+        assertEquals(shard.getNumberOfSpillFiles(), 0);
+        assertEquals(shard.complete(), 0);
+        assertRetained(shard);
+        shard.close();
+    }
+
+    @Test
+    public void testLatestPositionsSpilled() throws Exception {
+        // Spill the positions on every new key
+        CompactionKeyShard shard = new CompactionKeyShard(1, spillDirectory);
+        putKeys(shard);
+        assertTrue(shard.getNumberOfSpillFiles() > 1);
+        assertTrue(shard.complete() > 0);
+        assertRetained(shard);
+
+        // The spilled files are deleted once merged
+        File[] files = spillDirectory.toFile().listFiles();
+        assertEquals(files.length, 0);
+        shard.close();
+    }
+}
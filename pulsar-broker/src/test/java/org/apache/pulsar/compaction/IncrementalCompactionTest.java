@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.mledger.Position;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.pulsar.broker.service.persistent.PersistentTopic;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.CryptoKeyReader;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageRoutingMode;
+import org.apache.pulsar.client.api.Producer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-impl")
+public class IncrementalCompactionTest extends CompactionTest {
+    private TwoPhaseCompactor compactor;
+
+    @BeforeMethod
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        compactor = new TwoPhaseCompactor(conf, pulsarClient, bk, compactionScheduler);
+    }
+
+    private Optional<Pair<Position, Long>> getCompactionHorizonAndLedgerId(String topic) {
+        return pulsar.getBrokerService().getTopicReference(topic)
+                .map(t -> ((CompactedTopicImpl) ((PersistentTopic) t).getCompactedTopic()))
+                .flatMap(CompactedTopicImpl::getCompactionHorizonAndLedgerId);
+    }
+
+    @Override
+    protected long compact(String topic) throws ExecutionException, InterruptedException {
+        // Compact on top of the current compacted ledger of the topic, if any
+        Optional<Pair<Position, Long>> horizonAndLedgerId = getCompactionHorizonAndLedgerId(topic);
+        if (horizonAndLedgerId.isEmpty()) {
+            return compactor.compact(topic).get();
+        }
+        return compactor.compactIncrementally(topic, horizonAndLedgerId.get().getLeft(),
+                horizonAndLedgerId.get().getRight()).get();
+    }
+
+    @Override
+    protected long compact(String topic, CryptoKeyReader cryptoKeyReader)
+            throws ExecutionException, InterruptedException {
+        return compact(topic);
+    }
+
+    @Override
+    protected TwoPhaseCompactor getCompactor() {
+        return compactor;
+    }
+
+    @Test(timeOut = 60000, dataProvider = "lastDeletedBatching")
+    public void testIncrementalCompactionOfChangedKeys(boolean batching) throws Exception {
+        String topic = "persistent://my-property/use/my-ns/my-topic1";
+
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topic).enableBatching(batching)
+                .messageRoutingMode(MessageRoutingMode.SinglePartition).create();
+
+        pulsarClient.newConsumer().topic(topic).subscriptionName("sub1").readCompacted(true).subscribe().close();
+
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            producer.newMessage().key("key" + i).value(("value-0-" + i).getBytes(UTF_8)).sendAsync();
+            expected.put("key" + i, "value-0-" + i);
+        }
+        producer.flush();
+        compact(topic);
+        assertTrue(getCompactionHorizonAndLedgerId(topic).isPresent());
+
+        // Update some keys, delete others, and add new ones
+        for (int i = 0; i < 3; i++) {
+            producer.newMessage().key("key" + i).value(("value-1-" + i).getBytes(UTF_8)).sendAsync();
+            expected.put("key" + i, "value-1-" + i);
+        }
+        for (int i = 3; i < 5; i++) {
+            producer.newMessage().key("key" + i).value("".getBytes(UTF_8)).sendAsync();
+            expected.remove("key" + i);
+        }
+        for (int i = 10; i < 12; i++) {
+            producer.newMessage().key("key" + i).value(("value-1-" + i).getBytes(UTF_8)).sendAsync();
+            expected.put("key" + i, "value-1-" + i);
+        }
+        producer.flush();
+        compact(topic);
+
+        Map<String, String> compacted = new HashMap<>();
+        try (Consumer<byte[]> consumer = pulsarClient.newConsumer().topic(topic).subscriptionName("sub1")
+                .readCompacted(true).subscribe()) {
+            Message<byte[]> m;
+            while ((m = consumer.receive(2, TimeUnit.SECONDS)) != null) {
+                compacted.put(m.getKey(), new String(m.getData(), UTF_8));
+            }
+        }
+        assertEquals(compacted, expected);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.compaction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.broker.service.persistent.PersistentTopic;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.CryptoKeyReader;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.MessageRoutingMode;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.Reader;
+import org.apache.pulsar.common.policies.data.ClusterData;
+import org.apache.pulsar.common.policies.data.TenantInfoImpl;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "broker-impl")
+public class IndexedCompactionTest extends CompactionTest {
+    private TwoPhaseCompactor compactor;
+
+    @BeforeMethod
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        // Index every couple of entries, so that most compacted ledgers have several blocks
+        conf.setBrokerServiceCompactionIndexBlockSize(2);
+        compactor = new TwoPhaseCompactor(conf, pulsarClient, bk, compactionScheduler);
+    }
+
+    @Override
+    protected long compact(String topic) throws ExecutionException, InterruptedException {
+        return compactor.compact(topic).get();
+    }
+
+    @Override
+    protected long compact(String topic, CryptoKeyReader cryptoKeyReader)
+            throws ExecutionException, InterruptedException {
+        return compactor.compact(topic).get();
+    }
+
+    @Override
+    protected TwoPhaseCompactor getCompactor() {
+        return compactor;
+    }
+
+    private CompactedTopicContext getCompactedTopicContext(String topic) throws Exception {
+        PersistentTopic persistentTopic = (PersistentTopic) pulsar.getBrokerService().getTopicReference(topic).get();
+        return persistentTopic.getCompactedTopicContext().get();
+    }
+
+    @Test(timeOut = 60000, dataProvider = "lastDeletedBatching")
+    public void testGetCompactedMessageByKey(boolean batching) throws Exception {
+        admin.clusters().createCluster("test", ClusterData.builder().serviceUrl(pulsar.getWebServiceAddress()).build());
+        admin.tenants().createTenant("my-tenant", new TenantInfoImpl(Set.of(), Set.of("test")));
+        admin.namespaces().createNamespace("my-tenant/my-ns", Set.of("test"));
+        String topic = "persistent://my-tenant/my-ns/my-topic1";
+
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topic).enableBatching(batching)
+                .messageRoutingMode(MessageRoutingMode.SinglePartition).create();
+        pulsarClient.newConsumer().topic(topic).subscriptionName("sub1").readCompacted(true).subscribe().close();
+
+        // The topic is not compacted yet
+        assertNull(admin.topics().getCompactedMessageByKey(topic, "key0"));
+
+        Map<String, String> expected = new HashMap<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 20; i++) {
+                String value = "value-" + round + "-" + i;
+                producer.newMessage().key("key" + i).value(value.getBytes(UTF_8)).sendAsync();
+                expected.put("key" + i, value);
+            }
+        }
+        // Phase one skips the batches with a tombstone, so keep the tombstone in a batch of its own
+        producer.flush();
+        producer.newMessage().key("key19").value("".getBytes(UTF_8)).sendAsync();
+        expected.remove("key19");
+        producer.flush();
+        for (int i = 0; i < 10; i++) {
+            String value = "value-3-" + i;
+            producer.newMessage().key("key" + i).value(value.getBytes(UTF_8)).sendAsync();
+            expected.put("key" + i, value);
+        }
+        producer.flush();
+        compact(topic);
+
+        CompactedTopicContext context = getCompactedTopicContext(topic);
+        assertNotNull(context.getIndex());
+        assertEquals(context.getIndex().getNumberOfEntries(), context.getLedger().getLastAddConfirmed() + 1);
+
+        for (Map.Entry<String, String> e : expected.entrySet()) {
+            Message<byte[]> message = admin.topics().getCompactedMessageByKey(topic, e.getKey());
+            assertNotNull(message, e.getKey());
+            assertEquals(message.getKey(), e.getKey());
+            assertEquals(new String(message.getData(), UTF_8), e.getValue());
+        }
+        assertNull(admin.topics().getCompactedMessageByKey(topic, "key19"));
+        assertNull(admin.topics().getCompactedMessageByKey(topic, "unknown"));
+    }
+
+    @Test(timeOut = 60000)
+    public void testSeekWithIndex() throws Exception {
+        String topic = "persistent://my-property/use/my-ns/my-topic1";
+
+        Producer<byte[]> producer = pulsarClient.newProducer().topic(topic).enableBatching(false)
+                .messageRoutingMode(MessageRoutingMode.SinglePartition).create();
+        pulsarClient.newConsumer().topic(topic).subscriptionName("sub1").readCompacted(true).subscribe().close();
+
+        MessageId[] ids = new MessageId[10];
+        for (int i = 0; i < 10; i++) {
+            ids[i] = producer.newMessage().key("key" + i).value(("value-" + i).getBytes(UTF_8)).send();
+        }
+        compact(topic);
+        assertEquals(getCompactedTopicContext(topic).getIndex().getNumberOfBlocks(), 5);
+
+        // Start from each message, which is located through the index
+        for (int i = 0; i < 10; i++) {
+            try (Reader<byte[]> reader = pulsarClient.newReader().topic(topic).readCompacted(true)
+                    .startMessageId(ids[i]).startMessageIdInclusive().create()) {
+                for (int j = i; j < 10; j++) {
+                    Message<byte[]> message = reader.readNext(3, TimeUnit.SECONDS);
+                    assertNotNull(message);
+                    assertEquals(message.getKey(), "key" + j);
+                }
+            }
+        }
+
+        try (Consumer<byte[]> consumer = pulsarClient.newConsumer().topic(topic).subscriptionName("sub1")
+                .readCompacted(true).subscribe()) {
+            for (int i = 0; i < 10; i++) {
+                Message<byte[]> message = consumer.receive(3, TimeUnit.SECONDS);
+                assertNotNull(message);
+                assertEquals(message.getKey(), "key" + i);
+            }
+        }
+    }
+}
@@ -1681,6 +1681,33 @@ public interface Topics {
      */
     CompletableFuture<Message<byte[]>> getMessageByIdAsync(String topic, long ledgerId, long entryId);
 
+    /**
+     * Get the latest message of a key in a compacted topic, as of the compaction horizon.
+     *
+     * <p>The message is looked up with the index of the compacted ledger, which is only written when the compaction
+     * index is enabled in the broker.
+     *
+     * @param topic
+     *            Topic name
+     * @param key
+     *            Key of the message
+     * @return the latest message of the key, or null if the topic is not compacted or the key is not found
+     * @throws PulsarAdminException
+     *            Unexpected error
+     */
+    Message<byte[]> getCompactedMessageByKey(String topic, String key) throws PulsarAdminException;
+
+    /**
+     * Get the latest message of a key in a compacted topic, as of the compaction horizon, asynchronously.
+     *
+     * @param topic
+     *            Topic name
+     * @param key
+     *            Key of the message
+     * @return a future that can be used to track when the message is returned
+     */
+    CompletableFuture<Message<byte[]>> getCompactedMessageByKeyAsync(String topic, String key);
+
     /**
      * Get message ID published at or just after this absolute timestamp (in ms).
      * @param topic
@@ -134,4 +134,7 @@ public interface SubscriptionStats {
     long getFilterRejectedMsgCount();
 
     long getFilterRescheduledMsgCount();
+
+    /** The average time the dispatches of the subscription recently waited in the broker dispatch scheduler. */
+    double getDispatchSchedulingLatencyMs();
 }
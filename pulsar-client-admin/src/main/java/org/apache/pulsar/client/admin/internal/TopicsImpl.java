@@ -1010,6 +1010,57 @@ public class TopicsImpl extends BaseResource implements Topics {
         return sync(() -> getMessageByIdAsync(topic, ledgerId, entryId));
     }
 
+    @Override
+    public CompletableFuture<Message<byte[]>> getCompactedMessageByKeyAsync(String topic, String key) {
+        TopicName topicName = validateTopic(topic);
+        WebTarget path = topicPath(topicName, "compaction", "message").queryParam("key", key);
+        final CompletableFuture<Message<byte[]>> future = new CompletableFuture<>();
+        asyncGetRequest(path,
+                new InvocationCallback<Response>() {
+                    @Override
+                    public void completed(Response response) {
+                        try {
+                            // The entry of the key may be a batch that holds the messages of other keys
+                            Message<byte[]> latest = null;
+                            for (Message<byte[]> message : getMessagesFromHttpResponse(topicName.toString(),
+                                    response)) {
+                                if (key.equals(message.getKey())) {
+                                    latest = message;
+                                }
+                            }
+                            future.complete(latest);
+                        } catch (Exception e) {
+                            future.completeExceptionally(getApiException(e));
+                        }
+                    }
+
+                    @Override
+                    public void failed(Throwable throwable) {
+                        future.completeExceptionally(getApiException(throwable.getCause()));
+                    }
+                });
+        CompletableFuture<Message<byte[]>> result = new CompletableFuture<>();
+        future.handle((r, ex) -> {
+            if (ex != null) {
+                if (ex instanceof NotFoundException) {
+                    log.warn("Exception '{}' occurred while trying to get compacted message.", ex.getMessage());
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(ex);
+                }
+                return null;
+            }
+            result.complete(r);
+            return null;
+        });
+        return result;
+    }
+
+    @Override
+    public Message<byte[]> getCompactedMessageByKey(String topic, String key) throws PulsarAdminException {
+        return sync(() -> getCompactedMessageByKeyAsync(topic, key));
+    }
+
     @Override
     public CompletableFuture<MessageId> getMessageIdByTimestampAsync(String topic, long timestamp) {
         TopicName tn = validateTopic(topic);
@@ -1438,8 +1489,16 @@ public class TopicsImpl extends BaseResource implements Topics {
                         properties.put(entry.getKey(), entry.getValue());
                     }
                 }
+                // The key of a message of a batch is in its own metadata, the batch may have another one
+                MessageMetadata messageMetadata = new MessageMetadata().copyFrom(msgMetadataBuilder);
+                if (singleMessageMetadata.hasPartitionKey()) {
+                    messageMetadata.setPartitionKey(singleMessageMetadata.getPartitionKey())
+                            .setPartitionKeyB64Encoded(singleMessageMetadata.isPartitionKeyB64Encoded());
+                } else {
+                    messageMetadata.clearPartitionKey().clearPartitionKeyB64Encoded();
+                }
                 MessageImpl message = new MessageImpl<>(topic, batchMsgId, properties, singleMessagePayload,
-                        Schema.BYTES, msgMetadataBuilder);
+                        Schema.BYTES, messageMetadata);
                 if (brokerEntryMetadata != null) {
                     message.setBrokerEntryMetadata(brokerEntryMetadata);
                 }
@@ -773,6 +773,25 @@ public interface ConsumerBuilder<T> extends Cloneable {
      */
     ConsumerBuilder<T> poolMessages(boolean poolMessages);
 
+    /**
+     * Decode the messages of a batch lazily.
+     * <p/>
+     * When lazy decoding is enabled, the messages of a batch are pooled and share the buffer and the metadata of their
+     * batch: their properties and keys are only decoded when they are accessed, and the messages are released when
+     * they are acknowledged with {@link Consumer#acknowledge(Message)} or one of its variants taking the message. The
+     * application must not use a message after acknowledging it, and is responsible for calling Message.release() on
+     * the messages it doesn't acknowledge that way, as when {@link #poolMessages(boolean) pooling} messages.
+     * <p/>
+     * Lazy decoding is ignored when a {@link #deadLetterPolicy(DeadLetterPolicy) dead letter policy} is configured or
+     * {@link #enableRetry(boolean) retry} is enabled, since the messages are then kept until they're redelivered.
+     *
+     * <p>Default: false
+     *
+     * @param lazyMessageDecoding whether to decode the messages of a batch lazily
+     * @return the consumer builder instance
+     */
+    ConsumerBuilder<T> lazyMessageDecoding(boolean lazyMessageDecoding);
+
     /**
      * If configured with a non-null value, the consumer uses the processor to process the payload, including
      * decoding it to messages and triggering the listener.
@@ -293,6 +293,21 @@ public interface ProducerBuilder<T> extends Cloneable {
      */
     ProducerBuilder<T> compressionType(CompressionType compressionType);
 
+    /**
+     * Compress the batches with a zstd dictionary. <i>default: disabled</i>
+     *
+     * <p>This only applies with the {@link CompressionType#ZSTD} compression and batching enabled, and improves the
+     * compression ratio of the batches of small messages. The producer uses the latest dictionary of the topic, or
+     * trains one on the first messages it sends and adds it to the topic. The dictionaries are stored by the brokers
+     * and fetched by the consumers, which must be in a version that supports them: the brokers reject the consumers
+     * in older versions once the topic has a dictionary.
+     *
+     * @param enableCompressionDictionary
+     *            whether to compress the batches with a dictionary
+     * @return the producer builder instance
+     */
+    ProducerBuilder<T> enableCompressionDictionary(boolean enableCompressionDictionary);
+
     /**
      * Set a custom message routing policy by passing an implementation of MessageRouter.
      *
@@ -319,6 +334,25 @@ public interface ProducerBuilder<T> extends Cloneable {
      */
     ProducerBuilder<T> enableBatching(boolean enableBatching);
 
+    /**
+     * Control whether the producer adapts when it sends the batches to the rate of the messages and to the ack
+     * latency of the broker. <i>Default: false</i>.
+     *
+     * <p>With adaptive batching, a message is sent right away when the producer has no batch in flight, instead of
+     * waiting for the batching max publish delay. Otherwise, the batch is sent once it holds the number of messages
+     * expected to arrive during the ack latency. The batching max publish delay, max messages and max bytes stay
+     * the bounds of the batches. The number of messages the batches are sent at is reported by
+     * {@link ProducerStats#getEffectiveBatchSize()}.
+     *
+     * <p>This only applies when batching is enabled.
+     *
+     * @param enableAdaptiveBatching
+     *            whether to enable adaptive batching
+     * @return the producer builder instance
+     * @see #enableBatching(boolean)
+     */
+    ProducerBuilder<T> enableAdaptiveBatching(boolean enableAdaptiveBatching);
+
     /**
      * If a message's size is higher than the broker's allowed max publish-payload size, enableChunking allows
      * the producer to split the message into multiple chunks and publish it to the broker separately and in order.
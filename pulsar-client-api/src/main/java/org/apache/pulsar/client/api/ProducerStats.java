@@ -118,6 +118,14 @@ public interface ProducerStats extends Serializable {
      */
     int getPendingQueueSize();
 
+    /**
+     * @return the number of messages the adaptive batching currently sends the batches at, or 0 if adaptive batching
+     *         is disabled
+     */
+    default int getEffectiveBatchSize() {
+        return 0;
+    }
+
     /**
      * @return stats for each partition if topic is partitioned topic
      */
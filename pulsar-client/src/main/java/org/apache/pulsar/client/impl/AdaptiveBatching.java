@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+/**
+ * Decides when the producer sends the current batch, on top of the batch being full and of the batching max publish
+ * delay, which stays the upper bound of the time a message waits in a batch.
+ *
+ * <p>Like Nagle's algorithm, a message is sent right away when there is no batch in flight, so that messages don't
+ * wait for the publish delay at low rate. While there are batches in flight, the batch is sent once it holds the
+ * number of messages expected to arrive during a round trip to the broker, which is the ack latency divided by the
+ * interval between messages. Smaller batches would only queue more requests, while larger ones would add latency.
+ * Both the interval and the latency are exponentially weighted moving averages.
+ *
+ * <p>Not thread safe, the methods are called while holding the lock of the producer.
+ */
+class AdaptiveBatching {
+
+    private static final double ALPHA = 0.1;
+
+    private final int maxMessages;
+    private final long maxPublishDelayNanos;
+
+    private long lastMessageNanos = -1;
+    private double messageIntervalNanos = -1;
+    private double ackLatencyNanos = -1;
+    private volatile int targetNumMessages = 1;
+
+    AdaptiveBatching(int maxMessages, long maxPublishDelayNanos) {
+        this.maxMessages = maxMessages > 0 ? maxMessages : Integer.MAX_VALUE;
+        this.maxPublishDelayNanos = maxPublishDelayNanos;
+    }
+
+    /**
+     * Record a message added to the batch.
+     *
+     * @return whether the batch should be sent now
+     */
+    boolean messageAdded(long nowNanos, int numMessagesInBatch, int numBatchesInFlight) {
+        if (lastMessageNanos >= 0) {
+            // A pause longer than the publish delay means a new burst, which shouldn't weigh more than that
+            long interval = Math.min(nowNanos - lastMessageNanos, maxPublishDelayNanos);
+            messageIntervalNanos = messageIntervalNanos < 0 ? interval : ewma(messageIntervalNanos, interval);
+            updateTarget();
+        }
+        lastMessageNanos = nowNanos;
+        return numBatchesInFlight == 0 || numMessagesInBatch >= targetNumMessages;
+    }
+
+    /**
+     * Record the time between sending a batch and receiving its ack.
+     */
+    void ackReceived(long latencyNanos) {
+        ackLatencyNanos = ackLatencyNanos < 0 ? latencyNanos : ewma(ackLatencyNanos, latencyNanos);
+        updateTarget();
+    }
+
+    /**
+     * @return the number of messages the batches are currently sent at
+     */
+    int getTargetNumMessages() {
+        return targetNumMessages;
+    }
+
+    private void updateTarget() {
+        if (messageIntervalNanos < 0 || ackLatencyNanos < 0) {
+            return;
+        }
+        double target = ackLatencyNanos / Math.max(messageIntervalNanos, 1);
+        targetNumMessages = (int) Math.max(1, Math.min(maxMessages, Math.round(target)));
+    }
+
+    private static double ewma(double average, long value) {
+        return average + ALPHA * (value - average);
+    }
+}
@@ -33,6 +33,7 @@ import org.apache.pulsar.client.impl.ProducerImpl.OpSendMsg;
 import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
 import org.apache.pulsar.common.api.proto.CompressionType;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.compression.CompressionCodecZstdDictionary;
 import org.apache.pulsar.common.protocol.ByteBufPair;
 import org.apache.pulsar.common.protocol.Commands;
 import org.slf4j.Logger;
@@ -144,8 +145,13 @@ class BatchMessageContainerImpl extends AbstractBatchMessageContainer {
         int batchWriteIndex = batchedMessageMetadataAndPayload.writerIndex();
         int batchReadIndex = batchedMessageMetadataAndPayload.readerIndex();
 
+        ProducerCompressionDictionary compressionDictionary =
+                producer != null ? producer.getCompressionDictionary() : null;
         for (int i = 0, n = messages.size(); i < n; i++) {
             MessageImpl<?> msg = messages.get(i);
+            if (compressionDictionary != null) {
+                compressionDictionary.sample(msg.getDataBuffer());
+            }
             msg.getDataBuffer().markReaderIndex();
             try {
                 if (n == 1) {
@@ -168,12 +174,18 @@ class BatchMessageContainerImpl extends AbstractBatchMessageContainer {
         }
 
         int uncompressedSize = batchedMessageMetadataAndPayload.readableBytes();
-        ByteBuf compressedPayload = compressor.encode(batchedMessageMetadataAndPayload);
+        CompressionCodecZstdDictionary dictionaryCodec =
+                compressionDictionary != null ? compressionDictionary.getCodec() : null;
+        ByteBuf compressedPayload = (dictionaryCodec != null ? dictionaryCodec : compressor)
+                .encode(batchedMessageMetadataAndPayload);
         batchedMessageMetadataAndPayload.release();
         if (compressionType != CompressionType.NONE) {
             messageMetadata.setCompression(compressionType);
             messageMetadata.setUncompressedSize(uncompressedSize);
         }
+        if (dictionaryCodec != null) {
+            messageMetadata.setCompressionDictionaryId(dictionaryCodec.getDictionaryId());
+        }
 
         // Update the current max batch size using the uncompressed size, which is what we need in any case to
         // accumulate the batch content
@@ -64,6 +64,7 @@ import org.apache.pulsar.common.api.AuthData;
 import org.apache.pulsar.common.api.proto.BaseCommand;
 import org.apache.pulsar.common.api.proto.CommandAckResponse;
 import org.apache.pulsar.common.api.proto.CommandActiveConsumerChange;
+import org.apache.pulsar.common.api.proto.CommandAddCompressionDictionaryResponse;
 import org.apache.pulsar.common.api.proto.CommandAddPartitionToTxnResponse;
 import org.apache.pulsar.common.api.proto.CommandAddSubscriptionToTxnResponse;
 import org.apache.pulsar.common.api.proto.CommandAuthChallenge;
@@ -74,6 +75,7 @@ import org.apache.pulsar.common.api.proto.CommandEndTxnOnPartitionResponse;
 import org.apache.pulsar.common.api.proto.CommandEndTxnOnSubscriptionResponse;
 import org.apache.pulsar.common.api.proto.CommandEndTxnResponse;
 import org.apache.pulsar.common.api.proto.CommandError;
+import org.apache.pulsar.common.api.proto.CommandGetCompressionDictionaryResponse;
 import org.apache.pulsar.common.api.proto.CommandGetLastMessageIdResponse;
 import org.apache.pulsar.common.api.proto.CommandGetOrCreateSchemaResponse;
 import org.apache.pulsar.common.api.proto.CommandGetSchemaResponse;
@@ -93,6 +95,7 @@ import org.apache.pulsar.common.api.proto.CommandTopicMigrated.ResourceType;
 import org.apache.pulsar.common.api.proto.CommandWatchTopicListSuccess;
 import org.apache.pulsar.common.api.proto.CommandWatchTopicUpdate;
 import org.apache.pulsar.common.api.proto.ServerError;
+import org.apache.pulsar.common.compression.CompressionCodecZstdDictionary;
 import org.apache.pulsar.common.lookup.GetTopicsResult;
 import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.protocol.PulsarHandler;
@@ -218,6 +221,8 @@ public class ClientCnx extends PulsarHandler {
         GetTopics,
         GetSchema,
         GetOrCreateSchema,
+        GetCompressionDictionary,
+        AddCompressionDictionary,
         AckResponse,
         Lookup;
 
@@ -914,6 +919,36 @@ public class ClientCnx extends PulsarHandler {
         future.complete(new CommandGetOrCreateSchemaResponse().copyFrom(commandGetOrCreateSchemaResponse));
     }
 
+    @Override
+    protected void handleGetCompressionDictionaryResponse(
+            CommandGetCompressionDictionaryResponse commandGetCompressionDictionaryResponse) {
+        checkArgument(state == State.Ready);
+        long requestId = commandGetCompressionDictionaryResponse.getRequestId();
+        CompletableFuture<CommandGetCompressionDictionaryResponse> future =
+                (CompletableFuture<CommandGetCompressionDictionaryResponse>) pendingRequests.remove(requestId);
+        if (future == null) {
+            log.warn("{} Received unknown request id from server: {}", ctx.channel(), requestId);
+            return;
+        }
+        future.complete(
+                new CommandGetCompressionDictionaryResponse().copyFrom(commandGetCompressionDictionaryResponse));
+    }
+
+    @Override
+    protected void handleAddCompressionDictionaryResponse(
+            CommandAddCompressionDictionaryResponse commandAddCompressionDictionaryResponse) {
+        checkArgument(state == State.Ready);
+        long requestId = commandAddCompressionDictionaryResponse.getRequestId();
+        CompletableFuture<CommandAddCompressionDictionaryResponse> future =
+                (CompletableFuture<CommandAddCompressionDictionaryResponse>) pendingRequests.remove(requestId);
+        if (future == null) {
+            log.warn("{} Received unknown request id from server: {}", ctx.channel(), requestId);
+            return;
+        }
+        future.complete(
+                new CommandAddCompressionDictionaryResponse().copyFrom(commandAddCompressionDictionaryResponse));
+    }
+
     Promise<Void> newPromise() {
         return ctx.newPromise();
     }
@@ -1011,6 +1046,41 @@ public class ClientCnx extends PulsarHandler {
         });
     }
 
+    public CompletableFuture<Optional<CompressionCodecZstdDictionary>> sendGetCompressionDictionary(ByteBuf request,
+                                                                                                  long requestId) {
+        CompletableFuture<CommandGetCompressionDictionaryResponse> future = sendRequestAndHandleTimeout(request,
+                requestId, RequestType.GetCompressionDictionary, true);
+        return future.thenCompose(response -> {
+            if (response.hasErrorCode()) {
+                // Request has failed
+                ServerError rc = response.getErrorCode();
+                if (rc == ServerError.TopicNotFound) {
+                    return CompletableFuture.completedFuture(Optional.empty());
+                } else {
+                    return FutureUtil.failedFuture(getPulsarClientException(
+                            rc, buildError(requestId, response.getErrorMessage())));
+                }
+            } else {
+                return CompletableFuture.completedFuture(Optional.of(
+                        new CompressionCodecZstdDictionary(response.getDictionaryId(), response.getDictionary())));
+            }
+        });
+    }
+
+    public CompletableFuture<Long> sendAddCompressionDictionary(ByteBuf request, long requestId) {
+        CompletableFuture<CommandAddCompressionDictionaryResponse> future = sendRequestAndHandleTimeout(request,
+                requestId, RequestType.AddCompressionDictionary, true);
+        return future.thenCompose(response -> {
+            if (response.hasErrorCode()) {
+                // Request has failed
+                return FutureUtil.failedFuture(getPulsarClientException(
+                        response.getErrorCode(), buildError(requestId, response.getErrorMessage())));
+            } else {
+                return CompletableFuture.completedFuture(response.getDictionaryId());
+            }
+        });
+    }
+
     @Override
     protected void handleNewTxnResponse(CommandNewTxnResponse command) {
         TransactionMetaStoreHandler handler = checkAndGetTransactionMetaStoreHandler(command.getTxnidMostBits());
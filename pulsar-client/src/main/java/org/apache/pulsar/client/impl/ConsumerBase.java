@@ -175,6 +175,9 @@ public abstract class ConsumerBase<T> extends HandlerState implements Consumer<T
         if (conf.getAckTimeoutMillis() != 0) {
             if (conf.getAckTimeoutRedeliveryBackoff() != null) {
                 this.unAckedMessageTracker = new UnAckedTopicMessageRedeliveryTracker(client, this, conf);
+            } else if (this instanceof ConsumerImpl) {
+                // The message ids of a single topic consumer are tracked as primitives rather than as objects
+                this.unAckedMessageTracker = new UnAckedMessageTimingWheelTracker(client, this, conf);
             } else {
                 this.unAckedMessageTracker = new UnAckedTopicMessageTracker(client, this, conf);
             }
@@ -393,6 +396,16 @@ public abstract class ConsumerBase<T> extends HandlerState implements Consumer<T
         }
     }
 
+    /**
+     * Release a message once it's acknowledged when the messages are decoded lazily, since the application isn't
+     * allowed to use it anymore.
+     */
+    private void releaseAcknowledgedMessage(Message<?> message) {
+        if (conf.isLazyMessageDecoding() && conf.getDeadLetterPolicy() == null) {
+            message.release();
+        }
+    }
+
     private static void validateMessageId(MessageId messageId) throws PulsarClientException {
         if (messageId == null) {
             throw new PulsarClientException.InvalidMessageException("Cannot handle message with null messageId");
@@ -402,7 +415,9 @@ public abstract class ConsumerBase<T> extends HandlerState implements Consumer<T
     @Override
     public void acknowledge(Message<?> message) throws PulsarClientException {
         validateMessageId(message);
-        acknowledge(message.getMessageId());
+        MessageId messageId = message.getMessageId();
+        releaseAcknowledgedMessage(message);
+        acknowledge(messageId);
     }
 
     @Override
@@ -478,7 +493,9 @@ public abstract class ConsumerBase<T> extends HandlerState implements Consumer<T
     @Override
     public void acknowledgeCumulative(Message<?> message) throws PulsarClientException {
         validateMessageId(message);
-        acknowledgeCumulative(message.getMessageId());
+        MessageId messageId = message.getMessageId();
+        releaseAcknowledgedMessage(message);
+        acknowledgeCumulative(messageId);
     }
 
     @Override
@@ -514,7 +531,9 @@ public abstract class ConsumerBase<T> extends HandlerState implements Consumer<T
         } catch (PulsarClientException e) {
             return FutureUtil.failedFuture(e);
         }
-        return acknowledgeAsync(message.getMessageId());
+        MessageId messageId = message.getMessageId();
+        releaseAcknowledgedMessage(message);
+        return acknowledgeAsync(messageId);
     }
 
     @Override
@@ -533,6 +552,9 @@ public abstract class ConsumerBase<T> extends HandlerState implements Consumer<T
             }
             messageIds.add(message.getMessageId());
         }
+        for (Message<?> message : messages) {
+            releaseAcknowledgedMessage(message);
+        }
         if (txn != null) {
             return acknowledgeAsync(messageIds, txn);
         } else {
@@ -589,7 +611,9 @@ public abstract class ConsumerBase<T> extends HandlerState implements Consumer<T
         } catch (PulsarClientException e) {
             return FutureUtil.failedFuture(e);
         }
-        return acknowledgeCumulativeAsync(message.getMessageId());
+        MessageId messageId = message.getMessageId();
+        releaseAcknowledgedMessage(message);
+        return acknowledgeCumulativeAsync(messageId);
     }
 
     @Override
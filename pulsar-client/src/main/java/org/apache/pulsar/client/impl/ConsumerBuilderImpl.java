@@ -511,6 +511,12 @@ public class ConsumerBuilderImpl<T> implements ConsumerBuilder<T> {
         return this;
     }
 
+    @Override
+    public ConsumerBuilder<T> lazyMessageDecoding(boolean lazyMessageDecoding) {
+        conf.setLazyMessageDecoding(lazyMessageDecoding);
+        return this;
+    }
+
     @Override
     public ConsumerBuilder<T> messagePayloadProcessor(MessagePayloadProcessor payloadProcessor) {
         conf.setPayloadProcessor(payloadProcessor);
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.common.api.proto.CommandMessage;
+import org.apache.pulsar.common.compression.CompressionCodecZstdDictionary;
+import org.apache.pulsar.common.protocol.Commands;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The zstd dictionaries a consumer decompresses the messages with, loaded from the brokers.
+ *
+ * <p>A dictionary is loaded asynchronously the first time a message needs it. In the meantime, the messages received
+ * on the connection are deferred, and they are received again in order once the dictionary is loaded. When a
+ * dictionary can't be loaded, loading it again waits for a backoff, and the messages that need it are not delivered
+ * until then.
+ */
+class ConsumerCompressionDictionaries {
+
+    private final ConsumerImpl<?> consumer;
+    private final Map<Long, CompressionCodecZstdDictionary> dictionaries = new ConcurrentHashMap<>();
+    private final Map<Long, MissingDictionary> missingDictionaries = new ConcurrentHashMap<>();
+
+    // The connection whose messages are deferred while a dictionary is loading, if any
+    private volatile ClientCnx loadingCnx;
+    // Guarded by this
+    private final Queue<DeferredMessage> deferredMessages = new ArrayDeque<>();
+
+    private static class DeferredMessage {
+        final CommandMessage cmdMessage;
+        final ByteBuf headersAndPayload;
+
+        DeferredMessage(CommandMessage cmdMessage, ByteBuf headersAndPayload) {
+            this.cmdMessage = new CommandMessage().copyFrom(cmdMessage);
+            this.headersAndPayload = headersAndPayload;
+        }
+    }
+
+    private static class MissingDictionary {
+        final Backoff backoff;
+        volatile long retryTimeMillis;
+
+        MissingDictionary(Backoff backoff) {
+            this.backoff = backoff;
+        }
+    }
+
+    ConsumerCompressionDictionaries(ConsumerImpl<?> consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * @return the dictionary, or null if it is not loaded
+     */
+    CompressionCodecZstdDictionary get(long dictionaryId) {
+        return dictionaries.get(dictionaryId);
+    }
+
+    /**
+     * Defer a message if a dictionary is loading for the connection it was received on, so that the messages of the
+     * connection are received in order.
+     *
+     * @return true if the message is deferred
+     */
+    boolean deferIfLoading(CommandMessage cmdMessage, ByteBuf headersAndPayload, ClientCnx cnx) {
+        if (loadingCnx != cnx) {
+            return false;
+        }
+        synchronized (this) {
+            if (loadingCnx != cnx) {
+                return false;
+            }
+            deferredMessages.add(new DeferredMessage(cmdMessage, headersAndPayload.retainedSlice()));
+            return true;
+        }
+    }
+
+    /**
+     * Load a dictionary from the broker, unless it could not be loaded recently. The message that needs it and the
+     * next messages received on the connection are deferred until it is loaded.
+     *
+     * @param readerIndex the reader index of the headers and payload when the message was received
+     * @return true if the message is deferred, false if the dictionary is not available
+     */
+    boolean load(long dictionaryId, CommandMessage cmdMessage, ByteBuf headersAndPayload, int readerIndex,
+                 ClientCnx cnx) {
+        MissingDictionary missingDictionary = missingDictionaries.get(dictionaryId);
+        if (missingDictionary != null && System.currentTimeMillis() < missingDictionary.retryTimeMillis) {
+            return false;
+        }
+        if (!Commands.peerSupportsCompressionDictionaries(cnx.getRemoteEndpointProtocolVersion())) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (loadingCnx != cnx) {
+                // The messages deferred on a previous connection will be redelivered
+                releaseDeferredMessages();
+                loadingCnx = cnx;
+            }
+            deferredMessages.add(new DeferredMessage(cmdMessage, headersAndPayload.retainedSlice(readerIndex,
+                    headersAndPayload.writerIndex() - readerIndex)));
+        }
+
+        long requestId = consumer.getClient().newRequestId();
+        cnx.sendGetCompressionDictionary(
+                Commands.newGetCompressionDictionary(requestId, consumer.getTopic(), Optional.of(dictionaryId)),
+                requestId).whenCompleteAsync((dictionary, ex) -> {
+                    if (ex == null && dictionary.isPresent()) {
+                        dictionaries.put(dictionaryId, dictionary.get());
+                        missingDictionaries.remove(dictionaryId);
+                    } else {
+                        MissingDictionary missing = missingDictionaries.computeIfAbsent(dictionaryId,
+                                __ -> new MissingDictionary(newBackoff()));
+                        long delayMillis = missing.backoff.next();
+                        missing.retryTimeMillis = System.currentTimeMillis() + delayMillis;
+                        log.warn("[{}][{}] Failed to load the zstd dictionary {}, retrying in {} ms",
+                                consumer.getTopic(), consumer.getSubscription(), dictionaryId, delayMillis, ex);
+                    }
+                    receiveDeferredMessages(cnx);
+                }, cnx.ctx().executor());
+        return true;
+    }
+
+    private void receiveDeferredMessages(ClientCnx cnx) {
+        List<DeferredMessage> messages;
+        synchronized (this) {
+            if (loadingCnx != cnx) {
+                // The deferred messages were released when the consumer moved to another connection
+                return;
+            }
+            messages = new ArrayList<>(deferredMessages);
+            deferredMessages.clear();
+            loadingCnx = null;
+        }
+
+        boolean connected = consumer.getClientCnx() == cnx && consumer.isConnected();
+        for (DeferredMessage message : messages) {
+            synchronized (this) {
+                if (loadingCnx == cnx) {
+                    // A message needs another dictionary, the next ones are deferred again after it
+                    deferredMessages.add(message);
+                    continue;
+                }
+            }
+            try {
+                if (connected) {
+                    consumer.messageReceived(message.cmdMessage, message.headersAndPayload, cnx);
+                }
+            } finally {
+                message.headersAndPayload.release();
+            }
+        }
+    }
+
+    private void releaseDeferredMessages() {
+        DeferredMessage message;
+        while ((message = deferredMessages.poll()) != null) {
+            message.headersAndPayload.release();
+        }
+    }
+
+    private Backoff newBackoff() {
+        return new BackoffBuilder()
+                .setInitialTime(consumer.getClient().getConfiguration().getInitialBackoffIntervalNanos(),
+                        TimeUnit.NANOSECONDS)
+                .setMax(consumer.getClient().getConfiguration().getMaxBackoffIntervalNanos(), TimeUnit.NANOSECONDS)
+                .setMandatoryStop(0, TimeUnit.MILLISECONDS)
+                .create();
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumerCompressionDictionaries.class);
+}
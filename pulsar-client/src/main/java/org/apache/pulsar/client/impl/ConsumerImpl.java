@@ -177,6 +177,8 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
     private final TopicName topicName;
     private final String topicNameWithoutPartition;
 
+    protected final ConsumerCompressionDictionaries compressionDictionaries = new ConsumerCompressionDictionaries(this);
+
     private final Map<MessageIdImpl, List<MessageImpl<T>>> possibleSendToDeadLetterTopicMessages;
 
     private final DeadLetterPolicy deadLetterPolicy;
@@ -202,6 +204,7 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
 
     private final boolean createTopicIfDoesNotExist;
     private final boolean poolMessages;
+    private final boolean lazyMessageDecoding;
 
     private final AtomicReference<ClientCnx> clientCnxUsedForConsumerRegistration = new AtomicReference<>();
     private final List<Throwable> previousExceptions = new CopyOnWriteArrayList<Throwable>();
@@ -282,6 +285,9 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
         this.expireTimeOfIncompleteChunkedMessageMillis = conf.getExpireTimeOfIncompleteChunkedMessageMillis();
         this.autoAckOldestChunkedMessageOnQueueFull = conf.isAutoAckOldestChunkedMessageOnQueueFull();
         this.poolMessages = conf.isPoolMessages();
+        // The messages that could be sent to the dead letter topic are kept until they're redelivered, so they can't be
+        // released when they're acknowledged
+        this.lazyMessageDecoding = conf.isLazyMessageDecoding() && conf.getDeadLetterPolicy() == null;
         this.paused = conf.isStartPaused();
 
         if (client.getConfiguration().getStatsIntervalSeconds() > 0) {
@@ -1226,6 +1232,10 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
     }
 
     void messageReceived(CommandMessage cmdMessage, ByteBuf headersAndPayload, ClientCnx cnx) {
+        if (compressionDictionaries.deferIfLoading(cmdMessage, headersAndPayload, cnx)) {
+            return;
+        }
+        final int readerIndex = headersAndPayload.readerIndex();
         List<Long> ackSet = Collections.emptyList();
         if (cmdMessage.getAckSetsCount() > 0) {
             ackSet = new ArrayList<>(cmdMessage.getAckSetsCount());
@@ -1261,6 +1271,14 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
             return;
         }
 
+        if (msgMetadata.hasCompressionDictionaryId()
+                && compressionDictionaries.get(msgMetadata.getCompressionDictionaryId()) == null
+                && compressionDictionaries.load(msgMetadata.getCompressionDictionaryId(), cmdMessage,
+                        headersAndPayload, readerIndex, cnx)) {
+            // The message is received again once the dictionary is loaded
+            return;
+        }
+
         final int numMessages = msgMetadata.getNumMessagesInBatch();
         final int numChunks = msgMetadata.hasNumChunksFromMsg() ? msgMetadata.getNumChunksFromMsg() : 0;
         final boolean isChunkedMessage = numChunks > 1;
@@ -1513,13 +1531,19 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
             ackBitSet = BitSetRecyclable.valueOf(SafeCollectionUtils.longListToArray(ackSet));
         }
 
-        SingleMessageMetadata singleMessageMetadata = new SingleMessageMetadata();
+        SingleMessageMetadata singleMessageMetadata = lazyMessageDecoding ? null : new SingleMessageMetadata();
+        // The messages decoded lazily share the metadata of the batch, which has to outlive the buffer it's parsed in
+        MessageMetadata batchMetadata = lazyMessageDecoding ? new MessageMetadata().copyFrom(msgMetadata) : null;
+        Optional<EncryptionContext> encryptionCtx = lazyMessageDecoding ? createEncryptionContext(msgMetadata) : null;
         int skippedMessages = 0;
         try {
             for (int i = 0; i < batchSize; ++i) {
-                final MessageImpl<T> message = newSingleMessage(i, batchSize, brokerEntryMetadata, msgMetadata,
-                        singleMessageMetadata, uncompressedPayload, batchMessage, schema, true,
-                        ackBitSet, acker, redeliveryCount, consumerEpoch);
+                final MessageImpl<T> message = lazyMessageDecoding
+                        ? newLazySingleMessage(i, batchSize, brokerEntryMetadata, batchMetadata, encryptionCtx,
+                                uncompressedPayload, batchMessage, ackBitSet, acker, redeliveryCount, consumerEpoch)
+                        : newSingleMessage(i, batchSize, brokerEntryMetadata, msgMetadata,
+                                singleMessageMetadata, uncompressedPayload, batchMessage, schema, true,
+                                ackBitSet, acker, redeliveryCount, consumerEpoch);
                 if (message == null) {
                     skippedMessages++;
                     continue;
@@ -1566,6 +1590,37 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
         }
     }
 
+    /**
+     * Create a message of a batch whose metadata is only decoded when it's accessed, or return null if the message has
+     * to be skipped, with the same checks as {@link #newSingleMessage}.
+     */
+    private MessageImpl<T> newLazySingleMessage(int index, int numMessages, BrokerEntryMetadata brokerEntryMetadata,
+                                                MessageMetadata batchMetadata,
+                                                Optional<EncryptionContext> encryptionCtx,
+                                                ByteBuf uncompressedPayload, MessageIdImpl messageId,
+                                                BitSetRecyclable ackBitSet, BatchMessageAcker acker,
+                                                int redeliveryCount, long consumerEpoch) {
+        BatchMessageIdImpl batchMessageIdImpl = new BatchMessageIdImpl(messageId.getLedgerId(),
+                messageId.getEntryId(), getPartitionIndex(), index, numMessages, acker);
+        final MessageImpl<T> message;
+        try {
+            // The single message metadata has to be parsed to find the payload of the message anyway
+            message = MessageImpl.createLazy(topicName.toString(), batchMessageIdImpl, batchMetadata,
+                    uncompressedPayload, encryptionCtx, cnx(), schema, redeliveryCount, consumerEpoch);
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalStateException(e);
+        }
+
+        if ((this.topicName.isPersistent() && isSameEntry(messageId) && isPriorBatchIndex(index))
+                || message.isCompactedOut()
+                || (ackBitSet != null && !ackBitSet.get(index))) {
+            message.release();
+            return null;
+        }
+        message.setBrokerEntryMetadata(brokerEntryMetadata);
+        return message;
+    }
+
     private boolean isPriorEntryIndex(long idx) {
         return resetIncludeHead ? idx < startMessageId.getEntryId() : idx <= startMessageId.getEntryId();
     }
@@ -1754,7 +1809,20 @@ public class ConsumerImpl<T> extends ConsumerBase<T> implements ConnectionHandle
     private ByteBuf uncompressPayloadIfNeeded(MessageIdData messageId, MessageMetadata msgMetadata, ByteBuf payload,
             ClientCnx currentCnx, boolean checkMaxMessageSize) {
         CompressionType compressionType = msgMetadata.getCompression();
-        CompressionCodec codec = CompressionCodecProvider.getCompressionCodec(compressionType);
+        CompressionCodec codec;
+        if (msgMetadata.hasCompressionDictionaryId()) {
+            codec = compressionDictionaries.get(msgMetadata.getCompressionDictionaryId());
+            if (codec == null) {
+                // Like an encrypted message without its key, the message stays unacked until it is redelivered
+                MessageId m = new MessageIdImpl(messageId.getLedgerId(), messageId.getEntryId(), partitionIndex);
+                log.error("[{}][{}][{}][{}] Message delivery failed since the zstd dictionary {} is not available",
+                        topic, subscription, consumerName, m, msgMetadata.getCompressionDictionaryId());
+                unAckedMessageTracker.add(m);
+                return null;
+            }
+        } else {
+            codec = CompressionCodecProvider.getCompressionCodec(compressionType);
+        }
         int uncompressedSize = msgMetadata.getUncompressedSize();
         int payloadSize = payload.readableBytes();
         if (checkMaxMessageSize && payloadSize > ClientCnx.getMaxMessageSize()) {
@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.pulsar.client.impl.BatchMessageIdImpl.NO_BATCH;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Hashed timing wheel of message ids, for the {@link UnAckedMessageTimingWheelTracker} and the
+ * {@link NegativeAcksTracker}.
+ *
+ * <p>Each message id is added with the tick at which it expires, to the slot of the wheel of its tick, and expires
+ * when the wheel reaches that slot in the round of its tick. The message ids are stored as their ledger id, entry id,
+ * partition index and batch index in arrays, indexed by an open addressing hash table, and the message ids of a slot
+ * are linked together, so that adding, removing or expiring a message id is O(1) and doesn't allocate any object.
+ * The message id objects are only created when they expire, except for the subclasses of {@link MessageIdImpl}
+ * other than {@link BatchMessageIdImpl}, like the {@link ChunkMessageIdImpl}, which are kept as they are.
+ */
+@NotThreadSafe
+class MessageIdTimingWheel {
+    private static final int NIL = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int slotMask;
+    // First message id of each slot
+    private final int[] heads;
+
+    // Message ids, with the tick they expire at and the previous and next message ids of their slot
+    private long[] ledgerIds;
+    private long[] entryIds;
+    private int[] partitionIndexes;
+    private int[] batchIndexes;
+    private MessageIdImpl[] messageIds;
+    private long[] ticks;
+    private int[] prevs;
+    private int[] nexts;
+    // Number of message ids allocated so far, and the list of the ones that were freed since
+    private int allocated;
+    private int freeList = NIL;
+    private int size;
+
+    // Open addressing hash table of the message ids, with linear probing, holding the message id + 1 or 0 if empty
+    private int[] table;
+
+    // Last tick the wheel expired
+    private long tick;
+
+    MessageIdTimingWheel(int slots) {
+        checkArgument(slots > 0);
+        int numberOfSlots = slots == 1 ? 1 : Integer.highestOneBit(slots - 1) << 1;
+        this.slotMask = numberOfSlots - 1;
+        this.heads = new int[numberOfSlots];
+        Arrays.fill(heads, NIL);
+        this.ledgerIds = new long[INITIAL_CAPACITY];
+        this.entryIds = new long[INITIAL_CAPACITY];
+        this.partitionIndexes = new int[INITIAL_CAPACITY];
+        this.batchIndexes = new int[INITIAL_CAPACITY];
+        this.messageIds = new MessageIdImpl[INITIAL_CAPACITY];
+        this.ticks = new long[INITIAL_CAPACITY];
+        this.prevs = new int[INITIAL_CAPACITY];
+        this.nexts = new int[INITIAL_CAPACITY];
+        this.table = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * Last tick the wheel expired.
+     */
+    long tick() {
+        return tick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Add a message id expiring at a tick, unless it's already in the wheel.
+     *
+     * <p>A message id expiring at a tick that already expired expires at the next one.
+     *
+     * @return whether the message id was added
+     */
+    boolean add(MessageIdImpl messageId, long expireAt) {
+        if (find(messageId) != NIL) {
+            return false;
+        }
+        insert(messageId, expireAt);
+        return true;
+    }
+
+    /**
+     * Add a message id expiring at a tick, or change the tick it expires at if it's already in the wheel.
+     */
+    void put(MessageIdImpl messageId, long expireAt) {
+        int item = find(messageId);
+        if (item == NIL) {
+            insert(messageId, expireAt);
+        } else {
+            unlink(item);
+            link(item, Math.max(expireAt, tick + 1));
+        }
+    }
+
+    boolean contains(MessageIdImpl messageId) {
+        return find(messageId) != NIL;
+    }
+
+    boolean remove(MessageIdImpl messageId) {
+        int item = find(messageId);
+        if (item == NIL) {
+            return false;
+        }
+        delete(item);
+        return true;
+    }
+
+    /**
+     * Remove the message ids up to a message id, included.
+     *
+     * @return the number of message ids removed
+     */
+    int removeUpTo(MessageIdImpl messageId) {
+        if (size == 0) {
+            return 0;
+        }
+        int batchIndex = batchIndexOf(messageId);
+        int removed = 0;
+        for (int slot = 0; slot <= slotMask; slot++) {
+            int item = heads[slot];
+            while (item != NIL) {
+                int next = nexts[item];
+                if (MessageIdImpl.messageIdCompare(ledgerIds[item], entryIds[item], partitionIndexes[item],
+                        batchIndexes[item], messageId.getLedgerId(), messageId.getEntryId(),
+                        messageId.getPartitionIndex(), batchIndex) <= 0) {
+                    delete(item);
+                    removed++;
+                }
+                item = next;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Expire the message ids up to a tick, included, passing them to a consumer as they are removed.
+     */
+    void expire(long expireTick, Consumer<MessageIdImpl> consumer) {
+        if (expireTick <= tick) {
+            return;
+        }
+        if (size > 0) {
+            // Each slot is visited at most once, even when the wheel is late by more than a round
+            long lastTick = Math.min(expireTick, tick + slotMask + 1);
+            for (long t = tick + 1; t <= lastTick; t++) {
+                int item = heads[(int) (t & slotMask)];
+                while (item != NIL) {
+                    int next = nexts[item];
+                    if (ticks[item] <= expireTick) {
+                        consumer.accept(messageIdOf(item));
+                        delete(item);
+                    }
+                    item = next;
+                }
+            }
+        }
+        tick = expireTick;
+    }
+
+    void clear() {
+        Arrays.fill(heads, NIL);
+        Arrays.fill(table, 0);
+        Arrays.fill(messageIds, 0, allocated, null);
+        allocated = 0;
+        freeList = NIL;
+        size = 0;
+    }
+
+    private MessageIdImpl messageIdOf(int item) {
+        if (messageIds[item] != null) {
+            return messageIds[item];
+        } else if (batchIndexes[item] == NO_BATCH) {
+            return new MessageIdImpl(ledgerIds[item], entryIds[item], partitionIndexes[item]);
+        } else {
+            return new BatchMessageIdImpl(ledgerIds[item], entryIds[item], partitionIndexes[item],
+                    batchIndexes[item]);
+        }
+    }
+
+    private static int batchIndexOf(MessageIdImpl messageId) {
+        return messageId instanceof BatchMessageIdImpl ? ((BatchMessageIdImpl) messageId).getBatchIndex() : NO_BATCH;
+    }
+
+    private void insert(MessageIdImpl messageId, long expireAt) {
+        if ((size + 1) * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        int item = allocate();
+        ledgerIds[item] = messageId.getLedgerId();
+        entryIds[item] = messageId.getEntryId();
+        partitionIndexes[item] = messageId.getPartitionIndex();
+        batchIndexes[item] = batchIndexOf(messageId);
+        messageIds[item] = messageId.getClass() == MessageIdImpl.class
+                || messageId.getClass() == BatchMessageIdImpl.class ? null : messageId;
+        link(item, Math.max(expireAt, tick + 1));
+
+        int mask = table.length - 1;
+        int index = hash(item) & mask;
+        while (table[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        table[index] = item + 1;
+        size++;
+    }
+
+    private void delete(int item) {
+        unlink(item);
+        deleteFromTable(item);
+        messageIds[item] = null;
+        nexts[item] = freeList;
+        freeList = item;
+        size--;
+    }
+
+    private int allocate() {
+        if (freeList != NIL) {
+            int item = freeList;
+            freeList = nexts[item];
+            return item;
+        }
+        if (allocated == ledgerIds.length) {
+            int capacity = allocated * 2;
+            ledgerIds = Arrays.copyOf(ledgerIds, capacity);
+            entryIds = Arrays.copyOf(entryIds, capacity);
+            partitionIndexes = Arrays.copyOf(partitionIndexes, capacity);
+            batchIndexes = Arrays.copyOf(batchIndexes, capacity);
+            messageIds = Arrays.copyOf(messageIds, capacity);
+            ticks = Arrays.copyOf(ticks, capacity);
+            prevs = Arrays.copyOf(prevs, capacity);
+            nexts = Arrays.copyOf(nexts, capacity);
+        }
+        return allocated++;
+    }
+
+    private void link(int item, long expireAt) {
+        ticks[item] = expireAt;
+        int slot = (int) (expireAt & slotMask);
+        int head = heads[slot];
+        prevs[item] = NIL;
+        nexts[item] = head;
+        if (head != NIL) {
+            prevs[head] = item;
+        }
+        heads[slot] = item;
+    }
+
+    private void unlink(int item) {
+        int prev = prevs[item];
+        int next = nexts[item];
+        if (prev == NIL) {
+            heads[(int) (ticks[item] & slotMask)] = next;
+        } else {
+            nexts[prev] = next;
+        }
+        if (next != NIL) {
+            prevs[next] = prev;
+        }
+    }
+
+    private int find(MessageIdImpl messageId) {
+        long ledgerId = messageId.getLedgerId();
+        long entryId = messageId.getEntryId();
+        int partitionIndex = messageId.getPartitionIndex();
+        int batchIndex = batchIndexOf(messageId);
+        int mask = table.length - 1;
+        int index = hash(ledgerId, entryId, partitionIndex, batchIndex) & mask;
+        while (table[index] != 0) {
+            int item = table[index] - 1;
+            if (ledgerIds[item] == ledgerId && entryIds[item] == entryId
+                    && partitionIndexes[item] == partitionIndex && batchIndexes[item] == batchIndex) {
+                return item;
+            }
+            index = (index + 1) & mask;
+        }
+        return NIL;
+    }
+
+    private void deleteFromTable(int item) {
+        int mask = table.length - 1;
+        int hole = hash(item) & mask;
+        while (table[hole] != item + 1) {
+            hole = (hole + 1) & mask;
+        }
+        // Shift back the following items of the cluster that can't be found anymore past the hole
+        int index = hole;
+        while (true) {
+            index = (index + 1) & mask;
+            int entry = table[index];
+            if (entry == 0) {
+                break;
+            }
+            int home = hash(entry - 1) & mask;
+            if (((index - home) & mask) >= ((index - hole) & mask)) {
+                table[hole] = entry;
+                hole = index;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldTable = table;
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry : oldTable) {
+            if (entry != 0) {
+                int index = hash(entry - 1) & mask;
+                while (table[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = entry;
+            }
+        }
+    }
+
+    private int hash(int item) {
+        return hash(ledgerIds[item], entryIds[item], partitionIndexes[item], batchIndexes[item]);
+    }
+
+    private static int hash(long ledgerId, long entryId, int partitionIndex, int batchIndex) {
+        long h = ledgerId * 0x9E3779B97F4A7C15L + entryId;
+        h = h * 0x9E3779B97F4A7C15L + (((long) partitionIndex << 32) | (batchIndex & 0xFFFFFFFFL));
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -81,6 +81,12 @@ public class MessageImpl<T> implements Message<T> {
     private boolean poolMessage;
     @Getter
     private long consumerEpoch;
+
+    // Only set for the messages of a batch decoded lazily, until their metadata is merged into msgMetadata: the
+    // metadata of the batch, shared by its messages, and the metadata of the message, whose strings are only decoded
+    // from the buffer of the batch when they're accessed
+    private MessageMetadata batchMetadata;
+    private SingleMessageMetadata singleMetadata;
     // Constructor for out-going message
     public static <T> MessageImpl<T> create(MessageMetadata msgMetadata, ByteBuffer payload, Schema<T> schema,
             String topic) {
@@ -166,6 +172,44 @@ public class MessageImpl<T> implements Message<T> {
         }
     }
 
+    /**
+     * Create a message of a batch whose metadata is only decoded when it's accessed.
+     *
+     * <p>The message is pooled, and keeps a reference on the buffer of the batch until it's released. Unlike the
+     * messages created by {@link #create(String, BatchMessageIdImpl, MessageMetadata, SingleMessageMetadata, ByteBuf,
+     * Optional, ClientCnx, Schema, int, boolean, long)}, the message doesn't copy the metadata of the batch, which must
+     * not be modified as long as the message is in use.
+     */
+    static <T> MessageImpl<T> createLazy(String topic, BatchMessageIdImpl batchMessageIdImpl,
+            MessageMetadata batchMetadata, ByteBuf uncompressedPayload, Optional<EncryptionContext> encryptionCtx,
+            ClientCnx cnx, Schema<T> schema, int redeliveryCount, long consumerEpoch) throws IOException {
+        @SuppressWarnings("unchecked")
+        MessageImpl<T> msg = (MessageImpl<T>) RECYCLER.get();
+        if (msg.singleMetadata == null) {
+            msg.singleMetadata = new SingleMessageMetadata();
+        }
+        try {
+            msg.payload = Commands.deSerializeSingleMessageInBatch(uncompressedPayload, msg.singleMetadata,
+                    batchMessageIdImpl.getBatchIndex(), batchMetadata.getNumMessagesInBatch());
+        } catch (IOException | RuntimeException e) {
+            msg.singleMetadata.clear();
+            msg.recycle();
+            throw e;
+        }
+        msg.msgMetadata.clear();
+        msg.batchMetadata = batchMetadata;
+        msg.messageId = batchMessageIdImpl;
+        msg.topic = topic;
+        msg.cnx = cnx;
+        msg.redeliveryCount = redeliveryCount;
+        msg.encryptionCtx = encryptionCtx;
+        msg.schema = schema;
+        msg.consumerEpoch = consumerEpoch;
+        msg.poolMessage = true;
+        msg.properties = null;
+        return msg;
+    }
+
     static <T> void init(MessageImpl<T> msg, String topic, MessageIdImpl messageId, MessageMetadata msgMetadata,
             ByteBuf payload, Optional<EncryptionContext> encryptionCtx, ClientCnx cnx, Schema<T> schema,
             int redeliveryCount, boolean poolMessage, long consumerEpoch) {
@@ -196,49 +240,56 @@ public class MessageImpl<T> implements Message<T> {
         msg.payload = poolMessage ? payload.retain() : Unpooled.copiedBuffer(payload);
 
         if (singleMessageMetadata != null) {
-            if (singleMessageMetadata.getPropertiesCount() > 0) {
-                Map<String, String> properties = new TreeMap<>();
-                for (KeyValue entry : singleMessageMetadata.getPropertiesList()) {
-                    properties.put(entry.getKey(), entry.getValue());
-                }
-                msg.properties = Collections.unmodifiableMap(properties);
-            } else {
-                msg.properties = Collections.emptyMap();
-            }
-            if (singleMessageMetadata.hasPartitionKey()) {
-                msg.msgMetadata.setPartitionKeyB64Encoded(singleMessageMetadata.isPartitionKeyB64Encoded())
-                        .setPartitionKey(singleMessageMetadata.getPartitionKey());
-            } else if (msg.msgMetadata.hasPartitionKey()) {
-                msg.msgMetadata.clearPartitionKey();
-                msg.msgMetadata.clearPartitionKeyB64Encoded();
-            }
+            applySingleMessageMetadata(msg, singleMessageMetadata);
+        } else if (msgMetadata.getPropertiesCount() > 0) {
+            msg.properties = Collections.unmodifiableMap(msgMetadata.getPropertiesList().stream().collect(
+                    Collectors.toMap(KeyValue::getKey, KeyValue::getValue, (oldValue, newValue) -> newValue)));
+        } else {
+            msg.properties = Collections.emptyMap();
+        }
+    }
 
-            if (singleMessageMetadata.hasOrderingKey()) {
-                msg.msgMetadata.setOrderingKey(singleMessageMetadata.getOrderingKey());
-            } else if (msg.msgMetadata.hasOrderingKey()) {
-                msg.msgMetadata.clearOrderingKey();
+    /**
+     * Override the metadata of the batch with the metadata of a message of the batch.
+     */
+    private static void applySingleMessageMetadata(MessageImpl<?> msg, SingleMessageMetadata singleMessageMetadata) {
+        if (singleMessageMetadata.getPropertiesCount() > 0) {
+            Map<String, String> properties = new TreeMap<>();
+            for (KeyValue entry : singleMessageMetadata.getPropertiesList()) {
+                properties.put(entry.getKey(), entry.getValue());
             }
+            msg.properties = Collections.unmodifiableMap(properties);
+        } else {
+            msg.properties = Collections.emptyMap();
+        }
+        if (singleMessageMetadata.hasPartitionKey()) {
+            msg.msgMetadata.setPartitionKeyB64Encoded(singleMessageMetadata.isPartitionKeyB64Encoded())
+                    .setPartitionKey(singleMessageMetadata.getPartitionKey());
+        } else if (msg.msgMetadata.hasPartitionKey()) {
+            msg.msgMetadata.clearPartitionKey();
+            msg.msgMetadata.clearPartitionKeyB64Encoded();
+        }
 
-            if (singleMessageMetadata.hasEventTime()) {
-                msg.msgMetadata.setEventTime(singleMessageMetadata.getEventTime());
-            }
+        if (singleMessageMetadata.hasOrderingKey()) {
+            msg.msgMetadata.setOrderingKey(singleMessageMetadata.getOrderingKey());
+        } else if (msg.msgMetadata.hasOrderingKey()) {
+            msg.msgMetadata.clearOrderingKey();
+        }
 
-            if (singleMessageMetadata.hasSequenceId()) {
-                msg.msgMetadata.setSequenceId(singleMessageMetadata.getSequenceId());
-            }
+        if (singleMessageMetadata.hasEventTime()) {
+            msg.msgMetadata.setEventTime(singleMessageMetadata.getEventTime());
+        }
 
-            if (singleMessageMetadata.hasNullValue()) {
-                msg.msgMetadata.setNullValue(singleMessageMetadata.isNullValue());
-            }
+        if (singleMessageMetadata.hasSequenceId()) {
+            msg.msgMetadata.setSequenceId(singleMessageMetadata.getSequenceId());
+        }
 
-            if (singleMessageMetadata.hasNullPartitionKey()) {
-                msg.msgMetadata.setNullPartitionKey(singleMessageMetadata.isNullPartitionKey());
-            }
-        } else if (msgMetadata.getPropertiesCount() > 0) {
-            msg.properties = Collections.unmodifiableMap(msgMetadata.getPropertiesList().stream().collect(
-                    Collectors.toMap(KeyValue::getKey, KeyValue::getValue, (oldValue, newValue) -> newValue)));
-        } else {
-            msg.properties = Collections.emptyMap();
+        if (singleMessageMetadata.hasNullValue()) {
+            msg.msgMetadata.setNullValue(singleMessageMetadata.isNullValue());
+        }
+
+        if (singleMessageMetadata.hasNullPartitionKey()) {
+            msg.msgMetadata.setNullPartitionKey(singleMessageMetadata.isNullPartitionKey());
         }
     }
 
@@ -306,18 +357,18 @@ public class MessageImpl<T> implements Message<T> {
     }
 
     public void setReplicatedFrom(String cluster) {
-        msgMetadata.setReplicatedFrom(cluster);
+        getMessageBuilder().setReplicatedFrom(cluster);
     }
 
     @Override
     public boolean isReplicated() {
-        return msgMetadata.hasReplicatedFrom();
+        return metadata().hasReplicatedFrom();
     }
 
     @Override
     public String getReplicatedFrom() {
         if (isReplicated()) {
-            return msgMetadata.getReplicatedFrom();
+            return metadata().getReplicatedFrom();
         } else {
             return null;
         }
@@ -325,20 +376,23 @@ public class MessageImpl<T> implements Message<T> {
 
     @Override
     public long getPublishTime() {
-        return msgMetadata.getPublishTime();
+        return metadata().getPublishTime();
     }
 
     @Override
     public long getEventTime() {
-        if (msgMetadata.hasEventTime()) {
-            return msgMetadata.getEventTime();
+        if (batchMetadata != null && singleMetadata.hasEventTime()) {
+            return singleMetadata.getEventTime();
+        }
+        if (metadata().hasEventTime()) {
+            return metadata().getEventTime();
         }
         return 0;
     }
 
     public long getDeliverAtTime() {
-        if (msgMetadata.hasDeliverAtTime()) {
-            return msgMetadata.getDeliverAtTime();
+        if (metadata().hasDeliverAtTime()) {
+            return metadata().getDeliverAtTime();
         }
         return 0;
     }
@@ -352,7 +406,7 @@ public class MessageImpl<T> implements Message<T> {
 
     @Override
     public byte[] getData() {
-        if (msgMetadata.isNullValue()) {
+        if (isNullValue()) {
             return null;
         }
         if (payload.isDirect()) {
@@ -372,7 +426,7 @@ public class MessageImpl<T> implements Message<T> {
 
     @Override
     public int size() {
-        if (msgMetadata.isNullValue()) {
+        if (isNullValue()) {
             return 0;
         }
         return payload.readableBytes();
@@ -407,8 +461,8 @@ public class MessageImpl<T> implements Message<T> {
     // rather than null.
     @Override
     public byte[] getSchemaVersion() {
-        if (msgMetadata.hasSchemaVersion()) {
-            byte[] schemaVersion = msgMetadata.getSchemaVersion();
+        if (metadata().hasSchemaVersion()) {
+            byte[] schemaVersion = metadata().getSchemaVersion();
             return (schemaVersion.length == 0) ? null : schemaVersion;
         } else {
             return null;
@@ -440,7 +494,7 @@ public class MessageImpl<T> implements Message<T> {
     }
 
     public void setSchemaInfoForReplicator(SchemaInfo schemaInfo) {
-        if (msgMetadata.hasReplicatedFrom()) {
+        if (metadata().hasReplicatedFrom()) {
             this.schemaInfoForReplicator = schemaInfo;
             this.schemaHash = SchemaHash.of(schemaInfo);
         } else {
@@ -449,7 +503,7 @@ public class MessageImpl<T> implements Message<T> {
     }
 
     public SchemaInfo getSchemaInfoForReplicator() {
-        return msgMetadata.hasReplicatedFrom() ? this.schemaInfoForReplicator : null;
+        return metadata().hasReplicatedFrom() ? this.schemaInfoForReplicator : null;
     }
 
     @Override
@@ -462,7 +516,7 @@ public class MessageImpl<T> implements Message<T> {
                 return getKeyValue();
             }
         } else {
-            if (msgMetadata.isNullValue()) {
+            if (isNullValue()) {
                 return null;
             }
             // check if the schema passed in from client supports schema versioning or not
@@ -506,7 +560,7 @@ public class MessageImpl<T> implements Message<T> {
     }
 
     private ByteBuffer getByteBuffer() {
-        if (msgMetadata.isNullValue()) {
+        if (isNullValue()) {
             return null;
         }
         return this.payload.nioBuffer();
@@ -547,16 +601,19 @@ public class MessageImpl<T> implements Message<T> {
 
     @Override
     public long getSequenceId() {
-        if (msgMetadata.hasSequenceId()) {
-            return msgMetadata.getSequenceId();
+        if (batchMetadata != null && singleMetadata.hasSequenceId()) {
+            return singleMetadata.getSequenceId();
+        }
+        if (metadata().hasSequenceId()) {
+            return metadata().getSequenceId();
         }
         return -1;
     }
 
     @Override
     public String getProducerName() {
-        if (msgMetadata.hasProducerName()) {
-            return msgMetadata.getProducerName();
+        if (metadata().hasProducerName()) {
+            return metadata().getProducerName();
         }
         return null;
     }
@@ -573,7 +630,17 @@ public class MessageImpl<T> implements Message<T> {
     @Override
     public synchronized Map<String, String> getProperties() {
         if (this.properties == null) {
-            if (msgMetadata.getPropertiesCount() > 0) {
+            if (batchMetadata != null) {
+                if (singleMetadata.getPropertiesCount() > 0) {
+                    Map<String, String> properties = new TreeMap<>();
+                    for (KeyValue entry : singleMetadata.getPropertiesList()) {
+                        properties.put(entry.getKey(), entry.getValue());
+                    }
+                    this.properties = Collections.unmodifiableMap(properties);
+                } else {
+                    this.properties = Collections.emptyMap();
+                }
+            } else if (msgMetadata.getPropertiesCount() > 0) {
                   this.properties = Collections.unmodifiableMap(msgMetadata.getPropertiesList().stream()
                            .collect(Collectors.toMap(KeyValue::getKey, KeyValue::getValue,
                                    (oldValue, newValue) -> newValue)));
@@ -596,11 +663,45 @@ public class MessageImpl<T> implements Message<T> {
     }
 
     public MessageMetadata getMessageBuilder() {
+        if (batchMetadata != null) {
+            // The metadata is about to be read or modified as a whole, so merge the metadata of the message into a
+            // copy of the metadata of the batch, as it's done for the messages that are not decoded lazily
+            msgMetadata.clear();
+            msgMetadata.copyFrom(batchMetadata);
+            applySingleMessageMetadata(this, singleMetadata);
+            clearLazyMetadata();
+        }
         return msgMetadata;
     }
 
+    /**
+     * Metadata of the batch of the message, for the fields that the messages of a batch can't override.
+     */
+    private MessageMetadata metadata() {
+        return batchMetadata != null ? batchMetadata : msgMetadata;
+    }
+
+    boolean isCompactedOut() {
+        return batchMetadata != null && singleMetadata.isCompactedOut();
+    }
+
+    private void clearLazyMetadata() {
+        singleMetadata.clear();
+        batchMetadata = null;
+    }
+
+    private boolean isNullValue() {
+        if (batchMetadata != null && singleMetadata.hasNullValue()) {
+            return singleMetadata.isNullValue();
+        }
+        return metadata().isNullValue();
+    }
+
     @Override
     public boolean hasKey() {
+        if (batchMetadata != null) {
+            return singleMetadata.hasPartitionKey();
+        }
         return msgMetadata.hasPartitionKey();
     }
 
@@ -611,6 +712,9 @@ public class MessageImpl<T> implements Message<T> {
 
     @Override
     public String getKey() {
+        if (batchMetadata != null) {
+            return singleMetadata.hasPartitionKey() ? singleMetadata.getPartitionKey() : null;
+        }
         if (msgMetadata.hasPartitionKey()) {
             return msgMetadata.getPartitionKey();
         } else {
@@ -620,12 +724,15 @@ public class MessageImpl<T> implements Message<T> {
 
     @Override
     public boolean hasBase64EncodedKey() {
+        if (batchMetadata != null) {
+            return singleMetadata.hasPartitionKey() && singleMetadata.isPartitionKeyB64Encoded();
+        }
         return msgMetadata.isPartitionKeyB64Encoded();
     }
 
     @Override
     public byte[] getKeyBytes() {
-        if (!msgMetadata.hasPartitionKey() || msgMetadata.isNullPartitionKey()) {
+        if (!hasKey() || isNullPartitionKey()) {
             return null;
         } else if (hasBase64EncodedKey()) {
             return Base64.getDecoder().decode(getKey());
@@ -634,13 +741,26 @@ public class MessageImpl<T> implements Message<T> {
         }
     }
 
+    private boolean isNullPartitionKey() {
+        if (batchMetadata != null && singleMetadata.hasNullPartitionKey()) {
+            return singleMetadata.isNullPartitionKey();
+        }
+        return metadata().isNullPartitionKey();
+    }
+
     @Override
     public boolean hasOrderingKey() {
+        if (batchMetadata != null) {
+            return singleMetadata.hasOrderingKey();
+        }
         return msgMetadata.hasOrderingKey();
     }
 
     @Override
     public byte[] getOrderingKey() {
+        if (batchMetadata != null) {
+            return singleMetadata.hasOrderingKey() ? singleMetadata.getOrderingKey() : null;
+        }
         if (msgMetadata.hasOrderingKey()) {
             return msgMetadata.getOrderingKey();
         } else {
@@ -667,6 +787,9 @@ public class MessageImpl<T> implements Message<T> {
         if (brokerEntryMetadata != null) {
             brokerEntryMetadata.clear();
         }
+        if (batchMetadata != null) {
+            clearLazyMetadata();
+        }
         cnx = null;
         messageId = null;
         topic = null;
@@ -714,7 +837,7 @@ public class MessageImpl<T> implements Message<T> {
     @Override
     public Optional<Long> getIndex() {
         if (brokerEntryMetadata != null && brokerEntryMetadata.hasIndex()) {
-            if (msgMetadata.hasNumMessagesInBatch() && messageId instanceof BatchMessageIdImpl) {
+            if (metadata().hasNumMessagesInBatch() && messageId instanceof BatchMessageIdImpl) {
                 int batchSize = ((BatchMessageIdImpl) messageId).getBatchSize();
                 int batchIndex = ((BatchMessageIdImpl) messageId).getBatchIndex();
                 return Optional.of(brokerEntryMetadata.getIndex() - batchSize + batchIndex + 1);
@@ -742,15 +865,15 @@ public class MessageImpl<T> implements Message<T> {
     };
 
     public boolean hasReplicateTo() {
-        return msgMetadata.getReplicateTosCount() > 0;
+        return metadata().getReplicateTosCount() > 0;
     }
 
     public List<String> getReplicateTo() {
-        return msgMetadata.getReplicateTosList();
+        return metadata().getReplicateTosList();
     }
 
     public boolean hasReplicateFrom() {
-        return msgMetadata.hasReplicatedFrom();
+        return metadata().hasReplicatedFrom();
     }
 
     public void setMessageId(MessageId messageId) {
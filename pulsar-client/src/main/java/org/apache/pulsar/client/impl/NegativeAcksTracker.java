@@ -23,7 +23,6 @@ import com.google.common.annotations.VisibleForTesting;
 import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import java.io.Closeable;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
@@ -33,15 +32,23 @@ import org.apache.pulsar.client.api.MessageId;
 import org.apache.pulsar.client.api.RedeliveryBackoff;
 import org.apache.pulsar.client.impl.conf.ConsumerConfigurationData;
 
+/**
+ * Tracker of the negatively acknowledged messages, which keeps the message ids in a {@link MessageIdTimingWheel} with
+ * a slot per timer interval, so that the timer only visits the messages that are due rather than all of them.
+ */
 class NegativeAcksTracker implements Closeable {
 
-    private HashMap<MessageId, Long> nackedMessages = null;
+    private static final int WHEEL_SLOTS = 64;
+
+    private MessageIdTimingWheel nackedMessages = null;
 
     private final ConsumerBase<?> consumer;
     private final Timer timer;
     private final long nackDelayNanos;
     private final long timerIntervalNanos;
     private final RedeliveryBackoff negativeAckRedeliveryBackoff;
+    // The ticks of the wheel are the timer intervals elapsed since the creation of the tracker
+    private final long startNanos = System.nanoTime();
 
     private Timeout timeout;
 
@@ -72,14 +79,11 @@ class NegativeAcksTracker implements Closeable {
         // Group all the nacked messages into one single re-delivery request
         Set<MessageId> messagesToRedeliver = new HashSet<>();
         long now = System.nanoTime();
-        nackedMessages.forEach((msgId, timestamp) -> {
-            if (timestamp < now) {
-                addChunkedMessageIdsAndRemoveFromSequenceMap(msgId, messagesToRedeliver, this.consumer);
-                messagesToRedeliver.add(msgId);
-            }
+        nackedMessages.expire((now - startNanos) / timerIntervalNanos, msgId -> {
+            addChunkedMessageIdsAndRemoveFromSequenceMap(msgId, messagesToRedeliver, this.consumer);
+            messagesToRedeliver.add(msgId);
         });
 
-        messagesToRedeliver.forEach(nackedMessages::remove);
         consumer.onNegativeAcksSend(messagesToRedeliver);
         consumer.redeliverUnacknowledgedMessages(messagesToRedeliver);
 
@@ -95,16 +99,16 @@ class NegativeAcksTracker implements Closeable {
     }
 
     private synchronized void add(MessageId messageId, int redeliveryCount) {
-        messageId = MessageIdImpl.convertToMessageIdImpl(messageId);
+        MessageIdImpl msgId = MessageIdImpl.convertToMessageIdImpl(messageId);
 
-        if (messageId instanceof BatchMessageIdImpl) {
-            BatchMessageIdImpl batchMessageId = (BatchMessageIdImpl) messageId;
-            messageId = new MessageIdImpl(batchMessageId.getLedgerId(), batchMessageId.getEntryId(),
+        if (msgId instanceof BatchMessageIdImpl) {
+            BatchMessageIdImpl batchMessageId = (BatchMessageIdImpl) msgId;
+            msgId = new MessageIdImpl(batchMessageId.getLedgerId(), batchMessageId.getEntryId(),
                     batchMessageId.getPartitionIndex());
         }
 
         if (nackedMessages == null) {
-            nackedMessages = new HashMap<>();
+            nackedMessages = new MessageIdTimingWheel(WHEEL_SLOTS);
         }
 
         long backoffNs;
@@ -113,7 +117,9 @@ class NegativeAcksTracker implements Closeable {
         } else {
             backoffNs = nackDelayNanos;
         }
-        nackedMessages.put(messageId, System.nanoTime() + backoffNs);
+        // Round the redelivery up to the next tick, so that the message isn't redelivered before its delay
+        long elapsedNanos = System.nanoTime() + backoffNs - startNanos;
+        nackedMessages.put(msgId, (elapsedNanos + timerIntervalNanos - 1) / timerIntervalNanos);
 
         if (this.timeout == null) {
             // Schedule a task and group all the redeliveries for same period. Leave a small buffer to allow for
@@ -124,7 +130,7 @@ class NegativeAcksTracker implements Closeable {
 
     @VisibleForTesting
     Optional<Integer> getNackedMessagesCount() {
-        return Optional.ofNullable(nackedMessages).map(HashMap::size);
+        return Optional.ofNullable(nackedMessages).map(MessageIdTimingWheel::size);
     }
 
     @Override
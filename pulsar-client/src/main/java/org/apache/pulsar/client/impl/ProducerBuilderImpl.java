@@ -173,6 +173,12 @@ public class ProducerBuilderImpl<T> implements ProducerBuilder<T> {
         return this;
     }
 
+    @Override
+    public ProducerBuilder<T> enableCompressionDictionary(boolean enableCompressionDictionary) {
+        conf.setCompressionDictionaryEnabled(enableCompressionDictionary);
+        return this;
+    }
+
     @Override
     public ProducerBuilder<T> hashingScheme(@NonNull HashingScheme hashingScheme) {
         conf.setHashingScheme(hashingScheme);
@@ -191,6 +197,12 @@ public class ProducerBuilderImpl<T> implements ProducerBuilder<T> {
         return this;
     }
 
+    @Override
+    public ProducerBuilder<T> enableAdaptiveBatching(boolean adaptiveBatchingEnabled) {
+        conf.setAdaptiveBatchingEnabled(adaptiveBatchingEnabled);
+        return this;
+    }
+
     @Override
     public ProducerBuilder<T> enableChunking(boolean chunkingEnabled) {
         conf.setChunkingEnabled(chunkingEnabled);
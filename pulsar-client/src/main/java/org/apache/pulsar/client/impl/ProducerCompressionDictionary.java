@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.common.compression.CompressionCodecZstdDictionary;
+import org.apache.pulsar.common.protocol.Commands;
+
+/**
+ * The zstd dictionary a producer compresses its batches with.
+ *
+ * <p>The dictionaries of a topic are stored by the brokers, in the schema registry. Once connected, the producer
+ * fetches the latest dictionary of the topic. If there is none, it samples the payloads of the first messages it
+ * sends, trains a dictionary on them once it has enough samples, and adds it to the topic. Until a dictionary is
+ * available, the batches are compressed without dictionary. Training the dictionary happens on the given executor,
+ * never on the threads sending the messages.
+ *
+ * <p>The dictionaries are only used with the brokers that support them, since these brokers make sure that the
+ * consumers of the topic can decompress the messages.
+ */
+@Slf4j
+class ProducerCompressionDictionary {
+
+    static final int MAX_SAMPLES = 1000;
+    static final int MAX_SAMPLES_BYTES = 1024 * 1024;
+    static final int DICTIONARY_SIZE = 16 * 1024;
+
+    private final ProducerImpl<?> producer;
+    private final Executor executor;
+
+    private volatile CompressionCodecZstdDictionary codec;
+    private volatile boolean sampling = true;
+
+    // Guarded by this
+    private boolean loading;
+    private List<byte[]> samples = new ArrayList<>();
+    private int samplesBytes;
+
+    ProducerCompressionDictionary(ProducerImpl<?> producer, Executor executor) {
+        this.producer = producer;
+        this.executor = executor;
+    }
+
+    /**
+     * Load the latest dictionary of the topic, the first time the producer is connected to a broker.
+     */
+    void connectionOpened(ClientCnx cnx) {
+        synchronized (this) {
+            if (loading) {
+                return;
+            }
+            loading = true;
+        }
+        String topic = producer.getTopic();
+        if (!Commands.peerSupportsCompressionDictionaries(cnx.getRemoteEndpointProtocolVersion())) {
+            stopSampling();
+            log.info("[{}] The broker doesn't support compression dictionaries, compressing without dictionary",
+                    topic);
+            return;
+        }
+        long requestId = producer.getClient().newRequestId();
+        cnx.sendGetCompressionDictionary(Commands.newGetCompressionDictionary(requestId, topic, Optional.empty()),
+                requestId).whenComplete((latest, ex) -> {
+                    if (ex != null) {
+                        stopSampling();
+                        log.warn("[{}] Failed to load the zstd dictionary, compressing without dictionary", topic,
+                                ex);
+                    } else if (latest.isPresent()) {
+                        stopSampling();
+                        codec = latest.get();
+                        log.info("[{}] Compressing with the zstd dictionary {}", topic, codec.getDictionaryId());
+                    }
+                });
+    }
+
+    /**
+     * @return the codec of the dictionary, or null if the dictionary is not available yet or the producer is not
+     *         connected to a broker that supports it
+     */
+    CompressionCodecZstdDictionary getCodec() {
+        CompressionCodecZstdDictionary codec = this.codec;
+        if (codec == null) {
+            return null;
+        }
+        ClientCnx cnx = producer.getClientCnx();
+        if (cnx == null || !Commands.peerSupportsCompressionDictionaries(cnx.getRemoteEndpointProtocolVersion())) {
+            return null;
+        }
+        return codec;
+    }
+
+    /**
+     * Sample the payload of a message sent by the producer, until there are enough samples to train a dictionary.
+     */
+    void sample(ByteBuf payload) {
+        if (!sampling) {
+            return;
+        }
+        List<byte[]> toTrain = null;
+        synchronized (this) {
+            if (samples == null) {
+                return;
+            }
+            byte[] sample = ByteBufUtil.getBytes(payload, payload.readerIndex(), payload.readableBytes());
+            samples.add(sample);
+            samplesBytes += sample.length;
+            if (samples.size() >= MAX_SAMPLES || samplesBytes >= MAX_SAMPLES_BYTES) {
+                toTrain = samples;
+                samples = null;
+                sampling = false;
+            }
+        }
+        if (toTrain != null) {
+            List<byte[]> trainingSamples = toTrain;
+            executor.execute(() -> train(trainingSamples));
+        }
+    }
+
+    private void train(List<byte[]> trainingSamples) {
+        String topic = producer.getTopic();
+        if (codec != null) {
+            // The latest dictionary of the topic got loaded in the meantime
+            return;
+        }
+        byte[] dictionary;
+        try {
+            dictionary = CompressionCodecZstdDictionary.train(trainingSamples, DICTIONARY_SIZE);
+        } catch (Throwable t) {
+            log.warn("[{}] Failed to train the zstd dictionary, compressing without dictionary", topic, t);
+            return;
+        }
+
+        ClientCnx cnx = producer.getClientCnx();
+        if (cnx == null || !Commands.peerSupportsCompressionDictionaries(cnx.getRemoteEndpointProtocolVersion())) {
+            log.warn("[{}] Not connected to a broker that supports compression dictionaries, compressing without "
+                    + "dictionary", topic);
+            return;
+        }
+        long requestId = producer.getClient().newRequestId();
+        cnx.sendAddCompressionDictionary(Commands.newAddCompressionDictionary(requestId, topic, dictionary), requestId)
+                .thenAccept(dictionaryId -> {
+                    codec = new CompressionCodecZstdDictionary(dictionaryId, dictionary);
+                    log.info("[{}] Trained the zstd dictionary {} on {} samples", topic, dictionaryId,
+                            trainingSamples.size());
+                }).exceptionally(ex -> {
+                    log.warn("[{}] Failed to add the zstd dictionary, compressing without dictionary", topic, ex);
+                    return null;
+                });
+    }
+
+    private synchronized void stopSampling() {
+        samples = null;
+        sampling = false;
+    }
+}
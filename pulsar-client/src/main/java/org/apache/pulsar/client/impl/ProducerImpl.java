@@ -77,6 +77,7 @@ import org.apache.pulsar.client.impl.conf.ProducerConfigurationData;
 import org.apache.pulsar.client.impl.crypto.MessageCryptoBc;
 import org.apache.pulsar.client.impl.schema.JSONSchema;
 import org.apache.pulsar.client.impl.transaction.TransactionImpl;
+import org.apache.pulsar.client.util.CombiningQueue;
 import org.apache.pulsar.client.util.MathUtils;
 import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
@@ -117,6 +118,10 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
     private volatile long producerDeadline = 0; // gets set on first successful connection
 
     private final BatchMessageContainerBase batchMessageContainer;
+    // Messages to add to the batch container, by the thread that holds the lock of the producer, at most a batch
+    // worth of them each time it takes the lock
+    private final CombiningQueue<BatchedSend> pendingBatchedSends = new CombiningQueue<>(this,
+            Math.max(1, conf.getBatchingMaxMessages()), this::addToBatch, client.getInternalExecutorService());
     private CompletableFuture<MessageId> lastSendFuture = CompletableFuture.completedFuture(null);
     private LastSendFutureWrapper lastSendFutureWrapper = LastSendFutureWrapper.create(lastSendFuture);
 
@@ -131,6 +136,8 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
     private final ProducerStatsRecorder stats;
 
     private final CompressionCodec compressor;
+    private final ProducerCompressionDictionary compressionDictionary;
+    private final AdaptiveBatching adaptiveBatching;
 
     static final AtomicLongFieldUpdater<ProducerImpl> LAST_SEQ_ID_PUBLISHED_UPDATER = AtomicLongFieldUpdater
             .newUpdater(ProducerImpl.class, "lastSequenceIdPublished");
@@ -244,6 +251,12 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         }
 
         this.lookupDeadline = System.currentTimeMillis() + client.getConfiguration().getLookupTimeoutMs();
+        if (conf.isBatchingEnabled() && conf.getCompressionType() == CompressionType.ZSTD
+                && conf.isCompressionDictionaryEnabled()) {
+            this.compressionDictionary = new ProducerCompressionDictionary(this, client.getInternalExecutorService());
+        } else {
+            this.compressionDictionary = null;
+        }
         if (conf.isBatchingEnabled()) {
             BatcherBuilder containerBuilder = conf.getBatcherBuilder();
             if (containerBuilder == null) {
@@ -254,6 +267,12 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         } else {
             this.batchMessageContainer = null;
         }
+        if (conf.isBatchingEnabled() && conf.isAdaptiveBatchingEnabled()) {
+            this.adaptiveBatching = new AdaptiveBatching(conf.getBatchingMaxMessages(),
+                    TimeUnit.MICROSECONDS.toNanos(conf.getBatchingMaxPublishDelayMicros()));
+        } else {
+            this.adaptiveBatching = null;
+        }
         if (client.getConfiguration().getStatsIntervalSeconds() > 0) {
             stats = new ProducerStatsRecorderImpl(client, conf, this);
         } else {
@@ -426,6 +445,13 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         return compressedPayload;
     }
 
+    /**
+     * @return the zstd dictionary the batches are compressed with, or null if there is none
+     */
+    ProducerCompressionDictionary getCompressionDictionary() {
+        return compressionDictionary;
+    }
+
     public void sendAsync(Message<?> message, SendCallback callback) {
         checkArgument(message instanceof MessageImpl);
 
@@ -521,6 +547,12 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
             }
         }
 
+        if (totalChunks == 1 && canAddToBatch(msg)) {
+            // The message is added to the batch by the thread holding the lock, without waiting for it
+            pendingBatchedSends.add(new BatchedSend(msg, payload, uncompressedSize, callback, msg.getMessageId()));
+            return;
+        }
+
         try {
             int readStartIndex = 0;
             ChunkedMessageCtx chunkedMessageCtx = totalChunks > 1 ? ChunkedMessageCtx.get(totalChunks) : null;
@@ -550,6 +582,8 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
                     return;
                 }
                 synchronized (this) {
+                    // The messages that were sent before have to get the lower sequence ids
+                    pendingBatchedSends.drain();
                     // Update the message metadata before computing the payload chunk size
                     // to avoid a large message cannot be split into chunks.
                     final long sequenceId = updateMessageMetadataSequenceId(msgMetadata);
@@ -570,6 +604,42 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         }
     }
 
+    /**
+     * A message to add to the current batch, waiting for a thread to hold the producer lock.
+     */
+    private static final class BatchedSend {
+        private final MessageImpl<?> msg;
+        private final ByteBuf payload;
+        private final int uncompressedSize;
+        private final SendCallback callback;
+        private final MessageId messageId;
+
+        private BatchedSend(MessageImpl<?> msg, ByteBuf payload, int uncompressedSize, SendCallback callback,
+                            MessageId messageId) {
+            this.msg = msg;
+            this.payload = payload;
+            this.uncompressedSize = uncompressedSize;
+            this.callback = callback;
+            this.messageId = messageId;
+        }
+    }
+
+    // Called from within the ProducerImpl object mutex
+    private void addToBatch(BatchedSend send) {
+        MessageImpl<?> msg = send.msg;
+        try {
+            final long sequenceId = updateMessageMetadataSequenceId(msg.getMessageBuilder());
+            serializeAndSendMessage(msg, send.payload, sequenceId, null, 0, 1, 0, ClientCnx.getMaxMessageSize(),
+                    send.payload, false, send.payload.readableBytes(), send.callback, null, send.messageId);
+        } catch (PulsarClientException e) {
+            e.setSequenceId(msg.getSequenceId());
+            completeCallbackAndReleaseSemaphore(send.uncompressedSize, send.callback, e);
+        } catch (Throwable t) {
+            completeCallbackAndReleaseSemaphore(send.uncompressedSize, send.callback,
+                    new PulsarClientException(t, msg.getSequenceId()));
+        }
+    }
+
     /**
      * Update the message metadata except those fields that will be updated for chunks later.
      *
@@ -870,6 +940,10 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
     }
 
     private void triggerSendIfFullOrScheduleFlush(boolean isBatchFull) {
+        if (adaptiveBatching != null && adaptiveBatching.messageAdded(System.nanoTime(),
+                batchMessageContainer.getNumMessagesInBatch(), pendingMessages.size())) {
+            isBatchFull = true;
+        }
         if (isBatchFull) {
             batchMessageAndSend(false);
         } else {
@@ -1164,6 +1238,15 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
                     }
                     pendingMessages.remove();
                     releaseSemaphoreForSendOp(op);
+                    if (adaptiveBatching != null) {
+                        adaptiveBatching.ackReceived(System.nanoTime()
+                                - (op.lastSentAt != -1L ? op.lastSentAt : op.createdAt));
+                        if (pendingMessages.size() == 0) {
+                            // Nothing in flight anymore, send the messages that accumulated in the meantime
+                            pendingBatchedSends.drain();
+                            batchMessageAndSend(false);
+                        }
+                    }
                 } else {
                     log.warn("[{}] [{}] Got ack for batch msg error. expecting: {} - {} - got: {} - {} - queue-size: {}"
                                     + "",
@@ -1626,6 +1709,10 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
             return delegate.peek();
         }
 
+        public int size() {
+            return delegate.size() + (postponedOpSendMgs != null ? postponedOpSendMgs.size() : 0);
+        }
+
         public int messagesCount() {
             return messagesCount.get();
         }
@@ -1731,6 +1818,10 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
 
                         resendMessages(cnx, epoch);
                     }
+
+                    if (compressionDictionary != null) {
+                        compressionDictionary.connectionOpened(cnx);
+                    }
                 }).exceptionally((e) -> {
                     Throwable cause = e.getCause();
                     cnx.removeProducer(producerId);
@@ -2016,6 +2107,7 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
      */
     private void failPendingMessages(ClientCnx cnx, PulsarClientException ex) {
         if (cnx == null) {
+            pendingBatchedSends.drain();
             final AtomicInteger releaseCount = new AtomicInteger();
             final boolean batchMessagingEnabled = isBatchMessagingEnabled();
             pendingMessages.forEach(op -> {
@@ -2076,6 +2168,7 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
     public CompletableFuture<Void> flushAsync() {
         synchronized (ProducerImpl.this) {
             if (isBatchMessagingEnabled()) {
+                pendingBatchedSends.drain();
                 batchMessageAndSend(false);
             }
             CompletableFuture<MessageId>  lastSendFuture = this.lastSendFuture;
@@ -2091,6 +2184,7 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
     protected void triggerFlush() {
         if (isBatchMessagingEnabled()) {
             synchronized (ProducerImpl.this) {
+                pendingBatchedSends.drain();
                 batchMessageAndSend(false);
             }
         }
@@ -2311,6 +2405,13 @@ public class ProducerImpl<T> extends ProducerBase<T> implements TimerTask, Conne
         return cnx() != null ? connectedSince : null;
     }
 
+    /**
+     * @return the number of messages the adaptive batching currently sends the batches at, or 0 if it is disabled
+     */
+    public int getEffectiveBatchSize() {
+        return adaptiveBatching != null ? adaptiveBatching.getTargetNumMessages() : 0;
+    }
+
     public int getPendingQueueSize() {
         if (isBatchMessagingEnabled()) {
             synchronized (this) {
@@ -335,6 +335,11 @@ public class ProducerStatsRecorderImpl implements ProducerStatsRecorder {
         return producer.getPendingQueueSize();
     }
 
+    @Override
+    public int getEffectiveBatchSize() {
+        return producer != null ? producer.getEffectiveBatchSize() : 0;
+    }
+
     public void cancelStatsTimeout() {
         this.updateStats();
         if (statTimeout != null) {
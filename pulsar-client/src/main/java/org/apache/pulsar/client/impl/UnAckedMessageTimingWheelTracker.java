@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.impl.conf.ConsumerConfigurationData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unacknowledged message tracker of a single topic consumer, which keeps the message ids in a
+ * {@link MessageIdTimingWheel} rather than in the hash sets of the time partitions of the
+ * {@link UnAckedMessageTracker}, with a slot of the wheel per time partition.
+ *
+ * <p>The messages are redelivered after the same number of ticks as with the {@link UnAckedMessageTracker}.
+ */
+class UnAckedMessageTimingWheelTracker extends UnAckedMessageTracker {
+    private static final Logger log = LoggerFactory.getLogger(UnAckedMessageTimingWheelTracker.class);
+
+    private final MessageIdTimingWheel wheel;
+    // Number of ticks before a message is redelivered, which is the number of time partitions of the
+    // UnAckedMessageTracker
+    private final int timeoutTicks;
+
+    UnAckedMessageTimingWheelTracker(PulsarClientImpl client, ConsumerBase<?> consumerBase,
+                                     ConsumerConfigurationData<?> conf) {
+        super(conf);
+        this.timeoutTicks = (int) Math.ceil((double) this.ackTimeoutMillis / this.tickDurationInMs) + 1;
+        this.wheel = new MessageIdTimingWheel(timeoutTicks + 1);
+        timeout = client.timer().newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout t) throws Exception {
+                if (t.isCancelled()) {
+                    return;
+                }
+
+                Set<MessageId> messageIds = TL_MESSAGE_IDS_SET.get();
+                messageIds.clear();
+
+                writeLock.lock();
+                try {
+                    wheel.expire(wheel.tick() + 1, messageId -> {
+                        addChunkedMessageIdsAndRemoveFromSequenceMap(messageId, messageIds, consumerBase);
+                        messageIds.add(messageId);
+                    });
+                    if (!messageIds.isEmpty()) {
+                        log.info("[{}] {} messages will be re-delivered", consumerBase, messageIds.size());
+                    }
+                } finally {
+                    try {
+                        timeout = client.timer().newTimeout(this, tickDurationInMs, TimeUnit.MILLISECONDS);
+                    } finally {
+                        writeLock.unlock();
+
+                        if (!messageIds.isEmpty()) {
+                            consumerBase.onAckTimeoutSend(messageIds);
+                            consumerBase.redeliverUnacknowledgedMessages(messageIds);
+                        }
+                    }
+                }
+            }
+        }, this.tickDurationInMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void clear() {
+        writeLock.lock();
+        try {
+            wheel.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean add(MessageId messageId) {
+        writeLock.lock();
+        try {
+            return wheel.add(MessageIdImpl.convertToMessageIdImpl(messageId), wheel.tick() + timeoutTicks);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    boolean isEmpty() {
+        readLock.lock();
+        try {
+            return wheel.isEmpty();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @VisibleForTesting
+    boolean contains(MessageId messageId) {
+        readLock.lock();
+        try {
+            return wheel.contains(MessageIdImpl.convertToMessageIdImpl(messageId));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(MessageId messageId) {
+        writeLock.lock();
+        try {
+            return wheel.remove(MessageIdImpl.convertToMessageIdImpl(messageId));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    long size() {
+        readLock.lock();
+        try {
+            return wheel.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int removeMessagesTill(MessageId msgId) {
+        writeLock.lock();
+        try {
+            return wheel.removeUpTo(MessageIdImpl.convertToMessageIdImpl(msgId));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
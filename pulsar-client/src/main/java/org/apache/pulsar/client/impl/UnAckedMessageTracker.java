@@ -98,6 +98,20 @@ public class UnAckedMessageTracker implements Closeable {
         this.tickDurationInMs = 0;
     }
 
+    /**
+     * Constructor for the trackers that keep the message ids in their own structure, without the time partitions.
+     */
+    protected UnAckedMessageTracker(ConsumerConfigurationData<?> conf) {
+        this.ackTimeoutMillis = conf.getAckTimeoutMillis();
+        this.tickDurationInMs = Math.min(conf.getTickDurationMillis(), conf.getAckTimeoutMillis());
+        checkArgument(tickDurationInMs > 0 && ackTimeoutMillis >= tickDurationInMs);
+        ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+        this.readLock = readWriteLock.readLock();
+        this.writeLock = readWriteLock.writeLock();
+        this.messageIdPartitionMap = null;
+        this.timePartitions = null;
+    }
+
     protected static final FastThreadLocal<HashSet<MessageId>> TL_MESSAGE_IDS_SET =
             new FastThreadLocal<HashSet<MessageId>>() {
         @Override
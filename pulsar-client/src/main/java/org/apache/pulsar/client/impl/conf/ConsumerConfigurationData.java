@@ -391,6 +391,15 @@ public class ConsumerConfigurationData<T> implements Serializable, Cloneable {
 
     private boolean poolMessages = false;
 
+    @ApiModelProperty(
+            name = "lazyMessageDecoding",
+            value = "Whether to decode the messages of a batch lazily, sharing the buffer and the metadata of the batch"
+                    + " and releasing them when they're acknowledged.\n"
+                    + "\n"
+                    + "It's ignored when a dead letter policy is configured."
+    )
+    private boolean lazyMessageDecoding = false;
+
     @JsonIgnore
     private transient MessagePayloadProcessor payloadProcessor = null;
 
@@ -160,6 +160,13 @@ public class ProducerConfigurationData implements Serializable, Cloneable {
             value = "Enable batching of messages."
     )
     private boolean batchingEnabled = true; // enabled by default
+
+    @ApiModelProperty(
+            name = "adaptiveBatchingEnabled",
+            value = "Adapt when the batches are sent to the rate of the messages and to the ack latency, within the"
+                    + " batching max publish delay."
+    )
+    private boolean adaptiveBatchingEnabled = false;
     @JsonIgnore
     private BatcherBuilder batcherBuilder = BatcherBuilder.DEFAULT;
 
@@ -189,6 +196,13 @@ public class ProducerConfigurationData implements Serializable, Cloneable {
     )
     private CompressionType compressionType = CompressionType.NONE;
 
+    @ApiModelProperty(
+            name = "compressionDictionaryEnabled",
+            value = "Compress the batches with a zstd dictionary trained on the messages of the topic, when the"
+                    + " compression type is ZSTD and batching is enabled."
+    )
+    private boolean compressionDictionaryEnabled = false;
+
     // Cannot use Optional<Long> since it's not serializable
     private Long initialSequenceId = null;
 
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.util;
+
+import io.netty.util.internal.PlatformDependent;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Queue of items that have to be processed while holding a lock, added by many threads without waiting for it.
+ *
+ * <p>The threads append their items to a lock-free queue, and the first one that finds the queue not being drained
+ * takes the lock and processes the items of the other threads along with its own, while the others return right
+ * away. The items are processed in the order they were added, and the lock is taken once for many items instead of
+ * once per item, so that the threads don't queue up on it.
+ *
+ * <p>The lock is released after at most maxItemsPerPass items, so that the other code waiting for it is not delayed
+ * by a long run of items, and a thread stops processing the items after the pass that processed its own one, so that
+ * it is not kept processing the items of the other threads. The items it leaves in the queue are processed by the
+ * next thread that adds one, or by the executor.
+ *
+ * <p>The other code that holds the lock and depends on the items being processed has to {@link #drain()} the queue
+ * first.
+ */
+public class CombiningQueue<T> {
+
+    private final Queue<T> queue = PlatformDependent.newMpscQueue();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Object lock;
+    private final int maxItemsPerPass;
+    private final Consumer<T> processor;
+    private final Executor executor;
+
+    /**
+     * @param lock the lock to hold while processing the items
+     * @param maxItemsPerPass the max number of items processed each time the lock is taken
+     * @param processor the processing of an item, which must not throw
+     * @param executor the executor that processes the items left in the queue by the threads that added them
+     */
+    public CombiningQueue(Object lock, int maxItemsPerPass, Consumer<T> processor, Executor executor) {
+        if (maxItemsPerPass <= 0) {
+            throw new IllegalArgumentException("maxItemsPerPass must be positive");
+        }
+        this.lock = lock;
+        this.maxItemsPerPass = maxItemsPerPass;
+        this.processor = processor;
+        this.executor = executor;
+    }
+
+    /**
+     * Add an item, and process the queued items until this one is processed, unless another thread is already doing
+     * it.
+     */
+    public void add(T item) {
+        queue.add(item);
+        // The thread that is draining either processes the item, or leaves it to the executor when it stops
+        while (draining.compareAndSet(false, true)) {
+            boolean processed;
+            try {
+                synchronized (lock) {
+                    processed = drain(maxItemsPerPass, item);
+                }
+            } finally {
+                draining.set(false);
+            }
+            if (queue.isEmpty()) {
+                return;
+            }
+            if (processed) {
+                scheduleDrain();
+                return;
+            }
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                drainScheduled.set(false);
+                if (!draining.compareAndSet(false, true)) {
+                    // The thread that is draining schedules another drain if it leaves items in the queue
+                    return;
+                }
+                try {
+                    synchronized (lock) {
+                        drain(maxItemsPerPass, null);
+                    }
+                } finally {
+                    draining.set(false);
+                }
+                if (!queue.isEmpty()) {
+                    scheduleDrain();
+                }
+            });
+        }
+    }
+
+    /**
+     * Process the queued items. Must be called while holding the lock.
+     */
+    public void drain() {
+        drain(Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * @return whether the given item has been processed
+     */
+    private boolean drain(int maxItems, T until) {
+        T item;
+        boolean processed = false;
+        for (int i = 0; i < maxItems && (item = queue.poll()) != null; i++) {
+            processor.accept(item);
+            processed |= item == until;
+        }
+        return processed;
+    }
+}
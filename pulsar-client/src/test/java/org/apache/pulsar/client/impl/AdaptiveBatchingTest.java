@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+public class AdaptiveBatchingTest {
+
+    private static final long MAX_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void testSendRightAwayWithoutBatchInFlight() {
+        AdaptiveBatching batching = new AdaptiveBatching(1000, MAX_DELAY_NANOS);
+        assertTrue(batching.messageAdded(0, 1, 0));
+        assertTrue(batching.messageAdded(TimeUnit.MILLISECONDS.toNanos(1), 1, 0));
+        assertEquals(batching.getTargetNumMessages(), 1);
+    }
+
+    @Test
+    public void testTargetFollowsRateAndLatency() {
+        AdaptiveBatching batching = new AdaptiveBatching(1000, MAX_DELAY_NANOS);
+        // One message every 10us, acked after 2ms: 200 messages arrive during a round trip
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            batching.messageAdded(now, 1, 1);
+            now += TimeUnit.MICROSECONDS.toNanos(10);
+        }
+        batching.ackReceived(TimeUnit.MILLISECONDS.toNanos(2));
+        assertEquals(batching.getTargetNumMessages(), 200);
+        assertFalse(batching.messageAdded(now, 199, 1));
+        assertTrue(batching.messageAdded(now + TimeUnit.MICROSECONDS.toNanos(10), 200, 1));
+
+        // The ack latency drops, the batches shrink
+        for (int i = 0; i < 100; i++) {
+            batching.ackReceived(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        assertEquals(batching.getTargetNumMessages(), 10);
+
+        // The rate drops, down to one message per batch
+        for (int i = 0; i < 100; i++) {
+            now += TimeUnit.MILLISECONDS.toNanos(1);
+            batching.messageAdded(now, 1, 1);
+        }
+        assertEquals(batching.getTargetNumMessages(), 1);
+    }
+
+    @Test
+    public void testBounds() {
+        AdaptiveBatching batching = new AdaptiveBatching(50, MAX_DELAY_NANOS);
+        batching.messageAdded(0, 1, 1);
+        batching.messageAdded(1, 1, 1);
+        batching.ackReceived(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(batching.getTargetNumMessages(), 50);
+
+        // A long pause counts as the max publish delay only, so that the next burst doesn't start at one message
+        AdaptiveBatching paused = new AdaptiveBatching(1000, MAX_DELAY_NANOS);
+        paused.ackReceived(TimeUnit.MILLISECONDS.toNanos(100));
+        paused.messageAdded(0, 1, 1);
+        paused.messageAdded(TimeUnit.HOURS.toNanos(1), 1, 1);
+        assertEquals(paused.getTargetNumMessages(), 10);
+    }
+}
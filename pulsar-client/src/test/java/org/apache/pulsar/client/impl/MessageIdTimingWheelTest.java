@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.testng.annotations.Test;
+
+public class MessageIdTimingWheelTest {
+
+    private static List<MessageIdImpl> expire(MessageIdTimingWheel wheel, long tick) {
+        List<MessageIdImpl> expired = new ArrayList<>();
+        wheel.expire(tick, expired::add);
+        return expired;
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        MessageIdTimingWheel wheel = new MessageIdTimingWheel(4);
+        MessageIdImpl id = new MessageIdImpl(1, 1, -1);
+        BatchMessageIdImpl batchId = new BatchMessageIdImpl(1, 1, -1, 0);
+
+        assertTrue(wheel.add(id, 2));
+        assertFalse(wheel.add(new MessageIdImpl(1, 1, -1), 3));
+        assertTrue(wheel.add(batchId, 2));
+        assertEquals(wheel.size(), 2);
+        assertTrue(wheel.contains(new MessageIdImpl(1, 1, -1)));
+        assertTrue(wheel.contains(new BatchMessageIdImpl(1, 1, -1, 0)));
+        assertFalse(wheel.contains(new BatchMessageIdImpl(1, 1, -1, 1)));
+
+        assertTrue(wheel.remove(id));
+        assertFalse(wheel.remove(id));
+        assertEquals(wheel.size(), 1);
+        assertEquals(expire(wheel, 2), Collections.singletonList(batchId));
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void testExpire() {
+        MessageIdTimingWheel wheel = new MessageIdTimingWheel(4);
+        // Ticks beyond the size of the wheel are expired in a later round
+        wheel.add(new MessageIdImpl(1, 1, 0), 1);
+        wheel.add(new MessageIdImpl(1, 2, 0), 5);
+        wheel.add(new MessageIdImpl(1, 3, 0), 9);
+
+        assertEquals(expire(wheel, 1), Collections.singletonList(new MessageIdImpl(1, 1, 0)));
+        assertEquals(expire(wheel, 4), Collections.emptyList());
+        assertEquals(expire(wheel, 5), Collections.singletonList(new MessageIdImpl(1, 2, 0)));
+        assertEquals(wheel.tick(), 5);
+
+        // A message is never expired before its tick, and added to the next tick if it's already past
+        wheel.add(new MessageIdImpl(1, 4, 0), 3);
+        wheel.put(new MessageIdImpl(1, 3, 0), 6);
+        assertEquals(new HashSet<>(expire(wheel, 6)),
+                Sets.newHashSet(new MessageIdImpl(1, 3, 0), new MessageIdImpl(1, 4, 0)));
+
+        // A wheel late by several rounds expires everything that is due at once
+        wheel.add(new MessageIdImpl(2, 1, 0), 8);
+        wheel.add(new MessageIdImpl(2, 2, 0), 20);
+        wheel.add(new MessageIdImpl(2, 3, 0), 30);
+        assertEquals(new HashSet<>(expire(wheel, 25)),
+                Sets.newHashSet(new MessageIdImpl(2, 1, 0), new MessageIdImpl(2, 2, 0)));
+        assertEquals(wheel.size(), 1);
+
+        wheel.clear();
+        assertTrue(wheel.isEmpty());
+        assertEquals(expire(wheel, 40), Collections.emptyList());
+    }
+
+    @Test
+    public void testRemoveUpTo() {
+        MessageIdTimingWheel wheel = new MessageIdTimingWheel(8);
+        for (int i = 0; i < 10; i++) {
+            wheel.add(new MessageIdImpl(1, i, -1), i);
+            wheel.add(new BatchMessageIdImpl(2, i, -1, 0), i);
+        }
+        assertEquals(wheel.removeUpTo(new MessageIdImpl(1, 4, -1)), 5);
+        assertEquals(wheel.size(), 15);
+        assertFalse(wheel.contains(new MessageIdImpl(1, 4, -1)));
+        assertTrue(wheel.contains(new MessageIdImpl(1, 5, -1)));
+
+        // The ids of the previous ledgers are all before the given one
+        assertEquals(wheel.removeUpTo(new BatchMessageIdImpl(2, 2, -1, 0)), 8);
+        assertEquals(wheel.size(), 7);
+        assertTrue(wheel.contains(new BatchMessageIdImpl(2, 3, -1, 0)));
+    }
+
+    @Test
+    public void testChunkMessageId() {
+        MessageIdTimingWheel wheel = new MessageIdTimingWheel(4);
+        ChunkMessageIdImpl chunkId = new ChunkMessageIdImpl(new MessageIdImpl(1, 1, -1), new MessageIdImpl(1, 3, -1));
+        wheel.add(chunkId, 1);
+
+        // The chunk message id is given back as is, to find its chunks on redelivery
+        List<MessageIdImpl> expired = expire(wheel, 1);
+        assertEquals(expired.size(), 1);
+        assertSame(expired.get(0), chunkId);
+    }
+
+    /**
+     * Random operations on the wheel have to match the ones on a map from the message id to its tick.
+     */
+    @Test
+    public void testMatchesMap() {
+        MessageIdTimingWheel wheel = new MessageIdTimingWheel(16);
+        Map<MessageIdImpl, Long> expected = new HashMap<>();
+        Random random = new Random(1);
+        long tick = 0;
+        for (int i = 0; i < 100_000; i++) {
+            MessageIdImpl id = random.nextBoolean()
+                    ? new MessageIdImpl(random.nextInt(4), random.nextInt(500), random.nextInt(2))
+                    : new BatchMessageIdImpl(random.nextInt(4), random.nextInt(500), random.nextInt(2),
+                            random.nextInt(4));
+            switch (random.nextInt(5)) {
+                case 0:
+                case 1:
+                    long expireAt = tick + 1 + random.nextInt(40);
+                    assertEquals(wheel.add(id, expireAt), !expected.containsKey(id));
+                    expected.putIfAbsent(id, expireAt);
+                    break;
+                case 2:
+                    assertEquals(wheel.remove(id), expected.remove(id) != null);
+                    break;
+                case 3:
+                    assertEquals(wheel.contains(id), expected.containsKey(id));
+                    break;
+                default:
+                    tick += random.nextInt(3);
+                    Set<MessageIdImpl> due = new HashSet<>();
+                    for (Iterator<Map.Entry<MessageIdImpl, Long>> it = expected.entrySet().iterator();
+                         it.hasNext(); ) {
+                        Map.Entry<MessageIdImpl, Long> entry = it.next();
+                        if (entry.getValue() <= tick) {
+                            due.add(entry.getKey());
+                            it.remove();
+                        }
+                    }
+                    assertEquals(new HashSet<>(expire(wheel, tick)), due);
+            }
+            assertEquals(wheel.size(), expected.size());
+        }
+    }
+}
@@ -20,10 +20,12 @@ package org.apache.pulsar.client.impl;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.Optional;
 
 import java.util.concurrent.CompletableFuture;
 import org.apache.pulsar.client.api.Schema;
@@ -36,6 +38,7 @@ import org.apache.pulsar.client.impl.schema.generic.MultiVersionSchemaInfoProvid
 import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
 import org.apache.pulsar.common.api.proto.BrokerEntryMetadata;
 import org.apache.pulsar.common.api.proto.MessageMetadata;
+import org.apache.pulsar.common.api.proto.SingleMessageMetadata;
 import org.apache.pulsar.common.protocol.Commands;
 import org.apache.pulsar.common.schema.KeyValue;
 import org.apache.pulsar.common.schema.KeyValueEncodingType;
@@ -426,6 +429,82 @@ public class MessageImplTest {
         assertNull(msg.getValue());
     }
 
+    @Test
+    public void testLazyBatchMessage() throws Exception {
+        MessageMetadata batchMetadata = new MessageMetadata()
+                .setProducerName("producer")
+                .setPublishTime(1000)
+                .setSequenceId(10)
+                .setSchemaVersion(new byte[]{1})
+                .setPartitionKey("batch-key")
+                .setOrderingKey(new byte[]{2})
+                .setNumMessagesInBatch(3);
+        MessageMetadata[] singleMetadata = new MessageMetadata[]{
+                new MessageMetadata().setPartitionKey("key-0").setEventTime(5).setSequenceId(10),
+                new MessageMetadata().setOrderingKey(new byte[]{3}).setSequenceId(11).setNullValue(true),
+                new MessageMetadata().setPartitionKey(Base64.getEncoder().encodeToString(new byte[]{4}))
+                        .setPartitionKeyB64Encoded(true).setSequenceId(12)
+        };
+        singleMetadata[0].addProperty().setKey("b").setValue("1");
+        singleMetadata[0].addProperty().setKey("a").setValue("0");
+        ByteBuf batchBuffer = PulsarByteBufAllocator.DEFAULT.buffer();
+        for (int i = 0; i < singleMetadata.length; i++) {
+            byte[] payload = ("message-" + i).getBytes(StandardCharsets.UTF_8);
+            if (singleMetadata[i].isNullValue()) {
+                payload = new byte[0];
+            }
+            Commands.serializeSingleMessageInBatchWithPayload(singleMetadata[i], Unpooled.wrappedBuffer(payload),
+                    batchBuffer);
+        }
+
+        ByteBuf eagerBuffer = batchBuffer.duplicate();
+        ByteBuf lazyBuffer = batchBuffer.duplicate();
+        SingleMessageMetadata singleMessageMetadata = new SingleMessageMetadata();
+        for (int i = 0; i < singleMetadata.length; i++) {
+            BatchMessageIdImpl messageId = new BatchMessageIdImpl(1, 2, -1, i, singleMetadata.length,
+                    BatchMessageAckerDisabled.INSTANCE);
+            ByteBuf payload = Commands.deSerializeSingleMessageInBatch(eagerBuffer, singleMessageMetadata, i,
+                    singleMetadata.length);
+            MessageImpl<byte[]> expected = MessageImpl.create("topic", messageId, batchMetadata,
+                    singleMessageMetadata, payload, Optional.empty(), null, Schema.BYTES, 0, false,
+                    Commands.DEFAULT_CONSUMER_EPOCH);
+            payload.release();
+            MessageImpl<byte[]> msg = MessageImpl.createLazy("topic", messageId, batchMetadata, lazyBuffer,
+                    Optional.empty(), null, Schema.BYTES, 0, Commands.DEFAULT_CONSUMER_EPOCH);
+
+            assertEquals(msg.getMessageId(), messageId);
+            assertEquals(msg.getProducerName(), expected.getProducerName());
+            assertEquals(msg.getPublishTime(), expected.getPublishTime());
+            assertEquals(msg.getSchemaVersion(), expected.getSchemaVersion());
+            assertEquals(msg.getEventTime(), expected.getEventTime());
+            assertEquals(msg.getSequenceId(), expected.getSequenceId());
+            assertEquals(msg.hasKey(), expected.hasKey());
+            assertEquals(msg.getKey(), expected.getKey());
+            assertEquals(msg.hasBase64EncodedKey(), expected.hasBase64EncodedKey());
+            assertEquals(msg.getKeyBytes(), expected.getKeyBytes());
+            assertEquals(msg.hasOrderingKey(), expected.hasOrderingKey());
+            assertEquals(msg.getOrderingKey(), expected.getOrderingKey());
+            assertEquals(msg.getProperties(), expected.getProperties());
+            assertEquals(msg.getData(), expected.getData());
+            assertEquals(msg.getValue(), expected.getValue());
+
+            // The metadata of the message is merged into the metadata of the batch when it's needed as a whole
+            MessageMetadata metadata = msg.getMessageBuilder();
+            assertEquals(metadata.hasPartitionKey(), expected.getMessageBuilder().hasPartitionKey());
+            assertEquals(metadata.hasOrderingKey(), expected.getMessageBuilder().hasOrderingKey());
+            assertEquals(metadata.getSequenceId(), expected.getMessageBuilder().getSequenceId());
+            assertEquals(metadata.isNullValue(), expected.getMessageBuilder().isNullValue());
+            assertEquals(msg.getKey(), expected.getKey());
+            assertEquals(msg.getProperties(), expected.getProperties());
+            assertEquals(msg.getData(), expected.getData());
+            msg.release();
+        }
+
+        // The released messages don't hold the buffer of the batch anymore
+        assertEquals(batchBuffer.refCnt(), 1);
+        batchBuffer.release();
+    }
+
     @Test(timeOut = 30000)
     public void testMessageBrokerAndEntryMetadataTimestampMissed() {
         int MOCK_BATCH_SIZE = 10;
@@ -77,4 +77,38 @@ public class UnAckedMessageTrackerTest  {
         timer.stop();
     }
 
+    @Test
+    public void testTimingWheelTrackerAddAndRemove() {
+        PulsarClientImpl client = mock(PulsarClientImpl.class);
+        Timer timer = new HashedWheelTimer(new DefaultThreadFactory("pulsar-timer", Thread.currentThread().isDaemon()),
+                1, TimeUnit.MILLISECONDS);
+        when(client.timer()).thenReturn(timer);
+
+        ConsumerBase<byte[]> consumer = mock(ConsumerBase.class);
+        doNothing().when(consumer).onAckTimeoutSend(any());
+        doNothing().when(consumer).redeliverUnacknowledgedMessages(any());
+        ConsumerConfigurationData<?> conf = new ConsumerConfigurationData<>();
+        conf.setAckTimeoutMillis(1000000);
+        conf.setTickDurationMillis(100000);
+        UnAckedMessageTimingWheelTracker tracker = new UnAckedMessageTimingWheelTracker(client, consumer, conf);
+
+        assertTrue(tracker.isEmpty());
+        MessageIdImpl mid = new MessageIdImpl(1L, 1L, -1);
+        assertTrue(tracker.add(mid));
+        assertFalse(tracker.add(mid));
+        assertTrue(tracker.add(new MessageIdImpl(1L, 2L, -1)));
+        assertTrue(tracker.add(new MessageIdImpl(1L, 3L, -1)));
+        assertEquals(tracker.size(), 3);
+        assertTrue(tracker.contains(new MessageIdImpl(1L, 1L, -1)));
+
+        assertTrue(tracker.remove(mid));
+        assertFalse(tracker.remove(mid));
+        assertEquals(tracker.removeMessagesTill(new MessageIdImpl(1L, 2L, -1)), 1);
+        assertEquals(tracker.size(), 1);
+
+        tracker.close();
+        assertTrue(tracker.isEmpty());
+
+        timer.stop();
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.client.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.awaitility.Awaitility;
+import org.testng.annotations.Test;
+
+public class CombiningQueueTest {
+
+    @Test
+    public void testItemsOfEachThreadProcessedInOrder() throws Exception {
+        int threads = 8;
+        int itemsPerThread = 100_000;
+        Object lock = new Object();
+        // Only accessed while holding the lock
+        List<List<Integer>> processed = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            processed.add(new ArrayList<>());
+        }
+        ExecutorService drainExecutor = Executors.newSingleThreadExecutor();
+        CombiningQueue<int[]> queue = new CombiningQueue<>(lock, 100, item -> {
+            assertTrue(Thread.holdsLock(lock));
+            processed.get(item[0]).add(item[1]);
+        }, drainExecutor);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int j = 0; j < itemsPerThread; j++) {
+                        queue.add(new int[]{thread, j});
+                    }
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+            // The items left in the queue by the threads are processed by the executor
+            Awaitility.await().until(() -> {
+                synchronized (lock) {
+                    return processed.stream().allMatch(items -> items.size() == itemsPerThread);
+                }
+            });
+        } finally {
+            executor.shutdownNow();
+            drainExecutor.shutdownNow();
+        }
+
+        synchronized (lock) {
+            for (int i = 0; i < threads; i++) {
+                List<Integer> items = processed.get(i);
+                for (int j = 0; j < itemsPerThread; j++) {
+                    assertEquals(items.get(j).intValue(), j);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDrainWhileHoldingTheLock() {
+        Object lock = new Object();
+        List<String> processed = new ArrayList<>();
+        CombiningQueue<String> queue = new CombiningQueue<>(lock, 1, processed::add, Runnable::run);
+        synchronized (lock) {
+            queue.add("a");
+            queue.add("b");
+            // A reentrant add processes the items right away
+            assertEquals(processed, Arrays.asList("a", "b"));
+            queue.drain();
+            assertEquals(processed, Arrays.asList("a", "b"));
+        }
+    }
+
+    @Test
+    public void testItemsProcessedInSeveralPasses() {
+        Object lock = new Object();
+        List<Integer> processed = new ArrayList<>();
+        List<CombiningQueue<Integer>> queue = new ArrayList<>();
+        queue.add(new CombiningQueue<>(lock, 2, item -> {
+            processed.add(item);
+            if (item == 0) {
+                // Queued behind the item being processed, and processed 2 at a time
+                for (int i = 1; i < 5; i++) {
+                    queue.get(0).add(i);
+                }
+                assertEquals(processed, Arrays.asList(0));
+            }
+        }, Runnable::run));
+        queue.get(0).add(0);
+        assertEquals(processed, Arrays.asList(0, 1, 2, 3, 4));
+    }
+
+    @Test
+    public void testAddReturnsOnceItsItemIsProcessed() {
+        Object lock = new Object();
+        List<Integer> processed = new ArrayList<>();
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        List<CombiningQueue<Integer>> queue = new ArrayList<>();
+        queue.add(new CombiningQueue<>(lock, 2, item -> {
+            processed.add(item);
+            if (item == 0) {
+                // Added by the other threads while this one is processing its item
+                for (int i = 1; i < 5; i++) {
+                    queue.get(0).add(i);
+                }
+            }
+        }, tasks::add));
+
+        // The thread stops after the pass that processed its item, and leaves the next items to the executor
+        queue.get(0).add(0);
+        assertEquals(processed, Arrays.asList(0, 1));
+        assertEquals(tasks.size(), 1);
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+        assertEquals(processed, Arrays.asList(0, 1, 2, 3, 4));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.apache.pulsar.common.allocator.PulsarByteBufAllocator;
+
+/**
+ * Zstandard Compression with a dictionary trained on samples of the payloads of a topic.
+ *
+ * <p>Small payloads compress poorly on their own, since zstd has little data to find repetitions in. A dictionary
+ * holds the content that is common to the payloads, so that each payload only has to encode what differs from it.
+ * The payloads compressed with a dictionary can only be decompressed with the same dictionary, which is identified
+ * by its version in the schema registry of the topic.
+ *
+ * <p>This codec relies on the native zstd library of {@code com.github.luben:zstd-jni}, which is an optional
+ * dependency that has to be added by the applications using dictionaries.
+ */
+public class CompressionCodecZstdDictionary implements CompressionCodec {
+
+    private static final int ZSTD_COMPRESSION_LEVEL = 3;
+
+    private final long dictionaryId;
+    private final byte[] dictionary;
+    private final ZstdDictCompress compressDictionary;
+    private final ZstdDictDecompress decompressDictionary;
+
+    public CompressionCodecZstdDictionary(long dictionaryId, byte[] dictionary) {
+        if (Zstd.getDictIdFromDict(dictionary) == 0) {
+            throw new IllegalArgumentException("Not a zstd dictionary");
+        }
+        this.dictionaryId = dictionaryId;
+        this.dictionary = dictionary;
+        this.compressDictionary = new ZstdDictCompress(dictionary, ZSTD_COMPRESSION_LEVEL);
+        this.decompressDictionary = new ZstdDictDecompress(dictionary);
+    }
+
+    /**
+     * Train a dictionary on samples of the payloads to compress.
+     *
+     * @param samples the payloads to train the dictionary on
+     * @param dictionarySize the maximum size of the dictionary, in bytes
+     * @return the content of the dictionary
+     */
+    public static byte[] train(List<byte[]> samples, int dictionarySize) {
+        long samplesSize = 0;
+        for (byte[] sample : samples) {
+            samplesSize += sample.length;
+        }
+        ZstdDictTrainer trainer = new ZstdDictTrainer((int) Math.min(samplesSize, Integer.MAX_VALUE),
+                dictionarySize);
+        for (byte[] sample : samples) {
+            trainer.addSample(sample);
+        }
+        return trainer.trainSamples();
+    }
+
+    public long getDictionaryId() {
+        return dictionaryId;
+    }
+
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public ByteBuf encode(ByteBuf source) {
+        int uncompressedLength = source.readableBytes();
+        int maxLength = (int) Zstd.compressBound(uncompressedLength);
+
+        ByteBuf target = PulsarByteBufAllocator.DEFAULT.directBuffer(maxLength, maxLength);
+        ByteBuf directSource = toDirect(source);
+        try {
+            ByteBuffer sourceNio = directSource.nioBuffer(directSource.readerIndex(), uncompressedLength);
+            ByteBuffer targetNio = target.nioBuffer(0, maxLength);
+            long compressedLength = Zstd.compressDirectByteBufferFastDict(targetNio, targetNio.position(), maxLength,
+                    sourceNio, sourceNio.position(), uncompressedLength, compressDictionary);
+            if (Zstd.isError(compressedLength)) {
+                target.release();
+                throw new IllegalStateException("Failed to compress with dictionary " + dictionaryId + ": "
+                        + Zstd.getErrorName(compressedLength));
+            }
+            target.writerIndex((int) compressedLength);
+            return target;
+        } finally {
+            if (directSource != source) {
+                directSource.release();
+            }
+        }
+    }
+
+    @Override
+    public ByteBuf decode(ByteBuf encoded, int uncompressedLength) throws IOException {
+        ByteBuf uncompressed = PulsarByteBufAllocator.DEFAULT.directBuffer(uncompressedLength, uncompressedLength);
+        ByteBuf directEncoded = toDirect(encoded);
+        try {
+            ByteBuffer encodedNio = directEncoded.nioBuffer(directEncoded.readerIndex(),
+                    directEncoded.readableBytes());
+            ByteBuffer uncompressedNio = uncompressed.nioBuffer(0, uncompressedLength);
+            long decompressedLength;
+            try {
+                decompressedLength = Zstd.decompressDirectByteBufferFastDict(uncompressedNio,
+                        uncompressedNio.position(), uncompressedLength, encodedNio, encodedNio.position(),
+                        encodedNio.remaining(), decompressDictionary);
+            } catch (ZstdException e) {
+                uncompressed.release();
+                throw new IOException("Failed to decompress with dictionary " + dictionaryId, e);
+            }
+            if (Zstd.isError(decompressedLength) || decompressedLength != uncompressedLength) {
+                uncompressed.release();
+                throw new IOException("Failed to decompress with dictionary " + dictionaryId + ": "
+                        + (Zstd.isError(decompressedLength) ? Zstd.getErrorName(decompressedLength)
+                        : "got " + decompressedLength + " bytes instead of " + uncompressedLength));
+            }
+        } finally {
+            if (directEncoded != encoded) {
+                directEncoded.release();
+            }
+        }
+
+        uncompressed.writerIndex(uncompressedLength);
+        return uncompressed;
+    }
+
+    /**
+     * The native library needs the content of the buffer in a single direct memory region.
+     */
+    private static ByteBuf toDirect(ByteBuf buf) {
+        if (buf.isDirect() && buf.nioBufferCount() == 1) {
+            return buf;
+        }
+        ByteBuf copy = PulsarByteBufAllocator.DEFAULT.directBuffer(buf.readableBytes(), buf.readableBytes());
+        copy.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+        return copy;
+    }
+}
@@ -127,6 +127,9 @@ public class TopicStatsImpl implements TopicStats {
 
     public String deduplicationStatus;
 
+    /** The estimated heap usage of the deduplication information of the producers. */
+    public long deduplicationStateSizeInBytes;
+
     /** The topic epoch or empty if not set. */
     public Long topicEpoch;
 
@@ -203,6 +206,7 @@ public class TopicStatsImpl implements TopicStats {
         this.waitingPublishers = 0;
         this.replication.clear();
         this.deduplicationStatus = null;
+        this.deduplicationStateSizeInBytes = 0;
         this.topicEpoch = null;
         this.nonContiguousDeletedMessagesRanges = 0;
         this.nonContiguousDeletedMessagesRangesSerializedSize = 0;
@@ -240,6 +244,7 @@ public class TopicStatsImpl implements TopicStats {
         this.nonContiguousDeletedMessagesRanges += stats.nonContiguousDeletedMessagesRanges;
         this.nonContiguousDeletedMessagesRangesSerializedSize += stats.nonContiguousDeletedMessagesRangesSerializedSize;
         this.delayedMessageIndexSizeInBytes += stats.delayedMessageIndexSizeInBytes;
+        this.deduplicationStateSizeInBytes += stats.deduplicationStateSizeInBytes;
         this.ongoingTxnCount = stats.ongoingTxnCount;
         this.abortedTxnCount = stats.abortedTxnCount;
         this.committedTxnCount = stats.committedTxnCount;
@@ -65,6 +65,7 @@ import org.apache.pulsar.common.api.proto.CommandConnected;
 import org.apache.pulsar.common.api.proto.CommandEndTxnOnPartitionResponse;
 import org.apache.pulsar.common.api.proto.CommandEndTxnOnSubscriptionResponse;
 import org.apache.pulsar.common.api.proto.CommandEndTxnResponse;
+import org.apache.pulsar.common.api.proto.CommandGetCompressionDictionary;
 import org.apache.pulsar.common.api.proto.CommandGetLastMessageIdResponse;
 import org.apache.pulsar.common.api.proto.CommandGetSchema;
 import org.apache.pulsar.common.api.proto.CommandGetSchemaResponse;
@@ -1313,6 +1314,72 @@ public class Commands {
         return serializeWithSize(cmd);
     }
 
+    public static ByteBuf newGetCompressionDictionary(long requestId, String topic, Optional<Long> dictionaryId) {
+        BaseCommand cmd = localCmd(Type.GET_COMPRESSION_DICTIONARY);
+        CommandGetCompressionDictionary getCompressionDictionary = cmd.setGetCompressionDictionary()
+                .setRequestId(requestId)
+                .setTopic(topic);
+        dictionaryId.ifPresent(getCompressionDictionary::setDictionaryId);
+        return serializeWithSize(cmd);
+    }
+
+    public static BaseCommand newGetCompressionDictionaryResponseCommand(long requestId, long dictionaryId,
+            byte[] dictionary) {
+        BaseCommand cmd = localCmd(Type.GET_COMPRESSION_DICTIONARY_RESPONSE);
+        cmd.setGetCompressionDictionaryResponse()
+                .setRequestId(requestId)
+                .setDictionaryId(dictionaryId)
+                .setDictionary(dictionary);
+        return cmd;
+    }
+
+    public static BaseCommand newGetCompressionDictionaryResponseErrorCommand(long requestId, ServerError error,
+            String errorMessage) {
+        BaseCommand cmd = localCmd(Type.GET_COMPRESSION_DICTIONARY_RESPONSE);
+        cmd.setGetCompressionDictionaryResponse()
+                .setRequestId(requestId)
+                .setErrorCode(error)
+                .setErrorMessage(errorMessage);
+        return cmd;
+    }
+
+    public static ByteBuf newGetCompressionDictionaryResponseError(long requestId, ServerError error,
+            String errorMessage) {
+        return serializeWithSize(newGetCompressionDictionaryResponseErrorCommand(requestId, error, errorMessage));
+    }
+
+    public static ByteBuf newAddCompressionDictionary(long requestId, String topic, byte[] dictionary) {
+        BaseCommand cmd = localCmd(Type.ADD_COMPRESSION_DICTIONARY);
+        cmd.setAddCompressionDictionary()
+                .setRequestId(requestId)
+                .setTopic(topic)
+                .setDictionary(dictionary);
+        return serializeWithSize(cmd);
+    }
+
+    public static BaseCommand newAddCompressionDictionaryResponseCommand(long requestId, long dictionaryId) {
+        BaseCommand cmd = localCmd(Type.ADD_COMPRESSION_DICTIONARY_RESPONSE);
+        cmd.setAddCompressionDictionaryResponse()
+                .setRequestId(requestId)
+                .setDictionaryId(dictionaryId);
+        return cmd;
+    }
+
+    public static BaseCommand newAddCompressionDictionaryResponseErrorCommand(long requestId, ServerError error,
+            String errorMessage) {
+        BaseCommand cmd = localCmd(Type.ADD_COMPRESSION_DICTIONARY_RESPONSE);
+        cmd.setAddCompressionDictionaryResponse()
+                .setRequestId(requestId)
+                .setErrorCode(error)
+                .setErrorMessage(errorMessage);
+        return cmd;
+    }
+
+    public static ByteBuf newAddCompressionDictionaryResponseError(long requestId, ServerError error,
+            String errorMessage) {
+        return serializeWithSize(newAddCompressionDictionaryResponseErrorCommand(requestId, error, errorMessage));
+    }
+
     // ---- transaction related ----
 
     public static ByteBuf newTxn(long tcId, long requestId, long ttlSeconds) {
@@ -1965,6 +2032,10 @@ public class Commands {
         return peerVersion >= ProtocolVersion.v17.getValue();
     }
 
+    public static boolean peerSupportsCompressionDictionaries(int peerVersion) {
+        return peerVersion >= ProtocolVersion.v21.getValue();
+    }
+
     private static org.apache.pulsar.common.api.proto.ProducerAccessMode convertProducerAccessMode(
             ProducerAccessMode accessMode) {
         switch (accessMode) {
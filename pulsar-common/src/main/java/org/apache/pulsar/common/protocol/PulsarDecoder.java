@@ -28,6 +28,8 @@ import org.apache.pulsar.common.api.proto.BaseCommand;
 import org.apache.pulsar.common.api.proto.CommandAck;
 import org.apache.pulsar.common.api.proto.CommandAckResponse;
 import org.apache.pulsar.common.api.proto.CommandActiveConsumerChange;
+import org.apache.pulsar.common.api.proto.CommandAddCompressionDictionary;
+import org.apache.pulsar.common.api.proto.CommandAddCompressionDictionaryResponse;
 import org.apache.pulsar.common.api.proto.CommandAddPartitionToTxn;
 import org.apache.pulsar.common.api.proto.CommandAddPartitionToTxnResponse;
 import org.apache.pulsar.common.api.proto.CommandAddSubscriptionToTxn;
@@ -48,6 +50,8 @@ import org.apache.pulsar.common.api.proto.CommandEndTxnOnSubscriptionResponse;
 import org.apache.pulsar.common.api.proto.CommandEndTxnResponse;
 import org.apache.pulsar.common.api.proto.CommandError;
 import org.apache.pulsar.common.api.proto.CommandFlow;
+import org.apache.pulsar.common.api.proto.CommandGetCompressionDictionary;
+import org.apache.pulsar.common.api.proto.CommandGetCompressionDictionaryResponse;
 import org.apache.pulsar.common.api.proto.CommandGetLastMessageId;
 import org.apache.pulsar.common.api.proto.CommandGetLastMessageIdResponse;
 import org.apache.pulsar.common.api.proto.CommandGetOrCreateSchema;
@@ -377,6 +381,40 @@ public abstract class PulsarDecoder extends ChannelInboundHandlerAdapter {
                 handleGetOrCreateSchemaResponse(cmd.getGetOrCreateSchemaResponse());
                 break;
 
+            case GET_COMPRESSION_DICTIONARY:
+                checkArgument(cmd.hasGetCompressionDictionary());
+                try {
+                    interceptCommand(cmd);
+                    handleGetCompressionDictionary(cmd.getGetCompressionDictionary());
+                } catch (InterceptException e) {
+                    writeAndFlush(ctx, Commands.newGetCompressionDictionaryResponseError(
+                            cmd.getGetCompressionDictionary().getRequestId(), getServerError(e.getErrorCode()),
+                            e.getMessage()));
+                }
+                break;
+
+            case GET_COMPRESSION_DICTIONARY_RESPONSE:
+                checkArgument(cmd.hasGetCompressionDictionaryResponse());
+                handleGetCompressionDictionaryResponse(cmd.getGetCompressionDictionaryResponse());
+                break;
+
+            case ADD_COMPRESSION_DICTIONARY:
+                checkArgument(cmd.hasAddCompressionDictionary());
+                try {
+                    interceptCommand(cmd);
+                    handleAddCompressionDictionary(cmd.getAddCompressionDictionary());
+                } catch (InterceptException e) {
+                    writeAndFlush(ctx, Commands.newAddCompressionDictionaryResponseError(
+                            cmd.getAddCompressionDictionary().getRequestId(), getServerError(e.getErrorCode()),
+                            e.getMessage()));
+                }
+                break;
+
+            case ADD_COMPRESSION_DICTIONARY_RESPONSE:
+                checkArgument(cmd.hasAddCompressionDictionaryResponse());
+                handleAddCompressionDictionaryResponse(cmd.getAddCompressionDictionaryResponse());
+                break;
+
             case AUTH_CHALLENGE:
                 checkArgument(cmd.hasAuthChallenge());
                 handleAuthChallenge(cmd.getAuthChallenge());
@@ -655,6 +693,24 @@ public abstract class PulsarDecoder extends ChannelInboundHandlerAdapter {
         throw new UnsupportedOperationException();
     }
 
+    protected void handleGetCompressionDictionary(CommandGetCompressionDictionary commandGetCompressionDictionary) {
+        throw new UnsupportedOperationException();
+    }
+
+    protected void handleGetCompressionDictionaryResponse(
+            CommandGetCompressionDictionaryResponse commandGetCompressionDictionaryResponse) {
+        throw new UnsupportedOperationException();
+    }
+
+    protected void handleAddCompressionDictionary(CommandAddCompressionDictionary commandAddCompressionDictionary) {
+        throw new UnsupportedOperationException();
+    }
+
+    protected void handleAddCompressionDictionaryResponse(
+            CommandAddCompressionDictionaryResponse commandAddCompressionDictionaryResponse) {
+        throw new UnsupportedOperationException();
+    }
+
     protected void handleAuthResponse(CommandAuthResponse commandAuthResponse) {
         throw new UnsupportedOperationException();
     }
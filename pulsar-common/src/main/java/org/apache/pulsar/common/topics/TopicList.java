@@ -39,6 +39,10 @@ public class TopicList {
 
     private static final Pattern SCHEME_SEPARATOR_PATTERN = Pattern.compile(Pattern.quote(SCHEME_SEPARATOR));
 
+    private static final String REGEX_METACHARACTERS = "\\[](){}.*+?^$|";
+
+    private static final String REGEX_QUANTIFIERS = "*+?{";
+
     // get topics that match 'topicsPattern' from original topics list
     // return result should contain only topic names, without partition part
     public static List<String> filterTopics(List<String> original, String regex) {
@@ -50,13 +54,59 @@ public class TopicList {
         final Pattern shortenedTopicsPattern = topicsPattern.toString().contains(SCHEME_SEPARATOR)
                 ? Pattern.compile(SCHEME_SEPARATOR_PATTERN.split(topicsPattern.toString())[1]) : topicsPattern;
 
+        // Only the topics starting with the literal prefix of the pattern can match it
+        final String prefix = literalPrefix(shortenedTopicsPattern);
+
         return original.stream()
                 .map(TopicName::get)
                 .map(TopicName::toString)
-                .filter(topic -> shortenedTopicsPattern.matcher(SCHEME_SEPARATOR_PATTERN.split(topic)[1]).matches())
+                .filter(topic -> {
+                    String shortenedTopic = SCHEME_SEPARATOR_PATTERN.split(topic)[1];
+                    return shortenedTopic.startsWith(prefix)
+                            && shortenedTopicsPattern.matcher(shortenedTopic).matches();
+                })
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Get the literal prefix of a pattern, which all the strings matching the pattern start with.
+     *
+     * <p>The prefix stops at the first character that is not a literal one, or that is quantified. It is empty when
+     * the pattern has flags or alternations, since they could apply to the prefix as well.
+     */
+    public static String literalPrefix(Pattern pattern) {
+        String regex = pattern.pattern();
+        if (pattern.flags() != 0 || regex.indexOf('|') >= 0) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            char literal;
+            int next;
+            if (c == '\\') {
+                // Only the escaped characters that are not letters or digits stand for themselves
+                if (i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    break;
+                }
+                literal = regex.charAt(i + 1);
+                next = i + 2;
+            } else if (REGEX_METACHARACTERS.indexOf(c) >= 0) {
+                break;
+            } else {
+                literal = c;
+                next = i + 1;
+            }
+            if (next < regex.length() && REGEX_QUANTIFIERS.indexOf(regex.charAt(next)) >= 0) {
+                break;
+            }
+            prefix.append(literal);
+            i = next;
+        }
+        return prefix.toString();
+    }
+
     public static List<String> filterTransactionInternalName(List<String> original) {
         return original.stream()
                 .filter(topic -> !SystemTopicNames.isTransactionInternalName(TopicName.get(topic)))
@@ -24,6 +24,7 @@ import com.google.common.collect.Maps;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.locks.StampedLock;
 
@@ -204,6 +205,21 @@ public class ConcurrentLongLongPairHashMap {
         return getSection(h).get(key1, key2, (int) h);
     }
 
+    /**
+     * Get the first value associated with a key, without allocating a pair.
+     *
+     * @param key1
+     * @param key2
+     * @param defaultValue
+     * @return the first value or defaultValue if the key was not present.
+     */
+    public long getFirstOrDefault(long key1, long key2, long defaultValue) {
+        checkBiggerEqualZero(key1);
+        long h = hash(key1, key2);
+        long value1 = getSection(h).getFirst(key1, key2, (int) h);
+        return value1 == ValueNotFound ? defaultValue : value1;
+    }
+
     public boolean containsKey(long key1, long key2) {
         return get(key1, key2) != null;
     }
@@ -242,6 +258,20 @@ public class ConcurrentLongLongPairHashMap {
         return getSection(h).remove(key1, key2, value1, value2, (int) h);
     }
 
+    /**
+     * Remove all the entries matching the given filter.
+     *
+     * @param filter
+     * @return the number of removed entries
+     */
+    public int removeIf(LongLongPairPredicate filter) {
+        int removedEntries = 0;
+        for (int i = 0; i < sections.length; i++) {
+            removedEntries += sections[i].removeIf(filter);
+        }
+        return removedEntries;
+    }
+
     private Section getSection(long hash) {
         // Use 32 msb out of long to get the section
         final int sectionIdx = (int) (hash >>> 32) & (sections.length - 1);
@@ -370,6 +400,55 @@ public class ConcurrentLongLongPairHashMap {
             }
         }
 
+        long getFirst(long key1, long key2, int keyHash) {
+            long stamp = tryOptimisticRead();
+            boolean acquiredLock = false;
+            int bucket = signSafeMod(keyHash, capacity);
+
+            try {
+                while (true) {
+                    // First try optimistic locking
+                    long storedKey1 = table[bucket];
+                    long storedKey2 = table[bucket + 1];
+                    long storedValue1 = table[bucket + 2];
+
+                    if (!acquiredLock && validate(stamp)) {
+                        // The values we have read are consistent
+                        if (key1 == storedKey1 && key2 == storedKey2) {
+                            return storedValue1;
+                        } else if (storedKey1 == EmptyKey) {
+                            // Not found
+                            return ValueNotFound;
+                        }
+                    } else {
+                        // Fallback to acquiring read lock
+                        if (!acquiredLock) {
+                            stamp = readLock();
+                            acquiredLock = true;
+
+                            bucket = signSafeMod(keyHash, capacity);
+                            storedKey1 = table[bucket];
+                            storedKey2 = table[bucket + 1];
+                            storedValue1 = table[bucket + 2];
+                        }
+
+                        if (key1 == storedKey1 && key2 == storedKey2) {
+                            return storedValue1;
+                        } else if (storedKey1 == EmptyKey) {
+                            // Not found
+                            return ValueNotFound;
+                        }
+                    }
+
+                    bucket = (bucket + 4) & (table.length - 1);
+                }
+            } finally {
+                if (acquiredLock) {
+                    unlockRead(stamp);
+                }
+            }
+        }
+
         boolean put(long key1, long key2, long value1, long value2, int keyHash, boolean onlyIfAbsent) {
             long stamp = writeLock();
             int bucket = signSafeMod(keyHash, capacity);
@@ -479,6 +558,45 @@ public class ConcurrentLongLongPairHashMap {
             }
         }
 
+        private int removeIf(LongLongPairPredicate filter) {
+            Objects.requireNonNull(filter);
+            int removedEntries = 0;
+
+            // Go through all the buckets for this section
+            long stamp = writeLock();
+            try {
+                for (int bucket = 0; bucket < table.length; bucket += 4) {
+                    long storedKey1 = table[bucket];
+                    long storedKey2 = table[bucket + 1];
+                    long storedValue1 = table[bucket + 2];
+                    long storedValue2 = table[bucket + 3];
+                    if (storedKey1 != DeletedKey && storedKey1 != EmptyKey) {
+                        if (filter.test(storedKey1, storedKey2, storedValue1, storedValue2)) {
+                            SIZE_UPDATER.decrementAndGet(this);
+                            cleanBucket(bucket);
+                            removedEntries++;
+                        }
+                    }
+                }
+            } finally {
+                if (autoShrink && size < resizeThresholdBelow) {
+                    try {
+                        int newCapacity = Math.max(alignToPowerOfTwo((int) (capacity / shrinkFactor)), initCapacity);
+                        int newResizeThresholdUp = (int) (newCapacity * mapFillFactor);
+                        if (newCapacity < capacity && newResizeThresholdUp > size) {
+                            // shrink the hashmap
+                            rehash(newCapacity);
+                        }
+                    } finally {
+                        unlockWrite(stamp);
+                    }
+                } else {
+                    unlockWrite(stamp);
+                }
+            }
+            return removedEntries;
+        }
+
         private void cleanBucket(int bucket) {
             int nextInArray = (bucket + 4) & (table.length - 1);
             if (table[nextInArray] == EmptyKey) {
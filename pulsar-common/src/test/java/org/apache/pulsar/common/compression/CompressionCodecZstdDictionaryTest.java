@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.common.compression;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.pulsar.common.api.proto.CompressionType;
+import org.testng.annotations.Test;
+
+public class CompressionCodecZstdDictionaryTest {
+
+    private static List<byte[]> payloads(int seed, int count) {
+        Random random = new Random(seed);
+        List<byte[]> payloads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String json = "{\"deviceId\":\"sensor-" + random.nextInt(10_000) + "\",\"timestamp\":"
+                    + (1_700_000_000_000L + random.nextInt()) + ",\"temperature\":" + random.nextInt(100)
+                    + ",\"humidity\":" + random.nextInt(100) + ",\"status\":\""
+                    + (random.nextBoolean() ? "online" : "offline") + "\",\"location\":{\"building\":\"north\","
+                    + "\"floor\":" + random.nextInt(10) + "}}";
+            payloads.add(json.getBytes(StandardCharsets.UTF_8));
+        }
+        return payloads;
+    }
+
+    @Test
+    public void testCompressDecompress() throws Exception {
+        CompressionCodecZstdDictionary codec = new CompressionCodecZstdDictionary(0,
+                CompressionCodecZstdDictionary.train(payloads(1, 2000), 16 * 1024));
+        CompressionCodec plain = CompressionCodecProvider.getCompressionCodec(CompressionType.ZSTD);
+
+        long plainSize = 0;
+        long dictionarySize = 0;
+        for (byte[] payload : payloads(2, 100)) {
+            ByteBuf raw = Unpooled.directBuffer().writeBytes(payload);
+
+            ByteBuf plainCompressed = plain.encode(raw);
+            plainSize += plainCompressed.readableBytes();
+            plainCompressed.release();
+
+            ByteBuf compressed = codec.encode(raw);
+            assertEquals(raw.readableBytes(), payload.length);
+            dictionarySize += compressed.readableBytes();
+
+            ByteBuf uncompressed = codec.decode(compressed, payload.length);
+            assertEquals(uncompressed, raw);
+
+            raw.release();
+            compressed.release();
+            uncompressed.release();
+        }
+        // Small payloads share most of their content with the dictionary
+        assertTrue(dictionarySize * 2 < plainSize, dictionarySize + " vs " + plainSize);
+    }
+
+    @Test
+    public void testHeapBuffers() throws Exception {
+        CompressionCodecZstdDictionary codec = new CompressionCodecZstdDictionary(0,
+                CompressionCodecZstdDictionary.train(payloads(1, 2000), 16 * 1024));
+        byte[] payload = payloads(3, 1).get(0);
+        ByteBuf raw = Unpooled.wrappedBuffer(payload);
+
+        ByteBuf compressed = codec.encode(raw);
+        ByteBuf heapCompressed = Unpooled.copiedBuffer(compressed);
+        ByteBuf uncompressed = codec.decode(heapCompressed, payload.length);
+        assertEquals(uncompressed, raw);
+
+        compressed.release();
+        heapCompressed.release();
+        uncompressed.release();
+    }
+
+    @Test
+    public void testWrongDictionary() throws Exception {
+        CompressionCodecZstdDictionary codec = new CompressionCodecZstdDictionary(0,
+                CompressionCodecZstdDictionary.train(payloads(1, 2000), 16 * 1024));
+        CompressionCodecZstdDictionary other = new CompressionCodecZstdDictionary(1,
+                CompressionCodecZstdDictionary.train(payloads(4, 2000), 8 * 1024));
+
+        byte[] payload = payloads(5, 1).get(0);
+        ByteBuf raw = Unpooled.wrappedBuffer(payload);
+        ByteBuf compressed = codec.encode(raw);
+        assertThrows(IOException.class, () -> other.decode(compressed, payload.length));
+
+        compressed.release();
+    }
+
+    @Test
+    public void testNotADictionary() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CompressionCodecZstdDictionary(0, "not a dictionary".getBytes(StandardCharsets.UTF_8)));
+    }
+}
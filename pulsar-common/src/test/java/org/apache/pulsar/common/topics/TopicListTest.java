@@ -52,6 +52,25 @@ public class TopicListTest {
                 && Stream.of(topicName1, topicName2, topicName3, topicName4).allMatch(result2::contains));
     }
 
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals(TopicList.literalPrefix(Pattern.compile("persistent://my-property/my-ns/pattern-topic.*")),
+                "persistent://my-property/my-ns/pattern-topic");
+        assertEquals(TopicList.literalPrefix(Pattern.compile("persistent://my-property/my-ns/topic\\d+")),
+                "persistent://my-property/my-ns/topic");
+        // Escaped characters are literal, unless they are classes
+        assertEquals(TopicList.literalPrefix(Pattern.compile("my\\.topic\\-\\w")), "my.topic-");
+        // A quantified character is not part of the prefix
+        assertEquals(TopicList.literalPrefix(Pattern.compile("topics?-1")), "topic");
+        assertEquals(TopicList.literalPrefix(Pattern.compile("topic{1,2}")), "topi");
+        assertEquals(TopicList.literalPrefix(Pattern.compile("topic[12]")), "topic");
+        assertEquals(TopicList.literalPrefix(Pattern.compile(".*")), "");
+        // Alternations and flags may change the prefix
+        assertEquals(TopicList.literalPrefix(Pattern.compile("topic-1|other")), "");
+        assertEquals(TopicList.literalPrefix(Pattern.compile("(?i)topic")), "");
+        assertEquals(TopicList.literalPrefix(Pattern.compile("topic", Pattern.CASE_INSENSITIVE)), "");
+    }
+
     @Test
     public void testMinus() {
         String topicName1 = "persistent://my-property/my-ns/pattern-topic-1";
@@ -103,6 +103,22 @@ public class ConcurrentLongLongPairHashMapTest {
         assertEquals(map.size(), 3);
     }
 
+    @Test
+    public void testGetFirstOrDefault() {
+        ConcurrentLongLongPairHashMap map = ConcurrentLongLongPairHashMap.newBuilder()
+                .expectedItems(16)
+                .build();
+        assertTrue(map.put(1, 1, 11, 12));
+        assertTrue(map.put(2, 2, 22, 23));
+
+        assertEquals(map.getFirstOrDefault(1, 1, -5), 11);
+        assertEquals(map.getFirstOrDefault(2, 2, -5), 22);
+        assertEquals(map.getFirstOrDefault(1, 2, -5), -5);
+
+        assertTrue(map.remove(1, 1));
+        assertEquals(map.getFirstOrDefault(1, 1, 1), 1);
+    }
+
     @Test
     public void testRemove() {
         ConcurrentLongLongPairHashMap map = ConcurrentLongLongPairHashMap
@@ -121,6 +137,32 @@ public class ConcurrentLongLongPairHashMapTest {
         assertTrue(map.isEmpty());
     }
 
+    @Test
+    public void testRemoveIf() {
+        ConcurrentLongLongPairHashMap map = ConcurrentLongLongPairHashMap.newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .autoShrink(true)
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(map.put(1, i, i, i * 10));
+        }
+        assertTrue(map.put(2, 0, 0, 0));
+
+        assertEquals(map.removeIf((key1, key2, value1, value2) -> key1 == 1 && key2 < 5), 5);
+        assertEquals(map.size(), 6);
+        assertNull(map.get(1, 4));
+        assertEquals(map.get(1, 5), new LongPair(5, 50));
+
+        assertEquals(map.removeIf((key1, key2, value1, value2) -> value2 >= 50), 5);
+        assertEquals(map.size(), 1);
+        assertEquals(map.get(2, 0), new LongPair(0, 0));
+
+        assertEquals(map.removeIf((key1, key2, value1, value2) -> false), 0);
+        assertEquals(map.size(), 1);
+    }
+
     @Test
     public void testClear() {
         ConcurrentLongLongPairHashMap map = ConcurrentLongLongPairHashMap.newBuilder()
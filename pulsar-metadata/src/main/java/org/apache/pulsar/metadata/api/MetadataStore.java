@@ -106,6 +106,30 @@ public interface MetadataStore extends AutoCloseable {
      */
     CompletableFuture<Stat> put(String path, byte[] value, Optional<Long> expectedVersion);
 
+    /**
+     * Put a new value for a given key, with a write that can be coalesced with the other coalescing writes of the same
+     * key.
+     *
+     * When several coalescing writes of a key with the same expected version are pending in the same batch, only
+     * the last one is written and all of them complete with its result. It only fits the writes of a whole state
+     * owned by a single writer, where the last write supersedes the earlier ones. The stores that don't batch their
+     * operations perform each write.
+     *
+     * @param path
+     *            the path of the key
+     * @param value
+     *            the value to store
+     * @param expectedVersion
+     *            if present, the version will have to match with the currently stored value for the operation to
+     *            succeed. Use -1 to enforce a non-existing value.
+     * @throws BadVersionException
+     *             if the expected version doesn't match the actual version of the data
+     * @return a future to track the async request
+     */
+    default CompletableFuture<Stat> putCoalescing(String path, byte[] value, Optional<Long> expectedVersion) {
+        return put(path, value, expectedVersion);
+    }
+
     /**
      *
      * @param path
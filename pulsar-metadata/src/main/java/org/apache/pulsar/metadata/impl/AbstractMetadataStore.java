@@ -418,9 +418,27 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
     protected abstract CompletableFuture<Stat> storePut(String path, byte[] data, Optional<Long> optExpectedVersion,
                                                         EnumSet<CreateOption> options);
 
+    /**
+     * Put a value that can be coalesced with the other coalescing puts of the same path, in the stores that batch their
+     * operations. The other stores write it as any other value.
+     */
+    protected CompletableFuture<Stat> storePutCoalescing(String path, byte[] data, Optional<Long> optExpectedVersion) {
+        return storePut(path, data, optExpectedVersion, EnumSet.noneOf(CreateOption.class));
+    }
+
     @Override
     public final CompletableFuture<Stat> put(String path, byte[] data, Optional<Long> optExpectedVersion,
             EnumSet<CreateOption> options) {
+        return put(path, data, optExpectedVersion, options, false);
+    }
+
+    @Override
+    public final CompletableFuture<Stat> putCoalescing(String path, byte[] data, Optional<Long> optExpectedVersion) {
+        return put(path, data, optExpectedVersion, EnumSet.noneOf(CreateOption.class), true);
+    }
+
+    private CompletableFuture<Stat> put(String path, byte[] data, Optional<Long> optExpectedVersion,
+            EnumSet<CreateOption> options, boolean coalescing) {
         if (isClosed()) {
             return FutureUtil.failedFuture(
                     new MetadataStoreException.AlreadyClosedException());
@@ -438,7 +456,7 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
                     Instant.now().toEpochMilli(), getMetadataEventSynchronizer().get().getClusterName(),
                     NotificationType.Modified);
             return getMetadataEventSynchronizer().get().notify(event)
-                    .thenCompose(__ -> putInternal(path, data, optExpectedVersion, options))
+                    .thenCompose(__ -> putInternal(path, data, optExpectedVersion, options, coalescing))
                     .whenComplete((v, t) -> {
                         if (t != null) {
                             metadataStoreStats.recordPutOpsFailed(System.currentTimeMillis() - start);
@@ -448,7 +466,7 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
                         }
                     });
         } else {
-            return putInternal(path, data, optExpectedVersion, options)
+            return putInternal(path, data, optExpectedVersion, options, coalescing)
                     .whenComplete((v, t) -> {
                         if (t != null) {
                             metadataStoreStats.recordPutOpsFailed(System.currentTimeMillis() - start);
@@ -462,9 +480,16 @@ public abstract class AbstractMetadataStore implements MetadataStoreExtended, Co
     }
     public final CompletableFuture<Stat> putInternal(String path, byte[] data, Optional<Long> optExpectedVersion,
             Set<CreateOption> options) {
+        return putInternal(path, data, optExpectedVersion, options, false);
+    }
+
+    private CompletableFuture<Stat> putInternal(String path, byte[] data, Optional<Long> optExpectedVersion,
+            Set<CreateOption> options, boolean coalescing) {
+        CompletableFuture<Stat> future = coalescing ? storePutCoalescing(path, data, optExpectedVersion)
+                : storePut(path, data, optExpectedVersion, (options != null && !options.isEmpty())
+                        ? EnumSet.copyOf(options) : EnumSet.noneOf(CreateOption.class));
         // Ensure caches are invalidated before the operation is confirmed
-        return storePut(path, data, optExpectedVersion,
-                (options != null && !options.isEmpty()) ? EnumSet.copyOf(options) : EnumSet.noneOf(CreateOption.class))
+        return future
                 .thenApply(stat -> {
                     NotificationType type = stat.getVersion() == 0 ? NotificationType.Created
                             : NotificationType.Modified;
@@ -21,7 +21,9 @@ package org.apache.pulsar.metadata.impl.batching;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledFuture;
@@ -121,6 +123,8 @@ public abstract class AbstractBatchedMetadataStore extends AbstractMetadataStore
                 batchSize += op.size();
                 ops.add(writeOps.poll());
             }
+            ops = coalesce(ops);
+            batchMetadataStoreStats.recordWriteOpsInBatch(ops.size());
             internalBatchOperation(ops);
         }
 
@@ -151,11 +155,72 @@ public abstract class AbstractBatchedMetadataStore extends AbstractMetadataStore
     @Override
     protected CompletableFuture<Stat> storePut(String path, byte[] data, Optional<Long> optExpectedVersion,
                                                EnumSet<CreateOption> options) {
-        OpPut op = new OpPut(path, data, optExpectedVersion, options);
+        OpPut op = new OpPut(path, data, optExpectedVersion, options, false);
         enqueue(writeOps, op);
         return op.getFuture();
     }
 
+    @Override
+    protected CompletableFuture<Stat> storePutCoalescing(String path, byte[] data, Optional<Long> optExpectedVersion) {
+        OpPut op = new OpPut(path, data, optExpectedVersion, EnumSet.noneOf(CreateOption.class), true);
+        enqueue(writeOps, op);
+        return op.getFuture();
+    }
+
+    /**
+     * Drop the coalescing puts of a batch that are followed by a coalescing put of the same path with the same expected
+     * version, with no other write of the path in between. They are completed with the result of the put that is
+     * written.
+     */
+    private List<MetadataOp> coalesce(List<MetadataOp> ops) {
+        Map<String, OpPut> nextPuts = null;
+        int coalesced = 0;
+        for (int i = ops.size() - 1; i >= 0; i--) {
+            MetadataOp op = ops.get(i);
+            if (op.getType() == MetadataOp.Type.DELETE) {
+                if (nextPuts != null) {
+                    nextPuts.remove(op.asDelete().getPath());
+                }
+                continue;
+            }
+            OpPut put = op.asPut();
+            if (!put.isCoalescing()) {
+                if (nextPuts != null) {
+                    nextPuts.remove(put.getPath());
+                }
+                continue;
+            }
+            if (nextPuts == null) {
+                nextPuts = new HashMap<>();
+            }
+            OpPut nextPut = nextPuts.get(put.getPath());
+            if (nextPut != null && nextPut.getOptExpectedVersion().equals(put.getOptExpectedVersion())) {
+                nextPut.getFuture().whenComplete((stat, ex) -> {
+                    if (ex != null) {
+                        put.getFuture().completeExceptionally(ex);
+                    } else {
+                        put.getFuture().complete(stat);
+                    }
+                });
+                ops.set(i, null);
+                coalesced++;
+            } else {
+                nextPuts.put(put.getPath(), put);
+            }
+        }
+        if (coalesced == 0) {
+            return ops;
+        }
+        batchMetadataStoreStats.recordCoalescedWriteOps(coalesced);
+        List<MetadataOp> remainingOps = new ArrayList<>(ops.size() - coalesced);
+        for (MetadataOp op : ops) {
+            if (op != null) {
+                remainingOps.add(op);
+            }
+        }
+        return remainingOps;
+    }
+
     @Override
     public Optional<MetadataEventSynchronizer> getMetadataEventSynchronizer() {
         return Optional.ofNullable(synchronizer);
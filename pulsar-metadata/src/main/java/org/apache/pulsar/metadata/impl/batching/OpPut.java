@@ -33,6 +33,8 @@ public class OpPut implements MetadataOp {
     private final byte[] data;
     private final Optional<Long> optExpectedVersion;
     private final EnumSet<CreateOption> options;
+    // Whether the put can be coalesced with the next coalescing put of the same path
+    private final boolean coalescing;
 
     public final long created = System.currentTimeMillis();
     private final CompletableFuture<Stat> future = new CompletableFuture<>();
@@ -18,6 +18,7 @@
  */
 package org.apache.pulsar.metadata.impl.stats;
 
+import io.prometheus.client.Counter;
 import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
 import java.util.concurrent.ExecutorService;
@@ -49,6 +50,15 @@ public final class BatchMetadataStoreStats implements AutoCloseable {
             .labelNames(NAME)
             .buckets(BUCKETS)
             .register();
+    private static final Histogram WRITE_OPS_PER_BATCH = Histogram
+            .build("pulsar_batch_metadata_store_write_batch_size", "-")
+            .labelNames(NAME)
+            .buckets(BUCKETS)
+            .register();
+    private static final Counter COALESCED_WRITE_OPS = Counter
+            .build("pulsar_batch_metadata_store_coalesced_writes", "-")
+            .labelNames(NAME)
+            .register();
 
     private final AtomicBoolean closed = new AtomicBoolean(false);
     private final ThreadPoolExecutor executor;
@@ -57,6 +67,8 @@ public final class BatchMetadataStoreStats implements AutoCloseable {
     private final Histogram.Child batchOpsWaitingChild;
     private final Histogram.Child batchExecuteTimeChild;
     private final Histogram.Child opsPerBatchChild;
+    private final Histogram.Child writeOpsPerBatchChild;
+    private final Counter.Child coalescedWriteOpsChild;
 
     public BatchMetadataStoreStats(String metadataStoreName, ExecutorService executor) {
         if (executor instanceof ThreadPoolExecutor tx) {
@@ -77,6 +89,8 @@ public final class BatchMetadataStoreStats implements AutoCloseable {
         this.batchOpsWaitingChild = OPS_WAITING.labels(metadataStoreName);
         this.batchExecuteTimeChild = BATCH_EXECUTE_TIME.labels(metadataStoreName);
         this.opsPerBatchChild = OPS_PER_BATCH.labels(metadataStoreName);
+        this.writeOpsPerBatchChild = WRITE_OPS_PER_BATCH.labels(metadataStoreName);
+        this.coalescedWriteOpsChild = COALESCED_WRITE_OPS.labels(metadataStoreName);
 
     }
 
@@ -92,6 +106,14 @@ public final class BatchMetadataStoreStats implements AutoCloseable {
         this.opsPerBatchChild.observe(ops);
     }
 
+    public void recordWriteOpsInBatch(int ops) {
+        this.writeOpsPerBatchChild.observe(ops);
+    }
+
+    public void recordCoalescedWriteOps(int ops) {
+        this.coalescedWriteOpsChild.inc(ops);
+    }
+
     @Override
     public void close() throws Exception {
         if (closed.compareAndSet(false, true)) {
@@ -99,6 +121,8 @@ public final class BatchMetadataStoreStats implements AutoCloseable {
             OPS_WAITING.remove(this.metadataStoreName);
             BATCH_EXECUTE_TIME.remove(this.metadataStoreName);
             OPS_PER_BATCH.remove(metadataStoreName);
+            WRITE_OPS_PER_BATCH.remove(metadataStoreName);
+            COALESCED_WRITE_OPS.remove(metadataStoreName);
         }
     }
 }
@@ -21,6 +21,7 @@ package org.apache.pulsar.metadata;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -41,6 +42,8 @@ import org.apache.pulsar.metadata.api.MetadataStoreFactory;
 import org.apache.pulsar.metadata.api.Stat;
 import org.apache.pulsar.metadata.api.extended.CreateOption;
 import org.apache.pulsar.metadata.api.extended.MetadataStoreExtended;
+import org.apache.pulsar.metadata.impl.batching.AbstractBatchedMetadataStore;
+import org.testng.SkipException;
 import org.testng.annotations.Test;
 
 @Slf4j
@@ -121,6 +124,51 @@ public class MetadataStoreBatchingTest extends BaseMetadataStoreTest {
         }
     }
 
+    @Test(dataProvider = "impl")
+    public void testCoalescingPuts(String provider, Supplier<String> urlSupplier) throws Exception {
+        @Cleanup
+        MetadataStore store = MetadataStoreFactory.create(urlSupplier.get(), MetadataStoreConfig.builder()
+                .batchingEnabled(true)
+                .batchingMaxDelayMillis(1_000)
+                .build());
+        if (!(store instanceof AbstractBatchedMetadataStore)) {
+            throw new SkipException("Puts are only coalesced by the batched metadata stores");
+        }
+
+        String key1 = newKey();
+        store.put(key1, new byte[]{0}, Optional.empty()).join();
+
+        // Only the last put is written, the others complete with its result
+        CompletableFuture<Stat> f1 = store.putCoalescing(key1, new byte[]{1}, Optional.of(0L));
+        CompletableFuture<Stat> f2 = store.putCoalescing(key1, new byte[]{2}, Optional.of(0L));
+        CompletableFuture<Stat> f3 = store.putCoalescing(key1, new byte[]{3}, Optional.of(0L));
+
+        assertEquals(f3.join().getVersion(), 1L);
+        assertEquals(f1.join(), f3.join());
+        assertEquals(f2.join(), f3.join());
+        assertEquals(store.get(key1).join().get().getValue(), new byte[]{3});
+
+        // A regular put in between is not coalesced, so the put that follows it fails
+        CompletableFuture<Stat> f4 = store.putCoalescing(key1, new byte[]{4}, Optional.of(1L));
+        CompletableFuture<Stat> f5 = store.put(key1, new byte[]{5}, Optional.of(1L));
+        CompletableFuture<Stat> f6 = store.putCoalescing(key1, new byte[]{6}, Optional.of(1L));
+
+        assertEquals(f4.join().getVersion(), 2L);
+        try {
+            f5.join();
+            fail("Should have failed");
+        } catch (CompletionException ce) {
+            assertEquals(ce.getCause().getClass(), BadVersionException.class);
+        }
+        try {
+            f6.join();
+            fail("Should have failed");
+        } catch (CompletionException ce) {
+            assertEquals(ce.getCause().getClass(), BadVersionException.class);
+        }
+        assertEquals(store.get(key1).join().get().getValue(), new byte[]{4});
+    }
+
     @Test(dataProvider = "impl")
     public void testSequential(String provider, Supplier<String> urlSupplier) throws Exception {
         @Cleanup